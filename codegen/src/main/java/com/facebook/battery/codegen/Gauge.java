@@ -0,0 +1,28 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.codegen;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * A level sampled at the time of the snapshot, such as a heap size: {@code sum} keeps the
+ * larger of the two values (the peak) and {@code diff} keeps the current value.
+ *
+ * <p>Marks a public primitive field of a SystemMetrics class; see {@link MetricsProcessor} for the
+ * code generated from it.
+ */
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.FIELD)
+public @interface Gauge {
+
+  /** Key to report the field with; defaults to the field name in snake case. */
+  String key() default "";
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.codegen;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Generates {@code Generated<ReporterName>}, a BinarySystemMetricsReporter adding every non zero
+ * annotated field of {@link #value()} to the event, that the annotated class extends:
+ *
+ * <pre>{@code
+ * @GenerateReporter(FooMetrics.class)
+ * public class FooMetricsReporter extends GeneratedFooMetricsReporter {}
+ * }</pre>
+ *
+ * The keys are also generated as constants, named after the key in upper snake case. As with
+ * {@link GenerateSerializer}, reporters used from Kotlin must stay hand-written.
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+public @interface GenerateReporter {
+
+  /** The SystemMetrics class to report. */
+  Class<?> value();
+}
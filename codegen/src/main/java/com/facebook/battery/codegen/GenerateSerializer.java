@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.codegen;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Generates {@code Generated<SerializerName>}, a SystemMetricsSerializer for the annotated fields
+ * of {@link #value()} that the annotated class extends:
+ *
+ * <pre>{@code
+ * @GenerateSerializer(value = FooMetrics.class, tag = 1_234_567_890_123_456_789L)
+ * public class FooMetricsSerializer extends GeneratedFooMetricsSerializer {}
+ * }</pre>
+ *
+ * <p>The generated class only exists once javac runs the processor: Kotlin code compiled in the
+ * same module before that can't resolve it without kapt, so serializers used from Kotlin must stay
+ * hand-written.
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+public @interface GenerateSerializer {
+
+  /** The SystemMetrics class to serialize. */
+  Class<?> value();
+
+  /** Serializer tag, which must never change once records have been written. */
+  long tag();
+
+  /**
+   * Order in which the fields are written, defaulting to their declaration order. Only needed to
+   * keep an existing format: it must list every annotated field.
+   */
+  String[] order() default {};
+}
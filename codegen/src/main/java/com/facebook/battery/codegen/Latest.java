@@ -0,0 +1,28 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.codegen;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * A value that only makes sense as of the latest snapshot, such as a sequence number or a
+ * configuration: both {@code sum} and {@code diff} keep the value of the metrics they are called on.
+ *
+ * <p>Marks a public primitive field of a SystemMetrics class; see {@link MetricsProcessor} for the
+ * code generated from it.
+ */
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.FIELD)
+public @interface Latest {
+
+  /** Key to report the field with; defaults to the field name in snake case. */
+  String key() default "";
+}
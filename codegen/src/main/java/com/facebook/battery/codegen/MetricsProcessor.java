@@ -0,0 +1,506 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.codegen;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+
+/**
+ * Generates the boilerplate of metrics classes from their {@link Monotonic}, {@link Gauge} and
+ * {@link Latest} fields. All the generated code is straight-line, one statement per field, without
+ * any reflection or allocation beyond what the hand-written versions did.
+ *
+ * <ul>
+ *   <li>For a metrics class {@code FooMetrics}, {@code GeneratedFooMetrics} in the same package
+ *       has static {@code set}, {@code sum}, {@code diff}, {@code equals}, {@code hashCode} and
+ *       {@code toString} for the class to delegate to.
+ *   <li>{@link GenerateSerializer} generates a serializer writing the fields in order.
+ *   <li>{@link GenerateReporter} generates a reporter adding the non zero fields.
+ * </ul>
+ *
+ * Supported field types are int, long, float and double.
+ */
+public class MetricsProcessor extends AbstractProcessor {
+
+  private static final String PREFIX = "Generated";
+
+  private static final String MONOTONIC = Monotonic.class.getCanonicalName();
+  private static final String GAUGE = Gauge.class.getCanonicalName();
+  private static final String LATEST = Latest.class.getCanonicalName();
+
+  @Override
+  public Set<String> getSupportedAnnotationTypes() {
+    return new HashSet<>(
+        Arrays.asList(
+            MONOTONIC,
+            GAUGE,
+            LATEST,
+            GenerateSerializer.class.getCanonicalName(),
+            GenerateReporter.class.getCanonicalName()));
+  }
+
+  @Override
+  public SourceVersion getSupportedSourceVersion() {
+    return SourceVersion.latestSupported();
+  }
+
+  @Override
+  public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+    Set<TypeElement> metricsTypes = new LinkedHashSet<>();
+    for (Element field : roundEnv.getElementsAnnotatedWith(Monotonic.class)) {
+      metricsTypes.add((TypeElement) field.getEnclosingElement());
+    }
+    for (Element field : roundEnv.getElementsAnnotatedWith(Gauge.class)) {
+      metricsTypes.add((TypeElement) field.getEnclosingElement());
+    }
+    for (Element field : roundEnv.getElementsAnnotatedWith(Latest.class)) {
+      metricsTypes.add((TypeElement) field.getEnclosingElement());
+    }
+
+    try {
+      for (TypeElement type : metricsTypes) {
+        List<Field> fields = getFields(type);
+        if (fields != null) {
+          writeMetrics(type, fields);
+        }
+      }
+
+      for (Element element : roundEnv.getElementsAnnotatedWith(GenerateSerializer.class)) {
+        TypeElement type = (TypeElement) element;
+        AnnotationMirror annotation = getAnnotation(type, GenerateSerializer.class.getName());
+        TypeElement metricsType = getTypeValue(annotation, "value");
+        List<Field> fields = metricsType == null ? null : getFields(metricsType);
+        if (fields != null && (fields = reorder(type, fields, annotation)) != null) {
+          writeSerializer(type, metricsType, fields, (Long) getValue(annotation, "tag"));
+        }
+      }
+
+      for (Element element : roundEnv.getElementsAnnotatedWith(GenerateReporter.class)) {
+        TypeElement type = (TypeElement) element;
+        AnnotationMirror annotation = getAnnotation(type, GenerateReporter.class.getName());
+        TypeElement metricsType = getTypeValue(annotation, "value");
+        List<Field> fields = metricsType == null ? null : getFields(metricsType);
+        if (fields != null) {
+          writeReporter(type, metricsType, fields);
+        }
+      }
+    } catch (IOException ioe) {
+      processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, ioe.toString());
+    }
+    return true;
+  }
+
+  private void writeMetrics(TypeElement type, List<Field> fields) throws IOException {
+    String name = type.getSimpleName().toString();
+    StringBuilder out = header(type, type);
+    out.append("final class ").append(PREFIX).append(name).append(" {\n\n");
+    out.append("  private ").append(PREFIX).append(name).append("() {}\n\n");
+
+    out.append("  static ").append(name).append(" set(").append(name).append(" output, ");
+    out.append(name).append(" metrics) {\n");
+    for (Field field : fields) {
+      out.append("    output.").append(field.name).append(" = metrics.").append(field.name);
+      out.append(";\n");
+    }
+    out.append("    return output;\n  }\n");
+
+    writeOperation(out, name, "sum", fields);
+    writeOperation(out, name, "diff", fields);
+
+    out.append("\n  static boolean equals(").append(name).append(" a, Object other) {\n");
+    out.append("    if (a == other) {\n      return true;\n    }\n");
+    out.append("    if (other == null || a.getClass() != other.getClass()) {\n");
+    out.append("      return false;\n    }\n");
+    out.append("    ").append(name).append(" b = (").append(name).append(") other;\n");
+    out.append("    return ");
+    for (int i = 0; i < fields.size(); i++) {
+      Field field = fields.get(i);
+      out.append(i == 0 ? "" : "\n        && ");
+      switch (field.kind) {
+        case DOUBLE:
+          out.append("Double.compare(a.").append(field.name).append(", b.");
+          out.append(field.name).append(") == 0");
+          break;
+        case FLOAT:
+          out.append("Float.compare(a.").append(field.name).append(", b.");
+          out.append(field.name).append(") == 0");
+          break;
+        default:
+          out.append("a.").append(field.name).append(" == b.").append(field.name);
+          break;
+      }
+    }
+    out.append(";\n  }\n");
+
+    out.append("\n  static int hashCode(").append(name).append(" a) {\n");
+    out.append("    int result = 0;\n");
+    if (hasKind(fields, TypeKind.DOUBLE)) {
+      out.append("    long bits;\n");
+    }
+    for (Field field : fields) {
+      switch (field.kind) {
+        case DOUBLE:
+          out.append("    bits = Double.doubleToLongBits(a.").append(field.name).append(");\n");
+          out.append("    result = 31 * result + (int) (bits ^ (bits >>> 32));\n");
+          break;
+        case FLOAT:
+          out.append("    result = 31 * result + Float.floatToIntBits(a.");
+          out.append(field.name).append(");\n");
+          break;
+        case LONG:
+          out.append("    result = 31 * result + (int) (a.").append(field.name);
+          out.append(" ^ (a.").append(field.name).append(" >>> 32));\n");
+          break;
+        default:
+          out.append("    result = 31 * result + a.").append(field.name).append(";\n");
+          break;
+      }
+    }
+    out.append("    return result;\n  }\n");
+
+    out.append("\n  static String toString(").append(name).append(" a) {\n");
+    out.append("    return \"").append(name).append("{\"");
+    for (int i = 0; i < fields.size(); i++) {
+      String fieldName = fields.get(i).name;
+      out.append("\n        + \"").append(i == 0 ? "" : ", ").append(fieldName).append("=\"");
+      out.append("\n        + a.").append(fieldName);
+    }
+    out.append("\n        + '}';\n  }\n}\n");
+
+    write(type, PREFIX + name, type, out);
+  }
+
+  private static void writeOperation(
+      StringBuilder out, String name, String operation, List<Field> fields) {
+    out.append("\n  static ").append(name).append(' ').append(operation).append('(');
+    out.append(name).append(" a, ").append(name).append(" b, ").append(name);
+    out.append(" output) {\n");
+    out.append("    if (output == null) {\n");
+    out.append("      output = new ").append(name).append("();\n    }\n");
+    out.append("    if (b == null) {\n      return set(output, a);\n    }\n");
+    for (Field field : fields) {
+      out.append("    output.").append(field.name).append(" = ");
+      if (field.annotation.equals(MONOTONIC)) {
+        out.append("a.").append(field.name).append(operation.equals("sum") ? " + " : " - ");
+        out.append("b.").append(field.name);
+      } else if (field.annotation.equals(GAUGE) && operation.equals("sum")) {
+        out.append("Math.max(a.").append(field.name).append(", b.").append(field.name);
+        out.append(')');
+      } else {
+        out.append("a.").append(field.name);
+      }
+      out.append(";\n");
+    }
+    out.append("    return output;\n  }\n");
+  }
+
+  private void writeSerializer(
+      TypeElement type, TypeElement metricsType, List<Field> fields, long tag) throws IOException {
+    String name = PREFIX + type.getSimpleName();
+    String metricsName = metricsType.getSimpleName().toString();
+    StringBuilder out = header(type, metricsType);
+    out.append("import com.facebook.battery.serializer.core.CompactDataOutput;\n");
+    out.append("import com.facebook.battery.serializer.core.SystemMetricsSerializer;\n");
+    out.append("import java.io.DataInput;\n");
+    out.append("import java.io.DataOutput;\n");
+    out.append("import java.io.IOException;\n\n");
+    out.append("public abstract class ").append(name).append("\n    extends SystemMetricsSerializer<");
+    out.append(metricsName).append("> {\n\n");
+    out.append("  private static final long TAG = ").append(tag).append("L;\n\n");
+    out.append("  @Override\n  public long getTag() {\n    return TAG;\n  }\n\n");
+
+    out.append("  @Override\n  public void serializeContents(").append(metricsName);
+    out.append(" metrics, DataOutput output) throws IOException {\n");
+    for (Field field : fields) {
+      out.append("    output.write").append(field.typeName()).append("(metrics.");
+      out.append(field.name).append(");\n");
+    }
+    out.append("  }\n\n");
+
+    out.append("  @Override\n  public int getContentsSize(").append(metricsName);
+    out.append(" metrics) {\n    return ");
+    for (int i = 0; i < fields.size(); i++) {
+      out.append(i == 0 ? "" : "\n        + ").append(fields.get(i).contentsSize());
+    }
+    out.append(";\n  }\n\n");
+
+    out.append("  @Override\n  public boolean deserializeContents(").append(metricsName);
+    out.append(" metrics, DataInput input) throws IOException {\n");
+    for (Field field : fields) {
+      out.append("    metrics.").append(field.name).append(" = input.read");
+      out.append(field.typeName()).append("();\n");
+    }
+    out.append("    return true;\n  }\n}\n");
+
+    write(type, name, metricsType, out);
+  }
+
+  private void writeReporter(TypeElement type, TypeElement metricsType, List<Field> fields)
+      throws IOException {
+    String name = PREFIX + type.getSimpleName();
+    String metricsName = metricsType.getSimpleName().toString();
+    StringBuilder out = header(type, metricsType);
+    out.append("import com.facebook.battery.reporter.core.BinaryEvent;\n");
+    out.append("import com.facebook.battery.reporter.core.BinarySystemMetricsReporter;\n");
+    out.append("import com.facebook.battery.reporter.core.EventSchema;\n\n");
+    out.append("public abstract class ").append(name);
+    out.append("\n    extends BinarySystemMetricsReporter<").append(metricsName).append("> {\n\n");
+    for (Field field : fields) {
+      out.append("  public static final String ").append(field.constantName()).append(" = \"");
+      out.append(field.key).append("\";\n");
+    }
+    out.append("\n");
+    for (Field field : fields) {
+      out.append("  private static final int ").append(field.constantName()).append("_ID =\n");
+      out.append("      EventSchema.register(").append(field.constantName()).append(");\n");
+    }
+
+    out.append("\n  @Override\n  public void reportTo(").append(metricsName);
+    out.append(" metrics, BinaryEvent event) {\n");
+    for (int i = 0; i < fields.size(); i++) {
+      Field field = fields.get(i);
+      out.append(i == 0 ? "" : "\n");
+      out.append("    if (metrics.").append(field.name).append(" != 0) {\n");
+      out.append("      event.add(").append(field.constantName()).append("_ID, ");
+      out.append(field.kind == TypeKind.FLOAT ? "(double) " : "");
+      out.append("metrics.").append(field.name).append(");\n    }\n");
+    }
+    out.append("  }\n}\n");
+
+    write(type, name, metricsType, out);
+  }
+
+  private StringBuilder header(TypeElement type, TypeElement source) {
+    StringBuilder out = new StringBuilder();
+    out.append("// Generated by ").append(MetricsProcessor.class.getName()).append(" from ");
+    out.append(source.getQualifiedName()).append(", do not edit.\n\n");
+    out.append("package ").append(packageOf(type)).append(";\n\n");
+    if (!packageOf(type).equals(packageOf(source))) {
+      out.append("import ").append(source.getQualifiedName()).append(";\n");
+    }
+    return out;
+  }
+
+  private void write(TypeElement origin, String name, TypeElement source, StringBuilder out)
+      throws IOException {
+    String qualifiedName = packageOf(origin) + "." + name;
+    try (Writer writer =
+        processingEnv.getFiler().createSourceFile(qualifiedName, origin, source).openWriter()) {
+      writer.write(out.toString());
+    }
+  }
+
+  private String packageOf(TypeElement type) {
+    return processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+  }
+
+  /** @return the annotated fields of type in declaration order, or null after reporting errors */
+  private List<Field> getFields(TypeElement type) {
+    if (type.getNestingKind() != NestingKind.TOP_LEVEL) {
+      error(type, "Generated metrics must be top level classes");
+      return null;
+    }
+
+    List<Field> fields = new ArrayList<>();
+    boolean valid = true;
+    for (VariableElement element : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+      AnnotationMirror annotation = null;
+      for (String candidate : Arrays.asList(MONOTONIC, GAUGE, LATEST)) {
+        AnnotationMirror mirror = getAnnotation(element, candidate);
+        if (mirror != null) {
+          if (annotation != null) {
+            error(element, "Only one of @Monotonic, @Gauge and @Latest can be used");
+            valid = false;
+          }
+          annotation = mirror;
+        }
+      }
+      if (annotation == null) {
+        continue;
+      }
+
+      TypeKind kind = element.asType().getKind();
+      if (kind != TypeKind.INT
+          && kind != TypeKind.LONG
+          && kind != TypeKind.FLOAT
+          && kind != TypeKind.DOUBLE) {
+        error(element, "Unsupported type for a generated metric: " + element.asType());
+        valid = false;
+      } else if (!element.getModifiers().contains(Modifier.PUBLIC)
+          || element.getModifiers().contains(Modifier.STATIC)
+          || element.getModifiers().contains(Modifier.FINAL)) {
+        error(element, "Generated metrics must be public, non static and non final fields");
+        valid = false;
+      }
+
+      String name = element.getSimpleName().toString();
+      String key = (String) getValue(annotation, "key");
+      if (!key.matches("[A-Za-z0-9_.]*")) {
+        error(element, "Keys can only contain letters, digits, '_' and '.': " + key);
+        valid = false;
+      }
+      fields.add(
+          new Field(
+              name,
+              kind,
+              ((TypeElement) annotation.getAnnotationType().asElement())
+                  .getQualifiedName()
+                  .toString(),
+              key.isEmpty() ? toSnakeCase(name) : key));
+    }
+
+    if (fields.isEmpty()) {
+      error(type, "No @Monotonic, @Gauge or @Latest fields in " + type.getQualifiedName());
+      valid = false;
+    }
+    return valid ? fields : null;
+  }
+
+  private List<Field> reorder(TypeElement type, List<Field> fields, AnnotationMirror annotation) {
+    @SuppressWarnings("unchecked")
+    List<? extends AnnotationValue> order =
+        (List<? extends AnnotationValue>) getValue(annotation, "order");
+    if (order.isEmpty()) {
+      return fields;
+    }
+
+    List<Field> reordered = new ArrayList<>();
+    for (AnnotationValue value : order) {
+      for (Field field : fields) {
+        if (field.name.equals(value.getValue()) && !reordered.contains(field)) {
+          reordered.add(field);
+        }
+      }
+    }
+    if (reordered.size() != fields.size() || order.size() != fields.size()) {
+      error(type, "order must list every annotated field exactly once");
+      return null;
+    }
+    return reordered;
+  }
+
+  private TypeElement getTypeValue(
+      AnnotationMirror annotation, String name) {
+    TypeMirror type = (TypeMirror) getValue(annotation, name);
+    if (type.getKind() != TypeKind.DECLARED) {
+      return null;
+    }
+    TypeElement element = (TypeElement) ((DeclaredType) type).asElement();
+    return element.getKind() == ElementKind.CLASS ? element : null;
+  }
+
+  private static AnnotationMirror getAnnotation(Element element, String annotationName) {
+    for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+      TypeElement annotationType = (TypeElement) mirror.getAnnotationType().asElement();
+      if (annotationType.getQualifiedName().contentEquals(annotationName)) {
+        return mirror;
+      }
+    }
+    return null;
+  }
+
+  private Object getValue(AnnotationMirror annotation, String name) {
+    for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry :
+        processingEnv.getElementUtils().getElementValuesWithDefaults(annotation).entrySet()) {
+      if (entry.getKey().getSimpleName().contentEquals(name)) {
+        return entry.getValue().getValue();
+      }
+    }
+    throw new IllegalArgumentException("Missing annotation value " + name);
+  }
+
+  private void error(Element element, String message) {
+    processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+  }
+
+  private static boolean hasKind(List<Field> fields, TypeKind kind) {
+    for (Field field : fields) {
+      if (field.kind == kind) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  static String toSnakeCase(String name) {
+    StringBuilder snakeCase = new StringBuilder();
+    for (int i = 0; i < name.length(); i++) {
+      char c = name.charAt(i);
+      if (Character.isUpperCase(c)) {
+        if (i > 0) {
+          snakeCase.append('_');
+        }
+        snakeCase.append(Character.toLowerCase(c));
+      } else {
+        snakeCase.append(c);
+      }
+    }
+    return snakeCase.toString();
+  }
+
+  private static final class Field {
+    final String name;
+    final TypeKind kind;
+    final String annotation;
+    final String key;
+
+    Field(String name, TypeKind kind, String annotation, String key) {
+      this.name = name;
+      this.kind = kind;
+      this.annotation = annotation;
+      this.key = key;
+    }
+
+    /** Suffix of the DataInput/DataOutput methods for the field, e.g. Long. */
+    String typeName() {
+      String type = kind.name().toLowerCase(Locale.US);
+      return Character.toUpperCase(type.charAt(0)) + type.substring(1);
+    }
+
+    /** Size of the field as written by {@link #typeName()} in the compact format. */
+    String contentsSize() {
+      switch (kind) {
+        case DOUBLE:
+          return "8";
+        case FLOAT:
+          return "4";
+        default:
+          return "CompactDataOutput.varLongSize(CompactDataOutput.zigzag(metrics." + name + "))";
+      }
+    }
+
+    String constantName() {
+      return key.toUpperCase(Locale.US).replaceAll("[^A-Z0-9]", "_");
+    }
+  }
+}
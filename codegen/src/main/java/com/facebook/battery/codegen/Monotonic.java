@@ -0,0 +1,28 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.codegen;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * A cumulative counter, such as bytes sent or cpu time: {@code sum} adds the values and {@code
+ * diff} subtracts them.
+ *
+ * <p>Marks a public primitive field of a SystemMetrics class; see {@link MetricsProcessor} for the
+ * code generated from it.
+ */
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.FIELD)
+public @interface Monotonic {
+
+  /** Key to report the field with; defaults to the field name in snake case. */
+  String key() default "";
+}
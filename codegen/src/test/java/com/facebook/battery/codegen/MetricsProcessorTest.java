@@ -0,0 +1,540 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.codegen;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Stream;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Runs {@link MetricsProcessor} through javac on small metrics classes, checking both the
+ * generated code and the errors reported for unsupported declarations.
+ *
+ * <p>The serializer and reporter base classes live in other modules, so minimal versions of them
+ * are compiled alongside.
+ */
+public class MetricsProcessorTest {
+
+  private static final String METRICS =
+      lines(
+          "package com.example;",
+          "import com.facebook.battery.codegen.Gauge;",
+          "import com.facebook.battery.codegen.Latest;",
+          "import com.facebook.battery.codegen.Monotonic;",
+          "public class FooMetrics {",
+          "  @Monotonic public long totalMs;",
+          "  @Gauge(key = \"peak.kb\") public int peakKb;",
+          "  @Latest public double lastValue;",
+          "  @Monotonic public float energyMah;",
+          "  public long notGenerated;",
+          "}");
+
+  private static final String SERIALIZER_BASE =
+      lines(
+          "package com.facebook.battery.serializer.core;",
+          "import java.io.*;",
+          "public abstract class SystemMetricsSerializer<T> {",
+          "  public abstract long getTag();",
+          "  public abstract void serializeContents(T metrics, DataOutput output)",
+          "      throws IOException;",
+          "  public int getContentsSize(T metrics) throws IOException { return 0; }",
+          "  public abstract boolean deserializeContents(T metrics, DataInput input)",
+          "      throws IOException;",
+          "}");
+
+  private static final String COMPACT_DATA_OUTPUT =
+      lines(
+          "package com.facebook.battery.serializer.core;",
+          "public class CompactDataOutput {",
+          "  public static long zigzag(long value) { return (value << 1) ^ (value >> 63); }",
+          "  public static int varLongSize(long value) {",
+          "    int size = 1;",
+          "    while ((value & ~0x7FL) != 0) { size++; value >>>= 7; }",
+          "    return size;",
+          "  }",
+          "}");
+
+  private static final String BINARY_EVENT =
+      lines(
+          "package com.facebook.battery.reporter.core;",
+          "public interface BinaryEvent {",
+          "  void add(int key, int value);",
+          "  void add(int key, long value);",
+          "  void add(int key, double value);",
+          "}");
+
+  private static final String REPORTER_BASE =
+      lines(
+          "package com.facebook.battery.reporter.core;",
+          "public abstract class BinarySystemMetricsReporter<T> {",
+          "  public abstract void reportTo(T metrics, BinaryEvent event);",
+          "}");
+
+  private static final String EVENT_SCHEMA =
+      lines(
+          "package com.facebook.battery.reporter.core;",
+          "import java.util.ArrayList;",
+          "public final class EventSchema {",
+          "  public static final ArrayList<String> NAMES = new ArrayList<>();",
+          "  public static synchronized int register(String name) {",
+          "    int id = NAMES.indexOf(name);",
+          "    if (id < 0) { id = NAMES.size(); NAMES.add(name); }",
+          "    return id;",
+          "  }",
+          "}");
+
+  /** Records the reported values by key, as "key=value". */
+  private static final String RECORDING_EVENT =
+      lines(
+          "package com.example;",
+          "import com.facebook.battery.reporter.core.BinaryEvent;",
+          "import com.facebook.battery.reporter.core.EventSchema;",
+          "import java.util.ArrayList;",
+          "public class RecordingEvent implements BinaryEvent {",
+          "  public final ArrayList<String> values = new ArrayList<>();",
+          "  public void add(int key, int value) { record(key, \"int \" + value); }",
+          "  public void add(int key, long value) { record(key, \"long \" + value); }",
+          "  public void add(int key, double value) { record(key, \"double \" + value); }",
+          "  private void record(int key, String value) {",
+          "    values.add(EventSchema.NAMES.get(key) + \"=\" + value);",
+          "  }",
+          "}");
+
+  private Path mDir;
+  private Path mClasses;
+  private Path mGenerated;
+  private List<Diagnostic<? extends JavaFileObject>> mDiagnostics = Collections.emptyList();
+  private URLClassLoader mLoader;
+
+  @Before
+  public void setUp() throws IOException {
+    mDir = Files.createTempDirectory("codegen");
+    mClasses = Files.createDirectory(mDir.resolve("classes"));
+    mGenerated = Files.createDirectory(mDir.resolve("generated"));
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    if (mLoader != null) {
+      mLoader.close();
+    }
+    try (Stream<Path> paths = Files.walk(mDir)) {
+      for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+        Files.delete(path);
+      }
+    }
+  }
+
+  @Test
+  public void testMetricsOperations() throws Exception {
+    assertTrue(compile("com.example.FooMetrics", METRICS));
+    assertTrue(generated("com.example.GeneratedFooMetrics").contains("final class"));
+
+    Class<?> metricsClass = load("com.example.FooMetrics");
+    Class<?> generated = load("com.example.GeneratedFooMetrics");
+    Method sum = generated.getDeclaredMethod("sum", metricsClass, metricsClass, metricsClass);
+    Method diff = generated.getDeclaredMethod("diff", metricsClass, metricsClass, metricsClass);
+    sum.setAccessible(true);
+    diff.setAccessible(true);
+
+    Object a = create(metricsClass, 10, 5, 1.5, 2f, 7);
+    Object b = create(metricsClass, 4, 8, 2.5, 0.5f, 9);
+
+    Object total = sum.invoke(null, a, b, null);
+    assertEquals(14L, get(total, "totalMs"));
+    assertEquals(8, get(total, "peakKb"));
+    assertEquals(1.5, get(total, "lastValue"));
+    assertEquals(2.5f, get(total, "energyMah"));
+    assertEquals(0L, get(total, "notGenerated"));
+
+    Object difference = diff.invoke(null, a, b, null);
+    assertEquals(6L, get(difference, "totalMs"));
+    assertEquals(5, get(difference, "peakKb"));
+    assertEquals(1.5, get(difference, "lastValue"));
+    assertEquals(1.5f, get(difference, "energyMah"));
+
+    Object copy = sum.invoke(null, a, null, null);
+    assertEquals(10L, get(copy, "totalMs"));
+    assertEquals(5, get(copy, "peakKb"));
+  }
+
+  @Test
+  public void testEqualsHashCodeAndToString() throws Exception {
+    assertTrue(compile("com.example.FooMetrics", METRICS));
+    Class<?> metricsClass = load("com.example.FooMetrics");
+    Class<?> generated = load("com.example.GeneratedFooMetrics");
+    Method equals = generated.getDeclaredMethod("equals", metricsClass, Object.class);
+    Method hashCode = generated.getDeclaredMethod("hashCode", metricsClass);
+    Method toString = generated.getDeclaredMethod("toString", metricsClass);
+    equals.setAccessible(true);
+    hashCode.setAccessible(true);
+    toString.setAccessible(true);
+
+    Object a = create(metricsClass, 1, 2, Double.NaN, 3f, 4);
+    Object b = create(metricsClass, 1, 2, Double.NaN, 3f, 5);
+    Object c = create(metricsClass, 1, 2, 0.0, 3f, 4);
+
+    // Fields without an annotation aren't part of the generated metric
+    assertEquals(true, equals.invoke(null, a, b));
+    assertEquals(hashCode.invoke(null, a), hashCode.invoke(null, b));
+    assertEquals(false, equals.invoke(null, a, c));
+    assertEquals(false, equals.invoke(null, a, null));
+    assertEquals(
+        "FooMetrics{totalMs=1, peakKb=2, lastValue=NaN, energyMah=3.0}",
+        toString.invoke(null, a));
+  }
+
+  @Test
+  public void testSerializer() throws Exception {
+    assertTrue(
+        compile(
+            "com.example.FooMetrics",
+            METRICS,
+            "com.facebook.battery.serializer.core.SystemMetricsSerializer",
+            SERIALIZER_BASE,
+            "com.facebook.battery.serializer.core.CompactDataOutput",
+            COMPACT_DATA_OUTPUT,
+            "com.example.serializer.FooMetricsSerializer",
+            lines(
+                "package com.example.serializer;",
+                "import com.example.FooMetrics;",
+                "import com.facebook.battery.codegen.GenerateSerializer;",
+                "@GenerateSerializer(",
+                "    value = FooMetrics.class,",
+                "    tag = 42L,",
+                "    order = {\"peakKb\", \"totalMs\", \"lastValue\", \"energyMah\"})",
+                "public class FooMetricsSerializer extends GeneratedFooMetricsSerializer {}")));
+
+    String source = generated("com.example.serializer.GeneratedFooMetricsSerializer");
+    assertTrue(source.contains("import com.example.FooMetrics;"));
+    assertTrue(source.contains("private static final long TAG = 42L;"));
+    assertTrue(
+        source.indexOf("output.writeInt(metrics.peakKb);")
+            < source.indexOf("output.writeLong(metrics.totalMs);"));
+
+    Class<?> metricsClass = load("com.example.FooMetrics");
+    Object serializer = load("com.example.serializer.FooMetricsSerializer").getDeclaredConstructor().newInstance();
+    Object metrics = create(metricsClass, 300, -2, 0.25, 1.5f, 9);
+
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    serializer
+        .getClass()
+        .getMethod("serializeContents", Object.class, DataOutput.class)
+        .invoke(serializer, metrics, new DataOutputStream(baos));
+    // Uncompressed: int, long, double and float
+    assertEquals(4 + 8 + 8 + 4, baos.size());
+    // Compact: 2 varints of 1 and 2 bytes, double and float
+    assertEquals(
+        1 + 2 + 8 + 4,
+        serializer
+            .getClass()
+            .getMethod("getContentsSize", Object.class)
+            .invoke(serializer, metrics));
+
+    Object output = metricsClass.getDeclaredConstructor().newInstance();
+    assertEquals(
+        true,
+        serializer
+            .getClass()
+            .getMethod("deserializeContents", Object.class, DataInput.class)
+            .invoke(
+                serializer,
+                output,
+                new DataInputStream(new ByteArrayInputStream(baos.toByteArray()))));
+    assertEquals(300L, get(output, "totalMs"));
+    assertEquals(-2, get(output, "peakKb"));
+    assertEquals(0.25, get(output, "lastValue"));
+    assertEquals(1.5f, get(output, "energyMah"));
+    assertEquals(0L, get(output, "notGenerated"));
+  }
+
+  @Test
+  public void testReporter() throws Exception {
+    assertTrue(
+        compile(
+            "com.example.FooMetrics",
+            METRICS,
+            "com.facebook.battery.reporter.core.BinaryEvent",
+            BINARY_EVENT,
+            "com.facebook.battery.reporter.core.BinarySystemMetricsReporter",
+            REPORTER_BASE,
+            "com.facebook.battery.reporter.core.EventSchema",
+            EVENT_SCHEMA,
+            "com.example.RecordingEvent",
+            RECORDING_EVENT,
+            "com.example.FooMetricsReporter",
+            lines(
+                "package com.example;",
+                "import com.facebook.battery.codegen.GenerateReporter;",
+                "@GenerateReporter(FooMetrics.class)",
+                "public class FooMetricsReporter extends GeneratedFooMetricsReporter {}")));
+
+    String source = generated("com.example.GeneratedFooMetricsReporter");
+    assertTrue(source.contains("public static final String TOTAL_MS = \"total_ms\";"));
+    assertTrue(source.contains("public static final String PEAK_KB = \"peak.kb\";"));
+    assertFalse(source.contains("not_generated"));
+
+    Class<?> reporterClass = load("com.example.FooMetricsReporter");
+    Class<?> eventClass = load("com.example.RecordingEvent");
+    Class<?> binaryEventClass = load("com.facebook.battery.reporter.core.BinaryEvent");
+    Object reporter = reporterClass.getDeclaredConstructor().newInstance();
+    Object event = eventClass.getDeclaredConstructor().newInstance();
+    reporterClass
+        .getMethod("reportTo", Object.class, binaryEventClass)
+        .invoke(reporter, create(load("com.example.FooMetrics"), 5, 0, 0.5, 2f, 1), event);
+
+    // Zero values are skipped and floats are reported as doubles
+    assertEquals(
+        Arrays.asList("total_ms=long 5", "last_value=double 0.5", "energy_mah=double 2.0"),
+        eventClass.getField("values").get(event));
+  }
+
+  @Test
+  public void testUnsupportedType() throws Exception {
+    assertFalse(
+        compile(
+            "com.example.BadMetrics",
+            lines(
+                "package com.example;",
+                "import com.facebook.battery.codegen.Monotonic;",
+                "public class BadMetrics {",
+                "  @Monotonic public short count;",
+                "}")));
+    assertError("Unsupported type for a generated metric: short", "count");
+  }
+
+  @Test
+  public void testNonPublicField() throws Exception {
+    assertFalse(
+        compile(
+            "com.example.BadMetrics",
+            lines(
+                "package com.example;",
+                "import com.facebook.battery.codegen.Gauge;",
+                "public class BadMetrics {",
+                "  @Gauge long peak;",
+                "  @Gauge public static long total;",
+                "}")));
+    assertError("Generated metrics must be public, non static and non final fields", "peak");
+    assertError("Generated metrics must be public, non static and non final fields", "total");
+  }
+
+  @Test
+  public void testConflictingAnnotations() throws Exception {
+    assertFalse(
+        compile(
+            "com.example.BadMetrics",
+            lines(
+                "package com.example;",
+                "import com.facebook.battery.codegen.Gauge;",
+                "import com.facebook.battery.codegen.Monotonic;",
+                "public class BadMetrics {",
+                "  @Monotonic @Gauge public long value;",
+                "}")));
+    assertError("Only one of @Monotonic, @Gauge and @Latest can be used", "value");
+  }
+
+  @Test
+  public void testInvalidKey() throws Exception {
+    assertFalse(
+        compile(
+            "com.example.BadMetrics",
+            lines(
+                "package com.example;",
+                "import com.facebook.battery.codegen.Latest;",
+                "public class BadMetrics {",
+                "  @Latest(key = \"bad key\") public long value;",
+                "}")));
+    assertError("Keys can only contain letters, digits, '_' and '.': bad key", "value");
+  }
+
+  @Test
+  public void testNestedClass() throws Exception {
+    assertFalse(
+        compile(
+            "com.example.Outer",
+            lines(
+                "package com.example;",
+                "import com.facebook.battery.codegen.Monotonic;",
+                "public class Outer {",
+                "  public static class BadMetrics {",
+                "    @Monotonic public long value;",
+                "  }",
+                "}")));
+    assertError("Generated metrics must be top level classes", "BadMetrics");
+  }
+
+  @Test
+  public void testIncompleteOrder() throws Exception {
+    assertFalse(
+        compile(
+            "com.example.FooMetrics",
+            METRICS,
+            "com.example.FooMetricsSerializer",
+            lines(
+                "package com.example;",
+                "import com.facebook.battery.codegen.GenerateSerializer;",
+                "@GenerateSerializer(value = FooMetrics.class, tag = 1L, order = {\"totalMs\"})",
+                "public class FooMetricsSerializer {}")));
+    assertError("order must list every annotated field exactly once", "FooMetricsSerializer");
+  }
+
+  @Test
+  public void testNoAnnotatedFields() throws Exception {
+    assertFalse(
+        compile(
+            "com.example.EmptyMetrics",
+            lines("package com.example;", "public class EmptyMetrics {", "  public long value;", "}"),
+            "com.example.EmptyMetricsReporter",
+            lines(
+                "package com.example;",
+                "import com.facebook.battery.codegen.GenerateReporter;",
+                "@GenerateReporter(EmptyMetrics.class)",
+                "public class EmptyMetricsReporter {}")));
+    assertError("No @Monotonic, @Gauge or @Latest fields in com.example.EmptyMetrics", null);
+  }
+
+  /**
+   * Compiles the sources, given as pairs of qualified class name and source, with the processor.
+   *
+   * @return whether the compilation succeeded
+   */
+  private boolean compile(String... namesAndSources) throws IOException {
+    List<JavaFileObject> sources = new ArrayList<>();
+    for (int i = 0; i < namesAndSources.length; i += 2) {
+      sources.add(new SourceFile(namesAndSources[i], namesAndSources[i + 1]));
+    }
+
+    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+    try (StandardJavaFileManager fileManager =
+        compiler.getStandardFileManager(diagnostics, Locale.US, StandardCharsets.UTF_8)) {
+      fileManager.setLocation(
+          StandardLocation.CLASS_OUTPUT, Collections.singletonList(mClasses.toFile()));
+      fileManager.setLocation(
+          StandardLocation.SOURCE_OUTPUT, Collections.singletonList(mGenerated.toFile()));
+      JavaCompiler.CompilationTask task =
+          compiler.getTask(
+              null,
+              fileManager,
+              diagnostics,
+              Arrays.asList("-classpath", System.getProperty("java.class.path")),
+              null,
+              sources);
+      task.setProcessors(Collections.singletonList(new MetricsProcessor()));
+      boolean success = task.call();
+      mDiagnostics = diagnostics.getDiagnostics();
+      return success;
+    }
+  }
+
+  private String generated(String qualifiedName) throws IOException {
+    Path path = mGenerated.resolve(qualifiedName.replace('.', File.separatorChar) + ".java");
+    return new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+  }
+
+  private Class<?> load(String qualifiedName) throws Exception {
+    URLClassLoader loader = mLoader;
+    if (loader == null) {
+      loader = new URLClassLoader(new URL[] {mClasses.toUri().toURL()});
+      mLoader = loader;
+    }
+    return loader.loadClass(qualifiedName);
+  }
+
+  /** Asserts an error with the message was reported, on the named element if not null. */
+  private void assertError(String message, String element) throws IOException {
+    for (Diagnostic<? extends JavaFileObject> diagnostic : mDiagnostics) {
+      if (diagnostic.getKind() == Diagnostic.Kind.ERROR
+          && diagnostic.getMessage(Locale.US).equals(message)) {
+        if (element != null) {
+          String source = diagnostic.getSource().getCharContent(true).toString();
+          assertTrue(source.substring((int) diagnostic.getStartPosition()).contains(element));
+        }
+        return;
+      }
+    }
+    throw new AssertionError("Missing error \"" + message + "\" in " + mDiagnostics);
+  }
+
+  private static Object create(
+      Class<?> metricsClass,
+      long totalMs,
+      int peakKb,
+      double lastValue,
+      float energyMah,
+      long notGenerated)
+      throws Exception {
+    Object metrics = metricsClass.getDeclaredConstructor().newInstance();
+    metricsClass.getField("totalMs").setLong(metrics, totalMs);
+    metricsClass.getField("peakKb").setInt(metrics, peakKb);
+    metricsClass.getField("lastValue").setDouble(metrics, lastValue);
+    metricsClass.getField("energyMah").setFloat(metrics, energyMah);
+    metricsClass.getField("notGenerated").setLong(metrics, notGenerated);
+    return metrics;
+  }
+
+  private static Object get(Object metrics, String field) throws Exception {
+    return metrics.getClass().getField(field).get(metrics);
+  }
+
+  private static String lines(String... lines) {
+    return String.join("\n", lines) + "\n";
+  }
+
+  private static final class SourceFile extends SimpleJavaFileObject {
+
+    private final String mSource;
+
+    SourceFile(String qualifiedName, String source) {
+      super(
+          URI.create("string:///" + qualifiedName.replace('.', '/') + Kind.SOURCE.extension),
+          Kind.SOURCE);
+      mSource = source;
+    }
+
+    @Override
+    public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+      return mSource;
+    }
+  }
+}
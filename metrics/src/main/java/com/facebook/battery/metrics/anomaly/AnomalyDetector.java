@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.metrics.anomaly;
+
+import androidx.annotation.Nullable;
+import com.facebook.battery.metrics.core.SystemMetrics;
+import com.facebook.battery.metrics.core.SystemMetricsLogger;
+import com.facebook.infer.annotation.Nullsafe;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Flags unusual diffs as they're collected, e.g. a runaway wakelock or a cpu spike, so that the app
+ * can react in the same session instead of after aggregating the data.
+ *
+ * <p>Each signal keeps an exponentially weighted moving average and variance of its values: a
+ * diff is anomalous if its value crosses the absolute threshold of the signal, or if it's more
+ * than the z-score threshold standard deviations above the average. The listener then receives the
+ * attribution of the signal, e.g. the wakelock tag that was held the longest.
+ *
+ * <pre>{@code
+ * AnomalyDetector<WakeLockMetrics> detector =
+ *     new AnomalyDetector<WakeLockMetrics>(listener)
+ *         .addSignal("held_time_ms", new AnomalyDetector.Signal<WakeLockMetrics>() {
+ *           public double getValue(WakeLockMetrics diff) {
+ *             return diff.heldTimeMs;
+ *           }
+ *
+ *           public String getAttribution(WakeLockMetrics diff) {
+ *             return Attributions.getLongestWakeLockTag(diff);
+ *           }
+ *         }, 10 * 60 * 1000, 4);
+ * ...
+ * detector.update(statefulCollector.getLatestDiffAndReset());
+ * }</pre>
+ *
+ * <p>Updates are linear in the number of signals and only allocate to compute attributions of
+ * anomalies. This class isn't thread safe.
+ */
+@Nullsafe(Nullsafe.Mode.LOCAL)
+public class AnomalyDetector<T extends SystemMetrics<T>> {
+
+  private static final String TAG = "AnomalyDetector";
+
+  public static final double DEFAULT_SMOOTHING = 0.1;
+  public static final int DEFAULT_WARMUP_COUNT = 10;
+
+  /** Disables a threshold */
+  public static final double NO_THRESHOLD = Double.POSITIVE_INFINITY;
+
+  public abstract static class Signal<T> {
+    /** @return the value of the signal for this diff, or NaN to skip it */
+    public abstract double getValue(T diff);
+
+    /** @return what contributed most to the value of this diff, if known */
+    public @Nullable String getAttribution(T diff) {
+      return null;
+    }
+  }
+
+  public interface Listener {
+    /**
+     * @param zScore how many standard deviations above the baseline the value is, or 0 if the
+     *     baseline isn't known yet
+     */
+    void onAnomaly(String signal, double value, double zScore, @Nullable String attribution);
+  }
+
+  private static final class Baseline<T> {
+    final String name;
+    final Signal<T> signal;
+    final double threshold;
+    final double zScoreThreshold;
+    double mean;
+    double variance;
+    int count;
+
+    Baseline(String name, Signal<T> signal, double threshold, double zScoreThreshold) {
+      this.name = name;
+      this.signal = signal;
+      this.threshold = threshold;
+      this.zScoreThreshold = zScoreThreshold;
+    }
+  }
+
+  private final Listener mListener;
+  private final double mSmoothing;
+  private final int mWarmupCount;
+  private final List<Baseline<T>> mBaselines = new ArrayList<>();
+
+  public AnomalyDetector(Listener listener) {
+    this(listener, DEFAULT_SMOOTHING, DEFAULT_WARMUP_COUNT);
+  }
+
+  /**
+   * @param smoothing weight of each new value in the baselines, between 0 and 1: higher values
+   *     adapt faster to changes
+   * @param warmupCount number of values each baseline needs before z-scores are checked
+   */
+  public AnomalyDetector(Listener listener, double smoothing, int warmupCount) {
+    if (!(smoothing > 0 && smoothing <= 1) || warmupCount < 1) {
+      throw new IllegalArgumentException(
+          "Invalid baseline: smoothing=" + smoothing + ", warmupCount=" + warmupCount);
+    }
+    mListener = listener;
+    mSmoothing = smoothing;
+    mWarmupCount = warmupCount;
+  }
+
+  /**
+   * @param threshold values at or above this are always anomalous; {@link #NO_THRESHOLD} to only
+   *     check z-scores
+   * @param zScoreThreshold values this many standard deviations or more above the baseline are
+   *     anomalous; {@link #NO_THRESHOLD} to only check the threshold
+   */
+  public AnomalyDetector<T> addSignal(
+      String name, Signal<T> signal, double threshold, double zScoreThreshold) {
+    mBaselines.add(new Baseline<>(name, signal, threshold, zScoreThreshold));
+    return this;
+  }
+
+  /** Checks the diff against each signal's baseline, and then updates the baselines with it. */
+  public void update(T diff) {
+    for (int i = 0, size = mBaselines.size(); i < size; i++) {
+      Baseline<T> baseline = mBaselines.get(i);
+      double value = baseline.signal.getValue(diff);
+      if (Double.isNaN(value)) {
+        continue;
+      }
+
+      // A baseline without any variance can't tell how unusual a value is
+      double zScore = 0;
+      if (baseline.count >= mWarmupCount && baseline.variance > 0) {
+        zScore = (value - baseline.mean) / Math.sqrt(baseline.variance);
+      }
+      if (value >= baseline.threshold || zScore >= baseline.zScoreThreshold) {
+        notifyListener(baseline, diff, value, zScore);
+      }
+
+      if (baseline.count == 0) {
+        baseline.mean = value;
+      } else {
+        double delta = value - baseline.mean;
+        double increment = mSmoothing * delta;
+        baseline.mean += increment;
+        baseline.variance = (1 - mSmoothing) * (baseline.variance + delta * increment);
+      }
+      if (baseline.count < mWarmupCount) {
+        baseline.count++;
+      }
+    }
+  }
+
+  /** Forgets all baselines, e.g. when the app moves between foreground and background. */
+  public void reset() {
+    for (int i = 0, size = mBaselines.size(); i < size; i++) {
+      Baseline<T> baseline = mBaselines.get(i);
+      baseline.mean = 0;
+      baseline.variance = 0;
+      baseline.count = 0;
+    }
+  }
+
+  private void notifyListener(Baseline<T> baseline, T diff, double value, double zScore) {
+    try {
+      mListener.onAnomaly(baseline.name, value, zScore, baseline.signal.getAttribution(diff));
+    } catch (RuntimeException e) {
+      SystemMetricsLogger.wtf(TAG, "Listener failed", e);
+    }
+  }
+}
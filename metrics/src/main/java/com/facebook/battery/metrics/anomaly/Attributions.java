@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.metrics.anomaly;
+
+import android.util.SparseArray;
+import androidx.annotation.Nullable;
+import com.facebook.battery.metrics.appwakeup.AppWakeupMetrics;
+import com.facebook.battery.metrics.sensor.SensorMetrics;
+import com.facebook.battery.metrics.wakelock.WakeLockMetrics;
+import com.facebook.infer.annotation.Nullsafe;
+
+/**
+ * Finds the largest contributor to a diff for {@link AnomalyDetector.Signal#getAttribution}: these
+ * rely on the metrics being collected with attribution enabled.
+ */
+@Nullsafe(Nullsafe.Mode.LOCAL)
+public final class Attributions {
+
+  private Attributions() {}
+
+  /** The tag of the wakelock held the longest. */
+  public static @Nullable String getLongestWakeLockTag(WakeLockMetrics metrics) {
+    String tag = null;
+    long longest = 0;
+    for (int i = 0, size = metrics.tagTimeMs.size(); i < size; i++) {
+      Long timeMs = metrics.tagTimeMs.valueAt(i);
+      if (timeMs != null && timeMs > longest) {
+        longest = timeMs;
+        tag = metrics.tagTimeMs.keyAt(i);
+      }
+    }
+    return tag;
+  }
+
+  /** The type of the sensor that consumed the most power, as a string. */
+  public static @Nullable String getHighestPowerSensorType(SensorMetrics metrics) {
+    SparseArray<SensorMetrics.Consumption> consumption = metrics.sensorConsumption;
+    int type = -1;
+    double highest = 0;
+    for (int i = 0, size = consumption.size(); i < size; i++) {
+      double powerMah = consumption.valueAt(i).powerMah;
+      if (powerMah > highest) {
+        highest = powerMah;
+        type = consumption.keyAt(i);
+      }
+    }
+    return type == -1 ? null : String.valueOf(type);
+  }
+
+  /** The wakeup that happened the most often, as {@code <reason>:<name>}. */
+  public static @Nullable String getMostFrequentWakeup(AppWakeupMetrics metrics) {
+    int index = -1;
+    long most = 0;
+    for (int i = 0, size = metrics.appWakeups.size(); i < size; i++) {
+      AppWakeupMetrics.WakeupDetails details = metrics.appWakeups.valueAt(i);
+      if (details != null && details.count > most) {
+        most = details.count;
+        index = i;
+      }
+    }
+    if (index == -1) {
+      return null;
+    }
+    AppWakeupMetrics.WakeupDetails details = metrics.appWakeups.valueAt(index);
+    return details.reason + ":" + metrics.appWakeups.keyAt(index);
+  }
+}
@@ -9,6 +9,7 @@ package com.facebook.battery.metrics.appwakeup;
 
 import androidx.annotation.Nullable;
 import androidx.collection.SimpleArrayMap;
+import com.facebook.battery.metrics.core.JsonWriter;
 import com.facebook.battery.metrics.core.SystemMetrics;
 import com.facebook.battery.metrics.core.SystemMetricsLogger;
 import com.facebook.battery.metrics.core.Utilities;
@@ -129,6 +130,26 @@ public class AppWakeupMetrics extends SystemMetrics<AppWakeupMetrics> {
     return jsonArray;
   }
 
+  /** Writes the same representation as {@link #toJSON()}. */
+  public void toJSON(JsonWriter writer) {
+    writer.beginArray();
+    for (int i = 0; i < appWakeups.size(); i++) {
+      AppWakeupMetrics.WakeupDetails details = Preconditions.checkNotNull(appWakeups.valueAt(i));
+      writer
+          .beginObject()
+          .name("key")
+          .value(appWakeups.keyAt(i))
+          .name("type")
+          .value(details.reason.toString())
+          .name("count")
+          .value(details.count)
+          .name("time_ms")
+          .value(details.wakeupTimeMs)
+          .endObject();
+    }
+    writer.endArray();
+  }
+
   /**
    * A utility class to store details related to a single wakeup - total count and total time of
    * execution in ms for the wakeup.
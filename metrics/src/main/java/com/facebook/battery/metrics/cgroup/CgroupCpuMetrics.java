@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.metrics.cgroup;
+
+import androidx.annotation.Nullable;
+import com.facebook.battery.metrics.core.SystemMetrics;
+import com.facebook.battery.metrics.cpu.CpuMetrics;
+import com.facebook.infer.annotation.Nullsafe;
+import java.util.Arrays;
+
+/**
+ * Cpu time of the process split by the scheduling group it was running in, as assigned by Android
+ * through cgroups and cpusets: this gives a foreground/background breakdown of cpu time without
+ * having to track activity lifecycles.
+ *
+ * <p>Each group maintains a {@link CpuMetrics}, indexed by {@link #TOP_APP}, {@link #FOREGROUND},
+ * {@link #BACKGROUND} and {@link #OTHER}.
+ */
+@Nullsafe(Nullsafe.Mode.LOCAL)
+public class CgroupCpuMetrics extends SystemMetrics<CgroupCpuMetrics> {
+
+  /** The app is visible and the user is interacting with it. */
+  public static final int TOP_APP = 0;
+
+  /** Foreground services, or visible but not top apps. */
+  public static final int FOREGROUND = 1;
+
+  /** Background, system-background and restricted groups. */
+  public static final int BACKGROUND = 2;
+
+  /** Any group that couldn't be classified. */
+  public static final int OTHER = 3;
+
+  public static final int GROUPS = 4;
+
+  public final CpuMetrics[] cpuMetrics;
+
+  public CgroupCpuMetrics() {
+    cpuMetrics = new CpuMetrics[GROUPS];
+    for (int i = 0; i < GROUPS; i++) {
+      cpuMetrics[i] = new CpuMetrics();
+    }
+  }
+
+  @Override
+  public CgroupCpuMetrics set(CgroupCpuMetrics b) {
+    for (int i = 0; i < GROUPS; i++) {
+      cpuMetrics[i].set(b.cpuMetrics[i]);
+    }
+    return this;
+  }
+
+  @Override
+  public CgroupCpuMetrics sum(@Nullable CgroupCpuMetrics b, @Nullable CgroupCpuMetrics output) {
+    if (output == null) {
+      output = new CgroupCpuMetrics();
+    }
+
+    if (b == null) {
+      output.set(this);
+    } else {
+      for (int i = 0; i < GROUPS; i++) {
+        cpuMetrics[i].sum(b.cpuMetrics[i], output.cpuMetrics[i]);
+      }
+    }
+
+    return output;
+  }
+
+  @Override
+  public CgroupCpuMetrics diff(@Nullable CgroupCpuMetrics b, @Nullable CgroupCpuMetrics output) {
+    if (output == null) {
+      output = new CgroupCpuMetrics();
+    }
+
+    if (b == null) {
+      output.set(this);
+    } else {
+      for (int i = 0; i < GROUPS; i++) {
+        cpuMetrics[i].diff(b.cpuMetrics[i], output.cpuMetrics[i]);
+      }
+    }
+
+    return output;
+  }
+
+  @Override
+  public boolean equals(@Nullable Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+
+    CgroupCpuMetrics that = (CgroupCpuMetrics) o;
+    return Arrays.equals(cpuMetrics, that.cpuMetrics);
+  }
+
+  @Override
+  public int hashCode() {
+    return Arrays.hashCode(cpuMetrics);
+  }
+
+  @Override
+  public String toString() {
+    return "CgroupCpuMetrics{" + "cpuMetrics=" + Arrays.toString(cpuMetrics) + '}';
+  }
+}
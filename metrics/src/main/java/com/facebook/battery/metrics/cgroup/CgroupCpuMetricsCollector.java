@@ -0,0 +1,274 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.metrics.cgroup;
+
+import static com.facebook.battery.metrics.core.Utilities.checkNotNull;
+
+import androidx.annotation.VisibleForTesting;
+import com.facebook.battery.metrics.core.SystemMetricsCollector;
+import com.facebook.battery.metrics.cpu.CpuMetrics;
+import com.facebook.battery.metrics.cpu.CpuMetricsCollector;
+import com.facebook.infer.annotation.Nullsafe;
+import com.facebook.infer.annotation.ThreadSafe;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+
+/**
+ * Splits the cpu time of the process by the scheduling group it was in, based on {@code
+ * /proc/self/cgroup} (and {@code /proc/self/cpuset} on devices that don't list the cpuset
+ * controller there).
+ *
+ * <p>Every snapshot reads the cpu time through a {@link CpuMetricsCollector} and attributes the
+ * difference since the previous snapshot to the group observed at the previous snapshot: transitions
+ * are only noticed at snapshot boundaries, so this gets more accurate the more frequently the
+ * collector is sampled -- for example, on every activity or process lifecycle change. Cpu time
+ * before the first snapshot isn't attributed to any group.
+ *
+ * <p>The group files are tiny but reparsing them on every snapshot would still allocate: instead,
+ * their raw bytes are compared against the previous read and they are only parsed if something
+ * changed.
+ */
+@Nullsafe(Nullsafe.Mode.LOCAL)
+@ThreadSafe
+public class CgroupCpuMetricsCollector extends SystemMetricsCollector<CgroupCpuMetrics> {
+
+  private static final String CGROUP_PATH = "/proc/self/cgroup";
+  private static final String CPUSET_PATH = "/proc/self/cpuset";
+
+  private final CpuMetricsCollector mCpuMetricsCollector;
+
+  @GuardedBy("this")
+  @Nullable
+  private WatchedFile mCgroupFile;
+
+  @GuardedBy("this")
+  @Nullable
+  private WatchedFile mCpusetFile;
+
+  @GuardedBy("this")
+  private int mCgroupGroup = CgroupCpuMetrics.OTHER;
+
+  @GuardedBy("this")
+  private boolean mHasCpusetController = false;
+
+  @GuardedBy("this")
+  private int mCpusetGroup = CgroupCpuMetrics.OTHER;
+
+  @GuardedBy("this")
+  private final CgroupCpuMetrics mTotals = new CgroupCpuMetrics();
+
+  @GuardedBy("this")
+  private final CpuMetrics mCurrentCpu = new CpuMetrics();
+
+  @GuardedBy("this")
+  private final CpuMetrics mLastCpu = new CpuMetrics();
+
+  @GuardedBy("this")
+  private final CpuMetrics mDeltaCpu = new CpuMetrics();
+
+  @GuardedBy("this")
+  private int mLastGroup = -1;
+
+  public CgroupCpuMetricsCollector() {
+    this(new CpuMetricsCollector());
+  }
+
+  public CgroupCpuMetricsCollector(CpuMetricsCollector cpuMetricsCollector) {
+    mCpuMetricsCollector = cpuMetricsCollector;
+  }
+
+  @Override
+  @ThreadSafe(enableChecks = false)
+  public synchronized boolean getSnapshot(CgroupCpuMetrics snapshot) {
+    checkNotNull(snapshot, "Null value passed to getSnapshot!");
+
+    if (!mCpuMetricsCollector.getSnapshot(mCurrentCpu)) {
+      return false;
+    }
+
+    int group = readGroup();
+    if (mLastGroup >= 0) {
+      CpuMetrics groupTotal = mTotals.cpuMetrics[mLastGroup];
+      groupTotal.sum(mCurrentCpu.diff(mLastCpu, mDeltaCpu), groupTotal);
+    }
+    mLastCpu.set(mCurrentCpu);
+    mLastGroup = group;
+
+    snapshot.set(mTotals);
+    return true;
+  }
+
+  /** Returns the group the process is currently in, only parsing the files if they changed. */
+  private synchronized int readGroup() {
+    if (mCgroupFile == null) {
+      mCgroupFile = new WatchedFile(getCgroupPath());
+    }
+
+    if (mCgroupFile.update()) {
+      String contents = mCgroupFile.getContents();
+      mHasCpusetController = false;
+      mCgroupGroup = CgroupCpuMetrics.OTHER;
+      int schedulingGroup = CgroupCpuMetrics.OTHER;
+
+      // Lines look like "3:cpuset:/top-app" or "2:cpu:/bg_non_interactive".
+      for (String line : contents.split("\n")) {
+        String[] parts = line.split(":", 3);
+        if (parts.length != 3) {
+          continue;
+        }
+
+        for (String controller : parts[1].split(",")) {
+          if ("cpuset".equals(controller)) {
+            mHasCpusetController = true;
+            mCgroupGroup = classify(parts[2]);
+          } else if ("schedtune".equals(controller) || "cpu".equals(controller)) {
+            schedulingGroup = Math.min(schedulingGroup, classify(parts[2]));
+          }
+        }
+      }
+
+      if (mCgroupGroup == CgroupCpuMetrics.OTHER) {
+        mCgroupGroup = schedulingGroup;
+      }
+    }
+
+    if (mHasCpusetController) {
+      return mCgroupGroup;
+    }
+
+    if (mCpusetFile == null) {
+      mCpusetFile = new WatchedFile(getCpusetPath());
+    }
+    if (mCpusetFile.update()) {
+      mCpusetGroup = classify(mCpusetFile.getContents());
+    }
+    return mCpusetGroup != CgroupCpuMetrics.OTHER ? mCpusetGroup : mCgroupGroup;
+  }
+
+  @VisibleForTesting
+  static int classify(String path) {
+    if (path.contains("top-app")) {
+      return CgroupCpuMetrics.TOP_APP;
+    } else if (path.contains("foreground")) {
+      return CgroupCpuMetrics.FOREGROUND;
+    } else if (path.contains("background")
+        || path.contains("bg_non_interactive")
+        || path.contains("restricted")) {
+      return CgroupCpuMetrics.BACKGROUND;
+    }
+    return CgroupCpuMetrics.OTHER;
+  }
+
+  @Override
+  public CgroupCpuMetrics createMetrics() {
+    return new CgroupCpuMetrics();
+  }
+
+  @VisibleForTesting
+  protected String getCgroupPath() {
+    return CGROUP_PATH;
+  }
+
+  @VisibleForTesting
+  protected String getCpusetPath() {
+    return CPUSET_PATH;
+  }
+
+  /**
+   * Keeps the raw contents of a small proc file to detect changes without parsing it: procfs doesn't
+   * maintain modification times, so comparing the bytes is the cheapest reliable check.
+   *
+   * <p>Not threadsafe: access must be synchronized.
+   */
+  private static final class WatchedFile {
+
+    private static final int INITIAL_SIZE = 256;
+
+    private final String mPath;
+    @Nullable private RandomAccessFile mFile;
+
+    private byte[] mContents = new byte[INITIAL_SIZE];
+    private int mContentsLength = -1;
+    private byte[] mBuffer = new byte[INITIAL_SIZE];
+
+    WatchedFile(String path) {
+      mPath = path;
+    }
+
+    /** Re-reads the file, returning true if it changed; read failures keep the last contents. */
+    boolean update() {
+      int length = read();
+      if (length < 0) {
+        return false;
+      }
+
+      if (length == mContentsLength && rangeEquals(mBuffer, mContents, length)) {
+        return false;
+      }
+
+      byte[] previous = mContents;
+      mContents = mBuffer;
+      mContentsLength = length;
+      mBuffer = previous.length >= mContents.length ? previous : new byte[mContents.length];
+      return true;
+    }
+
+    String getContents() {
+      return mContentsLength <= 0 ? "" : new String(mContents, 0, mContentsLength);
+    }
+
+    private int read() {
+      try {
+        if (mFile == null) {
+          mFile = new RandomAccessFile(mPath, "r");
+        } else {
+          mFile.seek(0);
+        }
+
+        int length = 0;
+        while (true) {
+          if (length == mBuffer.length) {
+            mBuffer = Arrays.copyOf(mBuffer, mBuffer.length * 2);
+          }
+          int read = mFile.read(mBuffer, length, mBuffer.length - length);
+          if (read < 0) {
+            return length;
+          }
+          length += read;
+        }
+      } catch (IOException ioe) {
+        close();
+        return -1;
+      }
+    }
+
+    private static boolean rangeEquals(byte[] a, byte[] b, int length) {
+      for (int i = 0; i < length; i++) {
+        if (a[i] != b[i]) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    private void close() {
+      if (mFile != null) {
+        try {
+          mFile.close();
+        } catch (IOException ioe) {
+          // Ignored
+        } finally {
+          mFile = null;
+        }
+      }
+    }
+  }
+}
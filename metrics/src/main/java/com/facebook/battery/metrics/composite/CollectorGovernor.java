@@ -0,0 +1,254 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.metrics.composite;
+
+import android.os.Debug;
+import android.os.SystemClock;
+import androidx.annotation.Nullable;
+import androidx.collection.SimpleArrayMap;
+import com.facebook.battery.metrics.core.SystemMetrics;
+import com.facebook.battery.metrics.core.SystemMetricsCollector;
+import com.facebook.infer.annotation.Nullsafe;
+import com.facebook.infer.annotation.ThreadSafe;
+
+/**
+ * Keeps the cpu time spent on the snapshots of a {@link CompositeMetricsCollector} within a budget
+ * per interval, for devices that can't afford taking every snapshot on every tick.
+ *
+ * <p>Each collector gets a share of the budget weighted by its priority: normal collectors get twice
+ * the share of low priority ones, and high priority ones twice that again. At the end of each
+ * interval in which the budget was exceeded, the collector that spent the most relative to its
+ * share is snapshotted half as often, up to {@link #setMaxSamplingPeriod}. Once the cost drops
+ * below half of the budget, the collector whose snapshots cost the least relative to its share is
+ * restored a step at a time instead. Collectors with {@link #PRIORITY_REQUIRED} are never degraded.
+ *
+ * <p>Skipped snapshots carry the last value of the collector forward, so that diffs stay zero for
+ * a while and then catch up, or are marked invalid with {@link #setCarryForward(boolean)
+ * setCarryForward(false)}. Either way, cumulative counters stay correct.
+ *
+ * <pre>{@code
+ * CompositeMetricsCollector collector =
+ *     new CompositeMetricsCollector.Builder()
+ *         .addMetricsCollector(CpuMetrics.class, new CpuMetricsCollector())
+ *         .addMetricsCollector(HealthStatsMetrics.class, new HealthStatsMetricsCollector(context))
+ *         .setGovernor(
+ *             new CollectorGovernor(2_000_000, 60_000)
+ *                 .setPriority(CpuMetrics.class, CollectorGovernor.PRIORITY_REQUIRED)
+ *                 .setPriority(HealthStatsMetrics.class, CollectorGovernor.PRIORITY_LOW))
+ *         .build();
+ * }</pre>
+ *
+ * <p>Snapshots of a governed collector are serialized, and a governor must only be used by a
+ * single collector. Callers of that collector, e.g. a {@link SampledCompositeMetricsCollector}
+ * wrapping it, each skip snapshots and carry values forward on their own: every caller takes a
+ * snapshot once every period of its own calls, while their costs share the budget.
+ */
+@Nullsafe(Nullsafe.Mode.LOCAL)
+@ThreadSafe
+public class CollectorGovernor {
+
+  public static final int PRIORITY_LOW = -1;
+  public static final int PRIORITY_NORMAL = 0;
+  public static final int PRIORITY_HIGH = 1;
+
+  /** Never degraded */
+  public static final int PRIORITY_REQUIRED = Integer.MAX_VALUE;
+
+  public static final int DEFAULT_MAX_SAMPLING_PERIOD = 16;
+
+  private static final class State {
+    int priority = PRIORITY_NORMAL;
+
+    /** A snapshot is taken once every period ticks */
+    int period = 1;
+
+    /** Cpu time of the latest snapshot */
+    long costNs;
+
+    /** Cpu time of the snapshots taken in the current interval */
+    long spentNs;
+  }
+
+  /** What a single caller of the governed collector skipped, and the values to carry forward. */
+  static final class Consumer {
+    private final SimpleArrayMap<Class<? extends SystemMetrics>, Sample> mSamples =
+        new SimpleArrayMap<>();
+  }
+
+  private static final class Sample {
+    int skipped;
+    @Nullable SystemMetrics lastValue;
+    boolean lastValid;
+  }
+
+  private final long mBudgetNs;
+  private final long mIntervalMs;
+  private final SimpleArrayMap<Class<? extends SystemMetrics>, State> mStates =
+      new SimpleArrayMap<>();
+  private int mMaxSamplingPeriod = DEFAULT_MAX_SAMPLING_PERIOD;
+  private boolean mCarryForward = true;
+
+  private long mIntervalStartMs = -1;
+  private long mSpentNs;
+
+  /**
+   * @param budgetNs thread cpu time that snapshots may use per interval
+   * @param intervalMs length of the intervals, in elapsed realtime
+   */
+  public CollectorGovernor(long budgetNs, long intervalMs) {
+    if (budgetNs <= 0 || intervalMs <= 0) {
+      throw new IllegalArgumentException(
+          "Invalid budget: budgetNs=" + budgetNs + ", intervalMs=" + intervalMs);
+    }
+    mBudgetNs = budgetNs;
+    mIntervalMs = intervalMs;
+  }
+
+  /** Collectors are shed in increasing order of priority; the default is normal. */
+  public synchronized CollectorGovernor setPriority(
+      Class<? extends SystemMetrics> metricsClass, int priority) {
+    getState(metricsClass).priority = priority;
+    return this;
+  }
+
+  /** The most ticks a collector may go without a snapshot, a power of two. */
+  public synchronized CollectorGovernor setMaxSamplingPeriod(int maxSamplingPeriod) {
+    if (maxSamplingPeriod < 1 || Integer.bitCount(maxSamplingPeriod) != 1) {
+      throw new IllegalArgumentException("Invalid sampling period: " + maxSamplingPeriod);
+    }
+    mMaxSamplingPeriod = maxSamplingPeriod;
+    return this;
+  }
+
+  /** Whether skipped snapshots repeat the last value (the default), or are invalid. */
+  public synchronized CollectorGovernor setCarryForward(boolean carryForward) {
+    mCarryForward = carryForward;
+    return this;
+  }
+
+  /** @return how many ticks apart the collector of this metrics class is currently snapshotted */
+  public synchronized int getSamplingPeriod(Class<? extends SystemMetrics> metricsClass) {
+    State state = mStates.get(metricsClass);
+    return state == null ? 1 : state.period;
+  }
+
+  /** Starts a tick, adjusting the sampling periods if an interval just ended. */
+  synchronized void onSnapshotStart() {
+    long nowMs = SystemClock.elapsedRealtime();
+    if (mIntervalStartMs == -1) {
+      mIntervalStartMs = nowMs;
+    } else if (nowMs - mIntervalStartMs >= mIntervalMs) {
+      if (mSpentNs > mBudgetNs) {
+        degrade();
+      } else if (mSpentNs < mBudgetNs / 2) {
+        restore();
+      }
+      mSpentNs = 0;
+      for (int i = 0, size = mStates.size(); i < size; i++) {
+        mStates.valueAt(i).spentNs = 0;
+      }
+      mIntervalStartMs = nowMs;
+    }
+  }
+
+  /** Takes the snapshot if it's due for this caller, or fills in the skipped one. */
+  synchronized boolean getSnapshot(
+      Consumer consumer,
+      Class<? extends SystemMetrics> metricsClass,
+      SystemMetricsCollector collector,
+      SystemMetrics snapshot) {
+    State state = getState(metricsClass);
+    Sample sample = consumer.mSamples.get(metricsClass);
+    if (sample == null) {
+      sample = new Sample();
+      consumer.mSamples.put(metricsClass, sample);
+    }
+    SystemMetrics lastValue = sample.lastValue;
+    if (sample.skipped + 1 < state.period && lastValue != null) {
+      sample.skipped++;
+      if (!mCarryForward || !sample.lastValid) {
+        return false;
+      }
+      snapshot.set(lastValue);
+      return true;
+    }
+
+    long startNs = Debug.threadCpuTimeNanos();
+    boolean result = collector.getSnapshot(snapshot);
+    if (startNs >= 0) {
+      state.costNs = Debug.threadCpuTimeNanos() - startNs;
+      state.spentNs += state.costNs;
+      mSpentNs += state.costNs;
+    }
+    sample.skipped = 0;
+
+    if (lastValue == null) {
+      lastValue = collector.createMetrics();
+      sample.lastValue = lastValue;
+    }
+    if (result && mCarryForward) {
+      lastValue.set(snapshot);
+    }
+    sample.lastValid = result;
+    return result;
+  }
+
+  private void degrade() {
+    State candidate = null;
+    for (int i = 0, size = mStates.size(); i < size; i++) {
+      State state = mStates.valueAt(i);
+      // Halving the snapshots of a collector that spent nothing wouldn't save anything
+      if (state.priority == PRIORITY_REQUIRED
+          || state.period >= mMaxSamplingPeriod
+          || state.spentNs <= 0) {
+        continue;
+      }
+      // Compares spentNs / share without dividing
+      if (candidate == null
+          || state.spentNs * getShare(candidate.priority)
+              > candidate.spentNs * getShare(state.priority)) {
+        candidate = state;
+      }
+    }
+    if (candidate != null) {
+      candidate.period *= 2;
+    }
+  }
+
+  private void restore() {
+    State candidate = null;
+    for (int i = 0, size = mStates.size(); i < size; i++) {
+      State state = mStates.valueAt(i);
+      if (state.period == 1) {
+        continue;
+      }
+      if (candidate == null
+          || state.costNs * getShare(candidate.priority)
+              < candidate.costNs * getShare(state.priority)) {
+        candidate = state;
+      }
+    }
+    if (candidate != null) {
+      candidate.period /= 2;
+    }
+  }
+
+  /** Share of the budget relative to other priorities, doubling with each priority level. */
+  private static long getShare(int priority) {
+    return 1L << Math.max(0, Math.min(priority - PRIORITY_LOW, 16));
+  }
+
+  private State getState(Class<? extends SystemMetrics> metricsClass) {
+    State state = mStates.get(metricsClass);
+    if (state == null) {
+      state = new State();
+      mStates.put(metricsClass, state);
+    }
+    return state;
+  }
+}
@@ -25,6 +25,9 @@ public class CompositeMetrics extends SystemMetrics<CompositeMetrics> {
   private final SimpleArrayMap<Class<? extends SystemMetrics>, Boolean> mMetricsValid =
       new SimpleArrayMap<>();
 
+  /** The collector that created this, if any: creates metrics of collectors added at runtime. */
+  @Nullable CompositeMetricsCollector mCollector;
+
   @Override
   public CompositeMetrics diff(@Nullable CompositeMetrics b, @Nullable CompositeMetrics result) {
     if (result == null) {
@@ -39,9 +42,11 @@ public class CompositeMetrics extends SystemMetrics<CompositeMetrics> {
         boolean valid = isValid(c) && b.isValid(c);
 
         if (valid) {
-          SystemMetrics resultMetric = result.getMetric(c);
-          if (resultMetric != null) {
-            getMetric(c).diff(b.getMetric(c), resultMetric);
+          SystemMetrics output = result.getOrCreateMetric(c, this);
+          if (output != null) {
+            getMetric(c).diff(b.getMetric(c), output);
+          } else {
+            valid = false;
           }
         }
         result.setIsValid(c, valid);
@@ -68,20 +73,38 @@ public class CompositeMetrics extends SystemMetrics<CompositeMetrics> {
         Class c = mMetricsMap.keyAt(i);
         boolean valid = true;
 
-        if (isValid(c) && b.isValid(c)) {
-          SystemMetrics resultMetric = result.getMetric(c);
-          if (resultMetric != null) {
-            getMetric(c).sum(b.getMetric(c), resultMetric);
-          }
+        SystemMetrics output = result.getOrCreateMetric(c, this);
+        if (output == null) {
+          valid = false;
+        } else if (isValid(c) && b.isValid(c)) {
+          getMetric(c).sum(b.getMetric(c), output);
         } else if (isValid(c)) {
-          result.getMetric(c).set(getMetric(c));
+          output.set(getMetric(c));
         } else if (b.isValid(c)) {
-          result.getMetric(c).set(b.getMetric(c));
+          output.set(b.getMetric(c));
         } else {
           valid = false;
         }
         result.setIsValid(c, valid);
       }
+
+      // Metrics that are missing from this are treated as invalid as well
+      for (int i = 0, size = b.mMetricsMap.size(); i < size; i++) {
+        Class c = b.mMetricsMap.keyAt(i);
+        if (mMetricsMap.containsKey(c)) {
+          continue;
+        }
+        boolean valid = b.isValid(c);
+        if (valid) {
+          SystemMetrics output = result.getOrCreateMetric(c, b);
+          if (output != null) {
+            output.set(b.getMetric(c));
+          } else {
+            valid = false;
+          }
+        }
+        result.setIsValid(c, valid);
+      }
     }
     return result;
   }
@@ -98,9 +121,38 @@ public class CompositeMetrics extends SystemMetrics<CompositeMetrics> {
         setIsValid(c, false);
       }
     }
+
+    for (int i = 0, size = input.mMetricsMap.size(); i < size; i++) {
+      Class c = input.mMetricsMap.keyAt(i);
+      if (!mMetricsMap.containsKey(c)) {
+        SystemMetrics metric = getOrCreateMetric(c, input);
+        if (metric != null) {
+          metric.set(input.getMetric(c));
+        }
+        setIsValid(c, metric != null && input.isValid(c));
+      }
+    }
     return this;
   }
 
+  /**
+   * Collectors can be added to a {@link CompositeMetricsCollector} at runtime, so outputs may not
+   * have all the metrics of their inputs yet: these are created by the collector that created
+   * either, and are null if neither came from a collector that (still) has them.
+   */
+  @Nullable
+  private SystemMetrics getOrCreateMetric(Class c, CompositeMetrics input) {
+    SystemMetrics metric = mMetricsMap.get(c);
+    if (metric == null) {
+      CompositeMetricsCollector collector = mCollector != null ? mCollector : input.mCollector;
+      metric = collector != null ? collector.createMetrics(c) : null;
+      if (metric != null) {
+        mMetricsMap.put(c, metric);
+      }
+    }
+    return metric;
+  }
+
   public <T extends SystemMetrics<T>> CompositeMetrics putMetric(Class<T> metricsClass, T metric) {
     mMetricsMap.put(metricsClass, metric);
     mMetricsValid.put(metricsClass, Boolean.FALSE);
@@ -9,10 +9,15 @@ package com.facebook.battery.metrics.composite;
 
 import static com.facebook.battery.metrics.core.Utilities.checkNotNull;
 
+import androidx.annotation.Nullable;
 import androidx.collection.SimpleArrayMap;
 import com.facebook.battery.metrics.core.SystemMetrics;
 import com.facebook.battery.metrics.core.SystemMetricsCollector;
 import com.facebook.battery.metrics.core.VisibleToAvoidSynthetics;
+import com.facebook.battery.metrics.overhead.CollectorOverheadMetrics;
+import com.facebook.battery.metrics.overhead.CollectorOverheadMetricsCollector;
+import com.facebook.battery.metrics.overhead.OverheadTracker;
+import com.facebook.battery.metrics.overhead.OverheadTrackingCollector;
 import com.facebook.infer.annotation.Nullsafe;
 import com.facebook.infer.annotation.ThreadSafe;
 
@@ -25,23 +30,67 @@ import com.facebook.infer.annotation.ThreadSafe;
  * .addMetricsCollector(CpuMetrics.class, new CpuMetricsCollector()); <p>CompositeMetrics snapshot =
  * collector.createMetrics(); collector.getSnapshot(snapshot); <p>long uptimeMs =
  * snapshot.getMetric(TimeMetrics.class).uptimeMs; // etc. }
+ *
+ * <p>Collectors can also be added, removed, enabled and disabled after construction without
+ * losing the baselines of the others: changes copy the set of collectors, and snapshots read the
+ * latest copy without locking.
  */
 @Nullsafe(Nullsafe.Mode.LOCAL)
 @ThreadSafe
 public class CompositeMetricsCollector extends SystemMetricsCollector<CompositeMetrics> {
 
+  /** A child collector: these are immutable, and replaced on changes. */
+  private static final class Child {
+    final SystemMetricsCollector<?> collector;
+
+    /** Takes the snapshots: the collector itself, or a wrapper tracking its overhead */
+    final SystemMetricsCollector<?> snapshotCollector;
+
+    final boolean isEnabled;
+
+    /** Whether to add the metrics of this collector to snapshots that don't have them yet */
+    final boolean isAddedAtRuntime;
+
+    /** Snapshot taken when added at runtime, if it succeeded: never modified */
+    final @Nullable SystemMetrics baseline;
+
+    Child(
+        SystemMetricsCollector<?> collector,
+        SystemMetricsCollector<?> snapshotCollector,
+        boolean isEnabled,
+        boolean isAddedAtRuntime,
+        @Nullable SystemMetrics baseline) {
+      this.collector = collector;
+      this.snapshotCollector = snapshotCollector;
+      this.isEnabled = isEnabled;
+      this.isAddedAtRuntime = isAddedAtRuntime;
+      this.baseline = baseline;
+    }
+  }
+
   /**
-   * This is treated as an effectively immutable field and shouldn't be modified beyond the
-   * constructor for thread safety.
+   * Copied on every change and never modified once published, so that snapshots can read it
+   * without locking.
    */
-  private final SimpleArrayMap<Class<? extends SystemMetrics>, SystemMetricsCollector<?>>
-      mMetricsCollectorMap = new SimpleArrayMap<>();
+  private volatile SimpleArrayMap<Class<? extends SystemMetrics>, Child> mChildren =
+      new SimpleArrayMap<>();
+
+  /** Incremented whenever a collector is added or removed. */
+  private volatile int mChildrenVersion;
+
+  private final @Nullable CollectorOverheadMetricsCollector mOverheadCollector;
+  private final @Nullable CollectorGovernor mGovernor;
+  private final CollectorGovernor.Consumer mGovernorConsumer = new CollectorGovernor.Consumer();
 
   public static class Builder {
     @VisibleToAvoidSynthetics
     final SimpleArrayMap<Class<? extends SystemMetrics>, SystemMetricsCollector<?>>
         mMetricsCollectorMap = new SimpleArrayMap<>();
 
+    @VisibleToAvoidSynthetics @Nullable CollectorOverheadMetricsCollector mOverheadCollector;
+
+    @VisibleToAvoidSynthetics @Nullable CollectorGovernor mGovernor;
+
     /**
      * Add a metric and its collector to the CompositeMetricsCollector.
      *
@@ -55,13 +104,69 @@ public class CompositeMetricsCollector extends SystemMetricsCollector<CompositeM
       return this;
     }
 
+    /**
+     * Measures the cost of the snapshots of every collector, attributed to its metrics class (see
+     * {@link CollectorOverheadMetricsCollector#setName}), and adds the overhead collector for
+     * {@link CollectorOverheadMetrics}.
+     *
+     * <p>The overhead is read in the same pass as the other metrics, so it may not include the
+     * cost of the current snapshot of some of them: it's included in the next one instead.
+     */
+    public CompositeMetricsCollector.Builder trackOverhead(
+        CollectorOverheadMetricsCollector overheadCollector) {
+      mOverheadCollector = overheadCollector;
+      return this;
+    }
+
+    /**
+     * Keeps the cpu time of snapshots within the governor's budget, by taking some of them less
+     * often: see {@link CollectorGovernor}.
+     */
+    public CompositeMetricsCollector.Builder setGovernor(CollectorGovernor governor) {
+      mGovernor = governor;
+      return this;
+    }
+
     public CompositeMetricsCollector build() {
       return new CompositeMetricsCollector(this);
     }
   }
 
   protected CompositeMetricsCollector(Builder builder) {
-    mMetricsCollectorMap.putAll(builder.mMetricsCollectorMap);
+    mOverheadCollector = builder.mOverheadCollector;
+    mGovernor = builder.mGovernor;
+
+    SimpleArrayMap<Class<? extends SystemMetrics>, Child> children = new SimpleArrayMap<>();
+    for (int i = 0, size = builder.mMetricsCollectorMap.size(); i < size; i++) {
+      Class<? extends SystemMetrics> metricsClass = builder.mMetricsCollectorMap.keyAt(i);
+      children.put(
+          metricsClass, createChild(metricsClass, builder.mMetricsCollectorMap.valueAt(i), false));
+    }
+    if (mOverheadCollector != null) {
+      children.put(
+          CollectorOverheadMetrics.class,
+          new Child(mOverheadCollector, mOverheadCollector, true, false, null));
+    }
+    mChildren = children;
+  }
+
+  private Child createChild(
+      Class<? extends SystemMetrics> metricsClass,
+      SystemMetricsCollector<?> collector,
+      boolean isAddedAtRuntime) {
+    SystemMetricsCollector<?> snapshotCollector = collector;
+    if (mOverheadCollector != null) {
+      OverheadTracker tracker = mOverheadCollector.getTracker(metricsClass);
+      snapshotCollector = new OverheadTrackingCollector(collector, tracker);
+    }
+    SystemMetrics baseline = null;
+    if (isAddedAtRuntime) {
+      baseline = collector.createMetrics();
+      if (!((SystemMetricsCollector) snapshotCollector).getSnapshot(baseline)) {
+        baseline = null;
+      }
+    }
+    return new Child(collector, snapshotCollector, true, isAddedAtRuntime, baseline);
   }
 
   /**
@@ -72,15 +177,84 @@ public class CompositeMetricsCollector extends SystemMetricsCollector<CompositeM
    */
   public <S extends SystemMetrics<S>, T extends SystemMetricsCollector<S>> T getMetricsCollector(
       Class<S> metricsClass) {
-    return (T) mMetricsCollectorMap.get(metricsClass);
+    Child child = mChildren.get(metricsClass);
+    return child == null ? null : (T) child.collector;
+  }
+
+  /**
+   * Adds or replaces the collector of a metrics type, e.g. in response to a config change.
+   *
+   * <p>The collector takes a snapshot right away as its baseline, and its metrics are added to
+   * snapshots that don't have them yet. Diffs between a snapshot taken before and one taken after
+   * the change mark them invalid, rather than reporting totals since boot, unless the older
+   * snapshot is backfilled with {@link #backfillBaseline} first: {@link
+   * com.facebook.battery.metrics.core.StatefulSystemMetricsCollector} does so, and its first diff
+   * covers the time since the collector was added.
+   */
+  public synchronized <T extends SystemMetrics<T>> CompositeMetricsCollector addMetricsCollector(
+      Class<T> metricsClass, SystemMetricsCollector<T> collector) {
+    SimpleArrayMap<Class<? extends SystemMetrics>, Child> children =
+        new SimpleArrayMap<>(mChildren);
+    children.put(metricsClass, createChild(metricsClass, collector, true));
+    mChildren = children;
+    mChildrenVersion++;
+    return this;
+  }
+
+  /**
+   * Removes the collector of a metrics type: its metrics are marked invalid in later snapshots.
+   *
+   * @return whether there was a collector to remove
+   */
+  public synchronized boolean removeMetricsCollector(Class<? extends SystemMetrics> metricsClass) {
+    if (!mChildren.containsKey(metricsClass)) {
+      return false;
+    }
+    SimpleArrayMap<Class<? extends SystemMetrics>, Child> children =
+        new SimpleArrayMap<>(mChildren);
+    children.remove(metricsClass);
+    mChildren = children;
+    mChildrenVersion++;
+    return true;
+  }
+
+  /**
+   * Pauses or resumes the snapshots of a metrics type while keeping its collector, and its
+   * internal state: its metrics are marked invalid while disabled.
+   *
+   * @return whether there was a collector to update
+   */
+  public synchronized boolean setEnabled(
+      Class<? extends SystemMetrics> metricsClass, boolean isEnabled) {
+    Child child = mChildren.get(metricsClass);
+    if (child == null) {
+      return false;
+    }
+    if (child.isEnabled != isEnabled) {
+      SimpleArrayMap<Class<? extends SystemMetrics>, Child> children =
+          new SimpleArrayMap<>(mChildren);
+      children.put(
+          metricsClass,
+          // The baseline would span the time the collector was disabled
+          new Child(
+              child.collector, child.snapshotCollector, isEnabled, child.isAddedAtRuntime, null));
+      mChildren = children;
+    }
+    return true;
+  }
+
+  public boolean isEnabled(Class<? extends SystemMetrics> metricsClass) {
+    Child child = mChildren.get(metricsClass);
+    return child != null && child.isEnabled;
   }
 
   /**
    * Gets the snapshot for all the metrics and returns a CompositeMetrics object with the value.
    *
-   * <p>Snapshots are only taken of metrics requested in the composite metrics objects; any
-   * snapshots that fail or are not supported by this collector are marked invalid. The underlying
-   * collectors are expected to report any errors they might encounter.
+   * <p>Snapshots are only taken of metrics requested in the composite metrics objects, and of
+   * collectors added at runtime; any snapshots that fail, are disabled or are not supported by
+   * this collector are marked invalid. The underlying collectors are expected to report any errors
+   * they might encounter.
    *
    * @param snapshot snapshot to reuse
    * @return whether _any_ underlying snapshot succeeded
@@ -89,33 +263,120 @@ public class CompositeMetricsCollector extends SystemMetricsCollector<CompositeM
   @ThreadSafe(enableChecks = false)
   public boolean getSnapshot(CompositeMetrics snapshot) {
     checkNotNull(snapshot, "Null value passed to getSnapshot!");
+    SimpleArrayMap<Class<? extends SystemMetrics>, Child> children = mChildren;
+    CollectorGovernor governor = mGovernor;
+    if (governor != null) {
+      governor.onSnapshotStart();
+    }
     boolean result = false;
     SimpleArrayMap<Class<? extends SystemMetrics>, SystemMetrics> snapshotMetrics =
         snapshot.getMetrics();
     for (int i = 0, size = snapshotMetrics.size(); i < size; i++) {
       Class<? extends SystemMetrics> metricsClass = snapshotMetrics.keyAt(i);
-      SystemMetricsCollector collector = mMetricsCollectorMap.get(metricsClass);
-      boolean snapshotResult = false;
-      if (collector != null) {
-        SystemMetrics metric = snapshot.getMetric(metricsClass);
-        snapshotResult = collector.getSnapshot(metric);
+      result |=
+          getSnapshot(
+              snapshot, metricsClass, children.get(metricsClass), governor, mGovernorConsumer);
+    }
+
+    for (int i = 0, size = children.size(); i < size; i++) {
+      Child child = children.valueAt(i);
+      Class metricsClass = children.keyAt(i);
+      if (child.isAddedAtRuntime && child.isEnabled && !snapshotMetrics.containsKey(metricsClass)) {
+        snapshot.putMetric(metricsClass, child.collector.createMetrics());
+        result |= getSnapshot(snapshot, metricsClass, child, governor, mGovernorConsumer);
       }
-      snapshot.setIsValid(metricsClass, snapshotResult);
-      result |= snapshotResult;
     }
 
     return result;
   }
 
+  private static boolean getSnapshot(
+      CompositeMetrics snapshot,
+      Class<? extends SystemMetrics> metricsClass,
+      @Nullable Child child,
+      @Nullable CollectorGovernor governor,
+      CollectorGovernor.Consumer governorConsumer) {
+    boolean snapshotResult = false;
+    if (child != null && child.isEnabled) {
+      SystemMetricsCollector collector = child.snapshotCollector;
+      SystemMetrics metric = snapshot.getMetric(metricsClass);
+      snapshotResult =
+          governor == null
+              ? collector.getSnapshot(metric)
+              : governor.getSnapshot(governorConsumer, metricsClass, collector, metric);
+    }
+    snapshot.setIsValid(metricsClass, snapshotResult);
+    return snapshotResult;
+  }
+
+  /**
+   * Lets consumers that keep their own metrics objects, such as {@link
+   * SampledCompositeMetricsCollector}, recreate them when collectors were added or removed.
+   */
+  int getChildrenVersion() {
+    return mChildrenVersion;
+  }
+
+  /** Starts a pass of {@link #getSnapshot(CompositeMetrics, Class)} calls. */
+  void onSnapshotStart() {
+    CollectorGovernor governor = mGovernor;
+    if (governor != null) {
+      governor.onSnapshotStart();
+    }
+  }
+
+  /**
+   * Takes the snapshot of a single metrics type, the same way {@link #getSnapshot(CompositeMetrics)}
+   * does: only if its collector is enabled, tracking its overhead and under the governor.
+   *
+   * @param governorConsumer what the governor keeps for the caller, which shouldn't be shared
+   * @return whether the snapshot succeeded; the metrics are marked valid or invalid to match
+   */
+  boolean getSnapshot(
+      CompositeMetrics snapshot,
+      Class<? extends SystemMetrics> metricsClass,
+      CollectorGovernor.Consumer governorConsumer) {
+    return getSnapshot(
+        snapshot, metricsClass, mChildren.get(metricsClass), mGovernor, governorConsumer);
+  }
+
+  /**
+   * Adds the metrics of collectors added at runtime to an older snapshot that doesn't have them
+   * yet, as they were when the collector was added: so the first diff against it is valid.
+   */
+  @Override
+  public void backfillBaseline(CompositeMetrics baseline) {
+    SimpleArrayMap<Class<? extends SystemMetrics>, Child> children = mChildren;
+    SimpleArrayMap<Class<? extends SystemMetrics>, SystemMetrics> baselineMetrics =
+        baseline.getMetrics();
+    for (int i = 0, size = children.size(); i < size; i++) {
+      Child child = children.valueAt(i);
+      Class metricsClass = children.keyAt(i);
+      if (child.baseline != null
+          && child.isEnabled
+          && !baselineMetrics.containsKey(metricsClass)) {
+        SystemMetrics metric = child.collector.createMetrics();
+        metric.set(child.baseline);
+        baseline.putValidMetric(metricsClass, metric);
+      }
+    }
+  }
+
+  /** Creates the metrics of a single collector, or returns null if there's no such collector. */
+  @Nullable
+  SystemMetrics createMetrics(Class<? extends SystemMetrics> metricsClass) {
+    Child child = mChildren.get(metricsClass);
+    return child == null ? null : child.collector.createMetrics();
+  }
+
   @Override
   public CompositeMetrics createMetrics() {
+    SimpleArrayMap<Class<? extends SystemMetrics>, Child> children = mChildren;
     CompositeMetrics metrics = new CompositeMetrics();
-    for (int i = 0, size = mMetricsCollectorMap.size(); i < size; i++) {
-      Class metricsClass = mMetricsCollectorMap.keyAt(i);
-      SystemMetricsCollector<?> collector = mMetricsCollectorMap.valueAt(i);
-      if (collector != null) {
-        metrics.putMetric(metricsClass, collector.createMetrics());
-      }
+    metrics.mCollector = this;
+    for (int i = 0, size = children.size(); i < size; i++) {
+      Class metricsClass = children.keyAt(i);
+      metrics.putMetric(metricsClass, children.valueAt(i).collector.createMetrics());
     }
     return metrics;
   }
@@ -0,0 +1,210 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.metrics.composite;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import androidx.collection.SimpleArrayMap;
+import com.facebook.battery.metrics.core.SystemMetrics;
+import com.facebook.infer.annotation.Nullsafe;
+import java.util.Random;
+
+/**
+ * A stateful collector, similar to {@link
+ * com.facebook.battery.metrics.core.StatefulSystemMetricsCollector}, that only computes diffs of
+ * the metrics that will actually be reported.
+ *
+ * <p>Each metrics type has a sample rate: a type with a rate of N is included in roughly 1 in N
+ * events. The decision for the next event is made up front, when the previous one is reported, so
+ * that a type which isn't sampled doesn't even need a baseline: expensive collectors (such as
+ * HealthStats) are only snapshotted for the events they are reported in and the one before. Cheap
+ * types keep the default rate of 1 and have their baselines advanced on every event.
+ *
+ * <pre>{@code
+ * event.acquireEvent(null, "BatteryMetrics");
+ * CompositeMetrics update = sampledCollector.getLatestDiffAndReset(event.isSampled());
+ * if (update != null) {
+ *   reporter.reportTo(update, event); // only reports the sampled (valid) types
+ *   event.logAndRelease();
+ * }
+ * }</pre>
+ *
+ * <p>Apps that also persist or aggregate every diff pass true, and only gate the reporting on
+ * whether the event is sampled.
+ *
+ * <p>Call {@link #start()} once the sample rates are set to take the first baselines.
+ *
+ * <p>Snapshots go through the composite collector, so its overhead tracking, governor and disabled
+ * collectors apply. Collectors added at runtime are picked up by the next event, starting from the
+ * baseline taken when they were added, and removed ones are dropped.
+ *
+ * <p>Values reported for a type with a rate of N represent 1 in N events and should be weighted
+ * accordingly when aggregating.
+ *
+ * <p>This class is _not_ thread safe.
+ */
+@Nullsafe(Nullsafe.Mode.LOCAL)
+public class SampledCompositeMetricsCollector {
+
+  private final CompositeMetricsCollector mCollector;
+  private final SimpleArrayMap<Class<? extends SystemMetrics>, Integer> mSampleRates =
+      new SimpleArrayMap<>();
+  private final Random mRandom;
+  private final CollectorGovernor.Consumer mGovernorConsumer = new CollectorGovernor.Consumer();
+  private CompositeMetrics mDiff;
+  private int mChildrenVersion;
+
+  /** Valid for the types that will be reported by the next event. */
+  private CompositeMetrics mPrev;
+
+  private CompositeMetrics mCurr;
+  private boolean[] mSampledNext = new boolean[0];
+
+  public SampledCompositeMetricsCollector(CompositeMetricsCollector collector) {
+    this(collector, new Random());
+  }
+
+  @VisibleForTesting
+  SampledCompositeMetricsCollector(CompositeMetricsCollector collector, Random random) {
+    mCollector = collector;
+    mRandom = random;
+    mChildrenVersion = collector.getChildrenVersion();
+    mPrev = collector.createMetrics();
+    mCurr = collector.createMetrics();
+    mDiff = collector.createMetrics();
+  }
+
+  /**
+   * Sets how often a metrics type is reported.
+   *
+   * @param sampleRate report metricsClass in 1 out of sampleRate events, 1 being every event
+   * @return Instance of this collector
+   */
+  public <T extends SystemMetrics<T>> SampledCompositeMetricsCollector setSampleRate(
+      Class<T> metricsClass, int sampleRate) {
+    if (sampleRate < 1) {
+      throw new IllegalArgumentException("Invalid sample rate: " + sampleRate);
+    }
+    mSampleRates.put(metricsClass, sampleRate);
+    return this;
+  }
+
+  public int getSampleRate(Class<? extends SystemMetrics> metricsClass) {
+    Integer sampleRate = mSampleRates.get(metricsClass);
+    return sampleRate == null ? 1 : sampleRate;
+  }
+
+  /**
+   * Draws the sampling decisions for the next event and takes its baselines, discarding anything
+   * collected since the last event. Sample rate changes otherwise only apply from the event after
+   * the next one.
+   */
+  public void start() {
+    updateMetrics();
+    mCollector.onSnapshotStart();
+    SimpleArrayMap<Class<? extends SystemMetrics>, SystemMetrics> metrics = mPrev.getMetrics();
+    for (int i = 0, size = metrics.size(); i < size; i++) {
+      Class<? extends SystemMetrics> metricsClass = metrics.keyAt(i);
+      if (!isSampledNext(metricsClass)
+          || !mCollector.getSnapshot(mPrev, metricsClass, mGovernorConsumer)) {
+        mPrev.setIsValid(metricsClass, false);
+      }
+    }
+  }
+
+  /**
+   * Gets the diff since the last event for the types sampled for this event, and advances the
+   * baselines of the types sampled for the next one.
+   *
+   * @param isEventSampled whether the event will be logged at all: if not, no diff is computed
+   * @return the diff, in which only the sampled types are valid, or null if there's nothing to
+   *     report; it's reused by the next call
+   */
+  @Nullable
+  public CompositeMetrics getLatestDiffAndReset(boolean isEventSampled) {
+    updateMetrics();
+    mCollector.onSnapshotStart();
+    SimpleArrayMap<Class<? extends SystemMetrics>, SystemMetrics> metrics = mCurr.getMetrics();
+    int size = metrics.size();
+    if (mSampledNext.length < size) {
+      mSampledNext = new boolean[size];
+    }
+
+    boolean hasSamples = false;
+    for (int i = 0; i < size; i++) {
+      Class<? extends SystemMetrics> metricsClass = metrics.keyAt(i);
+      boolean reported = isEventSampled && mPrev.isValid(metricsClass);
+      boolean sampledNext = isSampledNext(metricsClass);
+      boolean valid =
+          (reported || sampledNext)
+              && mCollector.getSnapshot(mCurr, metricsClass, mGovernorConsumer);
+      mCurr.setIsValid(metricsClass, valid);
+      // Types that aren't reported are left out of the diff
+      mPrev.setIsValid(metricsClass, reported);
+      mSampledNext[i] = sampledNext;
+      hasSamples |= reported && valid;
+    }
+
+    if (hasSamples) {
+      mCurr.diff(mPrev, mDiff);
+    }
+
+    // The current snapshots become the baselines of the types sampled for the next event
+    for (int i = 0; i < size; i++) {
+      if (!mSampledNext[i]) {
+        mCurr.setIsValid(metrics.keyAt(i), false);
+      }
+    }
+    CompositeMetrics temp = mPrev;
+    mPrev = mCurr;
+    mCurr = temp;
+    return hasSamples ? mDiff : null;
+  }
+
+  private boolean isSampledNext(Class<? extends SystemMetrics> metricsClass) {
+    int sampleRate = getSampleRate(metricsClass);
+    return sampleRate == 1 || mRandom.nextInt(sampleRate) == 0;
+  }
+
+  /**
+   * Recreates the metrics if collectors were added or removed since the last event: the baselines
+   * of the remaining types carry over, and added types start from the snapshot taken when they
+   * were added, if they're sampled for the next event.
+   */
+  @SuppressWarnings("unchecked")
+  private void updateMetrics() {
+    int childrenVersion = mCollector.getChildrenVersion();
+    if (childrenVersion == mChildrenVersion) {
+      return;
+    }
+    mChildrenVersion = childrenVersion;
+
+    CompositeMetrics prev = new CompositeMetrics();
+    prev.mCollector = mCollector;
+    SimpleArrayMap<Class<? extends SystemMetrics>, SystemMetrics> metrics = mPrev.getMetrics();
+    for (int i = 0, size = metrics.size(); i < size; i++) {
+      Class metricsClass = metrics.keyAt(i);
+      if (mCollector.getMetricsCollector(metricsClass) != null) {
+        prev.putMetric(metricsClass, metrics.valueAt(i));
+        prev.setIsValid(metricsClass, mPrev.isValid(metricsClass));
+      }
+    }
+    mCollector.backfillBaseline(prev);
+    SimpleArrayMap<Class<? extends SystemMetrics>, SystemMetrics> prevMetrics = prev.getMetrics();
+    for (int i = 0, size = prevMetrics.size(); i < size; i++) {
+      Class<? extends SystemMetrics> metricsClass = prevMetrics.keyAt(i);
+      if (!metrics.containsKey(metricsClass) && prev.isValid(metricsClass)) {
+        prev.setIsValid(metricsClass, isSampledNext(metricsClass));
+      }
+    }
+
+    mPrev = prev;
+    mCurr = mCollector.createMetrics();
+    mDiff = mCollector.createMetrics();
+  }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.metrics.contextswitch;
+
+import androidx.annotation.Nullable;
+import com.facebook.battery.metrics.core.SystemMetrics;
+import com.facebook.infer.annotation.Nullsafe;
+
+/**
+ * Scheduler statistics for the process, read from {@code /proc/self/status}.
+ *
+ * <p>Voluntary switches happen when a thread blocks (on a lock, io, or a handoff to another
+ * thread) and involuntary switches when it gets preempted: a sudden jump in either is a good hint
+ * for lock convoys or chatty thread handoffs that keep the cpu awake.
+ *
+ * <p>The context switch counts are monotonic and are added/subtracted as usual; the thread count
+ * and peak rss are point in time values -- diffs keep the more recent value and sums keep the
+ * larger one.
+ */
+@Nullsafe(Nullsafe.Mode.LOCAL)
+public class ContextSwitchMetrics extends SystemMetrics<ContextSwitchMetrics> {
+
+  public long voluntaryContextSwitches;
+  public long nonvoluntaryContextSwitches;
+
+  /** Number of threads in the process; only collected if enabled on the collector. */
+  public long threadsCount;
+
+  /** Peak resident set size of the process; only collected if enabled on the collector. */
+  public long vmHwmKb;
+
+  public ContextSwitchMetrics() {}
+
+  @Override
+  public ContextSwitchMetrics set(ContextSwitchMetrics metrics) {
+    voluntaryContextSwitches = metrics.voluntaryContextSwitches;
+    nonvoluntaryContextSwitches = metrics.nonvoluntaryContextSwitches;
+    threadsCount = metrics.threadsCount;
+    vmHwmKb = metrics.vmHwmKb;
+    return this;
+  }
+
+  @Override
+  public ContextSwitchMetrics sum(
+      @Nullable ContextSwitchMetrics b, @Nullable ContextSwitchMetrics output) {
+    if (output == null) {
+      output = new ContextSwitchMetrics();
+    }
+
+    if (b == null) {
+      output.set(this);
+    } else {
+      output.voluntaryContextSwitches = voluntaryContextSwitches + b.voluntaryContextSwitches;
+      output.nonvoluntaryContextSwitches =
+          nonvoluntaryContextSwitches + b.nonvoluntaryContextSwitches;
+      output.threadsCount = Math.max(threadsCount, b.threadsCount);
+      output.vmHwmKb = Math.max(vmHwmKb, b.vmHwmKb);
+    }
+
+    return output;
+  }
+
+  @Override
+  public ContextSwitchMetrics diff(
+      @Nullable ContextSwitchMetrics b, @Nullable ContextSwitchMetrics output) {
+    if (output == null) {
+      output = new ContextSwitchMetrics();
+    }
+
+    if (b == null) {
+      output.set(this);
+    } else {
+      output.voluntaryContextSwitches = voluntaryContextSwitches - b.voluntaryContextSwitches;
+      output.nonvoluntaryContextSwitches =
+          nonvoluntaryContextSwitches - b.nonvoluntaryContextSwitches;
+      output.threadsCount = threadsCount;
+      output.vmHwmKb = vmHwmKb;
+    }
+
+    return output;
+  }
+
+  @Override
+  public boolean equals(@Nullable Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+
+    ContextSwitchMetrics that = (ContextSwitchMetrics) o;
+
+    return voluntaryContextSwitches == that.voluntaryContextSwitches
+        && nonvoluntaryContextSwitches == that.nonvoluntaryContextSwitches
+        && threadsCount == that.threadsCount
+        && vmHwmKb == that.vmHwmKb;
+  }
+
+  @Override
+  public int hashCode() {
+    int result = (int) (voluntaryContextSwitches ^ (voluntaryContextSwitches >>> 32));
+    result =
+        31 * result + (int) (nonvoluntaryContextSwitches ^ (nonvoluntaryContextSwitches >>> 32));
+    result = 31 * result + (int) (threadsCount ^ (threadsCount >>> 32));
+    result = 31 * result + (int) (vmHwmKb ^ (vmHwmKb >>> 32));
+    return result;
+  }
+
+  @Override
+  public String toString() {
+    return "ContextSwitchMetrics{"
+        + "voluntaryContextSwitches="
+        + voluntaryContextSwitches
+        + ", nonvoluntaryContextSwitches="
+        + nonvoluntaryContextSwitches
+        + ", threadsCount="
+        + threadsCount
+        + ", vmHwmKb="
+        + vmHwmKb
+        + '}';
+  }
+}
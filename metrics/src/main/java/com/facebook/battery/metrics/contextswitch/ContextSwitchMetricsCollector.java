@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.metrics.contextswitch;
+
+import static com.facebook.battery.metrics.core.Utilities.checkNotNull;
+
+import androidx.annotation.VisibleForTesting;
+import com.facebook.battery.metrics.core.ProcFileReader;
+import com.facebook.battery.metrics.core.SystemMetricsCollector;
+import com.facebook.battery.metrics.core.SystemMetricsLogger;
+import com.facebook.infer.annotation.Nullsafe;
+import com.facebook.infer.annotation.ThreadSafe;
+import java.nio.CharBuffer;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+
+/**
+ * Collects context switch counts (and optionally the thread count and peak rss) from {@code
+ * /proc/self/status}.
+ *
+ * <p>The status file has ~50 {@code key:\tvalue} lines; to keep this cheap enough to call
+ * frequently, every line's key is read into a reused buffer and compared against the requested keys
+ * only -- values are decoded only for matching keys, and no strings are created. Parsing stops as
+ * soon as all requested keys have been found.
+ */
+@Nullsafe(Nullsafe.Mode.LOCAL)
+@ThreadSafe
+public class ContextSwitchMetricsCollector extends SystemMetricsCollector<ContextSwitchMetrics> {
+
+  private static final String TAG = "ContextSwitchMetricsCollector";
+  private static final String PROC_STATUS_FILE_PATH = "/proc/self/status";
+
+  private static final int VOLUNTARY_CTXT_SWITCHES = 0;
+  private static final int NONVOLUNTARY_CTXT_SWITCHES = 1;
+  private static final int THREADS = 2;
+  private static final int VM_HWM = 3;
+
+  private static final String[] KEYS = {
+    "voluntary_ctxt_switches:", "nonvoluntary_ctxt_switches:", "Threads:", "VmHWM:",
+  };
+
+  private static final int WORD_BUFFER_SIZE = 32;
+
+  /** Keys requested from the status file, and the corresponding field for each of them. */
+  private final CharBuffer[] mKeys;
+
+  private final int[] mFields;
+
+  @GuardedBy("this")
+  @Nullable
+  private ProcFileReader mReader;
+
+  @GuardedBy("this")
+  private CharBuffer mWord = CharBuffer.allocate(WORD_BUFFER_SIZE);
+
+  /** Only collects the voluntary and involuntary context switches. */
+  public ContextSwitchMetricsCollector() {
+    this(false, false);
+  }
+
+  /**
+   * @param collectThreadsCount also read the number of threads in the process
+   * @param collectVmHwm also read the peak resident set size of the process
+   */
+  public ContextSwitchMetricsCollector(boolean collectThreadsCount, boolean collectVmHwm) {
+    int count = 2 + (collectThreadsCount ? 1 : 0) + (collectVmHwm ? 1 : 0);
+    mKeys = new CharBuffer[count];
+    mFields = new int[count];
+
+    int index = 0;
+    index = addKey(index, VOLUNTARY_CTXT_SWITCHES);
+    index = addKey(index, NONVOLUNTARY_CTXT_SWITCHES);
+    if (collectThreadsCount) {
+      index = addKey(index, THREADS);
+    }
+    if (collectVmHwm) {
+      addKey(index, VM_HWM);
+    }
+  }
+
+  private int addKey(int index, int field) {
+    mKeys[index] = CharBuffer.wrap(KEYS[field]);
+    mFields[index] = field;
+    return index + 1;
+  }
+
+  @Override
+  @ThreadSafe(enableChecks = false)
+  public synchronized boolean getSnapshot(ContextSwitchMetrics snapshot) {
+    checkNotNull(snapshot, "Null value passed to getSnapshot!");
+
+    if (mReader == null) {
+      mReader = new ProcFileReader(getPath());
+    }
+
+    ProcFileReader reader = mReader.reset();
+    if (!reader.isValid()) {
+      return false;
+    }
+
+    int found = 0;
+    try {
+      while (found < mKeys.length && reader.hasNext()) {
+        mWord = reader.readWord(mWord);
+        int field = findField(mWord);
+        if (field >= 0) {
+          reader.skipBlanks();
+          setField(snapshot, field, reader.readNumber());
+          found++;
+        }
+        reader.skipLine();
+      }
+    } catch (ProcFileReader.ParseException pe) {
+      SystemMetricsLogger.wtf(TAG, "Unable to parse status file", pe);
+      return false;
+    }
+
+    return found == mKeys.length;
+  }
+
+  private int findField(CharBuffer word) {
+    for (int i = 0; i < mKeys.length; i++) {
+      if (mKeys[i].equals(word)) {
+        return mFields[i];
+      }
+    }
+    return -1;
+  }
+
+  private static void setField(ContextSwitchMetrics snapshot, int field, long value) {
+    switch (field) {
+      case VOLUNTARY_CTXT_SWITCHES:
+        snapshot.voluntaryContextSwitches = value;
+        break;
+      case NONVOLUNTARY_CTXT_SWITCHES:
+        snapshot.nonvoluntaryContextSwitches = value;
+        break;
+      case THREADS:
+        snapshot.threadsCount = value;
+        break;
+      case VM_HWM:
+        snapshot.vmHwmKb = value;
+        break;
+    }
+  }
+
+  @Override
+  public ContextSwitchMetrics createMetrics() {
+    return new ContextSwitchMetrics();
+  }
+
+  @VisibleForTesting
+  protected String getPath() {
+    return PROC_STATUS_FILE_PATH;
+  }
+}
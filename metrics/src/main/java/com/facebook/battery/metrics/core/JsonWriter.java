@@ -0,0 +1,216 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.metrics.core;
+
+import androidx.annotation.Nullable;
+import com.facebook.infer.annotation.Nullsafe;
+import java.util.Arrays;
+
+/**
+ * Writes compact JSON straight into a reusable StringBuilder, as a lighter alternative to building
+ * org.json trees only to call toString on them: the only allocation once the builder has grown is
+ * the final string.
+ *
+ * <pre>{@code
+ * writer.reset();
+ * writer.beginObject().name("count").value(2).endObject();
+ * event.add(KEY, writer.toString());
+ * }</pre>
+ *
+ * <p>{@link #endOptionalObject()} removes objects that ended up empty (including their name), so
+ * sparse metrics can be written in one pass without checking for values first.
+ *
+ * <p>Nesting is only loosely checked, and the writer is not thread safe.
+ */
+@Nullsafe(Nullsafe.Mode.LOCAL)
+public class JsonWriter {
+
+  private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+  private final StringBuilder mBuilder;
+
+  /** Per container: where its element started, and whether it has members/elements. */
+  private int[] mStarts = new int[8];
+
+  private boolean[] mParentNonEmpty = new boolean[8];
+  private boolean[] mNonEmpty = new boolean[8];
+  private int mDepth;
+
+  private int mElementStart;
+  private boolean mElementParentNonEmpty;
+  private boolean mAfterName;
+
+  public JsonWriter() {
+    this(new StringBuilder(256));
+  }
+
+  public JsonWriter(StringBuilder builder) {
+    mBuilder = builder;
+  }
+
+  /** Clears the output, keeping the builder's capacity. */
+  public JsonWriter reset() {
+    mBuilder.setLength(0);
+    mDepth = 0;
+    mNonEmpty[0] = false;
+    mAfterName = false;
+    return this;
+  }
+
+  public JsonWriter beginObject() {
+    return begin('{');
+  }
+
+  public JsonWriter endObject() {
+    return end('}');
+  }
+
+  /** Ends the current object, removing it and its name if it doesn't have any members. */
+  public JsonWriter endOptionalObject() {
+    if (mNonEmpty[mDepth]) {
+      return end('}');
+    }
+    mBuilder.setLength(mStarts[mDepth]);
+    boolean parentNonEmpty = mParentNonEmpty[mDepth];
+    mDepth--;
+    mNonEmpty[mDepth] = parentNonEmpty;
+    return this;
+  }
+
+  public JsonWriter beginArray() {
+    return begin('[');
+  }
+
+  public JsonWriter endArray() {
+    return end(']');
+  }
+
+  public JsonWriter name(String name) {
+    beforeElement();
+    string(name);
+    mBuilder.append(':');
+    mAfterName = true;
+    return this;
+  }
+
+  public JsonWriter value(@Nullable String value) {
+    beforeValue();
+    if (value == null) {
+      mBuilder.append("null");
+    } else {
+      string(value);
+    }
+    return this;
+  }
+
+  public JsonWriter value(long value) {
+    beforeValue();
+    mBuilder.append(value);
+    return this;
+  }
+
+  public JsonWriter value(double value) {
+    if (Double.isNaN(value) || Double.isInfinite(value)) {
+      throw new IllegalArgumentException("Numeric values must be finite: " + value);
+    }
+    beforeValue();
+    mBuilder.append(value);
+    return this;
+  }
+
+  public JsonWriter value(boolean value) {
+    beforeValue();
+    mBuilder.append(value);
+    return this;
+  }
+
+  /** Length of the output so far. */
+  public int length() {
+    return mBuilder.length();
+  }
+
+  @Override
+  public String toString() {
+    return mBuilder.toString();
+  }
+
+  private JsonWriter begin(char bracket) {
+    beforeValue();
+    if (++mDepth == mStarts.length) {
+      mStarts = Arrays.copyOf(mStarts, mDepth * 2);
+      mParentNonEmpty = Arrays.copyOf(mParentNonEmpty, mDepth * 2);
+      mNonEmpty = Arrays.copyOf(mNonEmpty, mDepth * 2);
+    }
+    mStarts[mDepth] = mElementStart;
+    mParentNonEmpty[mDepth] = mElementParentNonEmpty;
+    mNonEmpty[mDepth] = false;
+    mBuilder.append(bracket);
+    return this;
+  }
+
+  private JsonWriter end(char bracket) {
+    if (mDepth == 0) {
+      throw new IllegalStateException("Nothing to end");
+    }
+    mDepth--;
+    mBuilder.append(bracket);
+    return this;
+  }
+
+  private void beforeValue() {
+    if (mAfterName) {
+      mAfterName = false;
+    } else {
+      beforeElement();
+    }
+  }
+
+  private void beforeElement() {
+    mElementStart = mBuilder.length();
+    mElementParentNonEmpty = mNonEmpty[mDepth];
+    if (mNonEmpty[mDepth]) {
+      mBuilder.append(',');
+    }
+    mNonEmpty[mDepth] = true;
+  }
+
+  private void string(String value) {
+    mBuilder.append('"');
+    for (int i = 0, length = value.length(); i < length; i++) {
+      char c = value.charAt(i);
+      switch (c) {
+        case '"':
+        case '\\':
+          mBuilder.append('\\').append(c);
+          break;
+        case '\n':
+          mBuilder.append("\\n");
+          break;
+        case '\r':
+          mBuilder.append("\\r");
+          break;
+        case '\t':
+          mBuilder.append("\\t");
+          break;
+        default:
+          if (c < 0x20 || c == 0x2028 || c == 0x2029) {
+            mBuilder
+                .append("\\u")
+                .append(HEX[(c >> 12) & 0xF])
+                .append(HEX[(c >> 8) & 0xF])
+                .append(HEX[(c >> 4) & 0xF])
+                .append(HEX[c & 0xF]);
+          } else {
+            mBuilder.append(c);
+          }
+          break;
+      }
+    }
+    mBuilder.append('"');
+  }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.metrics.core;
+
+import android.os.Looper;
+import android.os.MessageQueue;
+import androidx.annotation.Nullable;
+import com.facebook.infer.annotation.Nullsafe;
+import com.facebook.infer.annotation.ThreadSafe;
+import java.util.concurrent.Executor;
+
+/**
+ * Moves the construction of a collector off the startup path: some collectors register receivers
+ * or read system services in their constructors, e.g. {@code DeviceBatteryMetricsCollector} and
+ * {@code NetworkMetricsCollector}.
+ *
+ * <pre>{@code
+ * LazySystemMetricsCollector<NetworkMetrics> collector =
+ *     new LazySystemMetricsCollector<NetworkMetrics>() {
+ *       protected SystemMetricsCollector<NetworkMetrics> createCollector() {
+ *         return new NetworkMetricsCollector(context);
+ *       }
+ *
+ *       public NetworkMetrics createMetrics() {
+ *         return new NetworkMetrics();
+ *       }
+ *     };
+ * }</pre>
+ *
+ * <p>By default, the collector is created by the first snapshot. In deferred mode, snapshots are
+ * invalid until the collector is created explicitly with {@link #initialize()}, {@link
+ * #initializeWhenIdle()} or {@link #initializeOn(Executor)}: no diff can span the creation of the
+ * collector, so cumulative counters stay correct. Pair it with a deferred {@link
+ * StatefulSystemMetricsCollector}, which keeps retrying its baseline until the collector exists.
+ *
+ * <p>If creating the collector throws, the error is reported and all snapshots are invalid.
+ */
+@Nullsafe(Nullsafe.Mode.LOCAL)
+@ThreadSafe
+public abstract class LazySystemMetricsCollector<T extends SystemMetrics<T>>
+    extends SystemMetricsCollector<T> {
+
+  private static final String TAG = "LazySystemMetricsCollector";
+
+  private volatile @Nullable SystemMetricsCollector<T> mCollector;
+  private volatile boolean mIsDeferred;
+  private volatile boolean mHasFailed;
+
+  /** Called at most once, on the thread that initializes this collector. */
+  protected abstract SystemMetricsCollector<T> createCollector();
+
+  /** In deferred mode, snapshots are invalid until the collector is initialized explicitly. */
+  public LazySystemMetricsCollector<T> setDeferred(boolean isDeferred) {
+    mIsDeferred = isDeferred;
+    return this;
+  }
+
+  public boolean isInitialized() {
+    return mCollector != null;
+  }
+
+  /**
+   * Creates the collector if it wasn't yet.
+   *
+   * @return the collector, or null if creating it failed
+   */
+  public @Nullable SystemMetricsCollector<T> initialize() {
+    SystemMetricsCollector<T> collector = mCollector;
+    if (collector != null || mHasFailed) {
+      return collector;
+    }
+    synchronized (this) {
+      collector = mCollector;
+      if (collector == null && !mHasFailed) {
+        try {
+          collector = createCollector();
+          mCollector = collector;
+        } catch (RuntimeException e) {
+          mHasFailed = true;
+          SystemMetricsLogger.wtf(TAG, "Couldn't create the collector", e);
+        }
+      }
+      return collector;
+    }
+  }
+
+  /** Initializes the collector once the current thread's looper has no messages to handle. */
+  public void initializeWhenIdle() {
+    if (Looper.myLooper() == null) {
+      throw new IllegalStateException("The current thread doesn't have a looper");
+    }
+    Looper.myQueue()
+        .addIdleHandler(
+            new MessageQueue.IdleHandler() {
+              @Override
+              public boolean queueIdle() {
+                initialize();
+                return false;
+              }
+            });
+  }
+
+  /** Initializes the collector on the executor, e.g. a background thread. */
+  public void initializeOn(Executor executor) {
+    executor.execute(
+        new Runnable() {
+          @Override
+          public void run() {
+            initialize();
+          }
+        });
+  }
+
+  @Override
+  @ThreadSafe(enableChecks = false)
+  public boolean getSnapshot(T snapshot) {
+    Utilities.checkNotNull(snapshot, "Null value passed to getSnapshot!");
+    SystemMetricsCollector<T> collector = mIsDeferred ? mCollector : initialize();
+    return collector != null && collector.getSnapshot(snapshot);
+  }
+}
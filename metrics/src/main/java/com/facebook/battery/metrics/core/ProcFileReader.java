@@ -214,6 +214,21 @@ public class ProcFileReader {
     skipPast('\n');
   }
 
+  /**
+   * Skips any run of spaces and tabs without moving past the end of the current line: useful for
+   * {@code key:\tvalue} style files like {@code /proc/self/status}.
+   */
+  public void skipBlanks() {
+    while (hasNext()) {
+      next();
+
+      if (mChar != ' ' && mChar != '\t') {
+        rewind();
+        break;
+      }
+    }
+  }
+
   private void skipPast(char skipPast) {
     boolean found = false;
     while (hasNext()) {
@@ -24,8 +24,9 @@ import com.facebook.infer.annotation.Nullsafe;
  * // Every call gets the difference from the last call SystemMetrics metrics =
  * collector.getLatestDiffAndReset(); }</pre>
  *
- * <p>Note - creating a Stateful collector immediately takes an initial snapshot. - this class is
- * _not_ thread safe.
+ * <p>Note - creating a Stateful collector immediately takes an initial snapshot, unless it's
+ * deferred. If the initial snapshot fails, e.g. because a {@link LazySystemMetricsCollector} isn't
+ * initialized yet, it's retried like a deferred one. - this class is _not_ thread safe.
  */
 @Nullsafe(Nullsafe.Mode.LOCAL)
 public class StatefulSystemMetricsCollector<
@@ -38,15 +39,26 @@ public class StatefulSystemMetricsCollector<
   private R mPrev;
 
   private boolean mIsValid = true;
+  private boolean mHasBaseline = true;
 
   /**
    * Wrap the underlying collector to maintain external state: automatically takes a snapshot to
    * override the initial values.
    */
   public StatefulSystemMetricsCollector(S collector) {
+    this(collector, false);
+  }
+
+  /**
+   * Wrap the underlying collector, optionally deferring the initial snapshot off the startup path:
+   * the first call to {@link #getLatestDiff()} then takes it and returns null, as do the following
+   * calls until it succeeds, e.g. once a {@link LazySystemMetricsCollector} is initialized. An
+   * initial snapshot that isn't deferred but fails is retried the same way.
+   */
+  public StatefulSystemMetricsCollector(S collector, boolean deferInitialSnapshot) {
     this(
         collector, collector.createMetrics(), collector.createMetrics(), collector.createMetrics());
-    mIsValid &= collector.getSnapshot(mPrev);
+    mHasBaseline = !deferInitialSnapshot && collector.getSnapshot(mPrev);
   }
 
   /**
@@ -84,11 +96,17 @@ public class StatefulSystemMetricsCollector<
   /** Get a diff form the previous baseline. */
   @Nullable
   public R getLatestDiff() {
+    if (!mHasBaseline) {
+      mHasBaseline = mCollector.getSnapshot(mPrev);
+      return null;
+    }
+
     mIsValid &= mCollector.getSnapshot(this.mCurr);
     if (!mIsValid) {
       return null;
     }
 
+    mCollector.backfillBaseline(mPrev);
     mCurr.diff(mPrev, mDiff);
     return mDiff;
   }
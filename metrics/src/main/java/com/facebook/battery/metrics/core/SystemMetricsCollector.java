@@ -38,4 +38,12 @@ public abstract class SystemMetricsCollector<T extends SystemMetrics> {
    * @return New System Metrics object
    */
   public abstract T createMetrics();
+
+  /**
+   * Fills in what an older snapshot, kept as the baseline for diffs, lacks compared to the
+   * snapshots taken now: e.g. the metrics of collectors added to a {@link
+   * com.facebook.battery.metrics.composite.CompositeMetricsCollector} since. Called by {@link
+   * StatefulSystemMetricsCollector} before every diff; most collectors have nothing to fill in.
+   */
+  public void backfillBaseline(T baseline) {}
 }
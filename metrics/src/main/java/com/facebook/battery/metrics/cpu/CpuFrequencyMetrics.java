@@ -9,6 +9,7 @@ package com.facebook.battery.metrics.cpu;
 
 import android.util.SparseIntArray;
 import androidx.annotation.Nullable;
+import com.facebook.battery.metrics.core.JsonWriter;
 import com.facebook.battery.metrics.core.SystemMetrics;
 import com.facebook.battery.metrics.core.SystemMetricsLogger;
 import com.facebook.infer.annotation.Nullsafe;
@@ -213,23 +214,17 @@ public class CpuFrequencyMetrics extends SystemMetrics<CpuFrequencyMetrics> {
     // because SparseIntArray doesn't override equals/hash correctly.
     // Implemented in a fairly expensive, n^2 way because number of cores is presumably
     // very low.
-    boolean[] isHandled = new boolean[timeInStateS.length];
+    // Cores already written as part of another core's mask
+    int handled = 0;
     JSONObject output = new JSONObject();
     for (int i = 0, cores = timeInStateS.length; i < cores; i++) {
       SparseIntArray current = timeInStateS[i];
-      if (current.size() == 0 || isHandled[i]) {
+      if (current.size() == 0 || (handled & (1 << i)) != 0) {
         continue;
       }
 
-      int cpumask = 1 << i;
-
-      for (int j = i + 1; j < cores; j++) {
-        if (CpuFrequencyMetrics.sparseIntArrayEquals(current, timeInStateS[j])) {
-          cpumask |= 1 << j;
-          isHandled[j] = true;
-        }
-      }
-
+      int cpumask = getCpumask(i);
+      handled |= cpumask;
       try {
         output.put(Integer.toHexString(cpumask), convert(current));
       } catch (JSONException je) {
@@ -240,6 +235,45 @@ public class CpuFrequencyMetrics extends SystemMetrics<CpuFrequencyMetrics> {
     return output;
   }
 
+  /**
+   * Writes the same representation as {@link #toJSONObject()}.
+   *
+   * @return false, without writing anything, if no cpu has any time in state
+   */
+  public boolean toJSON(JsonWriter writer) {
+    int handled = 0;
+    boolean hasCores = false;
+    writer.beginObject();
+    for (int i = 0, cores = timeInStateS.length; i < cores; i++) {
+      SparseIntArray current = timeInStateS[i];
+      if (current.size() == 0 || (handled & (1 << i)) != 0) {
+        continue;
+      }
+
+      int cpumask = getCpumask(i);
+      handled |= cpumask;
+      writer.name(Integer.toHexString(cpumask)).beginObject();
+      for (int j = 0, frequencies = current.size(); j < frequencies; j++) {
+        writer.name(Integer.toString(current.keyAt(j))).value(current.valueAt(j));
+      }
+      writer.endObject();
+      hasCores = true;
+    }
+    writer.endOptionalObject();
+    return hasCores;
+  }
+
+  /** Returns the mask of this core and the following ones with the same times in state. */
+  private int getCpumask(int core) {
+    int cpumask = 1 << core;
+    for (int j = core + 1, cores = timeInStateS.length; j < cores; j++) {
+      if (CpuFrequencyMetrics.sparseIntArrayEquals(timeInStateS[core], timeInStateS[j])) {
+        cpumask |= 1 << j;
+      }
+    }
+    return cpumask;
+  }
+
   private static JSONObject convert(SparseIntArray array) throws JSONException {
     JSONObject result = new JSONObject();
     for (int j = 0, frequencies = array.size(); j < frequencies; j++) {
@@ -8,6 +8,7 @@
 package com.facebook.battery.metrics.cpu;
 
 import androidx.annotation.Nullable;
+import com.facebook.battery.codegen.Monotonic;
 import com.facebook.battery.metrics.core.SystemMetrics;
 import com.facebook.infer.annotation.Nullsafe;
 
@@ -15,101 +16,47 @@ import com.facebook.infer.annotation.Nullsafe;
 @Nullsafe(Nullsafe.Mode.LOCAL)
 public class CpuMetrics extends SystemMetrics<CpuMetrics> {
 
+  @Monotonic(key = "cpu_user_time_s")
   public double userTimeS;
+
+  @Monotonic(key = "cpu_system_time_s")
   public double systemTimeS;
+
+  @Monotonic(key = "child_cpu_user_time_s")
   public double childUserTimeS;
+
+  @Monotonic(key = "child_cpu_system_time_s")
   public double childSystemTimeS;
 
   public CpuMetrics() {}
 
   @Override
   public CpuMetrics set(CpuMetrics metrics) {
-    userTimeS = metrics.userTimeS;
-    systemTimeS = metrics.systemTimeS;
-    childUserTimeS = metrics.childUserTimeS;
-    childSystemTimeS = metrics.childSystemTimeS;
-    return this;
+    return GeneratedCpuMetrics.set(this, metrics);
   }
 
   @Override
   public CpuMetrics sum(@Nullable CpuMetrics b, @Nullable CpuMetrics output) {
-    if (output == null) {
-      output = new CpuMetrics();
-    }
-
-    if (b == null) {
-      output.set(this);
-    } else {
-      output.systemTimeS = systemTimeS + b.systemTimeS;
-      output.userTimeS = userTimeS + b.userTimeS;
-      output.childSystemTimeS = childSystemTimeS + b.childSystemTimeS;
-      output.childUserTimeS = childUserTimeS + b.childUserTimeS;
-    }
-
-    return output;
+    return GeneratedCpuMetrics.sum(this, b, output);
   }
 
   @Override
   public CpuMetrics diff(@Nullable CpuMetrics b, @Nullable CpuMetrics output) {
-    if (output == null) {
-      output = new CpuMetrics();
-    }
-
-    if (b == null) {
-      output.set(this);
-    } else {
-      output.systemTimeS = systemTimeS - b.systemTimeS;
-      output.userTimeS = userTimeS - b.userTimeS;
-      output.childSystemTimeS = childSystemTimeS - b.childSystemTimeS;
-      output.childUserTimeS = childUserTimeS - b.childUserTimeS;
-    }
-
-    return output;
+    return GeneratedCpuMetrics.diff(this, b, output);
   }
 
   @Override
   public boolean equals(@Nullable Object other) {
-    if (this == other) {
-      return true;
-    }
-    if (other == null || getClass() != other.getClass()) {
-      return false;
-    }
-
-    CpuMetrics that = (CpuMetrics) other;
-
-    return Double.compare(that.systemTimeS, systemTimeS) == 0
-        && Double.compare(that.userTimeS, userTimeS) == 0
-        && Double.compare(that.childSystemTimeS, childSystemTimeS) == 0
-        && Double.compare(that.childUserTimeS, childUserTimeS) == 0;
+    return GeneratedCpuMetrics.equals(this, other);
   }
 
   @Override
   public int hashCode() {
-    int result;
-    long temp;
-    temp = Double.doubleToLongBits(systemTimeS);
-    result = (int) (temp ^ (temp >>> 32));
-    temp = Double.doubleToLongBits(userTimeS);
-    result = 31 * result + (int) (temp ^ (temp >>> 32));
-    temp = Double.doubleToLongBits(childSystemTimeS);
-    result = 31 * result + (int) (temp ^ (temp >>> 32));
-    temp = Double.doubleToLongBits(childUserTimeS);
-    result = 31 * result + (int) (temp ^ (temp >>> 32));
-    return result;
+    return GeneratedCpuMetrics.hashCode(this);
   }
 
   @Override
   public String toString() {
-    return "CpuMetrics{"
-        + "userTimeS="
-        + userTimeS
-        + ", systemTimeS="
-        + systemTimeS
-        + ", childUserTimeS="
-        + childUserTimeS
-        + ", childSystemTimeS="
-        + childSystemTimeS
-        + '}';
+    return GeneratedCpuMetrics.toString(this);
   }
 }
@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.metrics.cpu;
+
+import androidx.annotation.Nullable;
+import com.facebook.battery.metrics.core.SystemMetrics;
+import com.facebook.infer.annotation.Nullsafe;
+import java.util.Arrays;
+
+/**
+ * Device wide cpu time per core, in clock ticks, read from the {@code cpuN} lines of {@code
+ * /proc/stat}: this is useful as context to tell whether the app's cpu time was spent on a
+ * saturated or an idle device.
+ *
+ * <p>Values are kept in a single flat array, {@link #FIELDS} entries per core, to avoid
+ * allocating per core objects. As with {@link CpuFrequencyMetrics}, the number of cores is fixed
+ * -- see {@link CpuFrequencyMetricsCollector#getTotalCores()}.
+ *
+ * <p>Utilization ratios only make sense over an interval: they should be read from the result of
+ * {@link #diff}.
+ */
+@Nullsafe(Nullsafe.Mode.LOCAL)
+public class SystemCpuMetrics extends SystemMetrics<SystemCpuMetrics> {
+
+  /** Indexes of the columns of each {@code cpuN} line, see {@code man 5 proc}. */
+  public static final int USER = 0;
+
+  public static final int NICE = 1;
+  public static final int SYSTEM = 2;
+  public static final int IDLE = 3;
+  public static final int IOWAIT = 4;
+  public static final int IRQ = 5;
+  public static final int SOFTIRQ = 6;
+  public static final int STEAL = 7;
+
+  /** Guest times are already accounted for in user and nice, and are skipped. */
+  public static final int FIELDS = 8;
+
+  /** Ticks spent in each state, indexed by {@code core * FIELDS + field}. */
+  public final long[] ticks;
+
+  public SystemCpuMetrics() {
+    ticks = new long[CpuFrequencyMetricsCollector.getTotalCores() * FIELDS];
+  }
+
+  public int getCores() {
+    return ticks.length / FIELDS;
+  }
+
+  public long getTicks(int core, int field) {
+    return ticks[core * FIELDS + field];
+  }
+
+  public long getTotalTicks(int core) {
+    long total = 0;
+    for (int i = core * FIELDS, end = i + FIELDS; i < end; i++) {
+      total += ticks[i];
+    }
+    return total;
+  }
+
+  /** Ticks the core wasn't idle or waiting for io. */
+  public long getBusyTicks(int core) {
+    return getTotalTicks(core) - getTicks(core, IDLE) - getTicks(core, IOWAIT);
+  }
+
+  /** Fraction of time the core was busy, or 0 if it was offline for the whole interval. */
+  public double getUtilization(int core) {
+    long total = getTotalTicks(core);
+    return total == 0 ? 0 : (double) getBusyTicks(core) / total;
+  }
+
+  /** Fraction of time all online cores were busy. */
+  public double getUtilization() {
+    long busy = 0;
+    long total = 0;
+    for (int core = 0, cores = getCores(); core < cores; core++) {
+      busy += getBusyTicks(core);
+      total += getTotalTicks(core);
+    }
+    return total == 0 ? 0 : (double) busy / total;
+  }
+
+  @Override
+  public SystemCpuMetrics set(SystemCpuMetrics b) {
+    System.arraycopy(b.ticks, 0, ticks, 0, ticks.length);
+    return this;
+  }
+
+  @Override
+  public SystemCpuMetrics sum(@Nullable SystemCpuMetrics b, @Nullable SystemCpuMetrics output) {
+    if (output == null) {
+      output = new SystemCpuMetrics();
+    }
+
+    if (b == null) {
+      output.set(this);
+    } else {
+      for (int i = 0; i < ticks.length; i++) {
+        output.ticks[i] = ticks[i] + b.ticks[i];
+      }
+    }
+
+    return output;
+  }
+
+  /**
+   * Subtracts b from the current value while being aware of cores going offline: offline cores are
+   * missing from /proc/stat (and are reported as 0) and their counters aren't guaranteed to be
+   * monotonic once they come back online. If any value of a core appears to have decreased, the
+   * current value is a better approximation than a negative difference.
+   */
+  @Override
+  public SystemCpuMetrics diff(@Nullable SystemCpuMetrics b, @Nullable SystemCpuMetrics output) {
+    if (output == null) {
+      output = new SystemCpuMetrics();
+    }
+
+    if (b == null) {
+      output.set(this);
+    } else {
+      for (int core = 0, cores = getCores(); core < cores; core++) {
+        int start = core * FIELDS;
+        int end = start + FIELDS;
+
+        boolean hasCoreReset = false;
+        for (int i = start; i < end; i++) {
+          if (ticks[i] < b.ticks[i]) {
+            hasCoreReset = true;
+            break;
+          }
+        }
+
+        for (int i = start; i < end; i++) {
+          output.ticks[i] = hasCoreReset ? ticks[i] : ticks[i] - b.ticks[i];
+        }
+      }
+    }
+
+    return output;
+  }
+
+  @Override
+  public boolean equals(@Nullable Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+
+    SystemCpuMetrics that = (SystemCpuMetrics) o;
+    return Arrays.equals(ticks, that.ticks);
+  }
+
+  @Override
+  public int hashCode() {
+    return Arrays.hashCode(ticks);
+  }
+
+  @Override
+  public String toString() {
+    return "SystemCpuMetrics{" + "ticks=" + Arrays.toString(ticks) + '}';
+  }
+}
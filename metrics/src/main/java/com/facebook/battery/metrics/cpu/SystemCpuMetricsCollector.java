@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.metrics.cpu;
+
+import static com.facebook.battery.metrics.core.Utilities.checkNotNull;
+
+import androidx.annotation.VisibleForTesting;
+import com.facebook.battery.metrics.core.ProcFileReader;
+import com.facebook.battery.metrics.core.SystemMetricsCollector;
+import com.facebook.battery.metrics.core.SystemMetricsLogger;
+import com.facebook.infer.annotation.Nullsafe;
+import com.facebook.infer.annotation.ThreadSafe;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+
+/**
+ * Collects device wide cpu time per core from the {@code cpuN} lines of {@code /proc/stat}.
+ *
+ * <p>Only the per core lines at the start of the file are parsed: reading stops at the first line
+ * that isn't a cpu line, which skips the (long) interrupt counts that follow.
+ *
+ * <p>Note that access to /proc/stat is blocked for apps by selinux on newer Android versions: in
+ * that case snapshots simply fail.
+ */
+@Nullsafe(Nullsafe.Mode.LOCAL)
+@ThreadSafe
+public class SystemCpuMetricsCollector extends SystemMetricsCollector<SystemCpuMetrics> {
+
+  private static final String TAG = "SystemCpuMetricsCollector";
+  private static final String PROC_STAT_FILE_PATH = "/proc/stat";
+  private static final String CPU_PREFIX = "cpu";
+  private static final int WORD_BUFFER_SIZE = 16;
+
+  @GuardedBy("this")
+  @Nullable
+  private ProcFileReader mReader;
+
+  @GuardedBy("this")
+  private CharBuffer mWord = CharBuffer.allocate(WORD_BUFFER_SIZE);
+
+  @Override
+  @ThreadSafe(enableChecks = false)
+  public synchronized boolean getSnapshot(SystemCpuMetrics snapshot) {
+    checkNotNull(snapshot, "Null value passed to getSnapshot!");
+
+    if (mReader == null) {
+      mReader = new ProcFileReader(getPath());
+    }
+
+    ProcFileReader reader = mReader.reset();
+    if (!reader.isValid()) {
+      return false;
+    }
+
+    // Cores that are offline don't have a line at all.
+    Arrays.fill(snapshot.ticks, 0);
+
+    boolean hasAnyCore = false;
+    try {
+      while (reader.hasNext()) {
+        mWord = reader.readWord(mWord);
+        if (!startsWithCpu(mWord)) {
+          break;
+        }
+
+        int core = parseCore(mWord);
+        // The aggregate "cpu" line, or a core beyond the fixed core count.
+        if (core < 0 || core >= snapshot.getCores()) {
+          reader.skipLine();
+          continue;
+        }
+
+        for (int i = core * SystemCpuMetrics.FIELDS, end = i + SystemCpuMetrics.FIELDS;
+            i < end;
+            i++) {
+          reader.skipSpaces();
+          snapshot.ticks[i] = reader.readNumber();
+        }
+        hasAnyCore = true;
+        reader.skipLine();
+      }
+    } catch (ProcFileReader.ParseException pe) {
+      SystemMetricsLogger.wtf(TAG, "Unable to parse cpu lines of /proc/stat", pe);
+      return false;
+    }
+
+    return hasAnyCore;
+  }
+
+  private static boolean startsWithCpu(CharBuffer word) {
+    if (word.remaining() < CPU_PREFIX.length()) {
+      return false;
+    }
+
+    for (int i = 0; i < CPU_PREFIX.length(); i++) {
+      if (word.get(i) != CPU_PREFIX.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Returns N for a {@code cpuN} word, or -1 for the aggregate line. */
+  private static int parseCore(CharBuffer word) {
+    int length = word.remaining();
+    if (length == CPU_PREFIX.length()) {
+      return -1;
+    }
+
+    int core = 0;
+    for (int i = CPU_PREFIX.length(); i < length; i++) {
+      char c = word.get(i);
+      if (!Character.isDigit(c)) {
+        throw new ProcFileReader.ParseException("Couldn't read core number!");
+      }
+      core = core * 10 + (c - '0');
+    }
+    return core;
+  }
+
+  @Override
+  public SystemCpuMetrics createMetrics() {
+    return new SystemCpuMetrics();
+  }
+
+  @VisibleForTesting
+  protected String getPath() {
+    return PROC_STAT_FILE_PATH;
+  }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.metrics.healthstats;
+
+import android.os.health.PackageHealthStats;
+import android.os.health.PidHealthStats;
+import android.os.health.ProcessHealthStats;
+import android.os.health.ServiceHealthStats;
+import android.os.health.UidHealthStats;
+import androidx.annotation.Nullable;
+import com.facebook.infer.annotation.Nullsafe;
+
+/**
+ * Names of the HealthStats keys, as declared by the android.os.health classes: keys are allocated
+ * sequentially from a base per class ({@code HealthKeys.BASE_UID} and so on), so a name is two
+ * array lookups away.
+ *
+ * <p>This replaces reading the constants through reflection, which was both slow and a large
+ * allocation the first time around. Keys added by later versions of Android are simply not named.
+ */
+@Nullsafe(Nullsafe.Mode.LOCAL)
+final class HealthStatsKeyNames {
+
+  private static final int BASE = 10000;
+
+  /** {@link UidHealthStats}, from 10001. */
+  private static final String[] UID = {
+    "MEASUREMENT_REALTIME_BATTERY_MS",
+    "MEASUREMENT_UPTIME_BATTERY_MS",
+    "MEASUREMENT_REALTIME_SCREEN_OFF_BATTERY_MS",
+    "MEASUREMENT_UPTIME_SCREEN_OFF_BATTERY_MS",
+    "TIMERS_WAKELOCKS_FULL",
+    "TIMERS_WAKELOCKS_PARTIAL",
+    "TIMERS_WAKELOCKS_WINDOW",
+    "TIMERS_WAKELOCKS_DRAW",
+    "TIMERS_SYNCS",
+    "TIMERS_JOBS",
+    "TIMER_GPS_SENSOR",
+    "TIMERS_SENSORS",
+    "STATS_PIDS",
+    "STATS_PROCESSES",
+    "STATS_PACKAGES",
+    "MEASUREMENT_WIFI_IDLE_MS",
+    "MEASUREMENT_WIFI_RX_MS",
+    "MEASUREMENT_WIFI_TX_MS",
+    "MEASUREMENT_WIFI_POWER_MAMS",
+    "MEASUREMENT_BLUETOOTH_IDLE_MS",
+    "MEASUREMENT_BLUETOOTH_RX_MS",
+    "MEASUREMENT_BLUETOOTH_TX_MS",
+    "MEASUREMENT_BLUETOOTH_POWER_MAMS",
+    "MEASUREMENT_MOBILE_IDLE_MS",
+    "MEASUREMENT_MOBILE_RX_MS",
+    "MEASUREMENT_MOBILE_TX_MS",
+    "MEASUREMENT_MOBILE_POWER_MAMS",
+    "MEASUREMENT_WIFI_RUNNING_MS",
+    "MEASUREMENT_WIFI_FULL_LOCK_MS",
+    "TIMER_WIFI_SCAN",
+    "MEASUREMENT_WIFI_MULTICAST_MS",
+    "TIMER_AUDIO",
+    "TIMER_VIDEO",
+    "TIMER_FLASHLIGHT",
+    "TIMER_CAMERA",
+    "TIMER_FOREGROUND_ACTIVITY",
+    "TIMER_BLUETOOTH_SCAN",
+    "TIMER_PROCESS_STATE_TOP_MS",
+    "TIMER_PROCESS_STATE_FOREGROUND_SERVICE_MS",
+    "TIMER_PROCESS_STATE_TOP_SLEEPING_MS",
+    "TIMER_PROCESS_STATE_FOREGROUND_MS",
+    "TIMER_PROCESS_STATE_BACKGROUND_MS",
+    "TIMER_PROCESS_STATE_CACHED_MS",
+    "TIMER_VIBRATOR",
+    "MEASUREMENT_OTHER_USER_ACTIVITY_COUNT",
+    "MEASUREMENT_BUTTON_USER_ACTIVITY_COUNT",
+    "MEASUREMENT_TOUCH_USER_ACTIVITY_COUNT",
+    "MEASUREMENT_MOBILE_RX_BYTES",
+    "MEASUREMENT_MOBILE_TX_BYTES",
+    "MEASUREMENT_WIFI_RX_BYTES",
+    "MEASUREMENT_WIFI_TX_BYTES",
+    "MEASUREMENT_BLUETOOTH_RX_BYTES",
+    "MEASUREMENT_BLUETOOTH_TX_BYTES",
+    "MEASUREMENT_MOBILE_RX_PACKETS",
+    "MEASUREMENT_MOBILE_TX_PACKETS",
+    "MEASUREMENT_WIFI_RX_PACKETS",
+    "MEASUREMENT_WIFI_TX_PACKETS",
+    "MEASUREMENT_BLUETOOTH_RX_PACKETS",
+    "MEASUREMENT_BLUETOOTH_TX_PACKETS",
+    null, // 10060 is unused
+    "TIMER_MOBILE_RADIO_ACTIVE",
+    "MEASUREMENT_USER_CPU_TIME_MS",
+    "MEASUREMENT_SYSTEM_CPU_TIME_MS",
+    "MEASUREMENT_CPU_POWER_MAMS",
+  };
+
+  /** {@link PidHealthStats}, from 20001. */
+  private static final String[] PID = {
+    "MEASUREMENT_WAKE_NESTING_COUNT",
+    "MEASUREMENT_WAKE_SUM_MS",
+    "MEASUREMENT_WAKE_START_MS",
+  };
+
+  /** {@link ProcessHealthStats}, from 30001. */
+  private static final String[] PROCESS = {
+    "MEASUREMENT_USER_TIME_MS",
+    "MEASUREMENT_SYSTEM_TIME_MS",
+    "MEASUREMENT_STARTS_COUNT",
+    "MEASUREMENT_CRASHES_COUNT",
+    "MEASUREMENT_ANR_COUNT",
+    "MEASUREMENT_FOREGROUND_MS",
+  };
+
+  /** {@link PackageHealthStats}, from 40001. */
+  private static final String[] PACKAGE = {
+    "STATS_SERVICES",
+    "MEASUREMENTS_WAKEUP_ALARMS_COUNT",
+  };
+
+  /** {@link ServiceHealthStats}, from 50001. */
+  private static final String[] SERVICE = {
+    "MEASUREMENT_START_SERVICE_COUNT",
+    "MEASUREMENT_LAUNCH_COUNT",
+  };
+
+  private static final String[][] NAMES = {UID, PID, PROCESS, PACKAGE, SERVICE};
+
+  private HealthStatsKeyNames() {}
+
+  /** @return the name of the key, or null if it isn't known */
+  static @Nullable String get(int key) {
+    int type = key / BASE - 1;
+    int index = key % BASE - 1;
+    if (type < 0 || type >= NAMES.length || index < 0 || index >= NAMES[type].length) {
+      return null;
+    }
+    return NAMES[type][index];
+  }
+}
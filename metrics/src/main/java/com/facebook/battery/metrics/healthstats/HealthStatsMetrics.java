@@ -9,10 +9,6 @@ package com.facebook.battery.metrics.healthstats;
 
 import android.os.Build;
 import android.os.health.HealthStats;
-import android.os.health.PackageHealthStats;
-import android.os.health.PidHealthStats;
-import android.os.health.ProcessHealthStats;
-import android.os.health.ServiceHealthStats;
 import android.os.health.TimerStat;
 import android.os.health.UidHealthStats;
 import android.util.Log;
@@ -21,11 +17,10 @@ import androidx.annotation.Nullable;
 import androidx.annotation.RequiresApi;
 import androidx.annotation.VisibleForTesting;
 import androidx.collection.ArrayMap;
+import com.facebook.battery.metrics.core.JsonWriter;
 import com.facebook.battery.metrics.core.SystemMetrics;
-import com.facebook.battery.metrics.core.SystemMetricsLogger;
 import com.facebook.battery.metrics.core.Utilities;
 import com.facebook.infer.annotation.Nullsafe;
-import java.lang.reflect.Field;
 import java.util.Map;
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -97,10 +92,13 @@ public class HealthStatsMetrics extends SystemMetrics<HealthStatsMetrics> {
       output.put("time_ms", timeMs);
       return output;
     }
+
+    public void toJSON(JsonWriter writer) {
+      writer.beginObject().name("count").value(count).name("time_ms").value(timeMs).endObject();
+    }
   }
 
   private static final String TAG = "HealthStatsMetrics";
-  private static final SparseArray<String> sKeyNames = new SparseArray<>();
 
   @Nullable public String dataType;
 
@@ -384,40 +382,8 @@ public class HealthStatsMetrics extends SystemMetrics<HealthStatsMetrics> {
   }
 
   private static String getKeyName(int key) {
-    if (sKeyNames.size() == 0) {
-      readKeyNames();
-    }
-    // NULLSAFE_FIXME[Return Not Nullable]
-    return sKeyNames.get(key, String.valueOf(key));
-  }
-
-  private static void readKeyNames() {
-    try {
-      Class[] healthStatsClasses = {
-        UidHealthStats.class,
-        PidHealthStats.class,
-        ProcessHealthStats.class,
-        PackageHealthStats.class,
-        ServiceHealthStats.class
-      };
-      Class annotationClass = Class.forName("android.os.health.HealthKeys$Constant");
-      for (Class clazz : healthStatsClasses) {
-        Field[] fields = clazz.getFields();
-        for (Field field : fields) {
-          if (field.isAnnotationPresent(annotationClass)) {
-            sKeyNames.put(field.getInt(null), field.getName());
-          }
-        }
-      }
-      return;
-    } catch (IllegalAccessException iae) {
-      SystemMetricsLogger.wtf(TAG, "Unable to read constant names", iae);
-    } catch (ClassNotFoundException cnfe) {
-      SystemMetricsLogger.wtf(TAG, "Unable to find constant annotation", cnfe);
-    }
-
-    // Mark as attempted and invalid
-    sKeyNames.put(-1, "Unable to read");
+    String name = HealthStatsKeyNames.get(key);
+    return name != null ? name : String.valueOf(key);
   }
 
   /** Converts to a JSON representation, stripping empty values */
@@ -525,6 +491,87 @@ public class HealthStatsMetrics extends SystemMetrics<HealthStatsMetrics> {
     }
   }
 
+  /**
+   * Writes the same representation as {@link #toJSONObject()}, without building it first: used to
+   * report large snapshots.
+   */
+  public void toJSON(JsonWriter writer) {
+    writer.beginObject();
+    writeMembers(writer);
+    writer.endObject();
+  }
+
+  private void writeMembers(JsonWriter writer) {
+    if (dataType != null) {
+      writer.name("type").value(dataType);
+    }
+
+    writer.name("measurement").beginObject();
+    for (int i = 0, count = measurement.size(); i < count; i++) {
+      long value = measurement.valueAt(i);
+      if (value != 0) {
+        writer.name(getKeyName(measurement.keyAt(i))).value(value);
+      }
+    }
+    writer.endOptionalObject();
+
+    writer.name("timer").beginObject();
+    for (int i = 0, count = timer.size(); i < count; i++) {
+      TimerMetrics value = timer.valueAt(i);
+      if (value.count != 0 || value.timeMs != 0) {
+        writer.name(getKeyName(timer.keyAt(i)));
+        value.toJSON(writer);
+      }
+    }
+    writer.endOptionalObject();
+
+    writer.name("measurements").beginObject();
+    for (int i = 0, count = measurements.size(); i < count; i++) {
+      ArrayMap<String, Long> value = measurements.valueAt(i);
+      writer.name(getKeyName(measurements.keyAt(i))).beginObject();
+      for (int j = 0, valueSize = value.size(); j < valueSize; j++) {
+        // NULLSAFE_FIXME[Nullable Dereference]
+        long v = value.valueAt(j);
+        if (v != 0) {
+          writer.name(value.keyAt(j)).value(v);
+        }
+      }
+      writer.endOptionalObject();
+    }
+    writer.endOptionalObject();
+
+    writer.name("timers").beginObject();
+    for (int i = 0, count = timers.size(); i < count; i++) {
+      ArrayMap<String, TimerMetrics> value = timers.valueAt(i);
+      writer.name(getKeyName(timers.keyAt(i))).beginObject();
+      for (int j = 0, valueCount = value.size(); j < valueCount; j++) {
+        TimerMetrics v = value.valueAt(j);
+        // NULLSAFE_FIXME[Nullable Dereference]
+        if (v.count != 0 || v.timeMs != 0) {
+          writer.name(value.keyAt(j));
+          // NULLSAFE_FIXME[Nullable Dereference]
+          v.toJSON(writer);
+        }
+      }
+      writer.endOptionalObject();
+    }
+    writer.endOptionalObject();
+
+    writer.name("stats").beginObject();
+    for (int i = 0, count = stats.size(); i < count; i++) {
+      ArrayMap<String, HealthStatsMetrics> value = stats.valueAt(i);
+      writer.name(getKeyName(stats.keyAt(i))).beginObject();
+      for (int j = 0, valueCount = value.size(); j < valueCount; j++) {
+        writer.name(value.keyAt(j)).beginObject();
+        // NULLSAFE_FIXME[Nullable Dereference]
+        value.valueAt(j).writeMembers(writer);
+        writer.endOptionalObject();
+      }
+      writer.endOptionalObject();
+    }
+    writer.endOptionalObject();
+  }
+
   @Override
   public boolean equals(@Nullable Object o) {
     if (this == o) return true;
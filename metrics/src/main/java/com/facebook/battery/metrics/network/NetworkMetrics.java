@@ -8,6 +8,7 @@
 package com.facebook.battery.metrics.network;
 
 import androidx.annotation.Nullable;
+import com.facebook.battery.codegen.Monotonic;
 import com.facebook.battery.metrics.core.SystemMetrics;
 import com.facebook.infer.annotation.Nullsafe;
 
@@ -20,93 +21,47 @@ import com.facebook.infer.annotation.Nullsafe;
 @Nullsafe(Nullsafe.Mode.LOCAL)
 public class NetworkMetrics extends SystemMetrics<NetworkMetrics> {
 
+  @Monotonic
   public long mobileBytesTx;
+
+  @Monotonic
   public long mobileBytesRx;
+
+  @Monotonic
   public long wifiBytesTx;
+
+  @Monotonic
   public long wifiBytesRx;
 
   public NetworkMetrics() {}
 
   @Override
-  public NetworkMetrics sum(@Nullable NetworkMetrics b, @Nullable NetworkMetrics output) {
-    if (output == null) {
-      output = new NetworkMetrics();
-    }
-    if (b == null) {
-      output.set(this);
-    } else {
-      output.mobileBytesTx = mobileBytesTx + b.mobileBytesTx;
-      output.mobileBytesRx = mobileBytesRx + b.mobileBytesRx;
-      output.wifiBytesTx = wifiBytesTx + b.wifiBytesTx;
-      output.wifiBytesRx = wifiBytesRx + b.wifiBytesRx;
-    }
-
-    return output;
+  public NetworkMetrics set(NetworkMetrics metrics) {
+    return GeneratedNetworkMetrics.set(this, metrics);
   }
 
   @Override
-  public NetworkMetrics diff(@Nullable NetworkMetrics b, @Nullable NetworkMetrics output) {
-    if (output == null) {
-      output = new NetworkMetrics();
-    }
-    if (b == null) {
-      output.set(this);
-    } else {
-      output.mobileBytesTx = mobileBytesTx - b.mobileBytesTx;
-      output.mobileBytesRx = mobileBytesRx - b.mobileBytesRx;
-      output.wifiBytesTx = wifiBytesTx - b.wifiBytesTx;
-      output.wifiBytesRx = wifiBytesRx - b.wifiBytesRx;
-    }
-
-    return output;
+  public NetworkMetrics sum(@Nullable NetworkMetrics b, @Nullable NetworkMetrics output) {
+    return GeneratedNetworkMetrics.sum(this, b, output);
   }
 
   @Override
-  public NetworkMetrics set(NetworkMetrics b) {
-    mobileBytesRx = b.mobileBytesRx;
-    mobileBytesTx = b.mobileBytesTx;
-    wifiBytesRx = b.wifiBytesRx;
-    wifiBytesTx = b.wifiBytesTx;
-    return this;
+  public NetworkMetrics diff(@Nullable NetworkMetrics b, @Nullable NetworkMetrics output) {
+    return GeneratedNetworkMetrics.diff(this, b, output);
   }
 
   @Override
   public boolean equals(@Nullable Object other) {
-    if (this == other) {
-      return true;
-    }
-    if (other == null || getClass() != other.getClass()) {
-      return false;
-    }
-
-    NetworkMetrics that = (NetworkMetrics) other;
-
-    return mobileBytesTx == that.mobileBytesTx
-        && mobileBytesRx == that.mobileBytesRx
-        && wifiBytesTx == that.wifiBytesTx
-        && wifiBytesRx == that.wifiBytesRx;
+    return GeneratedNetworkMetrics.equals(this, other);
   }
 
   @Override
   public int hashCode() {
-    int result = (int) (mobileBytesTx ^ (mobileBytesTx >>> 32));
-    result = 31 * result + (int) (mobileBytesRx ^ (mobileBytesRx >>> 32));
-    result = 31 * result + (int) (wifiBytesTx ^ (wifiBytesTx >>> 32));
-    result = 31 * result + (int) (wifiBytesRx ^ (wifiBytesRx >>> 32));
-    return result;
+    return GeneratedNetworkMetrics.hashCode(this);
   }
 
   @Override
   public String toString() {
-    return "NetworkMetrics{"
-        + "mobileBytesTx="
-        + mobileBytesTx
-        + ", mobileBytesRx="
-        + mobileBytesRx
-        + ", wifiBytesTx="
-        + wifiBytesTx
-        + ", wifiBytesRx="
-        + wifiBytesRx
-        + '}';
+    return GeneratedNetworkMetrics.toString(this);
   }
 }
@@ -0,0 +1,204 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.metrics.overhead;
+
+import androidx.annotation.Nullable;
+import androidx.collection.SimpleArrayMap;
+import com.facebook.battery.codegen.Monotonic;
+import com.facebook.battery.metrics.core.JsonWriter;
+import com.facebook.battery.metrics.core.SystemMetrics;
+import com.facebook.infer.annotation.Nullsafe;
+
+/**
+ * The cost of taking snapshots with the tracked collectors: how often they were called, how long
+ * they took and allocated, and how often they failed.
+ *
+ * <p>With attribution enabled, the cost of each collector is also kept separately, keyed by the
+ * name it was tracked with.
+ */
+@Nullsafe(Nullsafe.Mode.LOCAL)
+public class CollectorOverheadMetrics extends SystemMetrics<CollectorOverheadMetrics> {
+
+  /** Calls to getSnapshot */
+  @Monotonic(key = "collector_snapshot_count")
+  public long snapshotCount;
+
+  /** Snapshots that threw an exception */
+  @Monotonic(key = "collector_failure_count")
+  public long failureCount;
+
+  /** Snapshots that returned false */
+  @Monotonic(key = "collector_invalid_snapshot_count")
+  public long invalidSnapshotCount;
+
+  @Monotonic(key = "collector_wall_time_ns")
+  public long wallTimeNs;
+
+  @Monotonic(key = "collector_thread_cpu_time_ns")
+  public long threadCpuTimeNs;
+
+  /** Only measured once enabled, see {@link OverheadTracker#setCountsAllocations} */
+  @Monotonic(key = "collector_allocated_bytes")
+  public long allocatedBytes;
+
+  /** Whether this object also keeps the cost of each collector */
+  public boolean isAttributionEnabled;
+
+  /** Attribution data: these don't have attribution themselves */
+  public final SimpleArrayMap<String, CollectorOverheadMetrics> collectors =
+      new SimpleArrayMap<>();
+
+  public CollectorOverheadMetrics() {
+    this(false);
+  }
+
+  public CollectorOverheadMetrics(boolean isAttributionEnabled) {
+    this.isAttributionEnabled = isAttributionEnabled;
+  }
+
+  @Override
+  public CollectorOverheadMetrics set(CollectorOverheadMetrics metrics) {
+    GeneratedCollectorOverheadMetrics.set(this, metrics);
+    if (isAttributionEnabled) {
+      combineAttribution(metrics, null, false);
+    }
+    return this;
+  }
+
+  @Override
+  public CollectorOverheadMetrics sum(
+      @Nullable CollectorOverheadMetrics b, @Nullable CollectorOverheadMetrics output) {
+    if (output == null) {
+      output = new CollectorOverheadMetrics(isAttributionEnabled);
+    }
+    GeneratedCollectorOverheadMetrics.sum(this, b, output);
+    if (output.isAttributionEnabled) {
+      output.combineAttribution(this, b, false);
+    }
+    return output;
+  }
+
+  @Override
+  public CollectorOverheadMetrics diff(
+      @Nullable CollectorOverheadMetrics b, @Nullable CollectorOverheadMetrics output) {
+    if (output == null) {
+      output = new CollectorOverheadMetrics(isAttributionEnabled);
+    }
+    GeneratedCollectorOverheadMetrics.diff(this, b, output);
+    if (output.isAttributionEnabled) {
+      output.combineAttribution(this, b, true);
+    }
+    return output;
+  }
+
+  /**
+   * Sets the attribution of this to a + b, or a - b: collectors missing from either side count as
+   * zero, and only collectors of a are kept in diffs. Safe to call with this as a or b.
+   */
+  private void combineAttribution(
+      CollectorOverheadMetrics a, @Nullable CollectorOverheadMetrics b, boolean subtract) {
+    for (int i = collectors.size() - 1; i >= 0; i--) {
+      String name = collectors.keyAt(i);
+      if (!a.collectors.containsKey(name)
+          && (subtract || b == null || !b.collectors.containsKey(name))) {
+        collectors.removeAt(i);
+      }
+    }
+
+    for (int i = 0, size = a.collectors.size(); i < size; i++) {
+      String name = a.collectors.keyAt(i);
+      CollectorOverheadMetrics value = a.collectors.valueAt(i);
+      CollectorOverheadMetrics other = b == null ? null : b.collectors.get(name);
+      CollectorOverheadMetrics output = getOrCreateCollector(name);
+      if (subtract) {
+        value.diff(other, output);
+      } else {
+        value.sum(other, output);
+      }
+    }
+
+    if (b != null && !subtract) {
+      for (int i = 0, size = b.collectors.size(); i < size; i++) {
+        String name = b.collectors.keyAt(i);
+        if (!a.collectors.containsKey(name)) {
+          getOrCreateCollector(name).set(b.collectors.valueAt(i));
+        }
+      }
+    }
+  }
+
+  /** Returns the attributed cost of the named collector, creating it if needed. */
+  public CollectorOverheadMetrics getOrCreateCollector(String name) {
+    CollectorOverheadMetrics metrics = collectors.get(name);
+    if (metrics == null) {
+      metrics = new CollectorOverheadMetrics();
+      collectors.put(name, metrics);
+    }
+    return metrics;
+  }
+
+  @Override
+  public boolean equals(@Nullable Object other) {
+    if (!GeneratedCollectorOverheadMetrics.equals(this, other)) {
+      return false;
+    }
+    CollectorOverheadMetrics that = (CollectorOverheadMetrics) other;
+    return isAttributionEnabled == that.isAttributionEnabled && collectors.equals(that.collectors);
+  }
+
+  @Override
+  public int hashCode() {
+    int result = GeneratedCollectorOverheadMetrics.hashCode(this);
+    result = 31 * result + (isAttributionEnabled ? 1 : 0);
+    result = 31 * result + collectors.hashCode();
+    return result;
+  }
+
+  @Override
+  public String toString() {
+    return GeneratedCollectorOverheadMetrics.toString(this)
+        + (isAttributionEnabled ? " collectors=" + collectors : "");
+  }
+
+  /**
+   * Writes the cost of each collector as a json object keyed by the collector names.
+   *
+   * @return false if attribution isn't enabled, and nothing was written
+   */
+  public boolean attributionToJSON(JsonWriter writer) {
+    if (!isAttributionEnabled) {
+      return false;
+    }
+
+    writer.beginObject();
+    for (int i = 0, size = collectors.size(); i < size; i++) {
+      CollectorOverheadMetrics value = collectors.valueAt(i);
+      if (value.snapshotCount == 0) {
+        continue;
+      }
+      writer
+          .name(collectors.keyAt(i))
+          .beginObject()
+          .name("snapshots")
+          .value(value.snapshotCount)
+          .name("failures")
+          .value(value.failureCount)
+          .name("invalid")
+          .value(value.invalidSnapshotCount)
+          .name("wall_time_ns")
+          .value(value.wallTimeNs)
+          .name("thread_cpu_time_ns")
+          .value(value.threadCpuTimeNs)
+          .name("allocated_bytes")
+          .value(value.allocatedBytes)
+          .endObject();
+    }
+    writer.endObject();
+    return true;
+  }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.metrics.overhead;
+
+import static com.facebook.battery.metrics.core.Utilities.checkNotNull;
+
+import androidx.collection.SimpleArrayMap;
+import com.facebook.battery.metrics.core.SystemMetrics;
+import com.facebook.battery.metrics.core.SystemMetricsCollector;
+import com.facebook.infer.annotation.Nullsafe;
+import com.facebook.infer.annotation.ThreadSafe;
+
+/**
+ * Collects the cost of the collectors it tracks, to check that measuring battery usage doesn't
+ * meaningfully add to it.
+ *
+ * <p>Collectors can be tracked with {@link #track} directly, or all children of a {@link
+ * com.facebook.battery.metrics.composite.CompositeMetricsCollector} at once with {@link
+ * com.facebook.battery.metrics.composite.CompositeMetricsCollector.Builder#trackOverhead}. The
+ * totals are cumulative like any other collector's, and are attributed to each collector's name
+ * when attribution is enabled.
+ *
+ * <p>Collectors tracked by metrics class are attributed to the fully qualified class name, which R8
+ * may rename: use {@link #setName} to give them a stable name instead. Trackers that end up with
+ * the same name are summed up.
+ */
+@Nullsafe(Nullsafe.Mode.LOCAL)
+@ThreadSafe
+public class CollectorOverheadMetricsCollector
+    extends SystemMetricsCollector<CollectorOverheadMetrics> {
+
+  private final boolean mIsAttributionEnabled;
+  private final SimpleArrayMap<String, OverheadTracker> mTrackers = new SimpleArrayMap<>();
+  private final SimpleArrayMap<Class<?>, OverheadTracker> mClassTrackers = new SimpleArrayMap<>();
+  private final SimpleArrayMap<Class<?>, String> mNames = new SimpleArrayMap<>();
+  private boolean mCountsAllocations;
+
+  public CollectorOverheadMetricsCollector() {
+    this(false);
+  }
+
+  public CollectorOverheadMetricsCollector(boolean isAttributionEnabled) {
+    mIsAttributionEnabled = isAttributionEnabled;
+  }
+
+  /** Returns the tracker for the collector with that name, creating it if needed. */
+  public synchronized OverheadTracker getTracker(String name) {
+    OverheadTracker tracker = mTrackers.get(name);
+    if (tracker == null) {
+      tracker = new OverheadTracker();
+      tracker.setCountsAllocations(mCountsAllocations);
+      mTrackers.put(name, tracker);
+    }
+    return tracker;
+  }
+
+  /** Returns the tracker for the collector of that metrics class, creating it if needed. */
+  public synchronized OverheadTracker getTracker(Class<? extends SystemMetrics> metricsClass) {
+    OverheadTracker tracker = mClassTrackers.get(metricsClass);
+    if (tracker == null) {
+      tracker = new OverheadTracker();
+      tracker.setCountsAllocations(mCountsAllocations);
+      mClassTrackers.put(metricsClass, tracker);
+    }
+    return tracker;
+  }
+
+  /** Attributes the cost of the collector of that metrics class to the given name. */
+  public synchronized CollectorOverheadMetricsCollector setName(
+      Class<? extends SystemMetrics> metricsClass, String name) {
+    mNames.put(metricsClass, name);
+    return this;
+  }
+
+  /**
+   * Also records the bytes allocated by the tracked collectors, which is only meant for debug
+   * builds: see {@link OverheadTracker#setCountsAllocations}. Disabled by default.
+   */
+  public synchronized CollectorOverheadMetricsCollector setCountsAllocations(
+      boolean countsAllocations) {
+    mCountsAllocations = countsAllocations;
+    for (int i = 0, size = mTrackers.size(); i < size; i++) {
+      mTrackers.valueAt(i).setCountsAllocations(countsAllocations);
+    }
+    for (int i = 0, size = mClassTrackers.size(); i < size; i++) {
+      mClassTrackers.valueAt(i).setCountsAllocations(countsAllocations);
+    }
+    return this;
+  }
+
+  /** Wraps the collector so that the cost of its snapshots is recorded under that name. */
+  public <T extends SystemMetrics<T>> OverheadTrackingCollector<T> track(
+      String name, SystemMetricsCollector<T> collector) {
+    return new OverheadTrackingCollector<>(collector, getTracker(name));
+  }
+
+  @Override
+  @ThreadSafe(enableChecks = false)
+  public synchronized boolean getSnapshot(CollectorOverheadMetrics snapshot) {
+    checkNotNull(snapshot, "Null value passed to getSnapshot!");
+    clear(snapshot);
+    // Attributed entries are reused across snapshots: trackers are never removed
+    for (int i = 0, size = snapshot.collectors.size(); i < size; i++) {
+      clear(snapshot.collectors.valueAt(i));
+    }
+    for (int i = 0, size = mTrackers.size(); i < size; i++) {
+      addTo(snapshot, mTrackers.keyAt(i), mTrackers.valueAt(i));
+    }
+    for (int i = 0, size = mClassTrackers.size(); i < size; i++) {
+      Class<?> metricsClass = mClassTrackers.keyAt(i);
+      String name = mNames.get(metricsClass);
+      addTo(snapshot, name != null ? name : metricsClass.getName(), mClassTrackers.valueAt(i));
+    }
+    return true;
+  }
+
+  private static void addTo(
+      CollectorOverheadMetrics snapshot, String name, OverheadTracker tracker) {
+    tracker.addTo(snapshot);
+    if (snapshot.isAttributionEnabled) {
+      tracker.addTo(snapshot.getOrCreateCollector(name));
+    }
+  }
+
+  private static void clear(CollectorOverheadMetrics metrics) {
+    metrics.snapshotCount = 0;
+    metrics.failureCount = 0;
+    metrics.invalidSnapshotCount = 0;
+    metrics.wallTimeNs = 0;
+    metrics.threadCpuTimeNs = 0;
+    metrics.allocatedBytes = 0;
+  }
+
+  @Override
+  public CollectorOverheadMetrics createMetrics() {
+    return new CollectorOverheadMetrics(mIsAttributionEnabled);
+  }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.metrics.overhead;
+
+import android.os.Debug;
+import com.facebook.battery.metrics.core.SystemMetrics;
+import com.facebook.battery.metrics.core.SystemMetricsCollector;
+import com.facebook.infer.annotation.Nullsafe;
+import com.facebook.infer.annotation.ThreadSafe;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures the cost of the snapshots taken through it, accumulating them in atomic counters so
+ * that recording doesn't allocate or lock, and snapshots can be taken from any thread.
+ *
+ * <p>Allocated bytes are only recorded once enabled with {@link #setCountsAllocations}.
+ */
+@Nullsafe(Nullsafe.Mode.LOCAL)
+@ThreadSafe
+public final class OverheadTracker {
+
+  private final AtomicLong mSnapshotCount = new AtomicLong();
+  private final AtomicLong mFailureCount = new AtomicLong();
+  private final AtomicLong mInvalidSnapshotCount = new AtomicLong();
+  private final AtomicLong mWallTimeNs = new AtomicLong();
+  private final AtomicLong mThreadCpuTimeNs = new AtomicLong();
+  private final AtomicLong mAllocatedBytes = new AtomicLong();
+  private volatile boolean mCountsAllocations;
+
+  /**
+   * Also records the bytes allocated by snapshots. These come from {@link
+   * Debug#getThreadAllocSize()}, which is always 0 unless the app runs between {@link
+   * Debug#startAllocCounting()} and {@link Debug#stopAllocCounting()}: that slows down the whole
+   * app, so this is only meant for debug builds that enable it.
+   */
+  public void setCountsAllocations(boolean countsAllocations) {
+    mCountsAllocations = countsAllocations;
+  }
+
+  /**
+   * Takes a snapshot with the collector and records its cost: exceptions are counted as failures
+   * and rethrown.
+   */
+  public <T extends SystemMetrics<T>> boolean getSnapshot(
+      SystemMetricsCollector<T> collector, T snapshot) {
+    boolean countsAllocations = mCountsAllocations;
+    long startThreadCpuTimeNs = Debug.threadCpuTimeNanos();
+    long startAllocatedBytes = countsAllocations ? getThreadAllocSize() : 0;
+    long startWallTimeNs = System.nanoTime();
+    boolean result = false;
+    boolean failed = true;
+    try {
+      result = collector.getSnapshot(snapshot);
+      failed = false;
+      return result;
+    } finally {
+      mWallTimeNs.addAndGet(System.nanoTime() - startWallTimeNs);
+      // threadCpuTimeNanos returns -1 when it isn't supported
+      if (startThreadCpuTimeNs >= 0) {
+        mThreadCpuTimeNs.addAndGet(Debug.threadCpuTimeNanos() - startThreadCpuTimeNs);
+      }
+      if (countsAllocations) {
+        mAllocatedBytes.addAndGet(getThreadAllocSize() - startAllocatedBytes);
+      }
+      mSnapshotCount.incrementAndGet();
+      if (failed) {
+        mFailureCount.incrementAndGet();
+      } else if (!result) {
+        mInvalidSnapshotCount.incrementAndGet();
+      }
+    }
+  }
+
+  /**
+   * Adds the cost recorded so far to the metrics: the counters are read one at a time, so a
+   * concurrent snapshot may only be partially included.
+   */
+  public void addTo(CollectorOverheadMetrics metrics) {
+    metrics.snapshotCount += mSnapshotCount.get();
+    metrics.failureCount += mFailureCount.get();
+    metrics.invalidSnapshotCount += mInvalidSnapshotCount.get();
+    metrics.wallTimeNs += mWallTimeNs.get();
+    metrics.threadCpuTimeNs += mThreadCpuTimeNs.get();
+    metrics.allocatedBytes += mAllocatedBytes.get();
+  }
+
+  // Deprecated along with allocation counting, but its replacement, Debug.getRuntimeStat, only
+  // has process wide totals: they would include the allocations of every other thread.
+  @SuppressWarnings("deprecation")
+  private static long getThreadAllocSize() {
+    return Debug.getThreadAllocSize();
+  }
+}
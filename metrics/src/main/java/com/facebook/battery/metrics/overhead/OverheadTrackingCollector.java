@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.metrics.overhead;
+
+import com.facebook.battery.metrics.core.SystemMetrics;
+import com.facebook.battery.metrics.core.SystemMetricsCollector;
+import com.facebook.infer.annotation.Nullsafe;
+import com.facebook.infer.annotation.ThreadSafe;
+
+/**
+ * Wraps a collector to record the cost of its snapshots, for collectors that are used outside a
+ * {@link com.facebook.battery.metrics.composite.CompositeMetricsCollector}: see {@link
+ * CollectorOverheadMetricsCollector#track}.
+ */
+@Nullsafe(Nullsafe.Mode.LOCAL)
+@ThreadSafe
+public class OverheadTrackingCollector<T extends SystemMetrics<T>>
+    extends SystemMetricsCollector<T> {
+
+  private final SystemMetricsCollector<T> mCollector;
+  private final OverheadTracker mTracker;
+
+  public OverheadTrackingCollector(SystemMetricsCollector<T> collector, OverheadTracker tracker) {
+    mCollector = collector;
+    mTracker = tracker;
+  }
+
+  public SystemMetricsCollector<T> getCollector() {
+    return mCollector;
+  }
+
+  @Override
+  @ThreadSafe(enableChecks = false)
+  public boolean getSnapshot(T snapshot) {
+    return mTracker.getSnapshot(mCollector, snapshot);
+  }
+
+  @Override
+  public T createMetrics() {
+    return mCollector.createMetrics();
+  }
+}
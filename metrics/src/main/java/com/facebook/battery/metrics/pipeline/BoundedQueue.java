@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.metrics.pipeline;
+
+import androidx.annotation.Nullable;
+import com.facebook.infer.annotation.Nullsafe;
+import com.facebook.infer.annotation.ThreadSafe;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded, lock free, multiple producer and consumer FIFO queue: an array of slots, each with a
+ * sequence number telling whether it's free or holds an item for the current lap (Dmitry Vyukov's
+ * bounded MPMC queue).
+ *
+ * <p>Neither offering nor polling allocates.
+ */
+@Nullsafe(Nullsafe.Mode.LOCAL)
+@ThreadSafe
+final class BoundedQueue<E> {
+
+  private final int mMask;
+  private final AtomicLongArray mSequences;
+  private final AtomicReferenceArray<E> mItems;
+  private final AtomicLong mTail = new AtomicLong();
+  private final AtomicLong mHead = new AtomicLong();
+
+  /** @param capacity minimum capacity, rounded up to a power of 2 */
+  BoundedQueue(int capacity) {
+    if (capacity < 1 || capacity > 1 << 30) {
+      throw new IllegalArgumentException("Invalid capacity: " + capacity);
+    }
+    int size = Integer.highestOneBit(capacity);
+    if (size < capacity) {
+      size <<= 1;
+    }
+    mMask = size - 1;
+    mSequences = new AtomicLongArray(size);
+    mItems = new AtomicReferenceArray<>(size);
+    for (int i = 0; i < size; i++) {
+      mSequences.set(i, i);
+    }
+  }
+
+  int capacity() {
+    return mMask + 1;
+  }
+
+  /** @return false if the queue is full */
+  boolean offer(E item) {
+    long tail = mTail.get();
+    while (true) {
+      int index = (int) tail & mMask;
+      long lag = mSequences.get(index) - tail;
+      if (lag == 0) {
+        if (mTail.compareAndSet(tail, tail + 1)) {
+          mItems.lazySet(index, item);
+          // Publishes the item to consumers
+          mSequences.set(index, tail + 1);
+          return true;
+        }
+      } else if (lag < 0) {
+        // The slot still holds an item from the previous lap
+        return false;
+      }
+      tail = mTail.get();
+    }
+  }
+
+  /** @return the oldest item, or null if the queue is empty */
+  @Nullable
+  E poll() {
+    long head = mHead.get();
+    while (true) {
+      int index = (int) head & mMask;
+      long lag = mSequences.get(index) - (head + 1);
+      if (lag == 0) {
+        if (mHead.compareAndSet(head, head + 1)) {
+          E item = mItems.get(index);
+          mItems.lazySet(index, null);
+          // Frees the slot for the next lap
+          mSequences.set(index, head + mMask + 1);
+          return item;
+        }
+      } else if (lag < 0) {
+        return null;
+      }
+      head = mHead.get();
+    }
+  }
+
+  boolean isEmpty() {
+    return mHead.get() >= mTail.get();
+  }
+}
@@ -0,0 +1,372 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.metrics.pipeline;
+
+import androidx.annotation.Nullable;
+import com.facebook.battery.metrics.core.SystemMetrics;
+import com.facebook.battery.metrics.core.SystemMetricsCollector;
+import com.facebook.battery.metrics.core.SystemMetricsLogger;
+import com.facebook.battery.metrics.core.VisibleToAvoidSynthetics;
+import com.facebook.infer.annotation.Nullsafe;
+import com.facebook.infer.annotation.ThreadSafe;
+import java.io.Closeable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Moves everything but taking snapshots off the caller's thread: callers only snapshot into a
+ * pooled metrics object and queue it, while a single background worker computes the diffs between
+ * consecutive snapshots and hands them to a {@link Listener}, e.g. to report and persist them.
+ *
+ * <pre>{@code
+ * MetricsPipeline<CompositeMetrics> pipeline =
+ *     new MetricsPipeline<>(collector, 8, OverflowPolicy.MERGE, listener);
+ * pipeline.snapshot(null); // baseline
+ * ...
+ * pipeline.snapshot("foreground"); // listener.onDiff(diff, "foreground"), on the worker
+ * }</pre>
+ *
+ * <p>Snapshots are cumulative, so the worker falling behind never loses data: consecutive diffs
+ * with the same tag that are waiting together are summed into a single call to the listener. When
+ * all the pooled snapshots are waiting, the {@link OverflowPolicy} decides what happens to new
+ * ones.
+ *
+ * <p>Snapshots are taken and queued under a lock, so that concurrent callers can't queue them out
+ * of order: the worker would compute negative diffs otherwise.
+ *
+ * <p>The listener is only ever called from one thread at a time, and must not keep the diff: it's
+ * reused. Call {@link #close} once done with the pipeline to stop its background thread.
+ */
+@Nullsafe(Nullsafe.Mode.LOCAL)
+@ThreadSafe
+public class MetricsPipeline<T extends SystemMetrics<T>> implements Closeable {
+
+  private static final String TAG = "MetricsPipeline";
+
+  public interface Listener<T> {
+    /**
+     * @param diff the change since the previous snapshot, or the sum of several diffs if the
+     *     worker fell behind
+     * @param tag the tag of the last snapshot of the diff
+     */
+    void onDiff(T diff, @Nullable String tag);
+  }
+
+  public enum OverflowPolicy {
+    /**
+     * Drops new snapshots: the interval they end is reported as part of the next accepted one, and
+     * nothing is reported for it if no snapshot is accepted afterwards.
+     */
+    DROP,
+
+    /**
+     * Keeps the latest of the overflowing snapshots in a spare, overwriting it with each new one:
+     * it is processed as soon as the worker catches up, as a single diff tagged with the latest
+     * tag.
+     */
+    MERGE,
+  }
+
+  private static final class Entry<T> {
+    final T metrics;
+    @Nullable String tag;
+
+    Entry(T metrics) {
+      this.metrics = metrics;
+    }
+  }
+
+  private final SystemMetricsCollector<T> mCollector;
+  private final OverflowPolicy mOverflowPolicy;
+  private final Listener<T> mListener;
+  private final Executor mExecutor;
+  private final @Nullable ExecutorService mOwnedExecutor;
+
+  private final BoundedQueue<Entry<T>> mPool;
+  private final BoundedQueue<Entry<T>> mQueue;
+  private final AtomicReference<Entry<T>> mSpare = new AtomicReference<>();
+  private final AtomicReference<Entry<T>> mOverflow = new AtomicReference<>();
+  private final AtomicBoolean mScheduled = new AtomicBoolean();
+  private final AtomicLong mDroppedCount = new AtomicLong();
+  private final AtomicLong mMergedCount = new AtomicLong();
+  private volatile boolean mIsClosed;
+
+  private final Runnable mDrain =
+      new Runnable() {
+        @Override
+        public void run() {
+          drain();
+        }
+      };
+
+  // Only accessed by the worker
+  private @Nullable Entry<T> mBaseline;
+  private T mDiff;
+  private T mBatch;
+  private T mBatchTemp;
+  private @Nullable String mBatchTag;
+  private int mBatchSize;
+
+  /** Uses its own background thread as the worker. */
+  public MetricsPipeline(
+      SystemMetricsCollector<T> collector,
+      int capacity,
+      OverflowPolicy overflowPolicy,
+      Listener<T> listener) {
+    this(collector, capacity, overflowPolicy, listener, createExecutor(), true);
+  }
+
+  /**
+   * @param capacity number of pooled snapshots, which bounds how many can wait for the worker
+   * @param executor runs the worker: it must not run tasks concurrently
+   */
+  public MetricsPipeline(
+      SystemMetricsCollector<T> collector,
+      int capacity,
+      OverflowPolicy overflowPolicy,
+      Listener<T> listener,
+      Executor executor) {
+    this(collector, capacity, overflowPolicy, listener, executor, false);
+  }
+
+  private MetricsPipeline(
+      SystemMetricsCollector<T> collector,
+      int capacity,
+      OverflowPolicy overflowPolicy,
+      Listener<T> listener,
+      Executor executor,
+      boolean ownsExecutor) {
+    if (capacity < 2) {
+      throw new IllegalArgumentException("Capacity should be at least 2: " + capacity);
+    }
+    mCollector = collector;
+    mOverflowPolicy = overflowPolicy;
+    mListener = listener;
+    mExecutor = executor;
+    mOwnedExecutor = ownsExecutor ? (ExecutorService) executor : null;
+
+    // Both queues can hold every entry, so that queuing one never fails
+    mPool = new BoundedQueue<>(capacity + 1);
+    mQueue = new BoundedQueue<>(capacity + 1);
+    for (int i = 0; i < capacity; i++) {
+      mPool.offer(new Entry<>(collector.createMetrics()));
+    }
+    mSpare.set(new Entry<>(collector.createMetrics()));
+    mDiff = collector.createMetrics();
+    mBatch = collector.createMetrics();
+    mBatchTemp = collector.createMetrics();
+  }
+
+  /**
+   * Takes a snapshot and queues it for the worker: the first snapshot only serves as a baseline.
+   *
+   * @param tag passed to the listener along with the diff ending with this snapshot
+   * @return whether the snapshot was queued or merged, rather than dropped or failed, or the
+   *     pipeline closed
+   */
+  public synchronized boolean snapshot(@Nullable String tag) {
+    if (mIsClosed) {
+      return false;
+    }
+
+    Entry<T> entry = mPool.poll();
+    if (entry == null) {
+      return overflow(tag);
+    }
+
+    // The worker caught up: a merged snapshot goes first, being older
+    Entry<T> merged = mOverflow.getAndSet(null);
+    if (merged != null) {
+      mQueue.offer(merged);
+    }
+
+    entry.tag = tag;
+    boolean result = mCollector.getSnapshot(entry.metrics);
+    if (result) {
+      mQueue.offer(entry);
+    } else {
+      mPool.offer(entry);
+    }
+    schedule();
+    return result;
+  }
+
+  /**
+   * Stops accepting snapshots: the ones already queued are still handed to the listener, after
+   * which the pipeline's own background thread exits. An executor passed in isn't shut down.
+   */
+  @Override
+  public synchronized void close() {
+    if (mIsClosed) {
+      return;
+    }
+    mIsClosed = true;
+    if (mOwnedExecutor != null) {
+      mOwnedExecutor.shutdown();
+    }
+  }
+
+  public boolean isClosed() {
+    return mIsClosed;
+  }
+
+  /** Number of snapshots dropped because of overflows. */
+  public long getDroppedCount() {
+    return mDroppedCount.get();
+  }
+
+  /** Number of snapshots merged into a previous one because of overflows. */
+  public long getMergedCount() {
+    return mMergedCount.get();
+  }
+
+  private boolean overflow(@Nullable String tag) {
+    Entry<T> entry = null;
+    boolean merged = false;
+    if (mOverflowPolicy == OverflowPolicy.MERGE) {
+      entry = mOverflow.getAndSet(null);
+      merged = entry != null;
+      if (entry == null) {
+        entry = mSpare.getAndSet(null);
+      }
+    }
+    if (entry == null) {
+      // Dropping, or the spare is still waiting to be processed by the worker
+      mDroppedCount.incrementAndGet();
+      return false;
+    }
+
+    entry.tag = tag;
+    if (!mCollector.getSnapshot(entry.metrics)) {
+      // The overwritten snapshot is lost as well
+      if (merged) {
+        mDroppedCount.incrementAndGet();
+      }
+      recycle(entry);
+      return false;
+    }
+    if (merged) {
+      mMergedCount.incrementAndGet();
+    }
+    // Only snapshot() publishes overflows, and the worker only takes them
+    mOverflow.set(entry);
+    schedule();
+    return true;
+  }
+
+  private void recycle(Entry<T> entry) {
+    entry.tag = null;
+    if (!mSpare.compareAndSet(null, entry)) {
+      mPool.offer(entry);
+    }
+  }
+
+  private void schedule() {
+    if (mScheduled.compareAndSet(false, true)) {
+      try {
+        mExecutor.execute(mDrain);
+      } catch (RejectedExecutionException e) {
+        // The queued snapshots wait for the next snapshot to schedule a drain again
+        mScheduled.set(false);
+        SystemMetricsLogger.wtf(TAG, "Executor rejected the worker", e);
+      }
+    }
+  }
+
+  @VisibleToAvoidSynthetics
+  void drain() {
+    do {
+      try {
+        Entry<T> entry;
+        while ((entry = next()) != null) {
+          try {
+            process(entry);
+          } catch (RuntimeException e) {
+            SystemMetricsLogger.wtf(TAG, "Failed to process a snapshot", e);
+          }
+        }
+        flush();
+      } finally {
+        // Never leaves the pipeline thinking a drain is pending, or nothing would run it
+        mScheduled.set(false);
+      }
+      // Catches snapshots queued after the last poll, which couldn't schedule another drain
+    } while ((!mQueue.isEmpty() || mOverflow.get() != null)
+        && mScheduled.compareAndSet(false, true));
+  }
+
+  @Nullable
+  private Entry<T> next() {
+    Entry<T> entry = mQueue.poll();
+    return entry != null ? entry : mOverflow.getAndSet(null);
+  }
+
+  private void process(Entry<T> entry) {
+    Entry<T> baseline = mBaseline;
+    mBaseline = entry;
+    if (baseline == null) {
+      return;
+    }
+
+    try {
+      entry.metrics.diff(baseline.metrics, mDiff);
+    } finally {
+      recycle(baseline);
+    }
+
+    if (mBatchSize > 0 && !equals(mBatchTag, entry.tag)) {
+      flush();
+    }
+    if (mBatchSize == 0) {
+      mBatch.set(mDiff);
+    } else {
+      mBatch.sum(mDiff, mBatchTemp);
+      T temp = mBatch;
+      mBatch = mBatchTemp;
+      mBatchTemp = temp;
+    }
+    mBatchTag = entry.tag;
+    mBatchSize++;
+  }
+
+  private void flush() {
+    if (mBatchSize == 0) {
+      return;
+    }
+    try {
+      mListener.onDiff(mBatch, mBatchTag);
+    } catch (RuntimeException e) {
+      SystemMetricsLogger.wtf(TAG, "Listener failed", e);
+    }
+    mBatchSize = 0;
+    mBatchTag = null;
+  }
+
+  private static boolean equals(@Nullable String a, @Nullable String b) {
+    return a == null ? b == null : a.equals(b);
+  }
+
+  private static ExecutorService createExecutor() {
+    return Executors.newSingleThreadExecutor(
+        new ThreadFactory() {
+          @Override
+          public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, TAG);
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+          }
+        });
+  }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.metrics.pressure;
+
+import androidx.annotation.Nullable;
+import com.facebook.battery.metrics.core.SystemMetrics;
+import com.facebook.infer.annotation.Nullsafe;
+
+/**
+ * Total stall time reported by Linux pressure stall information (PSI), in microseconds.
+ *
+ * <p>"some" is the time at least one task was stalled on the resource, "full" is the time all
+ * non-idle tasks were stalled at once. These are device wide, monotonic counters: background work
+ * done while they grow quickly costs a lot more energy per unit of progress.
+ */
+@Nullsafe(Nullsafe.Mode.LOCAL)
+public class PressureStallMetrics extends SystemMetrics<PressureStallMetrics> {
+
+  public long cpuSomeTotalUs;
+  public long cpuFullTotalUs;
+  public long memorySomeTotalUs;
+  public long memoryFullTotalUs;
+  public long ioSomeTotalUs;
+  public long ioFullTotalUs;
+
+  public PressureStallMetrics() {}
+
+  @Override
+  public PressureStallMetrics set(PressureStallMetrics metrics) {
+    cpuSomeTotalUs = metrics.cpuSomeTotalUs;
+    cpuFullTotalUs = metrics.cpuFullTotalUs;
+    memorySomeTotalUs = metrics.memorySomeTotalUs;
+    memoryFullTotalUs = metrics.memoryFullTotalUs;
+    ioSomeTotalUs = metrics.ioSomeTotalUs;
+    ioFullTotalUs = metrics.ioFullTotalUs;
+    return this;
+  }
+
+  @Override
+  public PressureStallMetrics sum(
+      @Nullable PressureStallMetrics b, @Nullable PressureStallMetrics output) {
+    if (output == null) {
+      output = new PressureStallMetrics();
+    }
+
+    if (b == null) {
+      output.set(this);
+    } else {
+      output.cpuSomeTotalUs = cpuSomeTotalUs + b.cpuSomeTotalUs;
+      output.cpuFullTotalUs = cpuFullTotalUs + b.cpuFullTotalUs;
+      output.memorySomeTotalUs = memorySomeTotalUs + b.memorySomeTotalUs;
+      output.memoryFullTotalUs = memoryFullTotalUs + b.memoryFullTotalUs;
+      output.ioSomeTotalUs = ioSomeTotalUs + b.ioSomeTotalUs;
+      output.ioFullTotalUs = ioFullTotalUs + b.ioFullTotalUs;
+    }
+
+    return output;
+  }
+
+  @Override
+  public PressureStallMetrics diff(
+      @Nullable PressureStallMetrics b, @Nullable PressureStallMetrics output) {
+    if (output == null) {
+      output = new PressureStallMetrics();
+    }
+
+    if (b == null) {
+      output.set(this);
+    } else {
+      output.cpuSomeTotalUs = cpuSomeTotalUs - b.cpuSomeTotalUs;
+      output.cpuFullTotalUs = cpuFullTotalUs - b.cpuFullTotalUs;
+      output.memorySomeTotalUs = memorySomeTotalUs - b.memorySomeTotalUs;
+      output.memoryFullTotalUs = memoryFullTotalUs - b.memoryFullTotalUs;
+      output.ioSomeTotalUs = ioSomeTotalUs - b.ioSomeTotalUs;
+      output.ioFullTotalUs = ioFullTotalUs - b.ioFullTotalUs;
+    }
+
+    return output;
+  }
+
+  @Override
+  public boolean equals(@Nullable Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+
+    PressureStallMetrics that = (PressureStallMetrics) o;
+
+    return cpuSomeTotalUs == that.cpuSomeTotalUs
+        && cpuFullTotalUs == that.cpuFullTotalUs
+        && memorySomeTotalUs == that.memorySomeTotalUs
+        && memoryFullTotalUs == that.memoryFullTotalUs
+        && ioSomeTotalUs == that.ioSomeTotalUs
+        && ioFullTotalUs == that.ioFullTotalUs;
+  }
+
+  @Override
+  public int hashCode() {
+    int result = (int) (cpuSomeTotalUs ^ (cpuSomeTotalUs >>> 32));
+    result = 31 * result + (int) (cpuFullTotalUs ^ (cpuFullTotalUs >>> 32));
+    result = 31 * result + (int) (memorySomeTotalUs ^ (memorySomeTotalUs >>> 32));
+    result = 31 * result + (int) (memoryFullTotalUs ^ (memoryFullTotalUs >>> 32));
+    result = 31 * result + (int) (ioSomeTotalUs ^ (ioSomeTotalUs >>> 32));
+    result = 31 * result + (int) (ioFullTotalUs ^ (ioFullTotalUs >>> 32));
+    return result;
+  }
+
+  @Override
+  public String toString() {
+    return "PressureStallMetrics{"
+        + "cpuSomeTotalUs="
+        + cpuSomeTotalUs
+        + ", cpuFullTotalUs="
+        + cpuFullTotalUs
+        + ", memorySomeTotalUs="
+        + memorySomeTotalUs
+        + ", memoryFullTotalUs="
+        + memoryFullTotalUs
+        + ", ioSomeTotalUs="
+        + ioSomeTotalUs
+        + ", ioFullTotalUs="
+        + ioFullTotalUs
+        + '}';
+  }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.metrics.pressure;
+
+import static com.facebook.battery.metrics.core.Utilities.checkNotNull;
+
+import androidx.annotation.VisibleForTesting;
+import com.facebook.battery.metrics.core.ProcFileReader;
+import com.facebook.battery.metrics.core.SystemMetricsCollector;
+import com.facebook.battery.metrics.core.SystemMetricsLogger;
+import com.facebook.infer.annotation.Nullsafe;
+import com.facebook.infer.annotation.ThreadSafe;
+import java.nio.CharBuffer;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+
+/**
+ * Reads the total stall times from {@code /proc/pressure/{cpu,memory,io}}.
+ *
+ * <p>Each file looks like
+ *
+ * <pre>
+ * some avg10=0.00 avg60=0.00 avg300=0.00 total=12345
+ * full avg10=0.00 avg60=0.00 avg300=0.00 total=0
+ * </pre>
+ *
+ * and only the totals are kept: the averages can be derived from consecutive snapshots. The "full"
+ * line for cpu only exists on newer kernels and is reported as 0 when missing.
+ *
+ * <p>PSI needs kernel support (4.20+ or a backport) and is frequently not readable by apps: in that
+ * case snapshots simply fail without logging. Use {@link #isSupported()} to avoid adding the
+ * collector on such devices.
+ */
+@Nullsafe(Nullsafe.Mode.LOCAL)
+@ThreadSafe
+public class PressureStallMetricsCollector extends SystemMetricsCollector<PressureStallMetrics> {
+
+  private static final String TAG = "PressureStallMetricsCollector";
+  private static final String PRESSURE_PATH = "/proc/pressure/";
+
+  private static final int CPU = 0;
+  private static final int MEMORY = 1;
+  private static final int IO = 2;
+  private static final String[] RESOURCES = {"cpu", "memory", "io"};
+
+  private static final int SOME = 0;
+  private static final int FULL = 1;
+  private static final CharBuffer SOME_KEY = CharBuffer.wrap("some");
+  private static final CharBuffer FULL_KEY = CharBuffer.wrap("full");
+
+  /** The avg10, avg60 and avg300 fields that precede the total on every line. */
+  private static final int AVERAGE_FIELDS = 3;
+
+  private static final String TOTAL_PREFIX = "total=";
+  private static final int WORD_BUFFER_SIZE = 32;
+
+  @GuardedBy("this")
+  @Nullable
+  private ProcFileReader[] mReaders;
+
+  @GuardedBy("this")
+  private CharBuffer mWord = CharBuffer.allocate(WORD_BUFFER_SIZE);
+
+  @GuardedBy("this")
+  private final long[] mTotals = new long[2];
+
+  @Override
+  @ThreadSafe(enableChecks = false)
+  public synchronized boolean getSnapshot(PressureStallMetrics snapshot) {
+    checkNotNull(snapshot, "Null value passed to getSnapshot!");
+
+    if (mReaders == null) {
+      mReaders = new ProcFileReader[RESOURCES.length];
+      for (int i = 0; i < RESOURCES.length; i++) {
+        mReaders[i] = new ProcFileReader(getPath(RESOURCES[i]));
+      }
+    }
+
+    for (int resource = 0; resource < RESOURCES.length; resource++) {
+      if (!readTotals(mReaders[resource].reset())) {
+        return false;
+      }
+
+      switch (resource) {
+        case CPU:
+          snapshot.cpuSomeTotalUs = mTotals[SOME];
+          snapshot.cpuFullTotalUs = mTotals[FULL];
+          break;
+        case MEMORY:
+          snapshot.memorySomeTotalUs = mTotals[SOME];
+          snapshot.memoryFullTotalUs = mTotals[FULL];
+          break;
+        case IO:
+          snapshot.ioSomeTotalUs = mTotals[SOME];
+          snapshot.ioFullTotalUs = mTotals[FULL];
+          break;
+      }
+    }
+
+    return true;
+  }
+
+  private synchronized boolean readTotals(ProcFileReader reader) {
+    mTotals[SOME] = 0;
+    mTotals[FULL] = 0;
+
+    // Expected on kernels without PSI, or when selinux doesn't allow access to the files.
+    if (!reader.isValid()) {
+      return false;
+    }
+
+    boolean hasSome = false;
+    try {
+      while (reader.hasNext()) {
+        mWord = reader.readWord(mWord);
+        int kind = SOME_KEY.equals(mWord) ? SOME : FULL_KEY.equals(mWord) ? FULL : -1;
+        if (kind >= 0) {
+          reader.skipSpaces();
+          for (int i = 0; i < AVERAGE_FIELDS; i++) {
+            reader.skipSpaces();
+          }
+
+          mWord = reader.readWord(mWord);
+          mTotals[kind] = parseTotal(mWord);
+          hasSome |= kind == SOME;
+        }
+        reader.skipLine();
+      }
+    } catch (ProcFileReader.ParseException pe) {
+      SystemMetricsLogger.wtf(TAG, "Unable to parse pressure stall information", pe);
+      return false;
+    }
+
+    return hasSome;
+  }
+
+  /** Parses {@code total=<number>} out of the word without allocating a string. */
+  private static long parseTotal(CharBuffer word) {
+    int length = word.remaining();
+    int prefixLength = TOTAL_PREFIX.length();
+    if (length <= prefixLength) {
+      throw new ProcFileReader.ParseException("Couldn't read total!");
+    }
+
+    for (int i = 0; i < prefixLength; i++) {
+      if (word.get(i) != TOTAL_PREFIX.charAt(i)) {
+        throw new ProcFileReader.ParseException("Couldn't read total!");
+      }
+    }
+
+    long result = 0;
+    for (int i = prefixLength; i < length; i++) {
+      char c = word.get(i);
+      if (!Character.isDigit(c)) {
+        throw new ProcFileReader.ParseException("Couldn't read total!");
+      }
+      result = result * 10 + (c - '0');
+    }
+    return result;
+  }
+
+  @Override
+  public PressureStallMetrics createMetrics() {
+    return new PressureStallMetrics();
+  }
+
+  @VisibleForTesting
+  protected String getPath(String resource) {
+    return PRESSURE_PATH + resource;
+  }
+
+  /** Checks whether pressure stall information is available and readable on this device. */
+  public static boolean isSupported() {
+    ProcFileReader reader = new ProcFileReader(PRESSURE_PATH + RESOURCES[CPU]).start();
+    boolean supported = reader.isValid();
+    reader.close();
+    return supported;
+  }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.metrics.sketch;
+
+import com.facebook.battery.metrics.core.SystemMetrics;
+import com.facebook.infer.annotation.Nullsafe;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Aggregates the distribution of fields across many diffs, e.g. the cpu time of each foreground
+ * session, feeding each value into a {@link QuantileSketch} of a {@link DistributionMetrics}.
+ *
+ * <pre>{@code
+ * DistributionAggregator<CompositeMetrics> aggregator =
+ *     new DistributionAggregator<CompositeMetrics>()
+ *         .addField("cpu_time_s", new DistributionAggregator.Field<CompositeMetrics>() {
+ *           public double getValue(CompositeMetrics diff) {
+ *             CpuMetrics cpu = diff.getMetric(CpuMetrics.class);
+ *             return diff.isValid(CpuMetrics.class)
+ *                 ? cpu.userTimeS + cpu.systemTimeS
+ *                 : Double.NaN;
+ *           }
+ *         });
+ * ...
+ * aggregator.add(sessionDiff);
+ * }</pre>
+ *
+ * <p>Adding a diff is linear in the number of fields and doesn't allocate. This class isn't thread
+ * safe: a good place to add diffs is a {@link
+ * com.facebook.battery.metrics.pipeline.MetricsPipeline.Listener}.
+ */
+@Nullsafe(Nullsafe.Mode.LOCAL)
+public class DistributionAggregator<T extends SystemMetrics<T>> {
+
+  public interface Field<T> {
+    /** @return the value to aggregate, or NaN to skip this diff */
+    double getValue(T metrics);
+  }
+
+  private final List<Field<T>> mFields = new ArrayList<>();
+  private final List<QuantileSketch> mSketches = new ArrayList<>();
+  private final DistributionMetrics mMetrics = new DistributionMetrics();
+
+  /** Aggregates the field into a sketch with the default parameters. */
+  public DistributionAggregator<T> addField(String name, Field<T> field) {
+    return addField(name, field, new QuantileSketch());
+  }
+
+  /**
+   * Aggregates the field into the given sketch, to pick its accuracy and range.
+   *
+   * @param name the name of the sketch in the aggregated metrics
+   */
+  public DistributionAggregator<T> addField(String name, Field<T> field, QuantileSketch sketch) {
+    if (mMetrics.sketches.containsKey(name)) {
+      throw new IllegalArgumentException("Field already added: " + name);
+    }
+    mFields.add(field);
+    mSketches.add(sketch);
+    mMetrics.sketches.put(name, sketch);
+    return this;
+  }
+
+  /** Adds each field of the diff to its sketch. */
+  public void add(T diff) {
+    for (int i = 0, size = mFields.size(); i < size; i++) {
+      mSketches.get(i).add(mFields.get(i).getValue(diff));
+    }
+  }
+
+  /** The aggregated sketches: these are live, and are updated by {@link #add}. */
+  public DistributionMetrics getMetrics() {
+    return mMetrics;
+  }
+
+  /** Empties all the sketches, e.g. once they've been reported. */
+  public void reset() {
+    for (int i = 0, size = mSketches.size(); i < size; i++) {
+      mSketches.get(i).clear();
+    }
+  }
+}
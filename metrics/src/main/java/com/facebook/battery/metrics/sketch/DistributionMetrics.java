@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.metrics.sketch;
+
+import androidx.annotation.Nullable;
+import androidx.collection.SimpleArrayMap;
+import com.facebook.battery.metrics.core.SystemMetrics;
+import com.facebook.infer.annotation.Nullsafe;
+
+/**
+ * Named {@link QuantileSketch}es, e.g. one per field aggregated by a {@link
+ * DistributionAggregator}.
+ *
+ * <p>Sums and diffs match sketches by name: sketches missing from either side are treated as
+ * empty.
+ */
+@Nullsafe(Nullsafe.Mode.LOCAL)
+public class DistributionMetrics extends SystemMetrics<DistributionMetrics> {
+
+  public final SimpleArrayMap<String, QuantileSketch> sketches = new SimpleArrayMap<>();
+
+  /** Returns the sketch with the given name, creating it with the default parameters if needed. */
+  public QuantileSketch getOrCreateSketch(String name) {
+    QuantileSketch sketch = sketches.get(name);
+    if (sketch == null) {
+      sketch = new QuantileSketch();
+      sketches.put(name, sketch);
+    }
+    return sketch;
+  }
+
+  @Override
+  public DistributionMetrics sum(
+      @Nullable DistributionMetrics b, @Nullable DistributionMetrics output) {
+    if (output == null) {
+      output = new DistributionMetrics();
+    }
+
+    if (b == null) {
+      output.set(this);
+    } else {
+      output.retainAll(this, b);
+      for (int i = 0, size = sketches.size(); i < size; i++) {
+        String name = sketches.keyAt(i);
+        QuantileSketch sketch = sketches.valueAt(i);
+        sketch.sum(b.sketches.get(name), output.getOutputSketch(name, sketch));
+      }
+      for (int i = 0, size = b.sketches.size(); i < size; i++) {
+        String name = b.sketches.keyAt(i);
+        if (!sketches.containsKey(name)) {
+          QuantileSketch sketch = b.sketches.valueAt(i);
+          output.getOutputSketch(name, sketch).set(sketch);
+        }
+      }
+    }
+
+    return output;
+  }
+
+  @Override
+  public DistributionMetrics diff(
+      @Nullable DistributionMetrics b, @Nullable DistributionMetrics output) {
+    if (output == null) {
+      output = new DistributionMetrics();
+    }
+
+    if (b == null) {
+      output.set(this);
+    } else {
+      output.retainAll(this, null);
+      for (int i = 0, size = sketches.size(); i < size; i++) {
+        String name = sketches.keyAt(i);
+        QuantileSketch sketch = sketches.valueAt(i);
+        sketch.diff(b.sketches.get(name), output.getOutputSketch(name, sketch));
+      }
+    }
+
+    return output;
+  }
+
+  @Override
+  public DistributionMetrics set(DistributionMetrics b) {
+    if (b == this) {
+      return this;
+    }
+    retainAll(b, null);
+    for (int i = 0, size = b.sketches.size(); i < size; i++) {
+      QuantileSketch sketch = b.sketches.valueAt(i);
+      getOutputSketch(b.sketches.keyAt(i), sketch).set(sketch);
+    }
+    return this;
+  }
+
+  /** Removes the sketches that aren't in either of the given metrics. */
+  private void retainAll(DistributionMetrics a, @Nullable DistributionMetrics b) {
+    for (int i = sketches.size() - 1; i >= 0; i--) {
+      String name = sketches.keyAt(i);
+      if (!a.sketches.containsKey(name) && (b == null || !b.sketches.containsKey(name))) {
+        sketches.removeAt(i);
+      }
+    }
+  }
+
+  /** Reuses the existing sketch with that name if it's compatible with the given one. */
+  private QuantileSketch getOutputSketch(String name, QuantileSketch like) {
+    QuantileSketch sketch = sketches.get(name);
+    if (sketch == null || !sketch.isCompatible(like)) {
+      sketch = new QuantileSketch(like.relativeAccuracy, like.minValue, like.counts.length);
+      sketches.put(name, sketch);
+    }
+    return sketch;
+  }
+
+  @Override
+  public boolean equals(@Nullable Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+
+    DistributionMetrics that = (DistributionMetrics) o;
+    return sketches.equals(that.sketches);
+  }
+
+  @Override
+  public int hashCode() {
+    return sketches.hashCode();
+  }
+
+  @Override
+  public String toString() {
+    return "DistributionMetrics{" + "sketches=" + sketches + '}';
+  }
+}
@@ -0,0 +1,257 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.metrics.sketch;
+
+import androidx.annotation.Nullable;
+import com.facebook.battery.metrics.core.SystemMetrics;
+import com.facebook.infer.annotation.Nullsafe;
+import java.util.Arrays;
+
+/**
+ * A fixed size, mergeable sketch of the distribution of a value, with quantiles accurate to a
+ * relative error (as in DDSketch): values are counted in buckets whose bounds grow geometrically,
+ * by a factor of {@code gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy)}.
+ *
+ * <p>Bucket {@code i} counts the values in {@code (minValue * gamma^(i - 1), minValue * gamma^i]};
+ * values below {@code minValue} (including 0 and negative values) are counted as 0, and values
+ * beyond the last bucket are counted in it. The defaults cover values from 0.001 to over 10^14
+ * within 2%, in 8KB.
+ *
+ * <p>Adding a value is constant time and doesn't allocate. Bucket counts only ever grow, so the
+ * diff of two snapshots of the same sketch is exactly the sketch of the values added in between;
+ * sketches can only be summed with, or diffed against, sketches with the same parameters.
+ */
+@Nullsafe(Nullsafe.Mode.LOCAL)
+public class QuantileSketch extends SystemMetrics<QuantileSketch> {
+
+  public static final double DEFAULT_RELATIVE_ACCURACY = 0.02;
+  public static final double DEFAULT_MIN_VALUE = 0.001;
+  public static final int DEFAULT_BUCKET_COUNT = 1024;
+
+  public final double relativeAccuracy;
+  public final double minValue;
+
+  /** Count of values per bucket */
+  public final long[] counts;
+
+  /** Count of values below minValue */
+  public long zeroCount;
+
+  /** Total count of values */
+  public long count;
+
+  /** Sum of all values */
+  public double sum;
+
+  private final double mGamma;
+  private final double mMultiplier;
+
+  public QuantileSketch() {
+    this(DEFAULT_RELATIVE_ACCURACY, DEFAULT_MIN_VALUE, DEFAULT_BUCKET_COUNT);
+  }
+
+  public QuantileSketch(double relativeAccuracy, double minValue, int bucketCount) {
+    if (!(relativeAccuracy > 0 && relativeAccuracy < 1)) {
+      throw new IllegalArgumentException("Invalid relative accuracy: " + relativeAccuracy);
+    }
+    if (!(minValue > 0) || bucketCount < 1) {
+      throw new IllegalArgumentException(
+          "Invalid range: minValue=" + minValue + ", bucketCount=" + bucketCount);
+    }
+    this.relativeAccuracy = relativeAccuracy;
+    this.minValue = minValue;
+    counts = new long[bucketCount];
+    mGamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+    mMultiplier = 1 / Math.log(mGamma);
+  }
+
+  /** Adds a single value: NaN is ignored. */
+  public void add(double value) {
+    add(value, 1);
+  }
+
+  /** Adds a value that occurred {@code n} times: NaN is ignored. */
+  public void add(double value, long n) {
+    if (Double.isNaN(value)) {
+      return;
+    }
+    count += n;
+    sum += value * n;
+    if (value < minValue) {
+      zeroCount += n;
+      return;
+    }
+    double index = Math.ceil(Math.log(value / minValue) * mMultiplier);
+    counts[index < counts.length ? (int) index : counts.length - 1] += n;
+  }
+
+  /**
+   * Returns an estimate of the value at the given quantile, within the relative accuracy of the
+   * sketch for values in its range.
+   *
+   * @param quantile between 0 and 1
+   * @return the estimate, 0 for values below minValue, or NaN if the sketch is empty
+   */
+  public double getQuantile(double quantile) {
+    if (quantile < 0 || quantile > 1) {
+      throw new IllegalArgumentException("Invalid quantile: " + quantile);
+    }
+    if (count <= 0) {
+      return Double.NaN;
+    }
+
+    long rank = (long) (quantile * (count - 1));
+    long seen = zeroCount;
+    if (seen > rank) {
+      return 0;
+    }
+    int last = 0;
+    for (int i = 0; i < counts.length; i++) {
+      if (counts[i] == 0) {
+        continue;
+      }
+      last = i;
+      seen += counts[i];
+      if (seen > rank) {
+        break;
+      }
+    }
+    return getValue(last);
+  }
+
+  /** The mean of the values in the sketch, or NaN if it's empty. */
+  public double getMean() {
+    return count > 0 ? sum / count : Double.NaN;
+  }
+
+  /** Whether the two sketches have the same buckets, so that they can be merged. */
+  public boolean isCompatible(QuantileSketch other) {
+    return relativeAccuracy == other.relativeAccuracy
+        && minValue == other.minValue
+        && counts.length == other.counts.length;
+  }
+
+  public void clear() {
+    Arrays.fill(counts, 0);
+    zeroCount = 0;
+    count = 0;
+    sum = 0;
+  }
+
+  /** The value a bucket stands for: within the relative accuracy of all values in the bucket. */
+  private double getValue(int index) {
+    return 2 * minValue * Math.pow(mGamma, index) / (1 + mGamma);
+  }
+
+  @Override
+  public QuantileSketch sum(@Nullable QuantileSketch b, @Nullable QuantileSketch output) {
+    if (output == null) {
+      output = new QuantileSketch(relativeAccuracy, minValue, counts.length);
+    }
+
+    if (b == null) {
+      output.set(this);
+    } else {
+      checkCompatible(b);
+      checkCompatible(output);
+      for (int i = 0; i < counts.length; i++) {
+        output.counts[i] = counts[i] + b.counts[i];
+      }
+      output.zeroCount = zeroCount + b.zeroCount;
+      output.count = count + b.count;
+      output.sum = sum + b.sum;
+    }
+
+    return output;
+  }
+
+  @Override
+  public QuantileSketch diff(@Nullable QuantileSketch b, @Nullable QuantileSketch output) {
+    if (output == null) {
+      output = new QuantileSketch(relativeAccuracy, minValue, counts.length);
+    }
+
+    if (b == null) {
+      output.set(this);
+    } else {
+      checkCompatible(b);
+      checkCompatible(output);
+      for (int i = 0; i < counts.length; i++) {
+        output.counts[i] = counts[i] - b.counts[i];
+      }
+      output.zeroCount = zeroCount - b.zeroCount;
+      output.count = count - b.count;
+      output.sum = sum - b.sum;
+    }
+
+    return output;
+  }
+
+  @Override
+  public QuantileSketch set(QuantileSketch b) {
+    checkCompatible(b);
+    System.arraycopy(b.counts, 0, counts, 0, counts.length);
+    zeroCount = b.zeroCount;
+    count = b.count;
+    sum = b.sum;
+    return this;
+  }
+
+  private void checkCompatible(QuantileSketch other) {
+    if (!isCompatible(other)) {
+      throw new IllegalArgumentException("Incompatible sketches: " + this + ", " + other);
+    }
+  }
+
+  @Override
+  public boolean equals(@Nullable Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+
+    QuantileSketch that = (QuantileSketch) o;
+    return isCompatible(that)
+        && zeroCount == that.zeroCount
+        && count == that.count
+        && Double.compare(that.sum, sum) == 0
+        && Arrays.equals(counts, that.counts);
+  }
+
+  @Override
+  public int hashCode() {
+    int result = Arrays.hashCode(counts);
+    long temp = Double.doubleToLongBits(sum);
+    result = 31 * result + (int) (temp ^ (temp >>> 32));
+    result = 31 * result + (int) (zeroCount ^ (zeroCount >>> 32));
+    result = 31 * result + (int) (count ^ (count >>> 32));
+    return result;
+  }
+
+  @Override
+  public String toString() {
+    return "QuantileSketch{"
+        + "relativeAccuracy="
+        + relativeAccuracy
+        + ", minValue="
+        + minValue
+        + ", buckets="
+        + counts.length
+        + ", count="
+        + count
+        + ", sum="
+        + sum
+        + ", p50="
+        + getQuantile(0.5)
+        + ", p99="
+        + getQuantile(0.99)
+        + '}';
+  }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.metrics.thermal;
+
+import androidx.annotation.Nullable;
+import com.facebook.battery.metrics.core.SystemMetrics;
+import com.facebook.infer.annotation.Nullsafe;
+import java.util.Arrays;
+
+/**
+ * Device thermal state, read from {@code /sys/class/thermal}.
+ *
+ * <p>Thermal throttling changes the cost of every cpu second: the time spent above each of the
+ * collector's temperature thresholds and with any cooling device engaged are monotonic counters and
+ * are added/subtracted as usual. The hottest zone temperature and the highest cooling state are
+ * point in time values -- diffs keep the more recent value and sums keep the larger one.
+ *
+ * <p>The thresholds themselves are configured on {@link ThermalMetricsCollector}; {@link
+ * #timeAboveThresholdMs} has one entry per threshold, in the same order.
+ */
+@Nullsafe(Nullsafe.Mode.LOCAL)
+public class ThermalMetrics extends SystemMetrics<ThermalMetrics> {
+
+  public final long[] timeAboveThresholdMs;
+
+  /** Time during which at least one cooling device was active. */
+  public long throttledMs;
+
+  /** Temperature of the hottest thermal zone, usually in millidegree Celsius. */
+  public long maxTemperatureMilliC;
+
+  /** Highest current state across all cooling devices; 0 means no cooling is applied. */
+  public long maxCoolingState;
+
+  public ThermalMetrics() {
+    this(ThermalMetricsCollector.DEFAULT_THRESHOLDS_MILLI_C.length);
+  }
+
+  public ThermalMetrics(int thresholds) {
+    timeAboveThresholdMs = new long[thresholds];
+  }
+
+  @Override
+  public ThermalMetrics set(ThermalMetrics metrics) {
+    checkThresholds(metrics);
+    System.arraycopy(
+        metrics.timeAboveThresholdMs, 0, timeAboveThresholdMs, 0, timeAboveThresholdMs.length);
+    throttledMs = metrics.throttledMs;
+    maxTemperatureMilliC = metrics.maxTemperatureMilliC;
+    maxCoolingState = metrics.maxCoolingState;
+    return this;
+  }
+
+  @Override
+  public ThermalMetrics sum(@Nullable ThermalMetrics b, @Nullable ThermalMetrics output) {
+    if (output == null) {
+      output = new ThermalMetrics(timeAboveThresholdMs.length);
+    }
+
+    if (b == null) {
+      output.set(this);
+    } else {
+      checkThresholds(b);
+      output.checkThresholds(this);
+      for (int i = 0; i < timeAboveThresholdMs.length; i++) {
+        output.timeAboveThresholdMs[i] = timeAboveThresholdMs[i] + b.timeAboveThresholdMs[i];
+      }
+      output.throttledMs = throttledMs + b.throttledMs;
+      output.maxTemperatureMilliC = Math.max(maxTemperatureMilliC, b.maxTemperatureMilliC);
+      output.maxCoolingState = Math.max(maxCoolingState, b.maxCoolingState);
+    }
+
+    return output;
+  }
+
+  @Override
+  public ThermalMetrics diff(@Nullable ThermalMetrics b, @Nullable ThermalMetrics output) {
+    if (output == null) {
+      output = new ThermalMetrics(timeAboveThresholdMs.length);
+    }
+
+    if (b == null) {
+      output.set(this);
+    } else {
+      checkThresholds(b);
+      output.checkThresholds(this);
+      for (int i = 0; i < timeAboveThresholdMs.length; i++) {
+        output.timeAboveThresholdMs[i] = timeAboveThresholdMs[i] - b.timeAboveThresholdMs[i];
+      }
+      output.throttledMs = throttledMs - b.throttledMs;
+      output.maxTemperatureMilliC = maxTemperatureMilliC;
+      output.maxCoolingState = maxCoolingState;
+    }
+
+    return output;
+  }
+
+  /** Metrics for a different set of thresholds can't be combined. */
+  private void checkThresholds(ThermalMetrics metrics) {
+    if (metrics.timeAboveThresholdMs.length != timeAboveThresholdMs.length) {
+      throw new IllegalArgumentException(
+          "Mismatched thresholds: "
+              + timeAboveThresholdMs.length
+              + " vs "
+              + metrics.timeAboveThresholdMs.length);
+    }
+  }
+
+  @Override
+  public boolean equals(@Nullable Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+
+    ThermalMetrics that = (ThermalMetrics) o;
+
+    return throttledMs == that.throttledMs
+        && maxTemperatureMilliC == that.maxTemperatureMilliC
+        && maxCoolingState == that.maxCoolingState
+        && Arrays.equals(timeAboveThresholdMs, that.timeAboveThresholdMs);
+  }
+
+  @Override
+  public int hashCode() {
+    int result = Arrays.hashCode(timeAboveThresholdMs);
+    result = 31 * result + (int) (throttledMs ^ (throttledMs >>> 32));
+    result = 31 * result + (int) (maxTemperatureMilliC ^ (maxTemperatureMilliC >>> 32));
+    result = 31 * result + (int) (maxCoolingState ^ (maxCoolingState >>> 32));
+    return result;
+  }
+
+  @Override
+  public String toString() {
+    return "ThermalMetrics{"
+        + "timeAboveThresholdMs="
+        + Arrays.toString(timeAboveThresholdMs)
+        + ", throttledMs="
+        + throttledMs
+        + ", maxTemperatureMilliC="
+        + maxTemperatureMilliC
+        + ", maxCoolingState="
+        + maxCoolingState
+        + '}';
+  }
+}
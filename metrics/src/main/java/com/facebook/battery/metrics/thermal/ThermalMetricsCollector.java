@@ -0,0 +1,232 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.metrics.thermal;
+
+import static com.facebook.battery.metrics.core.Utilities.checkNotNull;
+
+import android.os.SystemClock;
+import androidx.annotation.VisibleForTesting;
+import com.facebook.battery.metrics.core.ProcFileReader;
+import com.facebook.battery.metrics.core.SystemMetricsCollector;
+import com.facebook.infer.annotation.Nullsafe;
+import com.facebook.infer.annotation.ThreadSafe;
+import java.io.File;
+import java.io.FilenameFilter;
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+
+/**
+ * Tracks thermal zone temperatures and cooling device states from {@code /sys/class/thermal}.
+ *
+ * <p>Zones and cooling devices are discovered once, when the collector is created, and their paths
+ * and types are cached: snapshots only re-read {@code temp} and {@code cur_state} for each of them.
+ *
+ * <p>Time above thresholds is accumulated by the collector itself, attributing the interval between
+ * two snapshots to the temperatures observed at the start of the interval: this gets more accurate
+ * the more frequently the collector is sampled.
+ *
+ * <p>Many devices don't allow apps to read these files; in that case snapshots simply fail.
+ */
+@Nullsafe(Nullsafe.Mode.LOCAL)
+@ThreadSafe
+public class ThermalMetricsCollector extends SystemMetricsCollector<ThermalMetrics> {
+
+  private static final String THERMAL_PATH = "/sys/class/thermal/";
+  private static final String ZONE_PREFIX = "thermal_zone";
+  private static final String COOLING_DEVICE_PREFIX = "cooling_device";
+
+  public static final int[] DEFAULT_THRESHOLDS_MILLI_C = {40_000, 45_000, 50_000};
+
+  private static final int WORD_BUFFER_SIZE = 32;
+
+  private final int[] mThresholdsMilliC;
+  private final String[] mZoneTypes;
+
+  @GuardedBy("this")
+  private final ProcFileReader[] mZoneReaders;
+
+  @GuardedBy("this")
+  private final ProcFileReader[] mCoolingDeviceReaders;
+
+  @GuardedBy("this")
+  private final long[] mTimeAboveThresholdMs;
+
+  @GuardedBy("this")
+  private long mThrottledMs;
+
+  @GuardedBy("this")
+  private long mLastSnapshotMs = -1;
+
+  @GuardedBy("this")
+  private long mLastMaxTemperatureMilliC;
+
+  @GuardedBy("this")
+  private long mLastMaxCoolingState;
+
+  public ThermalMetricsCollector() {
+    this(DEFAULT_THRESHOLDS_MILLI_C, null);
+  }
+
+  /**
+   * @param thresholdsMilliC temperatures to accumulate time above, in the unit reported by the
+   *     kernel (usually millidegree Celsius)
+   * @param zoneTypes only consider thermal zones whose type starts with one of these, for example
+   *     "cpu" or "skin"; null to consider all zones
+   */
+  public ThermalMetricsCollector(int[] thresholdsMilliC, @Nullable String[] zoneTypes) {
+    this(thresholdsMilliC, zoneTypes, THERMAL_PATH);
+  }
+
+  @VisibleForTesting
+  ThermalMetricsCollector(
+      int[] thresholdsMilliC, @Nullable String[] zoneTypes, String thermalPath) {
+    mThresholdsMilliC = Arrays.copyOf(thresholdsMilliC, thresholdsMilliC.length);
+    mTimeAboveThresholdMs = new long[thresholdsMilliC.length];
+
+    File[] zones = listDirectories(thermalPath, ZONE_PREFIX);
+    List<String> types = new ArrayList<>(zones.length);
+    List<ProcFileReader> readers = new ArrayList<>(zones.length);
+    CharBuffer word = CharBuffer.allocate(WORD_BUFFER_SIZE);
+    for (File zone : zones) {
+      String type = readType(zone, word);
+      if (zoneTypes == null || matchesZoneType(zoneTypes, type)) {
+        types.add(type);
+        readers.add(new ProcFileReader(new File(zone, "temp").getPath()));
+      }
+    }
+    mZoneTypes = types.toArray(new String[types.size()]);
+    mZoneReaders = readers.toArray(new ProcFileReader[readers.size()]);
+
+    File[] coolingDevices = listDirectories(thermalPath, COOLING_DEVICE_PREFIX);
+    mCoolingDeviceReaders = new ProcFileReader[coolingDevices.length];
+    for (int i = 0; i < coolingDevices.length; i++) {
+      mCoolingDeviceReaders[i] =
+          new ProcFileReader(new File(coolingDevices[i], "cur_state").getPath());
+    }
+  }
+
+  /** Types of the thermal zones this collector reads, as reported by the kernel. */
+  public String[] getZoneTypes() {
+    return Arrays.copyOf(mZoneTypes, mZoneTypes.length);
+  }
+
+  @Override
+  @ThreadSafe(enableChecks = false)
+  public synchronized boolean getSnapshot(ThermalMetrics snapshot) {
+    checkNotNull(snapshot, "Null value passed to getSnapshot!");
+    if (snapshot.timeAboveThresholdMs.length != mThresholdsMilliC.length) {
+      throw new IllegalArgumentException(
+          "Snapshot has "
+              + snapshot.timeAboveThresholdMs.length
+              + " thresholds, expected "
+              + mThresholdsMilliC.length);
+    }
+
+    long maxTemperature = Long.MIN_VALUE;
+    for (ProcFileReader reader : mZoneReaders) {
+      maxTemperature = Math.max(maxTemperature, readValue(reader.reset(), Long.MIN_VALUE));
+    }
+
+    // There's no point in reporting anything if none of the zones could be read.
+    if (maxTemperature == Long.MIN_VALUE) {
+      return false;
+    }
+
+    long maxCoolingState = 0;
+    for (ProcFileReader reader : mCoolingDeviceReaders) {
+      maxCoolingState = Math.max(maxCoolingState, readValue(reader.reset(), 0));
+    }
+
+    long now = SystemClock.elapsedRealtime();
+    if (mLastSnapshotMs >= 0) {
+      long elapsedMs = now - mLastSnapshotMs;
+      for (int i = 0; i < mThresholdsMilliC.length; i++) {
+        if (mLastMaxTemperatureMilliC >= mThresholdsMilliC[i]) {
+          mTimeAboveThresholdMs[i] += elapsedMs;
+        }
+      }
+      if (mLastMaxCoolingState > 0) {
+        mThrottledMs += elapsedMs;
+      }
+    }
+    mLastSnapshotMs = now;
+    mLastMaxTemperatureMilliC = maxTemperature;
+    mLastMaxCoolingState = maxCoolingState;
+
+    System.arraycopy(
+        mTimeAboveThresholdMs, 0, snapshot.timeAboveThresholdMs, 0, mTimeAboveThresholdMs.length);
+    snapshot.throttledMs = mThrottledMs;
+    snapshot.maxTemperatureMilliC = maxTemperature;
+    snapshot.maxCoolingState = maxCoolingState;
+    return true;
+  }
+
+  private static long readValue(ProcFileReader reader, long defaultValue) {
+    // Zones can become unreadable as sensors are powered down: skip them for this snapshot.
+    if (!reader.isValid()) {
+      return defaultValue;
+    }
+
+    try {
+      return reader.readNumber();
+    } catch (ProcFileReader.ParseException pe) {
+      return defaultValue;
+    }
+  }
+
+  private static File[] listDirectories(String thermalPath, final String prefix) {
+    File[] files =
+        new File(thermalPath)
+            .listFiles(
+                new FilenameFilter() {
+                  @Override
+                  public boolean accept(File dir, String name) {
+                    return name.startsWith(prefix);
+                  }
+                });
+    if (files == null) {
+      return new File[0];
+    }
+
+    Arrays.sort(files);
+    return files;
+  }
+
+  private static String readType(File directory, CharBuffer word) {
+    ProcFileReader reader = new ProcFileReader(new File(directory, "type").getPath()).start();
+    if (!reader.isValid()) {
+      return "";
+    }
+
+    try {
+      return reader.readWord(word).toString();
+    } catch (ProcFileReader.ParseException pe) {
+      return "";
+    } finally {
+      reader.close();
+    }
+  }
+
+  private static boolean matchesZoneType(String[] zoneTypes, String type) {
+    for (String zoneType : zoneTypes) {
+      if (type.startsWith(zoneType)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public ThermalMetrics createMetrics() {
+    return new ThermalMetrics(mThresholdsMilliC.length);
+  }
+}
@@ -9,6 +9,7 @@ package com.facebook.battery.metrics.wakelock;
 
 import androidx.annotation.Nullable;
 import androidx.collection.SimpleArrayMap;
+import com.facebook.battery.metrics.core.JsonWriter;
 import com.facebook.battery.metrics.core.SystemMetrics;
 import com.facebook.battery.metrics.core.Utilities;
 import com.facebook.infer.annotation.Nullsafe;
@@ -183,4 +184,25 @@ public class WakeLockMetrics extends SystemMetrics<WakeLockMetrics> {
     }
     return attribution;
   }
+
+  /**
+   * Writes the same representation as {@link #attributionToJSONObject()}.
+   *
+   * @return false, without writing anything, if attribution isn't enabled
+   */
+  public boolean attributionToJSON(JsonWriter writer) {
+    if (!isAttributionEnabled) {
+      return false;
+    }
+
+    writer.beginObject();
+    for (int i = 0, size = tagTimeMs.size(); i < size; i++) {
+      final Long value = tagTimeMs.valueAt(i);
+      if (value != null && value > 0) {
+        writer.name(tagTimeMs.keyAt(i)).value(value);
+      }
+    }
+    writer.endObject();
+    return true;
+  }
 }
@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.metrics.window;
+
+import com.facebook.battery.metrics.core.SystemMetrics;
+import com.facebook.battery.metrics.core.SystemMetricsCollector;
+import com.facebook.infer.annotation.Nullsafe;
+import com.facebook.infer.annotation.ThreadSafe;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps running totals of diffs over time windows, e.g. the cpu time of the last 5 minutes, the
+ * last hour and today, with fixed memory: each window is a ring of buckets that diffs are summed
+ * into, and that are cleared as time moves past them.
+ *
+ * <pre>{@code
+ * WindowAggregator<CompositeMetrics> aggregator = new WindowAggregator<>(collector);
+ * WindowAggregator.Window lastHour = aggregator.addSlidingWindow(60 * 60 * 1000, 60);
+ * ...
+ * aggregator.add(diff); // e.g. from a MetricsPipeline.Listener
+ * ...
+ * aggregator.getTotal(lastHour, total);
+ * }</pre>
+ *
+ * <p>Adding a diff sums it into the current bucket of each window, and getting the total of a
+ * window sums its buckets: neither allocates. Buckets are cleared by setting them to empty metrics
+ * from the collector, which relies on sums treating those as zero (as {@link
+ * com.facebook.battery.metrics.composite.CompositeMetrics} does for invalid metrics).
+ *
+ * <p>Diffs are attributed to the bucket of the time they're added at. Time is measured with
+ * {@link System#currentTimeMillis()} by default, so that tumbling windows can be aligned to days;
+ * if the clock goes backwards, diffs are added to the latest bucket.
+ */
+@Nullsafe(Nullsafe.Mode.LOCAL)
+@ThreadSafe
+public class WindowAggregator<T extends SystemMetrics<T>> {
+
+  /** A handle to a window of the aggregator it was added to. */
+  public static final class Window {
+    final int index;
+    final long bucketMs;
+    final long offsetMs;
+    final int bucketCount;
+
+    /** Absolute number of the latest bucket, since the epoch */
+    long current = Long.MIN_VALUE;
+
+    Window(int index, long bucketMs, long offsetMs, int bucketCount) {
+      this.index = index;
+      this.bucketMs = bucketMs;
+      this.offsetMs = offsetMs;
+      this.bucketCount = bucketCount;
+    }
+
+    public long getBucketMs() {
+      return bucketMs;
+    }
+
+    public int getBucketCount() {
+      return bucketCount;
+    }
+  }
+
+  private final SystemMetricsCollector<T> mCollector;
+  private final T mEmpty;
+  private final List<Window> mWindows = new ArrayList<>();
+  private final List<List<T>> mBuckets = new ArrayList<>();
+  private T mTemp;
+  private T mTotal;
+
+  /** @param collector used to create the metrics objects of the buckets */
+  public WindowAggregator(SystemMetricsCollector<T> collector) {
+    mCollector = collector;
+    mEmpty = collector.createMetrics();
+    mTemp = collector.createMetrics();
+    mTotal = collector.createMetrics();
+  }
+
+  /**
+   * Adds a window covering the last {@code spanMs}, split into {@code bucketCount} buckets: the
+   * window slides a bucket at a time, and its total covers between {@code spanMs - spanMs /
+   * bucketCount} and {@code spanMs}.
+   */
+  public synchronized Window addSlidingWindow(long spanMs, int bucketCount) {
+    if (bucketCount < 1 || spanMs < bucketCount) {
+      throw new IllegalArgumentException(
+          "Invalid window: spanMs=" + spanMs + ", bucketCount=" + bucketCount);
+    }
+    return addWindow(spanMs / bucketCount, 0, bucketCount);
+  }
+
+  /**
+   * Adds a window that restarts every {@code spanMs}, e.g. every day.
+   *
+   * @param offsetMs shifts the start of each period from multiples of spanMs since the epoch: e.g.
+   *     {@code -TimeZone.getDefault().getRawOffset()} starts days at local midnight
+   */
+  public synchronized Window addTumblingWindow(long spanMs, long offsetMs) {
+    if (spanMs < 1) {
+      throw new IllegalArgumentException("Invalid window: spanMs=" + spanMs);
+    }
+    return addWindow(spanMs, offsetMs, 1);
+  }
+
+  private Window addWindow(long bucketMs, long offsetMs, int bucketCount) {
+    Window window = new Window(mWindows.size(), bucketMs, offsetMs, bucketCount);
+    List<T> buckets = new ArrayList<>(bucketCount);
+    for (int i = 0; i < bucketCount; i++) {
+      buckets.add(mCollector.createMetrics());
+    }
+    mWindows.add(window);
+    mBuckets.add(buckets);
+    return window;
+  }
+
+  public void add(T diff) {
+    add(diff, System.currentTimeMillis());
+  }
+
+  /** Sums the diff into the current bucket of every window. */
+  public synchronized void add(T diff, long nowMs) {
+    for (int i = 0, size = mWindows.size(); i < size; i++) {
+      Window window = mWindows.get(i);
+      List<T> buckets = mBuckets.get(i);
+      advance(window, buckets, nowMs);
+
+      int bucket = floorMod(window.current, window.bucketCount);
+      buckets.get(bucket).sum(diff, mTemp);
+      mTemp = buckets.set(bucket, mTemp);
+    }
+  }
+
+  public T getTotal(Window window, T output) {
+    return getTotal(window, output, System.currentTimeMillis());
+  }
+
+  /**
+   * Sets output to the total of the window, as of the given time.
+   *
+   * @return output
+   */
+  public synchronized T getTotal(Window window, T output, long nowMs) {
+    if (window.index >= mWindows.size() || mWindows.get(window.index) != window) {
+      throw new IllegalArgumentException("Unknown window");
+    }
+    List<T> buckets = mBuckets.get(window.index);
+    advance(window, buckets, nowMs);
+
+    mTotal.set(mEmpty);
+    for (int i = 0; i < window.bucketCount; i++) {
+      mTotal.sum(buckets.get(i), mTemp);
+      T total = mTemp;
+      mTemp = mTotal;
+      mTotal = total;
+    }
+    return output.set(mTotal);
+  }
+
+  /** Clears the buckets the window moved past since it was last updated. */
+  private void advance(Window window, List<T> buckets, long nowMs) {
+    long bucket = floorDiv(nowMs - window.offsetMs, window.bucketMs);
+    if (window.current == Long.MIN_VALUE) {
+      window.current = bucket;
+      return;
+    }
+    if (bucket <= window.current) {
+      return;
+    }
+
+    long expired = Math.min(bucket - window.current, window.bucketCount);
+    for (long i = 1; i <= expired; i++) {
+      buckets.get(floorMod(window.current + i, window.bucketCount)).set(mEmpty);
+    }
+    window.current = bucket;
+  }
+
+  private static long floorDiv(long x, long y) {
+    long quotient = x / y;
+    return (x % y != 0 && (x < 0) != (y < 0)) ? quotient - 1 : quotient;
+  }
+
+  private static int floorMod(long x, int y) {
+    int mod = (int) (x % y);
+    return mod < 0 ? mod + y : mod;
+  }
+}
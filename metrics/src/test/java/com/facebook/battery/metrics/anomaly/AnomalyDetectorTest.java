@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.metrics.anomaly;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import androidx.annotation.Nullable;
+import com.facebook.battery.metrics.wakelock.WakeLockMetrics;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class)
+public class AnomalyDetectorTest {
+
+  private final List<String> mAnomalies = new ArrayList<>();
+  private final AnomalyDetector.Signal<WakeLockMetrics> mHeldTime =
+      new AnomalyDetector.Signal<WakeLockMetrics>() {
+        @Override
+        public double getValue(WakeLockMetrics diff) {
+          return diff.heldTimeMs;
+        }
+
+        @Override
+        public @Nullable String getAttribution(WakeLockMetrics diff) {
+          return Attributions.getLongestWakeLockTag(diff);
+        }
+      };
+  private AnomalyDetector.Listener mListener;
+
+  @Before
+  public void setUp() {
+    mListener =
+        new AnomalyDetector.Listener() {
+          @Override
+          public void onAnomaly(
+              String signal, double value, double zScore, @Nullable String attribution) {
+            mAnomalies.add(signal + ":" + (long) value + ":" + attribution);
+          }
+        };
+  }
+
+  @Test
+  public void testZScore() {
+    AnomalyDetector<WakeLockMetrics> detector =
+        new AnomalyDetector<WakeLockMetrics>(mListener, 0.1, 5)
+            .addSignal("held_time_ms", mHeldTime, AnomalyDetector.NO_THRESHOLD, 4);
+
+    WakeLockMetrics diff = new WakeLockMetrics(true);
+    for (int i = 0; i < 50; i++) {
+      diff.heldTimeMs = 1000 + (i % 2) * 100;
+      diff.tagTimeMs.put("sync", diff.heldTimeMs);
+      detector.update(diff);
+    }
+    assertThat(mAnomalies).isEmpty();
+
+    diff.heldTimeMs = 60_000;
+    diff.tagTimeMs.put("runaway", 59_000L);
+    detector.update(diff);
+    assertThat(mAnomalies).containsExactly("held_time_ms:60000:runaway");
+  }
+
+  @Test
+  public void testThresholdDuringWarmup() {
+    AnomalyDetector<WakeLockMetrics> detector =
+        new AnomalyDetector<WakeLockMetrics>(mListener)
+            .addSignal("held_time_ms", mHeldTime, 10_000, 4);
+
+    WakeLockMetrics diff = new WakeLockMetrics();
+    diff.heldTimeMs = 9_999;
+    detector.update(diff);
+    diff.heldTimeMs = 10_000;
+    detector.update(diff);
+    assertThat(mAnomalies).containsExactly("held_time_ms:10000:null");
+  }
+
+  @Test
+  public void testConstantBaseline() {
+    AnomalyDetector<WakeLockMetrics> detector =
+        new AnomalyDetector<WakeLockMetrics>(mListener, 0.5, 1)
+            .addSignal("held_time_ms", mHeldTime, AnomalyDetector.NO_THRESHOLD, 1);
+
+    // Without any variance, z-scores aren't checked
+    WakeLockMetrics diff = new WakeLockMetrics();
+    detector.update(diff);
+    detector.update(diff);
+    diff.heldTimeMs = 10;
+    detector.update(diff);
+    assertThat(mAnomalies).isEmpty();
+
+    // Now there's some variance
+    diff.heldTimeMs = 100;
+    detector.update(diff);
+    assertThat(mAnomalies).containsExactly("held_time_ms:100:null");
+  }
+
+  @Test
+  public void testSkipsNaNAndResets() {
+    final double[] value = {0};
+    AnomalyDetector<WakeLockMetrics> detector =
+        new AnomalyDetector<WakeLockMetrics>(mListener, 0.5, 2)
+            .addSignal(
+                "value",
+                new AnomalyDetector.Signal<WakeLockMetrics>() {
+                  @Override
+                  public double getValue(WakeLockMetrics diff) {
+                    return value[0];
+                  }
+                },
+                AnomalyDetector.NO_THRESHOLD,
+                2);
+
+    WakeLockMetrics diff = new WakeLockMetrics();
+    for (double current : new double[] {1, 2, 1, 2, Double.NaN, 10}) {
+      value[0] = current;
+      detector.update(diff);
+    }
+    assertThat(mAnomalies).containsExactly("value:10:null");
+
+    detector.reset();
+    detector.update(diff);
+    detector.update(diff);
+    assertThat(mAnomalies).hasSize(1);
+  }
+}
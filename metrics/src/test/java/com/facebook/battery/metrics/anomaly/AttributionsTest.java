@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.metrics.anomaly;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.facebook.battery.metrics.appwakeup.AppWakeupMetrics;
+import com.facebook.battery.metrics.sensor.SensorMetrics;
+import com.facebook.battery.metrics.wakelock.WakeLockMetrics;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class)
+public class AttributionsTest {
+
+  @Test
+  public void testWakeLocks() {
+    WakeLockMetrics metrics = new WakeLockMetrics(true);
+    assertThat(Attributions.getLongestWakeLockTag(metrics)).isNull();
+    metrics.tagTimeMs.put("a", 10L);
+    metrics.tagTimeMs.put("b", 30L);
+    metrics.tagTimeMs.put("c", 20L);
+    assertThat(Attributions.getLongestWakeLockTag(metrics)).isEqualTo("b");
+  }
+
+  @Test
+  public void testSensors() {
+    SensorMetrics metrics = new SensorMetrics(true);
+    assertThat(Attributions.getHighestPowerSensorType(metrics)).isNull();
+    metrics.sensorConsumption.put(1, new SensorMetrics.Consumption(2.0, 10, 0));
+    metrics.sensorConsumption.put(4, new SensorMetrics.Consumption(5.0, 10, 0));
+    assertThat(Attributions.getHighestPowerSensorType(metrics)).isEqualTo("4");
+  }
+
+  @Test
+  public void testWakeups() {
+    AppWakeupMetrics metrics = new AppWakeupMetrics();
+    assertThat(Attributions.getMostFrequentWakeup(metrics)).isNull();
+    metrics.appWakeups.put(
+        "sync", new AppWakeupMetrics.WakeupDetails(AppWakeupMetrics.WakeupReason.ALARM, 3, 100));
+    metrics.appWakeups.put(
+        "push", new AppWakeupMetrics.WakeupDetails(AppWakeupMetrics.WakeupReason.GCM, 5, 10));
+    assertThat(Attributions.getMostFrequentWakeup(metrics)).isEqualTo("GCM:push");
+  }
+}
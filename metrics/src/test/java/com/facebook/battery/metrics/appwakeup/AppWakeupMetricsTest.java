@@ -12,6 +12,7 @@ import static com.facebook.battery.metrics.appwakeup.AppWakeupMetrics.WakeupReas
 import static org.assertj.core.api.Assertions.assertThat;
 
 import androidx.collection.SimpleArrayMap;
+import com.facebook.battery.metrics.core.JsonWriter;
 import com.facebook.battery.metrics.core.SystemMetricsTest;
 import org.json.JSONArray;
 import org.json.JSONException;
@@ -78,6 +79,16 @@ public class AppWakeupMetricsTest extends SystemMetricsTest<AppWakeupMetrics> {
     assertThat(wakeup.getString("key")).isEqualTo("wakeup");
   }
 
+  @Test
+  public void testWakeupAttributionStreaming() {
+    JsonWriter writer = new JsonWriter();
+    getAppWakeupMetrics(2, 0).toJSON(writer);
+    assertThat(writer.toString())
+        .isEqualTo(
+            "[{\"key\":\"key-0\",\"type\":\"ALARM\",\"count\":0,\"time_ms\":1},"
+                + "{\"key\":\"key-1\",\"type\":\"JOB_SCHEDULER\",\"count\":1,\"time_ms\":2}]");
+  }
+
   // Create a AppWakeupMetrics with size = numWakeups, with odd numbered wakeups as JS and
   // even numbered ones as Alarms.
   private static AppWakeupMetrics getAppWakeupMetrics(int numWakeups, int offset) {
@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.metrics.cgroup;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.facebook.battery.metrics.core.SystemMetricsCollectorTest;
+import com.facebook.battery.metrics.cpu.CpuMetrics;
+import com.facebook.battery.metrics.cpu.CpuMetricsCollector;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class)
+public class CgroupCpuMetricsCollectorTest
+    extends SystemMetricsCollectorTest<CgroupCpuMetrics, CgroupCpuMetricsCollector> {
+
+  private static final String TOP_APP_CGROUP =
+      "5:schedtune:/top-app\n3:cpuset:/top-app\n2:cpu:/\n1:cpuacct:/uid_10123/pid_42\n";
+  private static final String BACKGROUND_CGROUP =
+      "5:schedtune:/background\n3:cpuset:/background\n2:cpu:/\n1:cpuacct:/uid_10123/pid_42\n";
+
+  TemporaryFolder mFolder = new TemporaryFolder();
+
+  private File mCgroup;
+  private File mCpuset;
+  private FakeCpuMetricsCollector mCpuMetricsCollector;
+  private CgroupCpuMetricsCollector mCollector;
+
+  @Before
+  public void setUp() throws Exception {
+    mFolder.create();
+    mCgroup = mFolder.newFile();
+    mCpuset = mFolder.newFile();
+    mCpuMetricsCollector = new FakeCpuMetricsCollector();
+    mCollector =
+        new CgroupCpuMetricsCollector(mCpuMetricsCollector) {
+          @Override
+          protected String getCgroupPath() {
+            return mCgroup.getAbsolutePath();
+          }
+
+          @Override
+          protected String getCpusetPath() {
+            return mCpuset.getAbsolutePath();
+          }
+        };
+  }
+
+  @Test
+  public void testAttribution() throws Exception {
+    CgroupCpuMetrics snapshot = mCollector.createMetrics();
+
+    writeFile(mCgroup, TOP_APP_CGROUP);
+    mCpuMetricsCollector.userTimeS = 1;
+    assertThat(mCollector.getSnapshot(snapshot)).isTrue();
+    assertThat(snapshot).isEqualTo(new CgroupCpuMetrics());
+
+    mCpuMetricsCollector.userTimeS = 5;
+    assertThat(mCollector.getSnapshot(snapshot)).isTrue();
+    assertThat(snapshot.cpuMetrics[CgroupCpuMetrics.TOP_APP].userTimeS).isEqualTo(4.0);
+
+    // The interval up to the snapshot that notices the transition still belongs to the top app.
+    writeFile(mCgroup, BACKGROUND_CGROUP);
+    mCpuMetricsCollector.userTimeS = 7;
+    assertThat(mCollector.getSnapshot(snapshot)).isTrue();
+    assertThat(snapshot.cpuMetrics[CgroupCpuMetrics.TOP_APP].userTimeS).isEqualTo(6.0);
+    assertThat(snapshot.cpuMetrics[CgroupCpuMetrics.BACKGROUND].userTimeS).isEqualTo(0.0);
+
+    mCpuMetricsCollector.userTimeS = 10;
+    mCpuMetricsCollector.systemTimeS = 2;
+    assertThat(mCollector.getSnapshot(snapshot)).isTrue();
+    assertThat(snapshot.cpuMetrics[CgroupCpuMetrics.TOP_APP].userTimeS).isEqualTo(6.0);
+    assertThat(snapshot.cpuMetrics[CgroupCpuMetrics.BACKGROUND].userTimeS).isEqualTo(3.0);
+    assertThat(snapshot.cpuMetrics[CgroupCpuMetrics.BACKGROUND].systemTimeS).isEqualTo(2.0);
+  }
+
+  @Test
+  public void testCpusetFallback() throws Exception {
+    CgroupCpuMetrics snapshot = mCollector.createMetrics();
+
+    writeFile(mCgroup, "2:cpu:/\n1:cpuacct:/uid_10123/pid_42\n");
+    writeFile(mCpuset, "/foreground\n");
+    assertThat(mCollector.getSnapshot(snapshot)).isTrue();
+
+    mCpuMetricsCollector.userTimeS = 2;
+    assertThat(mCollector.getSnapshot(snapshot)).isTrue();
+    assertThat(snapshot.cpuMetrics[CgroupCpuMetrics.FOREGROUND].userTimeS).isEqualTo(2.0);
+  }
+
+  @Test
+  public void testMissingCgroupFile() throws Exception {
+    mCgroup.delete();
+    mCpuset.delete();
+    CgroupCpuMetrics snapshot = mCollector.createMetrics();
+    assertThat(mCollector.getSnapshot(snapshot)).isTrue();
+
+    mCpuMetricsCollector.userTimeS = 2;
+    assertThat(mCollector.getSnapshot(snapshot)).isTrue();
+    assertThat(snapshot.cpuMetrics[CgroupCpuMetrics.OTHER].userTimeS).isEqualTo(2.0);
+  }
+
+  @Test
+  public void testMissingCgroupFileFallsBackToCpuset() throws Exception {
+    mCgroup.delete();
+    writeFile(mCpuset, "/top-app\n");
+    CgroupCpuMetrics snapshot = mCollector.createMetrics();
+    assertThat(mCollector.getSnapshot(snapshot)).isTrue();
+
+    mCpuMetricsCollector.userTimeS = 3;
+    assertThat(mCollector.getSnapshot(snapshot)).isTrue();
+    assertThat(snapshot.cpuMetrics[CgroupCpuMetrics.TOP_APP].userTimeS).isEqualTo(3.0);
+  }
+
+  @Test
+  public void testFailedCpuSnapshot() throws Exception {
+    mCpuMetricsCollector.isValid = false;
+    assertThat(mCollector.getSnapshot(mCollector.createMetrics())).isFalse();
+  }
+
+  @Test
+  public void testClassify() {
+    assertThat(CgroupCpuMetricsCollector.classify("/top-app")).isEqualTo(CgroupCpuMetrics.TOP_APP);
+    assertThat(CgroupCpuMetricsCollector.classify("/foreground"))
+        .isEqualTo(CgroupCpuMetrics.FOREGROUND);
+    assertThat(CgroupCpuMetricsCollector.classify("/system-background"))
+        .isEqualTo(CgroupCpuMetrics.BACKGROUND);
+    assertThat(CgroupCpuMetricsCollector.classify("/bg_non_interactive"))
+        .isEqualTo(CgroupCpuMetrics.BACKGROUND);
+    assertThat(CgroupCpuMetricsCollector.classify("/")).isEqualTo(CgroupCpuMetrics.OTHER);
+  }
+
+  private static void writeFile(File file, String contents) throws IOException {
+    FileOutputStream os = new FileOutputStream(file, false);
+    os.write(contents.getBytes());
+    os.close();
+  }
+
+  @Override
+  protected Class<CgroupCpuMetricsCollector> getClazz() {
+    return CgroupCpuMetricsCollector.class;
+  }
+
+  private static class FakeCpuMetricsCollector extends CpuMetricsCollector {
+
+    double userTimeS;
+    double systemTimeS;
+    boolean isValid = true;
+
+    @Override
+    public boolean getSnapshot(CpuMetrics snapshot) {
+      snapshot.userTimeS = userTimeS;
+      snapshot.systemTimeS = systemTimeS;
+      return isValid;
+    }
+  }
+}
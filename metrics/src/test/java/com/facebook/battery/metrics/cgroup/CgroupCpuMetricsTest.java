@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.metrics.cgroup;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.facebook.battery.metrics.core.SystemMetricsTest;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class)
+public class CgroupCpuMetricsTest extends SystemMetricsTest<CgroupCpuMetrics> {
+
+  @Test
+  public void testGroupsSumAndDiff() {
+    CgroupCpuMetrics a = new CgroupCpuMetrics();
+    a.cpuMetrics[CgroupCpuMetrics.TOP_APP].userTimeS = 10;
+    a.cpuMetrics[CgroupCpuMetrics.BACKGROUND].systemTimeS = 4;
+
+    CgroupCpuMetrics b = new CgroupCpuMetrics();
+    b.cpuMetrics[CgroupCpuMetrics.TOP_APP].userTimeS = 3;
+    b.cpuMetrics[CgroupCpuMetrics.FOREGROUND].userTimeS = 1;
+
+    CgroupCpuMetrics sum = a.sum(b, null);
+    assertThat(sum.cpuMetrics[CgroupCpuMetrics.TOP_APP].userTimeS).isEqualTo(13.0);
+    assertThat(sum.cpuMetrics[CgroupCpuMetrics.FOREGROUND].userTimeS).isEqualTo(1.0);
+    assertThat(sum.cpuMetrics[CgroupCpuMetrics.BACKGROUND].systemTimeS).isEqualTo(4.0);
+
+    CgroupCpuMetrics diff = sum.diff(b, null);
+    assertThat(diff).isEqualTo(a);
+  }
+
+  @Override
+  protected Class<CgroupCpuMetrics> getClazz() {
+    return CgroupCpuMetrics.class;
+  }
+}
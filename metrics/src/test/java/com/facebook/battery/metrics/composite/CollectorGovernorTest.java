@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.metrics.composite;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.facebook.battery.metrics.core.ShadowDebug;
+import com.facebook.battery.metrics.core.ShadowSystemClock;
+import com.facebook.battery.metrics.core.SystemMetricsCollector;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(shadows = {ShadowDebug.class, ShadowSystemClock.class})
+public class CollectorGovernorTest {
+
+  private CostlyCollector mACollector;
+  private CostlyBCollector mBCollector;
+  private CompositeMetrics mMetrics;
+
+  @Before
+  public void setUp() {
+    ShadowDebug.setThreadCpuTimeNanos(0);
+    ShadowSystemClock.setElapsedRealtime(0);
+    mACollector = new CostlyCollector();
+    mACollector.costNs = 80;
+    mBCollector = new CostlyBCollector();
+    mBCollector.costNs = 50;
+    mMetrics = new CompositeMetrics().putMetric(A.class, new A()).putMetric(B.class, new B());
+  }
+
+  @Test
+  public void testDegradesLowestPriority() {
+    CollectorGovernor governor =
+        new CollectorGovernor(100, 1000).setPriority(A.class, CollectorGovernor.PRIORITY_LOW);
+    CompositeMetricsCollector collector = createCollector(governor);
+
+    mACollector.value = 5;
+    snapshotAt(collector, 0);
+    assertThat(governor.getSamplingPeriod(A.class)).isEqualTo(1);
+
+    // Over budget: A is skipped and carried forward
+    mACollector.value = 7;
+    snapshotAt(collector, 1000);
+    assertThat(governor.getSamplingPeriod(A.class)).isEqualTo(2);
+    assertThat(governor.getSamplingPeriod(B.class)).isEqualTo(1);
+    assertThat(mMetrics.isValid(A.class)).isTrue();
+    assertThat(mMetrics.getMetric(A.class).value).isEqualTo(5);
+    assertThat(mMetrics.isValid(B.class)).isTrue();
+
+    snapshotAt(collector, 1500);
+    assertThat(mMetrics.getMetric(A.class).value).isEqualTo(7);
+  }
+
+  @Test
+  public void testDegradesByCostRelativeToShare() {
+    // A gets twice the share of B, but spends four times as much
+    mACollector.costNs = 200;
+    mBCollector.costNs = 50;
+    CollectorGovernor governor =
+        new CollectorGovernor(100, 1000).setPriority(B.class, CollectorGovernor.PRIORITY_LOW);
+    CompositeMetricsCollector collector = createCollector(governor);
+
+    snapshotAt(collector, 0);
+    snapshotAt(collector, 1000);
+    assertThat(governor.getSamplingPeriod(A.class)).isEqualTo(2);
+    assertThat(governor.getSamplingPeriod(B.class)).isEqualTo(1);
+  }
+
+  @Test
+  public void testCallersSkipIndependently() {
+    CollectorGovernor governor =
+        new CollectorGovernor(100, 1000).setPriority(A.class, CollectorGovernor.PRIORITY_LOW);
+    CompositeMetricsCollector collector = createCollector(governor);
+    SampledCompositeMetricsCollector sampled = new SampledCompositeMetricsCollector(collector);
+    snapshotAt(collector, 0);
+    snapshotAt(collector, 1000);
+    assertThat(governor.getSamplingPeriod(A.class)).isEqualTo(2);
+
+    // Alternating calls would always land on the same phase if callers shared their skips
+    sampled.start();
+    int sampledSnapshots = 0;
+    for (int i = 0; i < 4; i++) {
+      mACollector.value++;
+      collector.getSnapshot(mMetrics);
+      int snapshots = mACollector.snapshots;
+      sampled.getLatestDiffAndReset(true);
+      sampledSnapshots += mACollector.snapshots - snapshots;
+    }
+    assertThat(sampledSnapshots).isEqualTo(2);
+  }
+
+  @Test
+  public void testRequiredIsNeverDegraded() {
+    CollectorGovernor governor =
+        new CollectorGovernor(100, 1000)
+            .setPriority(A.class, CollectorGovernor.PRIORITY_REQUIRED)
+            .setMaxSamplingPeriod(2);
+    CompositeMetricsCollector collector = createCollector(governor);
+
+    for (int i = 0; i < 5; i++) {
+      snapshotAt(collector, i * 1000);
+    }
+    assertThat(governor.getSamplingPeriod(A.class)).isEqualTo(1);
+    assertThat(governor.getSamplingPeriod(B.class)).isEqualTo(2);
+  }
+
+  @Test
+  public void testRestoresUnderBudget() {
+    CollectorGovernor governor = new CollectorGovernor(100, 1000);
+    CompositeMetricsCollector collector = createCollector(governor);
+
+    snapshotAt(collector, 0);
+    snapshotAt(collector, 1000);
+    assertThat(governor.getSamplingPeriod(A.class)).isEqualTo(2);
+
+    mACollector.costNs = 0;
+    mBCollector.costNs = 0;
+    snapshotAt(collector, 2000);
+    snapshotAt(collector, 3000);
+    assertThat(governor.getSamplingPeriod(A.class)).isEqualTo(1);
+  }
+
+  @Test
+  public void testSkippedSnapshotsInvalid() {
+    CollectorGovernor governor = new CollectorGovernor(100, 1000).setCarryForward(false);
+    CompositeMetricsCollector collector = createCollector(governor);
+
+    snapshotAt(collector, 0);
+    snapshotAt(collector, 1000);
+    assertThat(governor.getSamplingPeriod(A.class)).isEqualTo(2);
+    assertThat(mMetrics.isValid(A.class)).isFalse();
+    assertThat(mMetrics.isValid(B.class)).isTrue();
+  }
+
+  private CompositeMetricsCollector createCollector(CollectorGovernor governor) {
+    return new CompositeMetricsCollector.Builder()
+        .addMetricsCollector(A.class, mACollector)
+        .addMetricsCollector(B.class, mBCollector)
+        .setGovernor(governor)
+        .build();
+  }
+
+  private void snapshotAt(CompositeMetricsCollector collector, long elapsedRealtimeMs) {
+    ShadowSystemClock.setElapsedRealtime(elapsedRealtimeMs);
+    collector.getSnapshot(mMetrics);
+  }
+
+  private static void spend(long costNs) {
+    ShadowDebug.setThreadCpuTimeNanos(ShadowDebug.threadCpuTimeNanos() + costNs);
+  }
+
+  private static class CostlyCollector extends SystemMetricsCollector<A> {
+    int value;
+    long costNs;
+    int snapshots;
+
+    @Override
+    public boolean getSnapshot(A snapshot) {
+      snapshots++;
+      spend(costNs);
+      snapshot.value = value;
+      return true;
+    }
+
+    @Override
+    public A createMetrics() {
+      return new A();
+    }
+  }
+
+  private static class CostlyBCollector extends SystemMetricsCollector<B> {
+    long costNs;
+
+    @Override
+    public boolean getSnapshot(B snapshot) {
+      spend(costNs);
+      return true;
+    }
+
+    @Override
+    public B createMetrics() {
+      return new B();
+    }
+  }
+}
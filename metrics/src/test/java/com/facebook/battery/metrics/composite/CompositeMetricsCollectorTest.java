@@ -10,6 +10,7 @@ package com.facebook.battery.metrics.composite;
 import static org.assertj.core.api.Assertions.assertThat;
 
 import androidx.annotation.Nullable;
+import com.facebook.battery.metrics.core.StatefulSystemMetricsCollector;
 import com.facebook.battery.metrics.core.SystemMetrics;
 import com.facebook.battery.metrics.core.SystemMetricsCollector;
 import org.junit.Before;
@@ -117,6 +118,93 @@ public class CompositeMetricsCollectorTest {
     assertThat(m.getMetric(B.class)).isNull();
     assertThat(m.isValid(C.class)).isFalse();
   }
+
+  @Test
+  public void addCollectorAtRuntime() throws Exception {
+    CompositeMetricsCollector collector =
+        new CompositeMetricsCollector.Builder().addMetricsCollector(A.class, mACollector).build();
+    CompositeMetrics prev = collector.createMetrics();
+    CompositeMetrics curr = collector.createMetrics();
+    CompositeMetrics diff = collector.createMetrics();
+    mACollector.currentValue = 10;
+    collector.getSnapshot(prev);
+
+    mBCollector.currentValue = 1000;
+    collector.addMetricsCollector(B.class, mBCollector);
+    assertThat(collector.getMetricsCollector(B.class)).isSameAs(mBCollector);
+
+    // The first diff can't include B: it isn't a total since boot either
+    mACollector.currentValue = 15;
+    mBCollector.currentValue = 1004;
+    collector.getSnapshot(curr);
+    curr.diff(prev, diff);
+    assertThat(diff.getMetric(A.class).value).isEqualTo(5);
+    assertThat(diff.isValid(B.class)).isFalse();
+
+    mACollector.currentValue = 18;
+    mBCollector.currentValue = 1010;
+    collector.getSnapshot(prev);
+    prev.diff(curr, diff);
+    assertThat(diff.getMetric(A.class).value).isEqualTo(3);
+    assertThat(diff.isValid(B.class)).isTrue();
+    assertThat(diff.getMetric(B.class).value).isEqualTo(6);
+  }
+
+  @Test
+  public void statefulCollectorBackfillsAddedCollectors() throws Exception {
+    CompositeMetricsCollector collector =
+        new CompositeMetricsCollector.Builder().addMetricsCollector(A.class, mACollector).build();
+    mACollector.currentValue = 10;
+    StatefulSystemMetricsCollector<CompositeMetrics, CompositeMetricsCollector> stateful =
+        new StatefulSystemMetricsCollector<>(collector);
+
+    mBCollector.currentValue = 1000;
+    collector.addMetricsCollector(B.class, mBCollector);
+
+    // The baseline is backfilled with B as it was when added
+    mACollector.currentValue = 15;
+    mBCollector.currentValue = 1004;
+    CompositeMetrics diff = stateful.getLatestDiffAndReset();
+    assertThat(diff.getMetric(A.class).value).isEqualTo(5);
+    assertThat(diff.isValid(B.class)).isTrue();
+    assertThat(diff.getMetric(B.class).value).isEqualTo(4);
+
+    mACollector.currentValue = 18;
+    mBCollector.currentValue = 1010;
+    diff = stateful.getLatestDiffAndReset();
+    assertThat(diff.getMetric(A.class).value).isEqualTo(3);
+    assertThat(diff.getMetric(B.class).value).isEqualTo(6);
+  }
+
+  @Test
+  public void removeCollectorAtRuntime() throws Exception {
+    assertThat(mCollector.removeMetricsCollector(B.class)).isTrue();
+    assertThat(mCollector.removeMetricsCollector(B.class)).isFalse();
+    assertThat(mCollector.getMetricsCollector(B.class)).isNull();
+
+    assertThat(mCollector.getSnapshot(mMetrics)).isTrue();
+    assertThat(mMetrics.isValid(A.class)).isTrue();
+    assertThat(mMetrics.isValid(B.class)).isFalse();
+    assertThat(mCollector.createMetrics().getMetric(B.class)).isNull();
+  }
+
+  @Test
+  public void disableCollectorAtRuntime() throws Exception {
+    assertThat(mCollector.setEnabled(B.class, false)).isTrue();
+    assertThat(mCollector.isEnabled(B.class)).isFalse();
+    assertThat(mCollector.setEnabled(C.class, false)).isFalse();
+
+    mBCollector.currentValue = 120;
+    mCollector.getSnapshot(mMetrics);
+    assertThat(mMetrics.isValid(A.class)).isTrue();
+    assertThat(mMetrics.isValid(B.class)).isFalse();
+    assertThat(mMetrics.getMetric(B.class).value).isEqualTo(0);
+
+    mCollector.setEnabled(B.class, true);
+    mCollector.getSnapshot(mMetrics);
+    assertThat(mMetrics.isValid(B.class)).isTrue();
+    assertThat(mMetrics.getMetric(B.class).value).isEqualTo(120);
+  }
 }
 
 class A extends SystemMetrics<A> {
@@ -0,0 +1,226 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.metrics.composite;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.facebook.battery.metrics.overhead.CollectorOverheadMetrics;
+import com.facebook.battery.metrics.overhead.CollectorOverheadMetricsCollector;
+import java.util.Random;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class)
+public class SampledCompositeMetricsCollectorTest {
+
+  private CountingACollector mACollector;
+  private CountingBCollector mBCollector;
+  private CompositeMetricsCollector mCollector;
+
+  @Before
+  public void setUp() {
+    mACollector = new CountingACollector();
+    mBCollector = new CountingBCollector();
+    mCollector =
+        new CompositeMetricsCollector.Builder()
+            .addMetricsCollector(A.class, mACollector)
+            .addMetricsCollector(B.class, mBCollector)
+            .build();
+  }
+
+  @Test
+  public void testReportsEveryEventByDefault() {
+    SampledCompositeMetricsCollector collector = new SampledCompositeMetricsCollector(mCollector);
+    mACollector.currentValue = 10;
+    mBCollector.currentValue = 20;
+    collector.start();
+
+    mACollector.currentValue = 15;
+    mBCollector.currentValue = 30;
+    CompositeMetrics diff = collector.getLatestDiffAndReset(true);
+    assertThat(diff.isValid(A.class)).isTrue();
+    assertThat(diff.getMetric(A.class).value).isEqualTo(5);
+    assertThat(diff.isValid(B.class)).isTrue();
+    assertThat(diff.getMetric(B.class).value).isEqualTo(10);
+
+    mACollector.currentValue = 16;
+    diff = collector.getLatestDiffAndReset(true);
+    assertThat(diff.getMetric(A.class).value).isEqualTo(1);
+    assertThat(diff.getMetric(B.class).value).isEqualTo(0);
+  }
+
+  @Test
+  public void testUnsampledEventsOnlyAdvanceBaselines() {
+    SampledCompositeMetricsCollector collector = new SampledCompositeMetricsCollector(mCollector);
+    collector.start();
+
+    mACollector.currentValue = 10;
+    assertThat(collector.getLatestDiffAndReset(false)).isNull();
+
+    mACollector.currentValue = 12;
+    CompositeMetrics diff = collector.getLatestDiffAndReset(true);
+    assertThat(diff.getMetric(A.class).value).isEqualTo(2);
+  }
+
+  @Test
+  public void testSkipsTypesThatArentSampled() {
+    // Never sampled: the random draw is never 0
+    SampledCompositeMetricsCollector collector =
+        new SampledCompositeMetricsCollector(mCollector, new FixedRandom(1))
+            .setSampleRate(B.class, 10);
+    collector.start();
+
+    for (int i = 0; i < 5; i++) {
+      mACollector.currentValue += 3;
+      CompositeMetrics diff = collector.getLatestDiffAndReset(i % 2 == 0);
+      if (i % 2 == 0) {
+        assertThat(diff.isValid(A.class)).isTrue();
+        assertThat(diff.isValid(B.class)).isFalse();
+      } else {
+        assertThat(diff).isNull();
+      }
+    }
+    assertThat(mBCollector.snapshots).isEqualTo(0);
+    assertThat(mACollector.snapshots).isEqualTo(6);
+  }
+
+  @Test
+  public void testSampledTypesHaveFreshBaselines() {
+    FixedRandom random = new FixedRandom(1);
+    SampledCompositeMetricsCollector collector =
+        new SampledCompositeMetricsCollector(mCollector, random).setSampleRate(B.class, 10);
+    collector.start();
+
+    mBCollector.currentValue = 100;
+    random.value = 0;
+    assertThat(collector.getLatestDiffAndReset(true).isValid(B.class)).isFalse();
+    assertThat(mBCollector.snapshots).isEqualTo(1);
+
+    mBCollector.currentValue = 105;
+    random.value = 1;
+    CompositeMetrics diff = collector.getLatestDiffAndReset(true);
+    assertThat(diff.isValid(B.class)).isTrue();
+    assertThat(diff.getMetric(B.class).value).isEqualTo(5);
+    assertThat(mBCollector.snapshots).isEqualTo(2);
+    assertThat(collector.getSampleRate(B.class)).isEqualTo(10);
+    assertThat(collector.getSampleRate(A.class)).isEqualTo(1);
+  }
+
+  @Test
+  public void testFailedSnapshotsAreNotReported() {
+    SampledCompositeMetricsCollector collector = new SampledCompositeMetricsCollector(mCollector);
+    collector.start();
+
+    mBCollector.succeeds = false;
+    CompositeMetrics diff = collector.getLatestDiffAndReset(true);
+    assertThat(diff.isValid(A.class)).isTrue();
+    assertThat(diff.isValid(B.class)).isFalse();
+
+    // Recovers with a new baseline
+    mBCollector.succeeds = true;
+    assertThat(collector.getLatestDiffAndReset(true).isValid(B.class)).isFalse();
+    assertThat(collector.getLatestDiffAndReset(true).isValid(B.class)).isTrue();
+  }
+
+  @Test
+  public void testSnapshotsTrackOverhead() {
+    CollectorOverheadMetricsCollector overheadCollector = new CollectorOverheadMetricsCollector();
+    CompositeMetricsCollector composite =
+        new CompositeMetricsCollector.Builder()
+            .addMetricsCollector(A.class, mACollector)
+            .addMetricsCollector(B.class, mBCollector)
+            .trackOverhead(overheadCollector)
+            .build();
+    SampledCompositeMetricsCollector collector = new SampledCompositeMetricsCollector(composite);
+    collector.start();
+    collector.getLatestDiffAndReset(true);
+
+    CollectorOverheadMetrics overhead = overheadCollector.createMetrics();
+    assertThat(overheadCollector.getSnapshot(overhead)).isTrue();
+    // A and B, at the start and for the event
+    assertThat(overhead.snapshotCount).isEqualTo(4);
+  }
+
+  @Test
+  public void testDisabledCollectorsAreNotSnapshotted() {
+    SampledCompositeMetricsCollector collector = new SampledCompositeMetricsCollector(mCollector);
+    collector.start();
+    mCollector.setEnabled(B.class, false);
+
+    mBCollector.currentValue = 10;
+    CompositeMetrics diff = collector.getLatestDiffAndReset(true);
+    assertThat(diff.isValid(A.class)).isTrue();
+    assertThat(diff.isValid(B.class)).isFalse();
+    assertThat(mBCollector.snapshots).isEqualTo(1);
+  }
+
+  @Test
+  public void testCollectorsAddedAtRuntime() {
+    CompositeMetricsCollector composite =
+        new CompositeMetricsCollector.Builder().addMetricsCollector(A.class, mACollector).build();
+    SampledCompositeMetricsCollector collector = new SampledCompositeMetricsCollector(composite);
+    collector.start();
+
+    mBCollector.currentValue = 100;
+    composite.addMetricsCollector(B.class, mBCollector);
+
+    // The first diff starts from the snapshot taken when B was added
+    mACollector.currentValue = 3;
+    mBCollector.currentValue = 104;
+    CompositeMetrics diff = collector.getLatestDiffAndReset(true);
+    assertThat(diff.getMetric(A.class).value).isEqualTo(3);
+    assertThat(diff.isValid(B.class)).isTrue();
+    assertThat(diff.getMetric(B.class).value).isEqualTo(4);
+
+    composite.removeMetricsCollector(B.class);
+    mACollector.currentValue = 5;
+    diff = collector.getLatestDiffAndReset(true);
+    assertThat(diff.getMetric(A.class).value).isEqualTo(2);
+    assertThat(diff.getMetrics().containsKey(B.class)).isFalse();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidSampleRate() {
+    new SampledCompositeMetricsCollector(mCollector).setSampleRate(A.class, 0);
+  }
+
+  private static class FixedRandom extends Random {
+    int value;
+
+    FixedRandom(int value) {
+      this.value = value;
+    }
+
+    @Override
+    public int nextInt(int bound) {
+      return value;
+    }
+  }
+
+  private static class CountingACollector extends ACollector {
+    int snapshots;
+
+    @Override
+    public boolean getSnapshot(A snapshot) {
+      snapshots++;
+      return super.getSnapshot(snapshot);
+    }
+  }
+
+  private static class CountingBCollector extends BCollector {
+    int snapshots;
+
+    @Override
+    public boolean getSnapshot(B snapshot) {
+      snapshots++;
+      return super.getSnapshot(snapshot);
+    }
+  }
+}
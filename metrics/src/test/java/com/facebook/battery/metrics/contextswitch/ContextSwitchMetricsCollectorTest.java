@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.metrics.contextswitch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.facebook.battery.metrics.core.SystemMetricsCollectorTest;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class)
+public class ContextSwitchMetricsCollectorTest
+    extends SystemMetricsCollectorTest<ContextSwitchMetrics, ContextSwitchMetricsCollector> {
+
+  private static final String STATUS =
+      "Name:\tfacebook.katana\n"
+          + "Umask:\t0077\n"
+          + "State:\tS (sleeping)\n"
+          + "Tgid:\t21031\n"
+          + "Pid:\t21031\n"
+          + "PPid:\t354\n"
+          + "Uid:\t10123\t10123\t10123\t10123\n"
+          + "FDSize:\t512\n"
+          + "Groups:\t \n"
+          + "VmPeak:\t 2104160 kB\n"
+          + "VmSize:\t 2050460 kB\n"
+          + "VmHWM:\t  301232 kB\n"
+          + "VmRSS:\t  282212 kB\n"
+          + "Threads:\t134\n"
+          + "SigQ:\t0/21568\n"
+          + "Cpus_allowed:\tff\n"
+          + "Cpus_allowed_list:\t0-7\n"
+          + "Mems_allowed_list:\t0\n"
+          + "voluntary_ctxt_switches:\t64713\n"
+          + "nonvoluntary_ctxt_switches:\t9123\n";
+
+  TemporaryFolder mFolder = new TemporaryFolder();
+
+  @Before
+  public void setUp() throws Exception {
+    mFolder.create();
+  }
+
+  @Test
+  public void testContextSwitches() throws Exception {
+    TestableContextSwitchMetricsCollector collector =
+        new TestableContextSwitchMetricsCollector(false, false).setPath(createFile(STATUS));
+
+    ContextSwitchMetrics snapshot = new ContextSwitchMetrics();
+    assertThat(collector.getSnapshot(snapshot)).isTrue();
+
+    assertThat(snapshot.voluntaryContextSwitches).isEqualTo(64713);
+    assertThat(snapshot.nonvoluntaryContextSwitches).isEqualTo(9123);
+    assertThat(snapshot.threadsCount).isEqualTo(0);
+    assertThat(snapshot.vmHwmKb).isEqualTo(0);
+  }
+
+  @Test
+  public void testOptionalFields() throws Exception {
+    TestableContextSwitchMetricsCollector collector =
+        new TestableContextSwitchMetricsCollector(true, true).setPath(createFile(STATUS));
+
+    ContextSwitchMetrics snapshot = new ContextSwitchMetrics();
+    assertThat(collector.getSnapshot(snapshot)).isTrue();
+
+    assertThat(snapshot.voluntaryContextSwitches).isEqualTo(64713);
+    assertThat(snapshot.nonvoluntaryContextSwitches).isEqualTo(9123);
+    assertThat(snapshot.threadsCount).isEqualTo(134);
+    assertThat(snapshot.vmHwmKb).isEqualTo(301232);
+  }
+
+  @Test
+  public void testRepeatedSnapshots() throws Exception {
+    String path = createFile(STATUS);
+    TestableContextSwitchMetricsCollector collector =
+        new TestableContextSwitchMetricsCollector(true, false).setPath(path);
+
+    ContextSwitchMetrics snapshot = new ContextSwitchMetrics();
+    assertThat(collector.getSnapshot(snapshot)).isTrue();
+
+    overwriteFile(
+        new File(path),
+        STATUS.replace("64713", "70000").replace("9123", "9200").replace("134", "140"));
+    assertThat(collector.getSnapshot(snapshot)).isTrue();
+    assertThat(snapshot.voluntaryContextSwitches).isEqualTo(70000);
+    assertThat(snapshot.nonvoluntaryContextSwitches).isEqualTo(9200);
+    assertThat(snapshot.threadsCount).isEqualTo(140);
+  }
+
+  @Test
+  public void testMissingKeys() throws Exception {
+    TestableContextSwitchMetricsCollector collector =
+        new TestableContextSwitchMetricsCollector(false, false)
+            .setPath(createFile("Name:\tfacebook.katana\nThreads:\t134\n"));
+
+    ContextSwitchMetrics snapshot = new ContextSwitchMetrics();
+    assertThat(collector.getSnapshot(snapshot)).isFalse();
+  }
+
+  @Test
+  public void testBrokenFile() throws Exception {
+    TestableContextSwitchMetricsCollector collector =
+        new TestableContextSwitchMetricsCollector(false, false)
+            .setPath(createFile("voluntary_ctxt_switches:\tnotanumber\n"));
+
+    ContextSwitchMetrics snapshot = new ContextSwitchMetrics();
+    assertThat(collector.getSnapshot(snapshot)).isFalse();
+  }
+
+  @Test
+  public void testUnreadableFile() throws Exception {
+    TestableContextSwitchMetricsCollector collector =
+        new TestableContextSwitchMetricsCollector(false, false).setPath("");
+
+    ContextSwitchMetrics snapshot = new ContextSwitchMetrics();
+    assertThat(collector.getSnapshot(snapshot)).isFalse();
+  }
+
+  private String createFile(String contents) throws IOException {
+    File file = mFolder.newFile();
+    return overwriteFile(file, contents);
+  }
+
+  private static String overwriteFile(File file, String contents) throws IOException {
+    FileOutputStream os = new FileOutputStream(file, false);
+    os.write(contents.getBytes());
+    os.close();
+    return file.getCanonicalPath();
+  }
+
+  @Override
+  protected Class<ContextSwitchMetricsCollector> getClazz() {
+    return ContextSwitchMetricsCollector.class;
+  }
+}
+
+class TestableContextSwitchMetricsCollector extends ContextSwitchMetricsCollector {
+
+  private String mPath;
+
+  TestableContextSwitchMetricsCollector(boolean collectThreadsCount, boolean collectVmHwm) {
+    super(collectThreadsCount, collectVmHwm);
+  }
+
+  public synchronized TestableContextSwitchMetricsCollector setPath(String path) {
+    mPath = path;
+    return this;
+  }
+
+  @Override
+  protected synchronized String getPath() {
+    return mPath;
+  }
+}
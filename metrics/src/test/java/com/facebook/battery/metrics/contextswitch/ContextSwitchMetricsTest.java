@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.metrics.contextswitch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.facebook.battery.metrics.core.SystemMetricsTest;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class)
+public class ContextSwitchMetricsTest extends SystemMetricsTest<ContextSwitchMetrics> {
+
+  private static ContextSwitchMetrics createMetrics(
+      long voluntary, long nonvoluntary, long threads, long vmHwmKb) {
+    ContextSwitchMetrics metrics = new ContextSwitchMetrics();
+    metrics.voluntaryContextSwitches = voluntary;
+    metrics.nonvoluntaryContextSwitches = nonvoluntary;
+    metrics.threadsCount = threads;
+    metrics.vmHwmKb = vmHwmKb;
+    return metrics;
+  }
+
+  @Override
+  @Test
+  public void testSum() throws Exception {
+    ContextSwitchMetrics a = createMetrics(10, 20, 30, 400);
+    ContextSwitchMetrics b = createMetrics(1, 2, 40, 300);
+
+    ContextSwitchMetrics sum = a.sum(b, null);
+    assertThat(sum.voluntaryContextSwitches).isEqualTo(11);
+    assertThat(sum.nonvoluntaryContextSwitches).isEqualTo(22);
+    assertThat(sum.threadsCount).isEqualTo(40);
+    assertThat(sum.vmHwmKb).isEqualTo(400);
+  }
+
+  @Override
+  @Test
+  public void testDiff() throws Exception {
+    ContextSwitchMetrics later = createMetrics(10, 20, 30, 400);
+    ContextSwitchMetrics earlier = createMetrics(1, 2, 40, 300);
+
+    ContextSwitchMetrics diff = later.diff(earlier, null);
+    assertThat(diff.voluntaryContextSwitches).isEqualTo(9);
+    assertThat(diff.nonvoluntaryContextSwitches).isEqualTo(18);
+    assertThat(diff.threadsCount).isEqualTo(30);
+    assertThat(diff.vmHwmKb).isEqualTo(400);
+  }
+
+  @Override
+  protected Class<ContextSwitchMetrics> getClazz() {
+    return ContextSwitchMetrics.class;
+  }
+}
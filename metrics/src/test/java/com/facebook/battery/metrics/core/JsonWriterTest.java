@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.metrics.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class)
+public class JsonWriterTest {
+
+  @Test
+  public void testNesting() {
+    JsonWriter writer = new JsonWriter();
+    writer
+        .beginObject()
+        .name("a")
+        .value(1)
+        .name("b")
+        .beginArray()
+        .value("x")
+        .value(true)
+        .beginObject()
+        .endObject()
+        .endArray()
+        .name("c")
+        .value(1.5)
+        .name("d")
+        .value((String) null)
+        .endObject();
+    assertThat(writer.toString()).isEqualTo("{\"a\":1,\"b\":[\"x\",true,{}],\"c\":1.5,\"d\":null}");
+  }
+
+  @Test
+  public void testEscaping() {
+    JsonWriter writer = new JsonWriter();
+    writer.beginArray().value("q\"b\\n\nt\tc\u0001l\u2028").endArray();
+    assertThat(writer.toString()).isEqualTo("[\"q\\\"b\\\\n\\nt\\tc\\u0001l\\u2028\"]");
+  }
+
+  @Test
+  public void testOptionalObjects() {
+    JsonWriter writer = new JsonWriter();
+    writer.beginObject();
+    writer.name("empty").beginObject().name("nested").beginObject().endOptionalObject();
+    writer.endOptionalObject();
+    writer.name("a").value(1);
+    writer.name("empty").beginObject().endOptionalObject();
+    writer.name("full").beginObject().name("b").value(2).endOptionalObject();
+    writer.name("empty").beginObject().endOptionalObject();
+    writer.endObject();
+    assertThat(writer.toString()).isEqualTo("{\"a\":1,\"full\":{\"b\":2}}");
+
+    writer.reset();
+    writer.beginArray().beginObject().endOptionalObject().value(1).endArray();
+    assertThat(writer.toString()).isEqualTo("[1]");
+  }
+
+  @Test
+  public void testReset() {
+    JsonWriter writer = new JsonWriter();
+    writer.beginObject().name("a").value(1).endObject();
+    writer.reset();
+    writer.beginObject().name("b").value(2).endObject();
+    assertThat(writer.toString()).isEqualTo("{\"b\":2}");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNonFiniteNumbers() {
+    new JsonWriter().beginArray().value(Double.NaN);
+  }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.metrics.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class)
+public class LazySystemMetricsCollectorTest {
+
+  @Test
+  public void testCreatesOnFirstSnapshot() {
+    TestLazyCollector collector = new TestLazyCollector();
+    assertThat(collector.isInitialized()).isFalse();
+    assertThat(collector.createMetrics()).isNotNull();
+    assertThat(collector.createCount).isEqualTo(0);
+
+    DummyMetric metric = collector.createMetrics();
+    assertThat(collector.getSnapshot(metric)).isTrue();
+    assertThat(metric.value).isEqualTo(10);
+    assertThat(collector.getSnapshot(metric)).isTrue();
+    assertThat(collector.createCount).isEqualTo(1);
+  }
+
+  @Test
+  public void testDeferred() {
+    TestLazyCollector collector = new TestLazyCollector();
+    collector.setDeferred(true);
+    final List<Runnable> tasks = new ArrayList<>();
+    collector.initializeOn(
+        new Executor() {
+          @Override
+          public void execute(Runnable command) {
+            tasks.add(command);
+          }
+        });
+
+    DummyMetric metric = collector.createMetrics();
+    assertThat(collector.getSnapshot(metric)).isFalse();
+    assertThat(collector.createCount).isEqualTo(0);
+
+    tasks.get(0).run();
+    assertThat(collector.isInitialized()).isTrue();
+    assertThat(collector.getSnapshot(metric)).isTrue();
+    assertThat(collector.createCount).isEqualTo(1);
+  }
+
+  @Test
+  public void testDeferredWithStatefulCollector() {
+    TestLazyCollector collector = new TestLazyCollector();
+    collector.setDeferred(true);
+    StatefulSystemMetricsCollector<DummyMetric, TestLazyCollector> statefulCollector =
+        new StatefulSystemMetricsCollector<>(collector, true);
+
+    assertThat(statefulCollector.getLatestDiffAndReset()).isNull();
+    assertThat(statefulCollector.getLatestDiffAndReset()).isNull();
+
+    collector.initialize();
+    assertThat(statefulCollector.getLatestDiffAndReset()).isNull();
+    collector.dummyCollector.currentValue = 15;
+    assertThat(statefulCollector.getLatestDiffAndReset().value).isEqualTo(5);
+  }
+
+  @Test
+  public void testCreationFailure() {
+    TestLazyCollector collector = new TestLazyCollector();
+    collector.exception = new SecurityException();
+
+    assertThat(collector.getSnapshot(collector.createMetrics())).isFalse();
+    assertThat(collector.getSnapshot(collector.createMetrics())).isFalse();
+    assertThat(collector.initialize()).isNull();
+    assertThat(collector.createCount).isEqualTo(1);
+  }
+
+  private static class TestLazyCollector extends LazySystemMetricsCollector<DummyMetric> {
+    final DummyMetricCollector dummyCollector = new DummyMetricCollector();
+    RuntimeException exception;
+    int createCount;
+
+    @Override
+    protected SystemMetricsCollector<DummyMetric> createCollector() {
+      createCount++;
+      if (exception != null) {
+        throw exception;
+      }
+      dummyCollector.currentValue = 10;
+      return dummyCollector;
+    }
+
+    @Override
+    public DummyMetric createMetrics() {
+      return new DummyMetric();
+    }
+  }
+}
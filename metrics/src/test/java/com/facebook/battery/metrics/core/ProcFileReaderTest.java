@@ -203,6 +203,22 @@ public class ProcFileReaderTest {
     assertThat(numbers).isEqualTo(new long[] {123, -456, -789, 1000});
   }
 
+  @Test
+  public void testSkipBlanks() throws Exception {
+    String testPath = createFile("Key:\t \t123\nNext:\t\t456");
+    ProcFileReader reader = new ProcFileReader(testPath).start();
+
+    assertThat(reader.readWord(CharBuffer.allocate(20)).toString()).isEqualTo("Key:");
+    reader.skipBlanks();
+    assertThat(reader.readNumber()).isEqualTo(123);
+    reader.skipLine();
+
+    assertThat(reader.readWord(CharBuffer.allocate(20)).toString()).isEqualTo("Next:");
+    reader.skipBlanks();
+    assertThat(reader.readNumber()).isEqualTo(456);
+    assertThat(reader.hasReachedEOF()).isTrue();
+  }
+
   private String createFile(String contents) throws IOException {
     File file = mFolder.newFile();
     FileOutputStream os = new FileOutputStream(file, false);
@@ -13,6 +13,8 @@ import android.os.Debug;
 public class ShadowDebug {
   private static long sNativeHeapSize;
   private static long sNativeHeapAllocatedSize;
+  private static long sThreadCpuTimeNanos;
+  private static long sThreadAllocSize;
 
   public static void setNativeHeapSize(long bytes) {
     sNativeHeapSize = bytes;
@@ -22,6 +24,14 @@ public class ShadowDebug {
     sNativeHeapAllocatedSize = bytes;
   }
 
+  public static void setThreadCpuTimeNanos(long ns) {
+    sThreadCpuTimeNanos = ns;
+  }
+
+  public static void setThreadAllocSize(long bytes) {
+    sThreadAllocSize = bytes;
+  }
+
   @org.robolectric.annotation.Implementation
   public static long getNativeHeapSize() {
     return sNativeHeapSize;
@@ -31,4 +41,14 @@ public class ShadowDebug {
   public static long getNativeHeapAllocatedSize() {
     return sNativeHeapAllocatedSize;
   }
+
+  @org.robolectric.annotation.Implementation
+  public static long threadCpuTimeNanos() {
+    return sThreadCpuTimeNanos;
+  }
+
+  @org.robolectric.annotation.Implementation
+  public static long getThreadAllocSize() {
+    return sThreadAllocSize;
+  }
 }
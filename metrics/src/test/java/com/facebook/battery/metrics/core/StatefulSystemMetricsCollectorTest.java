@@ -64,6 +64,38 @@ public class StatefulSystemMetricsCollectorTest {
     collector.currentValue = 30;
     assertThat(statefulCollector.getLatestDiff().value).isEqualTo(20);
   }
+
+  @Test
+  public void testDeferredInitialSnapshot() {
+    DummyMetricCollector collector = new DummyMetricCollector();
+    collector.currentValue = 10;
+
+    StatefulSystemMetricsCollector<DummyMetric, DummyMetricCollector> statefulCollector =
+        new StatefulSystemMetricsCollector<>(collector, true);
+
+    collector.currentValue = 20;
+    assertThat(statefulCollector.getLatestDiffAndReset()).isNull();
+
+    collector.currentValue = 25;
+    assertThat(statefulCollector.getLatestDiffAndReset().value).isEqualTo(5);
+  }
+
+  @Test
+  public void testFailedInitialSnapshotIsRetried() {
+    DummyMetricCollector collector = new DummyMetricCollector();
+    collector.succeeds = false;
+
+    StatefulSystemMetricsCollector<DummyMetric, DummyMetricCollector> statefulCollector =
+        new StatefulSystemMetricsCollector<>(collector);
+    assertThat(statefulCollector.getLatestDiffAndReset()).isNull();
+
+    collector.succeeds = true;
+    collector.currentValue = 20;
+    assertThat(statefulCollector.getLatestDiffAndReset()).isNull();
+
+    collector.currentValue = 25;
+    assertThat(statefulCollector.getLatestDiffAndReset().value).isEqualTo(5);
+  }
 }
 
 class DummyMetric extends SystemMetrics<DummyMetric> {
@@ -92,11 +124,12 @@ class DummyMetric extends SystemMetrics<DummyMetric> {
 class DummyMetricCollector extends SystemMetricsCollector<DummyMetric> {
 
   int currentValue;
+  boolean succeeds = true;
 
   @Override
   public boolean getSnapshot(DummyMetric snapshot) {
     snapshot.value = currentValue;
-    return true;
+    return succeeds;
   }
 
   @Override
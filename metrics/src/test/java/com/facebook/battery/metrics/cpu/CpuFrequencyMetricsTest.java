@@ -9,6 +9,7 @@ package com.facebook.battery.metrics.cpu;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import com.facebook.battery.metrics.core.JsonWriter;
 import org.json.JSONObject;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -196,4 +197,19 @@ public class CpuFrequencyMetricsTest {
     assertThat(jsonObject.has("5")).isTrue();
     assertThat(jsonObject.get("5").toString()).isEqualTo("{\"100\":100}");
   }
+
+  @Test
+  public void testToJSON() {
+    CpuFrequencyMetrics metrics = new CpuFrequencyMetrics();
+    JsonWriter writer = new JsonWriter();
+    assertThat(metrics.toJSON(writer)).isFalse();
+    assertThat(writer.length()).isEqualTo(0);
+
+    metrics.timeInStateS[0].put(100, 100);
+    metrics.timeInStateS[2].put(100, 100);
+    metrics.timeInStateS[1].put(200, 200);
+    metrics.timeInStateS[3].put(200, 200);
+    assertThat(metrics.toJSON(writer)).isTrue();
+    assertThat(writer.toString()).isEqualTo("{\"5\":{\"100\":100},\"a\":{\"200\":200}}");
+  }
 }
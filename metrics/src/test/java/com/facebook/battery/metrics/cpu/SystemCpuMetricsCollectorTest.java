@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.metrics.cpu;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.facebook.battery.metrics.core.SystemMetricsCollectorTest;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class)
+public class SystemCpuMetricsCollectorTest
+    extends SystemMetricsCollectorTest<SystemCpuMetrics, SystemCpuMetricsCollector> {
+
+  private static final String STAT =
+      "cpu  200 20 100 4000 40 4 2 0 0 0\n"
+          + "cpu0 100 10 50 2000 20 2 1 0 0 0\n"
+          + "cpu1 100 10 50 2000 20 2 1 0 0 0\n"
+          + "cpu3 1 2 3 4 5 6 7 8 9 10\n"
+          + "intr 114930548 113199788 3 0 5 263 0 4 [... lots more numbers ...]\n"
+          + "ctxt 1990473\n"
+          + "btime 1062191376\n";
+
+  TemporaryFolder mFolder = new TemporaryFolder();
+
+  @BeforeClass
+  public static void overrideCores() throws Exception {
+    CpuFrequencyMetricsCollector.overrideCores();
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    mFolder.create();
+  }
+
+  @Test
+  public void testCoreLines() throws Exception {
+    SystemCpuMetricsCollector collector = new TestableSystemCpuMetricsCollector(createFile(STAT));
+    SystemCpuMetrics metrics = collector.createMetrics();
+    assertThat(collector.getSnapshot(metrics)).isTrue();
+
+    assertThat(metrics.getTicks(0, SystemCpuMetrics.USER)).isEqualTo(100);
+    assertThat(metrics.getTicks(0, SystemCpuMetrics.IDLE)).isEqualTo(2000);
+    assertThat(metrics.getTicks(1, SystemCpuMetrics.SOFTIRQ)).isEqualTo(1);
+    assertThat(metrics.getTotalTicks(2)).isEqualTo(0);
+    assertThat(metrics.getTicks(3, SystemCpuMetrics.USER)).isEqualTo(1);
+    assertThat(metrics.getTicks(3, SystemCpuMetrics.STEAL)).isEqualTo(8);
+  }
+
+  @Test
+  public void testCoreGoingOffline() throws Exception {
+    String path = createFile(STAT);
+    SystemCpuMetricsCollector collector = new TestableSystemCpuMetricsCollector(path);
+    SystemCpuMetrics metrics = collector.createMetrics();
+    assertThat(collector.getSnapshot(metrics)).isTrue();
+
+    overwriteFile(path, "cpu  1 1 1 1 1 1 1 1\ncpu0 1 1 1 1 1 1 1 1\nintr 0\n");
+    assertThat(collector.getSnapshot(metrics)).isTrue();
+    assertThat(metrics.getTotalTicks(0)).isEqualTo(8);
+    assertThat(metrics.getTotalTicks(1)).isEqualTo(0);
+    assertThat(metrics.getTotalTicks(3)).isEqualTo(0);
+  }
+
+  @Test
+  public void testMissingFile() throws Exception {
+    SystemCpuMetricsCollector collector = new TestableSystemCpuMetricsCollector("");
+    assertThat(collector.getSnapshot(collector.createMetrics())).isFalse();
+  }
+
+  @Test
+  public void testNoCoreLines() throws Exception {
+    SystemCpuMetricsCollector collector =
+        new TestableSystemCpuMetricsCollector(createFile("intr 0\nctxt 1\n"));
+    assertThat(collector.getSnapshot(collector.createMetrics())).isFalse();
+  }
+
+  @Test
+  public void testInvalidLine() throws Exception {
+    SystemCpuMetricsCollector collector =
+        new TestableSystemCpuMetricsCollector(createFile("cpu0 1 2 abc\n"));
+    assertThat(collector.getSnapshot(collector.createMetrics())).isFalse();
+  }
+
+  private String createFile(String contents) throws IOException {
+    File file = mFolder.newFile();
+    overwriteFile(file.getAbsolutePath(), contents);
+    return file.getAbsolutePath();
+  }
+
+  private static void overwriteFile(String path, String contents) throws IOException {
+    FileOutputStream os = new FileOutputStream(path, false);
+    os.write(contents.getBytes());
+    os.close();
+  }
+
+  @Override
+  protected Class<SystemCpuMetricsCollector> getClazz() {
+    return SystemCpuMetricsCollector.class;
+  }
+}
+
+class TestableSystemCpuMetricsCollector extends SystemCpuMetricsCollector {
+
+  private final String mPath;
+
+  TestableSystemCpuMetricsCollector(String path) {
+    mPath = path;
+  }
+
+  @Override
+  protected String getPath() {
+    return mPath;
+  }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.metrics.cpu;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class)
+public class SystemCpuMetricsTest {
+
+  @BeforeClass
+  public static void overrideCores() {
+    CpuFrequencyMetricsCollector.overrideCores();
+  }
+
+  private static SystemCpuMetrics createMetrics(long[]... cores) {
+    SystemCpuMetrics metrics = new SystemCpuMetrics();
+    for (int core = 0; core < cores.length; core++) {
+      System.arraycopy(
+          cores[core], 0, metrics.ticks, core * SystemCpuMetrics.FIELDS, cores[core].length);
+    }
+    return metrics;
+  }
+
+  @Test
+  public void testDefaultValues() {
+    SystemCpuMetrics metrics = new SystemCpuMetrics();
+    assertThat(metrics.getCores()).isEqualTo(CpuFrequencyMetricsCollector.getTotalCores());
+    assertThat(metrics.ticks).isEqualTo(new long[4 * SystemCpuMetrics.FIELDS]);
+  }
+
+  @Test
+  public void testEquals() {
+    SystemCpuMetrics a = createMetrics(new long[] {1, 2, 3, 4, 5, 6, 7, 8});
+    SystemCpuMetrics b = createMetrics(new long[] {1, 2, 3, 4, 5, 6, 7, 8});
+    assertThat(a).isEqualTo(b);
+    assertThat(new SystemCpuMetrics().set(a)).isEqualTo(a);
+  }
+
+  @Test
+  public void testSum() {
+    SystemCpuMetrics a = createMetrics(new long[] {1, 2, 3, 4, 5, 6, 7, 8});
+    SystemCpuMetrics b =
+        createMetrics(new long[] {10, 20, 30, 40, 50, 60, 70, 80}, new long[] {1, 1});
+
+    SystemCpuMetrics sum = a.sum(b, null);
+    assertThat(sum)
+        .isEqualTo(
+            createMetrics(new long[] {11, 22, 33, 44, 55, 66, 77, 88}, new long[] {1, 1}));
+  }
+
+  @Test
+  public void testDiff() {
+    SystemCpuMetrics later = createMetrics(new long[] {10, 20, 30, 40, 50, 60, 70, 80});
+    SystemCpuMetrics earlier = createMetrics(new long[] {1, 2, 3, 4, 5, 6, 7, 8});
+
+    assertThat(later.diff(earlier, null))
+        .isEqualTo(createMetrics(new long[] {9, 18, 27, 36, 45, 54, 63, 72}));
+  }
+
+  @Test
+  public void testDiffWithCoreReset() {
+    SystemCpuMetrics later =
+        createMetrics(new long[] {10, 20, 30, 40, 50, 60, 70, 80}, new long[] {5, 5, 5, 5});
+    SystemCpuMetrics earlier =
+        createMetrics(new long[] {1, 2, 3, 4, 5, 6, 7, 8}, new long[] {1, 1, 1, 10});
+
+    SystemCpuMetrics diff = later.diff(earlier, null);
+    assertThat(diff)
+        .isEqualTo(
+            createMetrics(new long[] {9, 18, 27, 36, 45, 54, 63, 72}, new long[] {5, 5, 5, 5}));
+  }
+
+  @Test
+  public void testUtilization() {
+    SystemCpuMetrics metrics =
+        createMetrics(
+            new long[] {30, 0, 10, 50, 10, 0, 0, 0}, new long[] {0, 0, 0, 100, 0, 0, 0, 0});
+
+    assertThat(metrics.getBusyTicks(0)).isEqualTo(40);
+    assertThat(metrics.getTotalTicks(0)).isEqualTo(100);
+    assertThat(metrics.getUtilization(0)).isEqualTo(0.4);
+    assertThat(metrics.getUtilization(1)).isEqualTo(0.0);
+    assertThat(metrics.getUtilization(2)).isEqualTo(0.0);
+    assertThat(metrics.getUtilization()).isEqualTo(0.2);
+  }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.metrics.healthstats;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import android.os.health.PackageHealthStats;
+import android.os.health.PidHealthStats;
+import android.os.health.ProcessHealthStats;
+import android.os.health.ServiceHealthStats;
+import android.os.health.UidHealthStats;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Field;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class)
+public class HealthStatsKeyNamesTest {
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testMatchesDeclaredConstants() throws Exception {
+    Class<? extends Annotation> constant =
+        (Class<? extends Annotation>) Class.forName("android.os.health.HealthKeys$Constant");
+    Class<?>[] classes = {
+      UidHealthStats.class,
+      PidHealthStats.class,
+      ProcessHealthStats.class,
+      PackageHealthStats.class,
+      ServiceHealthStats.class
+    };
+    int count = 0;
+    for (Class<?> clazz : classes) {
+      for (Field field : clazz.getFields()) {
+        if (field.isAnnotationPresent(constant)) {
+          assertThat(HealthStatsKeyNames.get(field.getInt(null))).isEqualTo(field.getName());
+          count++;
+        }
+      }
+    }
+    assertThat(count).isGreaterThan(0);
+  }
+
+  @Test
+  public void testUnknownKeys() {
+    assertThat(HealthStatsKeyNames.get(0)).isNull();
+    assertThat(HealthStatsKeyNames.get(-1)).isNull();
+    assertThat(HealthStatsKeyNames.get(10_000)).isNull();
+    assertThat(HealthStatsKeyNames.get(19_999)).isNull();
+    assertThat(HealthStatsKeyNames.get(60_001)).isNull();
+  }
+}
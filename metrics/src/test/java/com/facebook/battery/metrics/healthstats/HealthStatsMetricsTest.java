@@ -14,6 +14,7 @@ import static org.assertj.core.api.Assertions.assertThat;
 import android.os.health.UidHealthStats;
 import android.util.SparseArray;
 import androidx.collection.ArrayMap;
+import com.facebook.battery.metrics.core.JsonWriter;
 import org.json.JSONObject;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -338,4 +339,47 @@ public class HealthStatsMetricsTest {
     metrics.stats.get(123).put("abc", inner);
     assertThat(metrics.toJSONObject().length()).isEqualTo(0);
   }
+
+  @Test
+  public void streamingJSON() throws Exception {
+    HealthStatsMetrics metrics = createTestMetricsWithoutStats();
+    metrics.measurement.put(UidHealthStats.MEASUREMENT_REALTIME_BATTERY_MS, 10L);
+    metrics.measurement.put(456, 0L);
+    metrics.stats.put(567, new ArrayMap<String, HealthStatsMetrics>());
+    metrics.stats.get(567).put("empty", new HealthStatsMetrics());
+    metrics.stats.get(567).put("inner", createTestMetricsWithoutStats());
+
+    JsonWriter writer = new JsonWriter();
+    metrics.toJSON(writer);
+    String inner =
+        "\"type\":\"Test\","
+            + "\"measurement\":{\"123\":1000},"
+            + "\"timer\":{\"345\":{\"count\":5,\"time_ms\":2000}},"
+            + "\"measurements\":{\"234\":{\"measurements\":2000}},"
+            + "\"timers\":{\"456\":{\"timers\":{\"count\":6,\"time_ms\":3000}}}";
+    assertThat(writer.toString())
+        .isEqualTo(
+            "{\"type\":\"Test\","
+                + "\"measurement\":{\"123\":1000,\"MEASUREMENT_REALTIME_BATTERY_MS\":10},"
+                + "\"timer\":{\"345\":{\"count\":5,\"time_ms\":2000}},"
+                + "\"measurements\":{\"234\":{\"measurements\":2000}},"
+                + "\"timers\":{\"456\":{\"timers\":{\"count\":6,\"time_ms\":3000}}},"
+                + "\"stats\":{\"567\":{\"inner\":{"
+                + inner
+                + "}}}}");
+  }
+
+  @Test
+  public void streamingJSONSkipsEmptyContainers() throws Exception {
+    HealthStatsMetrics metrics = new HealthStatsMetrics();
+    metrics.measurement.put(123, 0L);
+    metrics.timers.put(345, new ArrayMap<String, HealthStatsMetrics.TimerMetrics>());
+    metrics.timers.get(345).put("val", new HealthStatsMetrics.TimerMetrics(0, 0));
+    metrics.stats.put(123, new ArrayMap<String, HealthStatsMetrics>());
+    metrics.stats.get(123).put("abc", new HealthStatsMetrics());
+
+    JsonWriter writer = new JsonWriter();
+    metrics.toJSON(writer);
+    assertThat(writer.toString()).isEqualTo("{}");
+  }
 }
@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.metrics.overhead;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.facebook.battery.metrics.composite.CompositeMetrics;
+import com.facebook.battery.metrics.composite.CompositeMetricsCollector;
+import com.facebook.battery.metrics.core.ShadowDebug;
+import com.facebook.battery.metrics.core.SystemMetricsCollector;
+import com.facebook.battery.metrics.time.TimeMetrics;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+@RunWith(RobolectricTestRunner.class)
+public class CollectorOverheadMetricsCollectorTest {
+
+  @Test
+  public void testTrackedCollector() {
+    CollectorOverheadMetricsCollector overheadCollector =
+        new CollectorOverheadMetricsCollector(true);
+    OverheadTrackingCollector<TimeMetrics> collector =
+        overheadCollector.track("time", new TestCollector());
+
+    TimeMetrics metrics = collector.createMetrics();
+    assertThat(collector.getSnapshot(metrics)).isTrue();
+    assertThat(collector.getSnapshot(metrics)).isTrue();
+
+    CollectorOverheadMetrics overhead = overheadCollector.createMetrics();
+    assertThat(overheadCollector.getSnapshot(overhead)).isTrue();
+    assertThat(overhead.snapshotCount).isEqualTo(2);
+    assertThat(overhead.failureCount).isEqualTo(0);
+    assertThat(overhead.wallTimeNs).isGreaterThanOrEqualTo(0);
+    assertThat(overhead.collectors.get("time").snapshotCount).isEqualTo(2);
+
+    // Snapshots are cumulative, and reuse the attributed entries
+    CollectorOverheadMetrics attributed = overhead.collectors.get("time");
+    collector.getSnapshot(metrics);
+    overheadCollector.getSnapshot(overhead);
+    assertThat(overhead.snapshotCount).isEqualTo(3);
+    assertThat(overhead.collectors.get("time")).isSameAs(attributed);
+    assertThat(attributed.snapshotCount).isEqualTo(3);
+  }
+
+  @Test
+  public void testFailures() {
+    CollectorOverheadMetricsCollector overheadCollector = new CollectorOverheadMetricsCollector();
+    OverheadTracker tracker = overheadCollector.getTracker("test");
+
+    TestCollector collector = new TestCollector();
+    collector.result = false;
+    assertThat(tracker.getSnapshot(collector, new TimeMetrics())).isFalse();
+
+    collector.exception = new IllegalStateException();
+    try {
+      tracker.getSnapshot(collector, new TimeMetrics());
+      throw new AssertionError("Expected the exception to be rethrown");
+    } catch (IllegalStateException e) {
+      assertThat(e).isSameAs(collector.exception);
+    }
+
+    CollectorOverheadMetrics overhead = overheadCollector.createMetrics();
+    overheadCollector.getSnapshot(overhead);
+    assertThat(overhead.snapshotCount).isEqualTo(2);
+    assertThat(overhead.invalidSnapshotCount).isEqualTo(1);
+    assertThat(overhead.failureCount).isEqualTo(1);
+    assertThat(overhead.collectors.isEmpty()).isTrue();
+  }
+
+  @Test
+  public void testCompositeMetricsCollector() {
+    CollectorOverheadMetricsCollector overheadCollector =
+        new CollectorOverheadMetricsCollector(true);
+    TestCollector timeCollector = new TestCollector();
+    CompositeMetricsCollector collector =
+        new CompositeMetricsCollector.Builder()
+            .addMetricsCollector(TimeMetrics.class, timeCollector)
+            .trackOverhead(overheadCollector)
+            .build();
+
+    assertThat(collector.<TimeMetrics, TestCollector>getMetricsCollector(TimeMetrics.class))
+        .isSameAs(timeCollector);
+
+    CompositeMetrics metrics = collector.createMetrics();
+    collector.getSnapshot(metrics);
+    collector.getSnapshot(metrics);
+
+    CollectorOverheadMetrics overhead = metrics.getMetric(CollectorOverheadMetrics.class);
+    assertThat(metrics.isValid(CollectorOverheadMetrics.class)).isTrue();
+    assertThat(overhead.collectors.get(TimeMetrics.class.getName()).snapshotCount)
+        .isGreaterThanOrEqualTo(1);
+    assertThat(overhead.collectors.get(CollectorOverheadMetrics.class.getName())).isNull();
+  }
+
+  @Test
+  public void testStableNames() {
+    CollectorOverheadMetricsCollector overheadCollector =
+        new CollectorOverheadMetricsCollector(true);
+    OverheadTracker tracker = overheadCollector.getTracker(TimeMetrics.class);
+    tracker.getSnapshot(new TestCollector(), new TimeMetrics());
+    // Trackers are keyed by class, so the name can be set after creating them
+    overheadCollector.setName(TimeMetrics.class, "time");
+    assertThat(overheadCollector.getTracker(TimeMetrics.class)).isSameAs(tracker);
+    overheadCollector.track("time", new TestCollector()).getSnapshot(new TimeMetrics());
+
+    CollectorOverheadMetrics overhead = overheadCollector.createMetrics();
+    overheadCollector.getSnapshot(overhead);
+    assertThat(overhead.snapshotCount).isEqualTo(2);
+    assertThat(overhead.collectors.size()).isEqualTo(1);
+    // Trackers sharing a name are summed up, without accumulating across snapshots
+    assertThat(overhead.collectors.get("time").snapshotCount).isEqualTo(2);
+    overheadCollector.getSnapshot(overhead);
+    assertThat(overhead.collectors.get("time").snapshotCount).isEqualTo(2);
+  }
+
+  @Test
+  @Config(shadows = {ShadowDebug.class})
+  public void testAllocationCounting() {
+    ShadowDebug.setThreadAllocSize(0);
+    CollectorOverheadMetricsCollector overheadCollector = new CollectorOverheadMetricsCollector();
+    OverheadTracker tracker = overheadCollector.getTracker("test");
+    TestCollector collector = new TestCollector();
+    collector.allocatedBytes = 100;
+
+    // Not counted by default
+    tracker.getSnapshot(collector, new TimeMetrics());
+    overheadCollector.setCountsAllocations(true);
+    tracker.getSnapshot(collector, new TimeMetrics());
+    // Trackers created afterwards count them as well
+    overheadCollector.getTracker(TimeMetrics.class).getSnapshot(collector, new TimeMetrics());
+
+    CollectorOverheadMetrics overhead = overheadCollector.createMetrics();
+    overheadCollector.getSnapshot(overhead);
+    assertThat(overhead.snapshotCount).isEqualTo(3);
+    assertThat(overhead.allocatedBytes).isEqualTo(200);
+  }
+
+  private static class TestCollector
+      extends SystemMetricsCollector<TimeMetrics> {
+    boolean result = true;
+    RuntimeException exception;
+    long allocatedBytes;
+
+    @Override
+    public boolean getSnapshot(TimeMetrics snapshot) {
+      ShadowDebug.setThreadAllocSize(ShadowDebug.getThreadAllocSize() + allocatedBytes);
+      if (exception != null) {
+        throw exception;
+      }
+      return result;
+    }
+
+    @Override
+    public TimeMetrics createMetrics() {
+      return new TimeMetrics();
+    }
+  }
+}
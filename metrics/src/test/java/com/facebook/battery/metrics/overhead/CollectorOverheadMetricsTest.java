@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.metrics.overhead;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.facebook.battery.metrics.core.JsonWriter;
+import com.facebook.battery.metrics.core.SystemMetricsTest;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class)
+public class CollectorOverheadMetricsTest extends SystemMetricsTest<CollectorOverheadMetrics> {
+
+  @Override
+  protected Class<CollectorOverheadMetrics> getClazz() {
+    return CollectorOverheadMetrics.class;
+  }
+
+  @Test
+  public void testSumWithAttribution() {
+    CollectorOverheadMetrics a = createAttributed("cpu", 2, 100);
+    a.getOrCreateCollector("disk").snapshotCount = 1;
+    CollectorOverheadMetrics b = createAttributed("cpu", 3, 50);
+    b.getOrCreateCollector("memory").snapshotCount = 4;
+
+    CollectorOverheadMetrics output = new CollectorOverheadMetrics(true);
+    output.getOrCreateCollector("stale").snapshotCount = 10;
+    a.sum(b, output);
+
+    assertThat(output.snapshotCount).isEqualTo(5);
+    assertThat(output.wallTimeNs).isEqualTo(150);
+    assertThat(output.collectors.size()).isEqualTo(3);
+    assertThat(output.collectors.get("cpu").snapshotCount).isEqualTo(5);
+    assertThat(output.collectors.get("cpu").wallTimeNs).isEqualTo(150);
+    assertThat(output.collectors.get("disk").snapshotCount).isEqualTo(1);
+    assertThat(output.collectors.get("memory").snapshotCount).isEqualTo(4);
+  }
+
+  @Test
+  public void testDiffWithAttribution() {
+    CollectorOverheadMetrics a = createAttributed("cpu", 5, 150);
+    a.getOrCreateCollector("disk").snapshotCount = 1;
+    CollectorOverheadMetrics b = createAttributed("cpu", 2, 100);
+    b.getOrCreateCollector("memory").snapshotCount = 4;
+
+    CollectorOverheadMetrics output = a.diff(b, null);
+
+    assertThat(output.snapshotCount).isEqualTo(3);
+    assertThat(output.collectors.size()).isEqualTo(2);
+    assertThat(output.collectors.get("cpu").snapshotCount).isEqualTo(3);
+    assertThat(output.collectors.get("cpu").wallTimeNs).isEqualTo(50);
+    assertThat(output.collectors.get("disk").snapshotCount).isEqualTo(1);
+  }
+
+  @Test
+  public void testSetWithAttribution() {
+    CollectorOverheadMetrics metrics = createAttributed("cpu", 2, 100);
+    CollectorOverheadMetrics copy = new CollectorOverheadMetrics(true);
+    copy.getOrCreateCollector("stale").snapshotCount = 10;
+    copy.set(metrics);
+    assertThat(copy).isEqualTo(metrics);
+  }
+
+  @Test
+  public void testAttributionToJSON() {
+    CollectorOverheadMetrics metrics = createAttributed("cpu", 2, 100);
+    metrics.getOrCreateCollector("unused");
+
+    JsonWriter writer = new JsonWriter();
+    assertThat(metrics.attributionToJSON(writer)).isTrue();
+    assertThat(writer.toString())
+        .isEqualTo(
+            "{\"cpu\":{\"snapshots\":2,\"failures\":0,\"invalid\":0,\"wall_time_ns\":100,"
+                + "\"thread_cpu_time_ns\":0,\"allocated_bytes\":0}}");
+
+    assertThat(new CollectorOverheadMetrics().attributionToJSON(writer.reset())).isFalse();
+  }
+
+  private static CollectorOverheadMetrics createAttributed(
+      String name, long snapshotCount, long wallTimeNs) {
+    CollectorOverheadMetrics metrics = new CollectorOverheadMetrics(true);
+    metrics.snapshotCount = snapshotCount;
+    metrics.wallTimeNs = wallTimeNs;
+    CollectorOverheadMetrics attributed = metrics.getOrCreateCollector(name);
+    attributed.snapshotCount = snapshotCount;
+    attributed.wallTimeNs = wallTimeNs;
+    return metrics;
+  }
+}
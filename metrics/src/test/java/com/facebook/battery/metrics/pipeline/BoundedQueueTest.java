@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.metrics.pipeline;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class)
+public class BoundedQueueTest {
+
+  @Test
+  public void testFifo() {
+    BoundedQueue<Integer> queue = new BoundedQueue<>(3);
+    assertThat(queue.capacity()).isEqualTo(4);
+    assertThat(queue.isEmpty()).isTrue();
+    assertThat(queue.poll()).isNull();
+
+    // Wraps around a few times
+    for (int lap = 0; lap < 3; lap++) {
+      for (int i = 0; i < 4; i++) {
+        assertThat(queue.offer(i)).isTrue();
+      }
+      assertThat(queue.offer(4)).isFalse();
+      for (int i = 0; i < 4; i++) {
+        assertThat(queue.poll()).isEqualTo(i);
+      }
+      assertThat(queue.isEmpty()).isTrue();
+    }
+  }
+
+  @Test
+  public void testConcurrentProducers() throws Exception {
+    final BoundedQueue<Long> queue = new BoundedQueue<>(16);
+    final int producers = 4;
+    final int items = 10_000;
+    Thread[] threads = new Thread[producers];
+    for (int p = 0; p < producers; p++) {
+      final long base = (long) p * items;
+      threads[p] =
+          new Thread() {
+            @Override
+            public void run() {
+              for (long i = 0; i < items; i++) {
+                while (!queue.offer(base + i)) {
+                  Thread.yield();
+                }
+              }
+            }
+          };
+      threads[p].start();
+    }
+
+    long[] last = new long[producers];
+    Arrays.fill(last, -1);
+    long sum = 0;
+    for (int received = 0; received < producers * items; ) {
+      Long item = queue.poll();
+      if (item == null) {
+        Thread.yield();
+        continue;
+      }
+      int producer = (int) (item / items);
+      // Each producer's items come out in order
+      assertThat(item).isGreaterThan(last[producer]);
+      last[producer] = item;
+      sum += item;
+      received++;
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    long n = (long) producers * items;
+    assertThat(sum).isEqualTo(n * (n - 1) / 2);
+    assertThat(queue.poll()).isNull();
+  }
+}
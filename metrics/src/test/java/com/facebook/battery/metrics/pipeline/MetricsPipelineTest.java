@@ -0,0 +1,339 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.metrics.pipeline;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import androidx.annotation.Nullable;
+import com.facebook.battery.metrics.core.SystemMetrics;
+import com.facebook.battery.metrics.core.SystemMetricsCollector;
+import com.facebook.battery.metrics.pipeline.MetricsPipeline.OverflowPolicy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class)
+public class MetricsPipelineTest {
+
+  private CounterCollector mCollector;
+  private ManualExecutor mExecutor;
+  private List<String> mDiffs;
+  private MetricsPipeline.Listener<Counter> mListener;
+
+  @Before
+  public void setUp() {
+    mCollector = new CounterCollector();
+    mExecutor = new ManualExecutor();
+    mDiffs = new ArrayList<>();
+    mListener =
+        new MetricsPipeline.Listener<Counter>() {
+          @Override
+          public void onDiff(Counter diff, @Nullable String tag) {
+            mDiffs.add(tag + ":" + diff.value);
+          }
+        };
+  }
+
+  @Test
+  public void testDiffsOnTheWorker() {
+    MetricsPipeline<Counter> pipeline =
+        new MetricsPipeline<>(mCollector, 4, OverflowPolicy.DROP, mListener, mExecutor);
+    pipeline.snapshot(null);
+    mCollector.value.set(10);
+    pipeline.snapshot("a");
+    assertThat(mDiffs).isEmpty();
+
+    mExecutor.runAll();
+    assertThat(mDiffs).containsExactly("a:10");
+
+    mCollector.value.set(15);
+    pipeline.snapshot("b");
+    mExecutor.runAll();
+    assertThat(mDiffs).containsExactly("a:10", "b:5");
+  }
+
+  @Test
+  public void testSumsDiffsWhenBehind() {
+    MetricsPipeline<Counter> pipeline =
+        new MetricsPipeline<>(mCollector, 8, OverflowPolicy.DROP, mListener, mExecutor);
+    pipeline.snapshot(null);
+    for (String tag : new String[] {"a", "a", "a", "b", "a"}) {
+      mCollector.value.addAndGet(2);
+      pipeline.snapshot(tag);
+    }
+    mExecutor.runAll();
+    assertThat(mDiffs).containsExactly("a:6", "b:2", "a:2");
+  }
+
+  @Test
+  public void testDropOnOverflow() {
+    MetricsPipeline<Counter> pipeline =
+        new MetricsPipeline<>(mCollector, 3, OverflowPolicy.DROP, mListener, mExecutor);
+    pipeline.snapshot(null);
+    mCollector.value.set(1);
+    assertThat(pipeline.snapshot("a")).isTrue();
+    mCollector.value.set(2);
+    assertThat(pipeline.snapshot("b")).isTrue();
+    mCollector.value.set(3);
+    assertThat(pipeline.snapshot("c")).isFalse();
+    assertThat(pipeline.getDroppedCount()).isEqualTo(1);
+
+    mExecutor.runAll();
+    assertThat(mDiffs).containsExactly("a:1", "b:1");
+
+    // The dropped interval is reported with the next snapshot
+    mCollector.value.set(4);
+    pipeline.snapshot("d");
+    mExecutor.runAll();
+    assertThat(mDiffs).containsExactly("a:1", "b:1", "d:2");
+  }
+
+  @Test
+  public void testMergeOnOverflow() {
+    MetricsPipeline<Counter> pipeline =
+        new MetricsPipeline<>(mCollector, 2, OverflowPolicy.MERGE, mListener, mExecutor);
+    pipeline.snapshot(null);
+    mCollector.value.set(1);
+    pipeline.snapshot("a");
+    for (int i = 2; i <= 5; i++) {
+      mCollector.value.set(i);
+      assertThat(pipeline.snapshot("b")).isTrue();
+    }
+    assertThat(pipeline.getMergedCount()).isEqualTo(3);
+    assertThat(pipeline.getDroppedCount()).isEqualTo(0);
+
+    mExecutor.runAll();
+    assertThat(mDiffs).containsExactly("a:1", "b:4");
+
+    // Entries are recycled once processed
+    mCollector.value.set(7);
+    pipeline.snapshot("c");
+    mCollector.value.set(8);
+    pipeline.snapshot("d");
+    mExecutor.runAll();
+    assertThat(mDiffs).containsExactly("a:1", "b:4", "c:2", "d:1");
+  }
+
+  @Test
+  public void testFailedSnapshotsAreSkipped() {
+    MetricsPipeline<Counter> pipeline =
+        new MetricsPipeline<>(mCollector, 4, OverflowPolicy.DROP, mListener, mExecutor);
+    pipeline.snapshot(null);
+    mCollector.succeeds = false;
+    assertThat(pipeline.snapshot("a")).isFalse();
+    mCollector.succeeds = true;
+    mCollector.value.set(3);
+    pipeline.snapshot("b");
+    mExecutor.runAll();
+    assertThat(mDiffs).containsExactly("b:3");
+  }
+
+  @Test
+  public void testBackgroundWorker() throws Exception {
+    final AtomicLong total = new AtomicLong();
+    final AtomicLong negativeDiffs = new AtomicLong();
+    final CountDownLatch done = new CountDownLatch(1);
+    MetricsPipeline<Counter> pipeline =
+        new MetricsPipeline<>(
+            mCollector,
+            4,
+            OverflowPolicy.MERGE,
+            new MetricsPipeline.Listener<Counter>() {
+              @Override
+              public void onDiff(Counter diff, @Nullable String tag) {
+                // Snapshots processed out of order would show up as negative diffs
+                if (diff.value < 0) {
+                  negativeDiffs.incrementAndGet();
+                }
+                if (total.addAndGet(diff.value) == 1000) {
+                  done.countDown();
+                }
+              }
+            });
+    pipeline.snapshot(null);
+    for (int i = 0; i < 1000; i++) {
+      mCollector.value.incrementAndGet();
+      pipeline.snapshot("tag");
+    }
+    // The last snapshots may have been dropped while the worker still held the spare: they're
+    // reported with the next accepted one
+    long deadlineMs = System.currentTimeMillis() + 10000;
+    while (!done.await(10, TimeUnit.MILLISECONDS) && System.currentTimeMillis() < deadlineMs) {
+      pipeline.snapshot("tag");
+    }
+    assertThat(done.getCount()).isEqualTo(0);
+    assertThat(negativeDiffs.get()).isEqualTo(0);
+    pipeline.close();
+  }
+
+  @Test
+  public void testConcurrentCallersQueueInOrder() throws Exception {
+    final int threads = 4;
+    final int snapshots = 250;
+    final MetricsPipeline<Counter> pipeline =
+        new MetricsPipeline<>(
+            mCollector, threads * snapshots + 1, OverflowPolicy.DROP, mListener, mExecutor);
+    pipeline.snapshot(null);
+
+    Thread[] callers = new Thread[threads];
+    for (int i = 0; i < threads; i++) {
+      final int thread = i;
+      callers[i] =
+          new Thread() {
+            @Override
+            public void run() {
+              for (int j = 0; j < snapshots; j++) {
+                mCollector.value.incrementAndGet();
+                // Distinct tags keep the worker from summing up the diffs
+                pipeline.snapshot(thread + "/" + j);
+              }
+            }
+          };
+      callers[i].start();
+    }
+    for (Thread caller : callers) {
+      caller.join();
+    }
+    mExecutor.runAll();
+
+    // A snapshot queued ahead of an older one would be reported as a negative diff
+    long total = 0;
+    for (String diff : mDiffs) {
+      long value = Long.parseLong(diff.substring(diff.indexOf(':') + 1));
+      assertThat(value).isGreaterThanOrEqualTo(0);
+      total += value;
+    }
+    assertThat(mDiffs).hasSize(threads * snapshots);
+    assertThat(total).isEqualTo(threads * snapshots);
+  }
+
+  @Test
+  public void testFailedDiffsDontStallTheWorker() {
+    MetricsPipeline<Counter> pipeline =
+        new MetricsPipeline<>(mCollector, 4, OverflowPolicy.DROP, mListener, mExecutor);
+    pipeline.snapshot(null);
+    mCollector.value.set(Counter.FAILS_DIFF);
+    pipeline.snapshot("a");
+    mCollector.value.set(3);
+    pipeline.snapshot("b");
+    mExecutor.runAll();
+    assertThat(mDiffs).isEmpty();
+
+    // Every entry was recycled, and the worker is scheduled again
+    for (int i = 4; i <= 6; i++) {
+      mCollector.value.set(i);
+      assertThat(pipeline.snapshot(String.valueOf(i))).isTrue();
+    }
+    mExecutor.runAll();
+    assertThat(mDiffs).containsExactly("4:1", "5:1", "6:1");
+  }
+
+  @Test
+  public void testRejectedExecutions() {
+    MetricsPipeline<Counter> pipeline =
+        new MetricsPipeline<>(mCollector, 4, OverflowPolicy.DROP, mListener, mExecutor);
+    pipeline.snapshot(null);
+    mExecutor.rejects = true;
+    mCollector.value.set(2);
+    assertThat(pipeline.snapshot("a")).isTrue();
+
+    mExecutor.rejects = false;
+    mCollector.value.set(5);
+    pipeline.snapshot("b");
+    mExecutor.runAll();
+    assertThat(mDiffs).containsExactly("a:2", "b:3");
+  }
+
+  @Test
+  public void testClose() {
+    MetricsPipeline<Counter> pipeline =
+        new MetricsPipeline<>(mCollector, 4, OverflowPolicy.DROP, mListener, mExecutor);
+    pipeline.snapshot(null);
+    mCollector.value.set(5);
+    pipeline.snapshot("a");
+    pipeline.close();
+    assertThat(pipeline.isClosed()).isTrue();
+
+    mCollector.value.set(7);
+    assertThat(pipeline.snapshot("b")).isFalse();
+    // Snapshots queued before closing are still reported
+    mExecutor.runAll();
+    assertThat(mDiffs).containsExactly("a:5");
+  }
+
+  private static class ManualExecutor implements Executor {
+    private final List<Runnable> mTasks = new ArrayList<>();
+    boolean rejects;
+
+    @Override
+    public void execute(Runnable runnable) {
+      if (rejects) {
+        throw new RejectedExecutionException();
+      }
+      mTasks.add(runnable);
+    }
+
+    void runAll() {
+      while (!mTasks.isEmpty()) {
+        mTasks.remove(0).run();
+      }
+    }
+  }
+
+  static class Counter extends SystemMetrics<Counter> {
+    /** Snapshots with this value fail to be diffed. */
+    static final long FAILS_DIFF = -1;
+
+    long value;
+
+    @Override
+    public Counter sum(@Nullable Counter b, @Nullable Counter output) {
+      output.value = value + b.value;
+      return output;
+    }
+
+    @Override
+    public Counter diff(@Nullable Counter b, @Nullable Counter output) {
+      if (value == FAILS_DIFF || b.value == FAILS_DIFF) {
+        throw new IllegalStateException("Failed diff");
+      }
+      output.value = value - b.value;
+      return output;
+    }
+
+    @Override
+    public Counter set(Counter b) {
+      value = b.value;
+      return this;
+    }
+  }
+
+  static class CounterCollector extends SystemMetricsCollector<Counter> {
+    final AtomicLong value = new AtomicLong();
+    volatile boolean succeeds = true;
+
+    @Override
+    public boolean getSnapshot(Counter snapshot) {
+      snapshot.value = value.get();
+      return succeeds;
+    }
+
+    @Override
+    public Counter createMetrics() {
+      return new Counter();
+    }
+  }
+}
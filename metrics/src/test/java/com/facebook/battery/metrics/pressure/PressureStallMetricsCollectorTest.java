@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.metrics.pressure;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.facebook.battery.metrics.core.SystemMetricsCollectorTest;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class)
+public class PressureStallMetricsCollectorTest
+    extends SystemMetricsCollectorTest<PressureStallMetrics, PressureStallMetricsCollector> {
+
+  TemporaryFolder mFolder = new TemporaryFolder();
+
+  @Before
+  public void setUp() throws Exception {
+    mFolder.create();
+  }
+
+  @Test
+  public void testTotals() throws Exception {
+    writeFile(
+        "cpu",
+        "some avg10=1.00 avg60=3.10 avg300=2.80 total=12972619\n"
+            + "full avg10=0.00 avg60=0.00 avg300=0.00 total=42\n");
+    writeFile(
+        "memory",
+        "some avg10=0.23 avg60=0.82 avg300=1.52 total=10018103\n"
+            + "full avg10=0.20 avg60=0.74 avg300=1.45 total=9650250\n");
+    writeFile(
+        "io",
+        "some avg10=0.00 avg60=0.00 avg300=0.00 total=7\n"
+            + "full avg10=0.00 avg60=0.00 avg300=0.00 total=3\n");
+
+    PressureStallMetrics snapshot = new PressureStallMetrics();
+    assertThat(createCollector().getSnapshot(snapshot)).isTrue();
+
+    assertThat(snapshot.cpuSomeTotalUs).isEqualTo(12972619);
+    assertThat(snapshot.cpuFullTotalUs).isEqualTo(42);
+    assertThat(snapshot.memorySomeTotalUs).isEqualTo(10018103);
+    assertThat(snapshot.memoryFullTotalUs).isEqualTo(9650250);
+    assertThat(snapshot.ioSomeTotalUs).isEqualTo(7);
+    assertThat(snapshot.ioFullTotalUs).isEqualTo(3);
+  }
+
+  @Test
+  public void testCpuWithoutFullLine() throws Exception {
+    writeFile("cpu", "some avg10=1.00 avg60=3.10 avg300=2.80 total=100\n");
+    writeFile("memory", "some avg10=0 avg60=0 avg300=0 total=20\nfull avg10=0 avg60=0 avg300=0 total=10\n");
+    writeFile("io", "some avg10=0 avg60=0 avg300=0 total=40\nfull avg10=0 avg60=0 avg300=0 total=30\n");
+
+    PressureStallMetrics snapshot = new PressureStallMetrics();
+    assertThat(createCollector().getSnapshot(snapshot)).isTrue();
+
+    assertThat(snapshot.cpuSomeTotalUs).isEqualTo(100);
+    assertThat(snapshot.cpuFullTotalUs).isEqualTo(0);
+    assertThat(snapshot.memoryFullTotalUs).isEqualTo(10);
+    assertThat(snapshot.ioFullTotalUs).isEqualTo(30);
+  }
+
+  @Test
+  public void testRepeatedSnapshots() throws Exception {
+    writeFile("cpu", "some avg10=0 avg60=0 avg300=0 total=100\n");
+    writeFile("memory", "some avg10=0 avg60=0 avg300=0 total=200\n");
+    writeFile("io", "some avg10=0 avg60=0 avg300=0 total=300\n");
+
+    PressureStallMetricsCollector collector = createCollector();
+    PressureStallMetrics snapshot = new PressureStallMetrics();
+    assertThat(collector.getSnapshot(snapshot)).isTrue();
+
+    writeFile("memory", "some avg10=0 avg60=0 avg300=0 total=250\n");
+    assertThat(collector.getSnapshot(snapshot)).isTrue();
+    assertThat(snapshot.cpuSomeTotalUs).isEqualTo(100);
+    assertThat(snapshot.memorySomeTotalUs).isEqualTo(250);
+    assertThat(snapshot.ioSomeTotalUs).isEqualTo(300);
+  }
+
+  @Test
+  public void testUnavailable() throws Exception {
+    PressureStallMetrics snapshot = new PressureStallMetrics();
+    assertThat(createCollector().getSnapshot(snapshot)).isFalse();
+  }
+
+  @Test
+  public void testBrokenFile() throws Exception {
+    writeFile("cpu", "some avg10=0 avg60=0 avg300=0 total=abc\n");
+    writeFile("memory", "some avg10=0 avg60=0 avg300=0 total=200\n");
+    writeFile("io", "some avg10=0 avg60=0 avg300=0 total=300\n");
+
+    PressureStallMetrics snapshot = new PressureStallMetrics();
+    assertThat(createCollector().getSnapshot(snapshot)).isFalse();
+  }
+
+  private PressureStallMetricsCollector createCollector() {
+    final String directory = mFolder.getRoot().getAbsolutePath();
+    return new PressureStallMetricsCollector() {
+      @Override
+      protected String getPath(String resource) {
+        return directory + "/" + resource;
+      }
+    };
+  }
+
+  private void writeFile(String name, String contents) throws IOException {
+    FileOutputStream os = new FileOutputStream(new File(mFolder.getRoot(), name), false);
+    os.write(contents.getBytes());
+    os.close();
+  }
+
+  @Override
+  protected Class<PressureStallMetricsCollector> getClazz() {
+    return PressureStallMetricsCollector.class;
+  }
+}
@@ -0,0 +1,21 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.metrics.pressure;
+
+import com.facebook.battery.metrics.core.SystemMetricsTest;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class)
+public class PressureStallMetricsTest extends SystemMetricsTest<PressureStallMetrics> {
+
+  @Override
+  protected Class<PressureStallMetrics> getClazz() {
+    return PressureStallMetrics.class;
+  }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.metrics.sketch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.facebook.battery.metrics.cpu.CpuMetrics;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class)
+public class DistributionAggregatorTest {
+
+  @Test
+  public void testAggregatesFields() {
+    DistributionAggregator<CpuMetrics> aggregator =
+        new DistributionAggregator<CpuMetrics>()
+            .addField(
+                "user_time_s",
+                new DistributionAggregator.Field<CpuMetrics>() {
+                  @Override
+                  public double getValue(CpuMetrics metrics) {
+                    return metrics.userTimeS;
+                  }
+                })
+            .addField(
+                "system_time_s",
+                new DistributionAggregator.Field<CpuMetrics>() {
+                  @Override
+                  public double getValue(CpuMetrics metrics) {
+                    return metrics.systemTimeS > 0 ? metrics.systemTimeS : Double.NaN;
+                  }
+                },
+                new QuantileSketch(0.01, 0.01, 100));
+
+    CpuMetrics diff = new CpuMetrics();
+    for (int i = 1; i <= 10; i++) {
+      diff.userTimeS = i;
+      diff.systemTimeS = i % 2;
+      aggregator.add(diff);
+    }
+
+    DistributionMetrics metrics = aggregator.getMetrics();
+    QuantileSketch userTime = metrics.sketches.get("user_time_s");
+    assertThat(userTime.count).isEqualTo(10);
+    assertThat(userTime.sum).isEqualTo(55);
+    assertThat(metrics.sketches.get("system_time_s").count).isEqualTo(5);
+    assertThat(metrics.sketches.get("system_time_s").counts.length).isEqualTo(100);
+
+    aggregator.reset();
+    assertThat(userTime.count).isEqualTo(0);
+    assertThat(metrics.sketches.size()).isEqualTo(2);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testDuplicateField() {
+    DistributionAggregator.Field<CpuMetrics> field =
+        new DistributionAggregator.Field<CpuMetrics>() {
+          @Override
+          public double getValue(CpuMetrics metrics) {
+            return metrics.userTimeS;
+          }
+        };
+    new DistributionAggregator<CpuMetrics>().addField("a", field).addField("a", field);
+  }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.metrics.sketch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class)
+public class DistributionMetricsTest {
+
+  @Test
+  public void testSumMatchesNames() {
+    DistributionMetrics a = new DistributionMetrics();
+    a.getOrCreateSketch("shared").add(1);
+    a.getOrCreateSketch("a").add(2);
+    DistributionMetrics b = new DistributionMetrics();
+    b.getOrCreateSketch("shared").add(3);
+    b.getOrCreateSketch("b").add(4);
+
+    DistributionMetrics sum = a.sum(b, null);
+    assertThat(sum.sketches.size()).isEqualTo(3);
+    assertThat(sum.sketches.get("shared").count).isEqualTo(2);
+    assertThat(sum.sketches.get("a").sum).isEqualTo(2);
+    assertThat(sum.sketches.get("b").sum).isEqualTo(4);
+
+    // Summing in place
+    a.sum(b, a);
+    assertThat(a).isEqualTo(sum);
+  }
+
+  @Test
+  public void testDiff() {
+    DistributionMetrics before = new DistributionMetrics();
+    before.getOrCreateSketch("shared").add(1);
+    DistributionMetrics after = new DistributionMetrics().set(before);
+    after.getOrCreateSketch("shared").add(5);
+    after.getOrCreateSketch("new").add(6);
+
+    DistributionMetrics output = new DistributionMetrics();
+    output.getOrCreateSketch("stale").add(7);
+    after.diff(before, output);
+    assertThat(output.sketches.size()).isEqualTo(2);
+    assertThat(output.sketches.get("shared").count).isEqualTo(1);
+    assertThat(output.sketches.get("shared").sum).isEqualTo(5);
+    assertThat(output.sketches.get("new").sum).isEqualTo(6);
+  }
+
+  @Test
+  public void testSetKeepsParameters() {
+    DistributionMetrics a = new DistributionMetrics();
+    QuantileSketch sketch = new QuantileSketch(0.01, 1, 10);
+    sketch.add(2);
+    a.sketches.put("custom", sketch);
+
+    DistributionMetrics b = new DistributionMetrics();
+    b.getOrCreateSketch("custom");
+    b.set(a);
+    assertThat(b).isEqualTo(a);
+    assertThat(b.sketches.get("custom")).isNotSameAs(sketch);
+  }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.metrics.sketch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class)
+public class QuantileSketchTest {
+
+  @Test
+  public void testEmpty() {
+    QuantileSketch sketch = new QuantileSketch();
+    assertThat(sketch.count).isEqualTo(0);
+    assertThat(sketch.getQuantile(0.5)).isNaN();
+    assertThat(sketch.getMean()).isNaN();
+  }
+
+  @Test
+  public void testRelativeAccuracy() {
+    QuantileSketch sketch = new QuantileSketch();
+    for (int i = 1; i <= 10_000; i++) {
+      sketch.add(i / 100.0);
+    }
+
+    assertThat(sketch.count).isEqualTo(10_000);
+    assertThat(sketch.sum).isCloseTo(500_050, within(0.01));
+    double accuracy = QuantileSketch.DEFAULT_RELATIVE_ACCURACY;
+    for (double quantile : new double[] {0, 0.25, 0.5, 0.95, 0.99, 1}) {
+      double expected = (1 + Math.floor(quantile * 9_999)) / 100.0;
+      assertThat(sketch.getQuantile(quantile)).isCloseTo(expected, within(expected * accuracy));
+    }
+  }
+
+  @Test
+  public void testOutOfRangeValues() {
+    QuantileSketch sketch = new QuantileSketch(0.01, 1, 10);
+    sketch.add(0);
+    sketch.add(-5);
+    sketch.add(0.5);
+    sketch.add(Double.NaN);
+    sketch.add(1e9, 2);
+
+    assertThat(sketch.count).isEqualTo(5);
+    assertThat(sketch.zeroCount).isEqualTo(3);
+    assertThat(sketch.counts[9]).isEqualTo(2);
+    assertThat(sketch.getQuantile(0.5)).isEqualTo(0);
+    // Clamped to the last bucket
+    assertThat(sketch.getQuantile(1)).isLessThan(1.25);
+  }
+
+  @Test
+  public void testSumAndDiff() {
+    QuantileSketch a = new QuantileSketch();
+    QuantileSketch b = new QuantileSketch();
+    QuantileSketch all = new QuantileSketch();
+    for (int i = 0; i < 100; i++) {
+      double value = i * 1.5;
+      (i % 2 == 0 ? a : b).add(value);
+      all.add(value);
+    }
+
+    QuantileSketch sum = a.sum(b, null);
+    assertThat(sum.count).isEqualTo(all.count);
+    assertThat(sum.zeroCount).isEqualTo(all.zeroCount);
+    assertThat(sum.counts).isEqualTo(all.counts);
+    assertThat(sum.getQuantile(0.9)).isEqualTo(all.getQuantile(0.9));
+
+    QuantileSketch diff = sum.diff(b, new QuantileSketch());
+    assertThat(diff.counts).isEqualTo(a.counts);
+    assertThat(diff.count).isEqualTo(a.count);
+
+    assertThat(new QuantileSketch().set(all)).isEqualTo(all);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testIncompatibleSketches() {
+    new QuantileSketch().sum(new QuantileSketch(0.01, 1, 10), null);
+  }
+
+  @Test
+  public void testClear() {
+    QuantileSketch sketch = new QuantileSketch();
+    sketch.add(10);
+    sketch.clear();
+    assertThat(sketch).isEqualTo(new QuantileSketch());
+  }
+}
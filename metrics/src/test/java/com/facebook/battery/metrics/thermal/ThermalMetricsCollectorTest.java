@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.metrics.thermal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.facebook.battery.metrics.core.ShadowSystemClock;
+import com.facebook.battery.metrics.core.SystemMetricsCollectorTest;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(shadows = {ShadowSystemClock.class})
+public class ThermalMetricsCollectorTest
+    extends SystemMetricsCollectorTest<ThermalMetrics, ThermalMetricsCollector> {
+
+  TemporaryFolder mFolder = new TemporaryFolder();
+
+  @Before
+  public void setUp() throws Exception {
+    mFolder.create();
+    ShadowSystemClock.setElapsedRealtime(0);
+
+    writeFile("thermal_zone0/type", "cpu-0-0\n");
+    writeFile("thermal_zone0/temp", "38000\n");
+    writeFile("thermal_zone1/type", "battery\n");
+    writeFile("thermal_zone1/temp", "30000\n");
+    writeFile("cooling_device0/type", "thermal-cpufreq-0\n");
+    writeFile("cooling_device0/cur_state", "0\n");
+  }
+
+  @Test
+  public void testSingleSnapshot() throws Exception {
+    ThermalMetricsCollector collector = createCollector(new int[] {35_000, 40_000}, null);
+    ThermalMetrics snapshot = collector.createMetrics();
+
+    assertThat(collector.getSnapshot(snapshot)).isTrue();
+    assertThat(snapshot.maxTemperatureMilliC).isEqualTo(38_000);
+    assertThat(snapshot.maxCoolingState).isEqualTo(0);
+    assertThat(snapshot.timeAboveThresholdMs).isEqualTo(new long[] {0, 0});
+    assertThat(snapshot.throttledMs).isEqualTo(0);
+  }
+
+  @Test
+  public void testAccumulatesTimeAboveThresholds() throws Exception {
+    ThermalMetricsCollector collector = createCollector(new int[] {35_000, 40_000}, null);
+    ThermalMetrics snapshot = collector.createMetrics();
+
+    ShadowSystemClock.setElapsedRealtime(100);
+    assertThat(collector.getSnapshot(snapshot)).isTrue();
+
+    writeFile("thermal_zone1/temp", "42000\n");
+    writeFile("cooling_device0/cur_state", "3\n");
+    ShadowSystemClock.setElapsedRealtime(200);
+    assertThat(collector.getSnapshot(snapshot)).isTrue();
+    assertThat(snapshot.timeAboveThresholdMs).isEqualTo(new long[] {100, 0});
+    assertThat(snapshot.throttledMs).isEqualTo(0);
+    assertThat(snapshot.maxTemperatureMilliC).isEqualTo(42_000);
+    assertThat(snapshot.maxCoolingState).isEqualTo(3);
+
+    ShadowSystemClock.setElapsedRealtime(500);
+    assertThat(collector.getSnapshot(snapshot)).isTrue();
+    assertThat(snapshot.timeAboveThresholdMs).isEqualTo(new long[] {400, 300});
+    assertThat(snapshot.throttledMs).isEqualTo(300);
+  }
+
+  @Test
+  public void testZoneTypeFilter() throws Exception {
+    writeFile("thermal_zone1/temp", "60000\n");
+    ThermalMetricsCollector collector = createCollector(new int[] {40_000}, new String[] {"cpu"});
+    ThermalMetrics snapshot = collector.createMetrics();
+
+    assertThat(collector.getSnapshot(snapshot)).isTrue();
+    assertThat(snapshot.maxTemperatureMilliC).isEqualTo(38_000);
+  }
+
+  @Test
+  public void testUnreadableZonesAreSkipped() throws Exception {
+    new File(mFolder.getRoot(), "thermal_zone0/temp").delete();
+    ThermalMetricsCollector collector = createCollector(new int[] {40_000}, null);
+    ThermalMetrics snapshot = collector.createMetrics();
+
+    assertThat(collector.getSnapshot(snapshot)).isTrue();
+    assertThat(snapshot.maxTemperatureMilliC).isEqualTo(30_000);
+  }
+
+  @Test
+  public void testZonesAreDiscoveredOnce() throws Exception {
+    ThermalMetricsCollector collector = createCollector(new int[] {40_000}, null);
+    assertThat(collector.getZoneTypes()).containsExactly("cpu-0-0", "battery");
+
+    writeFile("thermal_zone2/type", "skin\n");
+    writeFile("thermal_zone2/temp", "50000\n");
+    ThermalMetrics snapshot = collector.createMetrics();
+    assertThat(collector.getSnapshot(snapshot)).isTrue();
+    assertThat(snapshot.maxTemperatureMilliC).isEqualTo(38_000);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testMismatchedSnapshot() throws Exception {
+    ThermalMetricsCollector collector = createCollector(new int[] {40_000}, null);
+    collector.getSnapshot(new ThermalMetrics(3));
+  }
+
+  @Test
+  public void testNoZones() throws Exception {
+    ThermalMetricsCollector collector = createCollector(new int[] {40_000}, new String[] {"skin"});
+    assertThat(collector.getSnapshot(collector.createMetrics())).isFalse();
+  }
+
+  private ThermalMetricsCollector createCollector(int[] thresholds, String[] zoneTypes) {
+    return new ThermalMetricsCollector(
+        thresholds, zoneTypes, mFolder.getRoot().getAbsolutePath());
+  }
+
+  private void writeFile(String name, String contents) throws IOException {
+    File file = new File(mFolder.getRoot(), name);
+    file.getParentFile().mkdirs();
+    FileOutputStream os = new FileOutputStream(file, false);
+    os.write(contents.getBytes());
+    os.close();
+  }
+
+  @Override
+  protected Class<ThermalMetricsCollector> getClazz() {
+    return ThermalMetricsCollector.class;
+  }
+}
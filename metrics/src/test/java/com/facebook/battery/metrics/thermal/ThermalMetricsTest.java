@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.metrics.thermal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.facebook.battery.metrics.core.SystemMetricsTest;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class)
+public class ThermalMetricsTest extends SystemMetricsTest<ThermalMetrics> {
+
+  private static ThermalMetrics createMetrics(
+      long[] timeAboveThresholdMs, long throttledMs, long maxTemperature, long maxCoolingState) {
+    ThermalMetrics metrics = new ThermalMetrics(timeAboveThresholdMs.length);
+    System.arraycopy(timeAboveThresholdMs, 0, metrics.timeAboveThresholdMs, 0, timeAboveThresholdMs.length);
+    metrics.throttledMs = throttledMs;
+    metrics.maxTemperatureMilliC = maxTemperature;
+    metrics.maxCoolingState = maxCoolingState;
+    return metrics;
+  }
+
+  @Test
+  public void testDefaultThresholds() {
+    assertThat(new ThermalMetrics().timeAboveThresholdMs.length)
+        .isEqualTo(ThermalMetricsCollector.DEFAULT_THRESHOLDS_MILLI_C.length);
+  }
+
+  @Override
+  @Test
+  public void testSum() throws Exception {
+    ThermalMetrics a = createMetrics(new long[] {10, 5, 1}, 4, 41_000, 2);
+    ThermalMetrics b = createMetrics(new long[] {20, 10, 0}, 6, 46_000, 1);
+
+    ThermalMetrics sum = a.sum(b, null);
+    assertThat(sum.timeAboveThresholdMs).isEqualTo(new long[] {30, 15, 1});
+    assertThat(sum.throttledMs).isEqualTo(10);
+    assertThat(sum.maxTemperatureMilliC).isEqualTo(46_000);
+    assertThat(sum.maxCoolingState).isEqualTo(2);
+  }
+
+  @Override
+  @Test
+  public void testDiff() throws Exception {
+    ThermalMetrics later = createMetrics(new long[] {20, 10, 1}, 6, 41_000, 0);
+    ThermalMetrics earlier = createMetrics(new long[] {10, 5, 0}, 4, 46_000, 2);
+
+    ThermalMetrics diff = later.diff(earlier, null);
+    assertThat(diff.timeAboveThresholdMs).isEqualTo(new long[] {10, 5, 1});
+    assertThat(diff.throttledMs).isEqualTo(2);
+    assertThat(diff.maxTemperatureMilliC).isEqualTo(41_000);
+    assertThat(diff.maxCoolingState).isEqualTo(0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testMismatchedThresholds() {
+    new ThermalMetrics(2).set(new ThermalMetrics(3));
+  }
+
+  @Override
+  protected Class<ThermalMetrics> getClazz() {
+    return ThermalMetrics.class;
+  }
+}
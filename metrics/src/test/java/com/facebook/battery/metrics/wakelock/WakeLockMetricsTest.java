@@ -9,6 +9,7 @@ package com.facebook.battery.metrics.wakelock;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import com.facebook.battery.metrics.core.JsonWriter;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.junit.Test;
@@ -127,6 +128,20 @@ public class WakeLockMetricsTest {
     assertThat(attribution.getLong("Test")).isEqualTo(100);
   }
 
+  @Test
+  public void testAttributionToJSON() {
+    WakeLockMetrics metrics = createInitializedMetrics();
+    metrics.tagTimeMs.put("TestC", 0L);
+
+    JsonWriter writer = new JsonWriter();
+    assertThat(metrics.attributionToJSON(writer)).isTrue();
+    assertThat(writer.toString()).isEqualTo("{\"TestA\":500,\"TestB\":750}");
+
+    writer.reset();
+    assertThat(new WakeLockMetrics().attributionToJSON(writer)).isFalse();
+    assertThat(writer.length()).isEqualTo(0);
+  }
+
   private WakeLockMetrics createInitializedMetrics() {
     WakeLockMetrics metrics = new WakeLockMetrics(true);
     metrics.acquiredCount = 100;
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.metrics.window;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.facebook.battery.metrics.composite.CompositeMetrics;
+import com.facebook.battery.metrics.composite.CompositeMetricsCollector;
+import com.facebook.battery.metrics.cpu.CpuMetrics;
+import com.facebook.battery.metrics.cpu.CpuMetricsCollector;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class)
+public class WindowAggregatorTest {
+
+  private WindowAggregator<CompositeMetrics> mAggregator;
+  private CompositeMetrics mDiff;
+  private CompositeMetrics mTotal;
+
+  @Before
+  public void setUp() {
+    CompositeMetricsCollector collector =
+        new CompositeMetricsCollector.Builder()
+            .addMetricsCollector(CpuMetrics.class, new CpuMetricsCollector())
+            .build();
+    mAggregator = new WindowAggregator<>(collector);
+    mDiff = collector.createMetrics();
+    mDiff.setIsValid(CpuMetrics.class, true);
+    mTotal = collector.createMetrics();
+  }
+
+  @Test
+  public void testSlidingWindow() {
+    // 4 buckets of 10ms
+    WindowAggregator.Window window = mAggregator.addSlidingWindow(40, 4);
+    add(1, 0);
+    add(2, 15);
+    add(4, 39);
+    assertThat(getTotal(window, 39)).isEqualTo(7);
+
+    // The first bucket slides out
+    assertThat(getTotal(window, 40)).isEqualTo(6);
+    add(8, 45);
+    assertThat(getTotal(window, 49)).isEqualTo(14);
+    assertThat(getTotal(window, 75)).isEqualTo(8);
+
+    // Long gaps clear every bucket
+    assertThat(getTotal(window, 1_000)).isEqualTo(0);
+    assertThat(mTotal.isValid(CpuMetrics.class)).isFalse();
+  }
+
+  @Test
+  public void testTumblingWindow() {
+    WindowAggregator.Window window = mAggregator.addTumblingWindow(100, 30);
+    add(1, 29);
+    add(2, 30);
+    add(4, 129);
+    assertThat(getTotal(window, 129)).isEqualTo(6);
+    add(8, 130);
+    assertThat(getTotal(window, 130)).isEqualTo(8);
+  }
+
+  @Test
+  public void testWindowsAreIndependent() {
+    WindowAggregator.Window minute = mAggregator.addSlidingWindow(60_000, 60);
+    WindowAggregator.Window hour = mAggregator.addSlidingWindow(3_600_000, 60);
+    for (int i = 0; i < 120; i++) {
+      add(1, i * 1_000L);
+    }
+    assertThat(getTotal(minute, 119_999)).isEqualTo(60);
+    assertThat(getTotal(hour, 119_999)).isEqualTo(120);
+  }
+
+  @Test
+  public void testClockGoingBackwards() {
+    WindowAggregator.Window window = mAggregator.addSlidingWindow(40, 4);
+    add(1, 100);
+    add(2, 50);
+    assertThat(getTotal(window, 100)).isEqualTo(3);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnknownWindow() {
+    WindowAggregator.Window window =
+        new WindowAggregator<>(new CpuMetricsCollector()).addSlidingWindow(40, 4);
+    mAggregator.getTotal(window, mTotal, 0);
+  }
+
+  private void add(double userTimeS, long nowMs) {
+    mDiff.getMetric(CpuMetrics.class).userTimeS = userTimeS;
+    mAggregator.add(mDiff, nowMs);
+  }
+
+  private double getTotal(WindowAggregator.Window window, long nowMs) {
+    return mAggregator.getTotal(window, mTotal, nowMs).getMetric(CpuMetrics.class).userTimeS;
+  }
+}
@@ -8,29 +8,28 @@
 package com.facebook.battery.reporter.appwakeup;
 
 import com.facebook.battery.metrics.appwakeup.AppWakeupMetrics;
-import com.facebook.battery.metrics.core.SystemMetricsLogger;
-import com.facebook.battery.reporter.core.SystemMetricsReporter;
-import com.facebook.common.preconditions.Preconditions;
+import com.facebook.battery.metrics.core.JsonWriter;
+import com.facebook.battery.reporter.core.BinaryEvent;
+import com.facebook.battery.reporter.core.BinarySystemMetricsReporter;
+import com.facebook.battery.reporter.core.EventSchema;
 import com.facebook.infer.annotation.Nullsafe;
-import org.json.JSONArray;
-import org.json.JSONException;
 
 @Nullsafe(Nullsafe.Mode.LOCAL)
-public class AppWakeupMetricsReporter implements SystemMetricsReporter<AppWakeupMetrics> {
-
-  private static final String TAG = "AppWakeupMetricsReporter";
+public class AppWakeupMetricsReporter extends BinarySystemMetricsReporter<AppWakeupMetrics> {
 
   private static final String APP_WAKEUPS = "app_wakeup_attribution";
+  private static final int APP_WAKEUPS_ID = EventSchema.register(APP_WAKEUPS);
+
+  private final JsonWriter mJsonWriter = new JsonWriter();
 
   @Override
-  public void reportTo(AppWakeupMetrics metrics, SystemMetricsReporter.Event event) {
-    try {
-      JSONArray representation = metrics.toJSON();
-      if (representation != null) {
-        event.add(APP_WAKEUPS, Preconditions.checkNotNull(representation.toString()));
-      }
-    } catch (JSONException jsone) {
-      SystemMetricsLogger.wtf(TAG, "Unable to report AppWakeupMetrics", jsone);
+  public void reportTo(AppWakeupMetrics metrics, BinaryEvent event) {
+    String representation;
+    synchronized (mJsonWriter) {
+      mJsonWriter.reset();
+      metrics.toJSON(mJsonWriter);
+      representation = mJsonWriter.toString();
     }
+    event.add(APP_WAKEUPS_ID, representation);
   }
 }
@@ -8,25 +8,27 @@
 package com.facebook.battery.reporter.bluetooth
 
 import com.facebook.battery.metrics.bluetooth.BluetoothMetrics
-import com.facebook.battery.reporter.core.SystemMetricsReporter
+import com.facebook.battery.reporter.core.BinaryEvent
+import com.facebook.battery.reporter.core.BinarySystemMetricsReporter
+import com.facebook.battery.reporter.core.EventSchema
 
-class BluetoothMetricsReporter() : SystemMetricsReporter<BluetoothMetrics> {
+class BluetoothMetricsReporter() : BinarySystemMetricsReporter<BluetoothMetrics>() {
 
-  override fun reportTo(metrics: BluetoothMetrics, event: SystemMetricsReporter.Event) {
+  override fun reportTo(metrics: BluetoothMetrics, event: BinaryEvent) {
     if (metrics.bleScanCount != 0) {
-      event.add(BLE_SCAN_COUNT, metrics.bleScanCount)
+      event.add(BLE_SCAN_COUNT_ID, metrics.bleScanCount)
     }
 
     if (metrics.bleScanDurationMs != 0L) {
-      event.add(BLE_SCAN_DURATION_MS, metrics.bleScanDurationMs)
+      event.add(BLE_SCAN_DURATION_MS_ID, metrics.bleScanDurationMs)
     }
 
     if (metrics.bleOpportunisticScanCount != 0) {
-      event.add(BLE_OPPORTUNISTIC_SCAN_COUNT, metrics.bleOpportunisticScanCount)
+      event.add(BLE_OPPORTUNISTIC_SCAN_COUNT_ID, metrics.bleOpportunisticScanCount)
     }
 
     if (metrics.bleScanDurationMs != 0L) {
-      event.add(BLE_OPPORTUNISTIC_SCAN_DURATION_MS, metrics.bleOpportunisticScanDurationMs)
+      event.add(BLE_OPPORTUNISTIC_SCAN_DURATION_MS_ID, metrics.bleOpportunisticScanDurationMs)
     }
   }
 
@@ -35,5 +37,12 @@ class BluetoothMetricsReporter() : SystemMetricsReporter<BluetoothMetrics> {
     const val BLE_SCAN_DURATION_MS: String = "ble_scan_duration_ms"
     const val BLE_OPPORTUNISTIC_SCAN_COUNT: String = "ble_opportunistic_scan_count"
     const val BLE_OPPORTUNISTIC_SCAN_DURATION_MS: String = "ble_opportunistic_scan_duration_ms"
+
+    private val BLE_SCAN_COUNT_ID: Int = EventSchema.register(BLE_SCAN_COUNT)
+    private val BLE_SCAN_DURATION_MS_ID: Int = EventSchema.register(BLE_SCAN_DURATION_MS)
+    private val BLE_OPPORTUNISTIC_SCAN_COUNT_ID: Int =
+        EventSchema.register(BLE_OPPORTUNISTIC_SCAN_COUNT)
+    private val BLE_OPPORTUNISTIC_SCAN_DURATION_MS_ID: Int =
+        EventSchema.register(BLE_OPPORTUNISTIC_SCAN_DURATION_MS)
   }
 }
@@ -8,22 +8,27 @@
 package com.facebook.battery.reporter.camera
 
 import com.facebook.battery.metrics.camera.CameraMetrics
-import com.facebook.battery.reporter.core.SystemMetricsReporter
+import com.facebook.battery.reporter.core.BinaryEvent
+import com.facebook.battery.reporter.core.BinarySystemMetricsReporter
+import com.facebook.battery.reporter.core.EventSchema
 
-class CameraMetricsReporter() : SystemMetricsReporter<CameraMetrics> {
+class CameraMetricsReporter() : BinarySystemMetricsReporter<CameraMetrics>() {
 
-  override fun reportTo(metrics: CameraMetrics, event: SystemMetricsReporter.Event) {
+  override fun reportTo(metrics: CameraMetrics, event: BinaryEvent) {
     // Do not report value if value is 0
     if (metrics.cameraOpenTimeMs != 0L) {
-      event.add(CAMERA_OPEN_TIME_MS, metrics.cameraOpenTimeMs)
+      event.add(CAMERA_OPEN_TIME_MS_ID, metrics.cameraOpenTimeMs)
     }
     if (metrics.cameraPreviewTimeMs != 0L) {
-      event.add(CAMERA_PREVIEW_TIME_MS, metrics.cameraPreviewTimeMs)
+      event.add(CAMERA_PREVIEW_TIME_MS_ID, metrics.cameraPreviewTimeMs)
     }
   }
 
   companion object {
     const val CAMERA_OPEN_TIME_MS: String = "camera_open_time_ms"
     const val CAMERA_PREVIEW_TIME_MS: String = "camera_preview_time_ms"
+
+    private val CAMERA_OPEN_TIME_MS_ID: Int = EventSchema.register(CAMERA_OPEN_TIME_MS)
+    private val CAMERA_PREVIEW_TIME_MS_ID: Int = EventSchema.register(CAMERA_PREVIEW_TIME_MS)
   }
 }
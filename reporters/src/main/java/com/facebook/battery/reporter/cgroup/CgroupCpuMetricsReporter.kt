@@ -0,0 +1,40 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.reporter.cgroup
+
+import com.facebook.battery.metrics.cgroup.CgroupCpuMetrics
+import com.facebook.battery.reporter.core.BinaryEvent
+import com.facebook.battery.reporter.core.BinarySystemMetricsReporter
+import com.facebook.battery.reporter.core.EventSchema
+
+/** Reports user and system cpu time for every scheduling group, prefixed with the group name. */
+class CgroupCpuMetricsReporter() : BinarySystemMetricsReporter<CgroupCpuMetrics>() {
+
+  override fun reportTo(metrics: CgroupCpuMetrics, event: BinaryEvent) {
+    for (group in 0 until CgroupCpuMetrics.GROUPS) {
+      val cpuMetrics = metrics.cpuMetrics[group]
+      if (cpuMetrics.userTimeS != 0.0) {
+        event.add(USER_TIME_KEYS[group], cpuMetrics.userTimeS)
+      }
+
+      if (cpuMetrics.systemTimeS != 0.0) {
+        event.add(SYSTEM_TIME_KEYS[group], cpuMetrics.systemTimeS)
+      }
+    }
+  }
+
+  companion object {
+    /** Indexed by the group constants of CgroupCpuMetrics. */
+    private val GROUP_NAMES = arrayOf("top_app", "foreground", "background", "other")
+
+    private val USER_TIME_KEYS =
+        IntArray(GROUP_NAMES.size) { EventSchema.register(GROUP_NAMES[it] + "_cpu_user_time_s") }
+    private val SYSTEM_TIME_KEYS =
+        IntArray(GROUP_NAMES.size) { EventSchema.register(GROUP_NAMES[it] + "_cpu_system_time_s") }
+  }
+}
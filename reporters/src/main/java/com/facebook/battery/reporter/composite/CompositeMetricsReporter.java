@@ -11,16 +11,28 @@ import androidx.annotation.Nullable;
 import androidx.collection.SimpleArrayMap;
 import com.facebook.battery.metrics.composite.CompositeMetrics;
 import com.facebook.battery.metrics.core.SystemMetrics;
+import com.facebook.battery.reporter.core.BinaryEvent;
+import com.facebook.battery.reporter.core.BinaryEventAdapter;
+import com.facebook.battery.reporter.core.BinarySystemMetricsReporter;
 import com.facebook.battery.reporter.core.SystemMetricsReporter;
 import com.facebook.common.preconditions.Preconditions;
 import com.facebook.infer.annotation.Nullsafe;
 
+/**
+ * Reports each valid metric of a CompositeMetrics with its reporter, to either kind of event:
+ * reporters that don't support {@link BinaryEvent}s report to them through a {@link
+ * BinaryEventAdapter}, which is reused across calls: binary events should be reported from one
+ * thread at a time.
+ */
 @Nullsafe(Nullsafe.Mode.LOCAL)
-public class CompositeMetricsReporter implements SystemMetricsReporter<CompositeMetrics> {
+public class CompositeMetricsReporter extends BinarySystemMetricsReporter<CompositeMetrics> {
 
   private final SimpleArrayMap<Class<? extends SystemMetrics>, SystemMetricsReporter<?>>
       mMetricsReporterMap = new SimpleArrayMap<>();
 
+  private @Nullable BinaryEventAdapter mAdapter;
+
+  @Override
   public void reportTo(CompositeMetrics metrics, SystemMetricsReporter.Event event) {
     for (int i = 0; i < mMetricsReporterMap.size(); i++) {
       Class<? extends SystemMetrics> metricsClass = mMetricsReporterMap.keyAt(i);
@@ -32,6 +44,35 @@ public class CompositeMetricsReporter implements SystemMetricsReporter<Composite
     }
   }
 
+  @Override
+  public void reportTo(CompositeMetrics metrics, BinaryEvent event) {
+    @Nullable BinaryEventAdapter adapter = null;
+    for (int i = 0; i < mMetricsReporterMap.size(); i++) {
+      Class<? extends SystemMetrics> metricsClass = mMetricsReporterMap.keyAt(i);
+      if (metrics.isValid(metricsClass)) {
+        SystemMetrics systemMetrics = metrics.getMetric(metricsClass);
+        SystemMetricsReporter reporter =
+            Preconditions.checkNotNull(mMetricsReporterMap.get(metricsClass));
+        if (reporter instanceof BinarySystemMetricsReporter) {
+          ((BinarySystemMetricsReporter) reporter).reportTo(systemMetrics, event);
+        } else {
+          if (adapter == null) {
+            adapter = getAdapter(event);
+          }
+          reporter.reportTo(systemMetrics, adapter);
+        }
+      }
+    }
+  }
+
+  private BinaryEventAdapter getAdapter(BinaryEvent event) {
+    BinaryEventAdapter adapter = mAdapter;
+    if (adapter == null) {
+      adapter = mAdapter = new BinaryEventAdapter(event);
+    }
+    return adapter.setEvent(event);
+  }
+
   /**
    * Add a metric and its reporter to the CompositeMetricsReporter.
    *
@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.reporter.contextswitch
+
+import com.facebook.battery.metrics.contextswitch.ContextSwitchMetrics
+import com.facebook.battery.reporter.core.BinaryEvent
+import com.facebook.battery.reporter.core.BinarySystemMetricsReporter
+import com.facebook.battery.reporter.core.EventSchema
+
+class ContextSwitchMetricsReporter() : BinarySystemMetricsReporter<ContextSwitchMetrics>() {
+
+  override fun reportTo(metrics: ContextSwitchMetrics, event: BinaryEvent) {
+    if (metrics.voluntaryContextSwitches != 0L) {
+      event.add(VOLUNTARY_CTXT_SWITCHES_ID, metrics.voluntaryContextSwitches)
+    }
+
+    if (metrics.nonvoluntaryContextSwitches != 0L) {
+      event.add(NONVOLUNTARY_CTXT_SWITCHES_ID, metrics.nonvoluntaryContextSwitches)
+    }
+
+    if (metrics.threadsCount != 0L) {
+      event.add(THREADS_COUNT_ID, metrics.threadsCount)
+    }
+
+    if (metrics.vmHwmKb != 0L) {
+      event.add(VM_HWM_KB_ID, metrics.vmHwmKb)
+    }
+  }
+
+  companion object {
+    const val VOLUNTARY_CTXT_SWITCHES: String = "voluntary_ctxt_switches"
+    const val NONVOLUNTARY_CTXT_SWITCHES: String = "nonvoluntary_ctxt_switches"
+    const val THREADS_COUNT: String = "threads_count"
+    const val VM_HWM_KB: String = "vm_hwm_kb"
+
+    private val VOLUNTARY_CTXT_SWITCHES_ID: Int = EventSchema.register(VOLUNTARY_CTXT_SWITCHES)
+    private val NONVOLUNTARY_CTXT_SWITCHES_ID: Int =
+        EventSchema.register(NONVOLUNTARY_CTXT_SWITCHES)
+    private val THREADS_COUNT_ID: Int = EventSchema.register(THREADS_COUNT)
+    private val VM_HWM_KB_ID: Int = EventSchema.register(VM_HWM_KB)
+  }
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.reporter.core;
+
+import androidx.annotation.Nullable;
+
+/**
+ * An event keyed by the integer ids of an {@link EventSchema} instead of strings, so that analytics
+ * implementations can append values to primitive buffers (see {@link BinaryEventBuffer}) without
+ * hashing or copying keys.
+ *
+ * <p>Mirrors {@link SystemMetricsReporter.Event}: {@link StringEventAdapter} and {@link
+ * BinaryEventAdapter} convert between the two.
+ */
+public interface BinaryEvent {
+
+  boolean isSampled();
+
+  void acquireEvent(@Nullable String moduleName, String eventName);
+
+  void add(int key, String value);
+
+  void add(int key, int value);
+
+  void add(int key, long value);
+
+  void add(int key, double value);
+
+  void logAndRelease();
+}
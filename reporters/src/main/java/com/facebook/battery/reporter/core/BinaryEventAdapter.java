@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.reporter.core;
+
+import androidx.annotation.Nullable;
+import com.facebook.infer.annotation.Nullsafe;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Forwards a string keyed event to a {@link BinaryEvent}, registering keys as they are seen: this
+ * lets reporters that only implement {@link SystemMetricsReporter} report to binary events.
+ *
+ * <p>Ids are cached by the adapter, so that only the first value of each key goes through the
+ * {@link EventSchema}: keep an adapter around, retargeting it with {@link #setEvent}, rather than
+ * creating one per event. This class isn't thread safe.
+ */
+@Nullsafe(Nullsafe.Mode.LOCAL)
+public class BinaryEventAdapter implements SystemMetricsReporter.Event {
+
+  private final Map<String, Integer> mIds = new HashMap<>();
+  private BinaryEvent mEvent;
+
+  public BinaryEventAdapter(BinaryEvent event) {
+    mEvent = event;
+  }
+
+  /** Forwards to another event, keeping the cached ids. */
+  public BinaryEventAdapter setEvent(BinaryEvent event) {
+    mEvent = event;
+    return this;
+  }
+
+  @Override
+  public boolean isSampled() {
+    return mEvent.isSampled();
+  }
+
+  @Override
+  public void acquireEvent(@Nullable String moduleName, String eventName) {
+    mEvent.acquireEvent(moduleName, eventName);
+  }
+
+  @Override
+  public void add(String key, String value) {
+    mEvent.add(getId(key), value);
+  }
+
+  @Override
+  public void add(String key, int value) {
+    mEvent.add(getId(key), value);
+  }
+
+  @Override
+  public void add(String key, long value) {
+    mEvent.add(getId(key), value);
+  }
+
+  @Override
+  public void add(String key, double value) {
+    mEvent.add(getId(key), value);
+  }
+
+  @Override
+  public void logAndRelease() {
+    mEvent.logAndRelease();
+  }
+
+  private int getId(String key) {
+    Integer id = mIds.get(key);
+    if (id == null) {
+      id = EventSchema.register(key);
+      mIds.put(key, id);
+    }
+    return id;
+  }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.reporter.core;
+
+import androidx.annotation.Nullable;
+import com.facebook.infer.annotation.Nullsafe;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * A {@link BinaryEvent} that appends values to primitive arrays, reused across events, and hands
+ * them to a {@link Listener} once the event is logged: the listener can read them back by index or
+ * encode them with {@link #writeTo(DataOutput)}.
+ *
+ * <p>Not thread safe: events should be acquired, filled and logged on one thread at a time.
+ */
+@Nullsafe(Nullsafe.Mode.LOCAL)
+public class BinaryEventBuffer implements BinaryEvent {
+
+  public static final byte TYPE_STRING = 0;
+  public static final byte TYPE_INT = 1;
+  public static final byte TYPE_LONG = 2;
+  public static final byte TYPE_DOUBLE = 3;
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  public interface Listener {
+    /** Called when the event is logged: the buffer is cleared once this returns. */
+    void onEvent(BinaryEventBuffer event);
+  }
+
+  private final Listener mListener;
+
+  private @Nullable String mModuleName;
+  private String mEventName = "";
+
+  private int[] mKeys = new int[16];
+  private byte[] mTypes = new byte[16];
+
+  /** Integral values, raw bits of doubles, and indices in mStrings for strings. */
+  private long[] mValues = new long[16];
+
+  private final ArrayList<String> mStrings = new ArrayList<>();
+  private int mSize;
+
+  public BinaryEventBuffer(Listener listener) {
+    mListener = listener;
+  }
+
+  @Override
+  public boolean isSampled() {
+    return true;
+  }
+
+  @Override
+  public void acquireEvent(@Nullable String moduleName, String eventName) {
+    clear();
+    mModuleName = moduleName;
+    mEventName = eventName;
+  }
+
+  @Override
+  public void add(int key, String value) {
+    append(key, TYPE_STRING, mStrings.size());
+    mStrings.add(value);
+  }
+
+  @Override
+  public void add(int key, int value) {
+    append(key, TYPE_INT, value);
+  }
+
+  @Override
+  public void add(int key, long value) {
+    append(key, TYPE_LONG, value);
+  }
+
+  @Override
+  public void add(int key, double value) {
+    append(key, TYPE_DOUBLE, Double.doubleToRawLongBits(value));
+  }
+
+  @Override
+  public void logAndRelease() {
+    try {
+      mListener.onEvent(this);
+    } finally {
+      clear();
+    }
+  }
+
+  @Nullable
+  public String getModuleName() {
+    return mModuleName;
+  }
+
+  public String getEventName() {
+    return mEventName;
+  }
+
+  /** Number of values added to the event. */
+  public int size() {
+    return mSize;
+  }
+
+  public int getKey(int index) {
+    checkIndex(index);
+    return mKeys[index];
+  }
+
+  /** @return one of the TYPE_* constants */
+  public byte getType(int index) {
+    checkIndex(index);
+    return mTypes[index];
+  }
+
+  /** Value of an int or long. */
+  public long getLong(int index) {
+    checkType(index, TYPE_INT, TYPE_LONG);
+    return mValues[index];
+  }
+
+  public double getDouble(int index) {
+    checkType(index, TYPE_DOUBLE, TYPE_DOUBLE);
+    return Double.longBitsToDouble(mValues[index]);
+  }
+
+  public String getString(int index) {
+    checkType(index, TYPE_STRING, TYPE_STRING);
+    return mStrings.get((int) mValues[index]);
+  }
+
+  /**
+   * Writes the values as {@code [int size]} followed by {@code [int key, byte type, value]}: ints
+   * and longs as longs, doubles as their raw long bits and strings as {@code [int length, UTF-8
+   * bytes]}, so that they aren't limited to 64KB like writeUTF.
+   */
+  public void writeTo(DataOutput output) throws IOException {
+    output.writeInt(mSize);
+    for (int i = 0; i < mSize; i++) {
+      output.writeInt(mKeys[i]);
+      output.writeByte(mTypes[i]);
+      if (mTypes[i] == TYPE_STRING) {
+        byte[] bytes = mStrings.get((int) mValues[i]).getBytes(UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+      } else {
+        output.writeLong(mValues[i]);
+      }
+    }
+  }
+
+  private void append(int key, byte type, long value) {
+    if (mSize == mKeys.length) {
+      int capacity = mSize * 2;
+      mKeys = Arrays.copyOf(mKeys, capacity);
+      mTypes = Arrays.copyOf(mTypes, capacity);
+      mValues = Arrays.copyOf(mValues, capacity);
+    }
+    mKeys[mSize] = key;
+    mTypes[mSize] = type;
+    mValues[mSize] = value;
+    mSize++;
+  }
+
+  private void clear() {
+    mSize = 0;
+    mStrings.clear();
+    mModuleName = null;
+    mEventName = "";
+  }
+
+  private void checkIndex(int index) {
+    if (index < 0 || index >= mSize) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", size: " + mSize);
+    }
+  }
+
+  private void checkType(int index, byte type, byte otherType) {
+    checkIndex(index);
+    if (mTypes[index] != type && mTypes[index] != otherType) {
+      throw new IllegalStateException("Value " + index + " has type " + mTypes[index]);
+    }
+  }
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.reporter.core;
+
+import com.facebook.battery.metrics.core.SystemMetrics;
+import com.facebook.infer.annotation.Nullsafe;
+
+/**
+ * A reporter that reports to {@link BinaryEvent}s, and to string keyed events through a {@link
+ * StringEventAdapter}: implement {@link #reportTo(SystemMetrics, BinaryEvent)} once to support
+ * both. Keys are registered with the {@link EventSchema}, e.g. in static fields.
+ */
+@Nullsafe(Nullsafe.Mode.LOCAL)
+public abstract class BinarySystemMetricsReporter<T extends SystemMetrics<T>>
+    implements SystemMetricsReporter<T> {
+
+  private final StringEventAdapter mStringEventAdapter = new StringEventAdapter();
+
+  public abstract void reportTo(T metrics, BinaryEvent event);
+
+  @Override
+  public void reportTo(T metrics, SystemMetricsReporter.Event event) {
+    synchronized (mStringEventAdapter) {
+      mStringEventAdapter.setEvent(event);
+      try {
+        reportTo(metrics, mStringEventAdapter);
+      } finally {
+        mStringEventAdapter.setEvent(null);
+      }
+    }
+  }
+}
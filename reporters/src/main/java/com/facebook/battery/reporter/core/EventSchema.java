@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.reporter.core;
+
+import com.facebook.infer.annotation.Nullsafe;
+import com.facebook.infer.annotation.ThreadSafe;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Assigns the keys reported to {@link BinaryEvent}s small, dense integer ids. Reporters register
+ * their keys once, typically in static initializers, and only deal with ids afterwards.
+ *
+ * <p>Ids follow registration order, so they are only meaningful within a process: anything that
+ * persists or uploads binary events should include the names of the ids it uses.
+ */
+@Nullsafe(Nullsafe.Mode.LOCAL)
+@ThreadSafe
+public final class EventSchema {
+
+  private static final Map<String, Integer> sIds = new HashMap<>();
+
+  /** Copied on write, so that names can be read without locking. */
+  private static volatile String[] sNames = new String[0];
+
+  private EventSchema() {}
+
+  /** Registers a key, returning the existing id if it was already registered. */
+  public static synchronized int register(String name) {
+    Integer id = sIds.get(name);
+    if (id == null) {
+      String[] names = Arrays.copyOf(sNames, sNames.length + 1);
+      id = sNames.length;
+      names[id] = name;
+      sIds.put(name, id);
+      sNames = names;
+    }
+    return id;
+  }
+
+  /** @return the id of a registered key, or -1 */
+  public static synchronized int getId(String name) {
+    Integer id = sIds.get(name);
+    return id == null ? -1 : id;
+  }
+
+  public static String getName(int id) {
+    String[] names = sNames;
+    if (id < 0 || id >= names.length) {
+      throw new IllegalArgumentException("Unregistered key id: " + id);
+    }
+    return names[id];
+  }
+
+  /** Number of registered keys: ids range from 0 to size() - 1. */
+  public static int size() {
+    return sNames.length;
+  }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.reporter.core;
+
+import androidx.annotation.Nullable;
+import com.facebook.infer.annotation.Nullsafe;
+
+/**
+ * Forwards a {@link BinaryEvent} to a string keyed event, looking up key names in the schema.
+ *
+ * <p>An adapter can be reused for another event with {@link #setEvent}.
+ */
+@Nullsafe(Nullsafe.Mode.LOCAL)
+public class StringEventAdapter implements BinaryEvent {
+
+  private @Nullable SystemMetricsReporter.Event mEvent;
+
+  /** Forwards to the event set with {@link #setEvent}. */
+  public StringEventAdapter() {}
+
+  public StringEventAdapter(SystemMetricsReporter.Event event) {
+    mEvent = event;
+  }
+
+  public StringEventAdapter setEvent(@Nullable SystemMetricsReporter.Event event) {
+    mEvent = event;
+    return this;
+  }
+
+  @Override
+  public boolean isSampled() {
+    return getEvent().isSampled();
+  }
+
+  @Override
+  public void acquireEvent(@Nullable String moduleName, String eventName) {
+    getEvent().acquireEvent(moduleName, eventName);
+  }
+
+  @Override
+  public void add(int key, String value) {
+    getEvent().add(EventSchema.getName(key), value);
+  }
+
+  @Override
+  public void add(int key, int value) {
+    getEvent().add(EventSchema.getName(key), value);
+  }
+
+  @Override
+  public void add(int key, long value) {
+    getEvent().add(EventSchema.getName(key), value);
+  }
+
+  @Override
+  public void add(int key, double value) {
+    getEvent().add(EventSchema.getName(key), value);
+  }
+
+  @Override
+  public void logAndRelease() {
+    getEvent().logAndRelease();
+  }
+
+  private SystemMetricsReporter.Event getEvent() {
+    SystemMetricsReporter.Event event = mEvent;
+    if (event == null) {
+      throw new IllegalStateException("No event to forward to");
+    }
+    return event;
+  }
+}
@@ -8,8 +8,11 @@
 package com.facebook.battery.reporter.cpu
 
 import androidx.annotation.VisibleForTesting
+import com.facebook.battery.metrics.core.JsonWriter
 import com.facebook.battery.metrics.cpu.CpuFrequencyMetrics
-import com.facebook.battery.reporter.core.SystemMetricsReporter
+import com.facebook.battery.reporter.core.BinaryEvent
+import com.facebook.battery.reporter.core.BinarySystemMetricsReporter
+import com.facebook.battery.reporter.core.EventSchema
 
 /**
  * Reports cpu statuses to an event. As a simplification, the CpuFrequencyMetricsCollector collects
@@ -19,16 +22,24 @@ import com.facebook.battery.reporter.core.SystemMetricsReporter
  * The reporter groups equal frequency values together into a cpumask (similar to that reported by
  * the topology sysfs files) mapped to the corresponding frequency.
  */
-class CpuFrequencyMetricsReporter() : SystemMetricsReporter<CpuFrequencyMetrics> {
+class CpuFrequencyMetricsReporter() : BinarySystemMetricsReporter<CpuFrequencyMetrics>() {
 
-  override fun reportTo(metrics: CpuFrequencyMetrics, event: SystemMetricsReporter.Event) {
-    val output = metrics.toJSONObject()
-    if (output != null && output.length() != 0) {
-      event.add(CPU_TIME_IN_STATE_S, output.toString())
+  private val jsonWriter = JsonWriter()
+
+  override fun reportTo(metrics: CpuFrequencyMetrics, event: BinaryEvent) {
+    val timeInState =
+        synchronized(jsonWriter) {
+          jsonWriter.reset()
+          if (metrics.toJSON(jsonWriter)) jsonWriter.toString() else null
+        }
+    if (timeInState != null) {
+      event.add(CPU_TIME_IN_STATE_S_ID, timeInState)
     }
   }
 
   companion object {
     @VisibleForTesting const val CPU_TIME_IN_STATE_S: String = "cpu_time_in_state_s"
+
+    private val CPU_TIME_IN_STATE_S_ID: Int = EventSchema.register(CPU_TIME_IN_STATE_S)
   }
 }
@@ -8,25 +8,27 @@
 package com.facebook.battery.reporter.cpu
 
 import com.facebook.battery.metrics.cpu.CpuMetrics
-import com.facebook.battery.reporter.core.SystemMetricsReporter
+import com.facebook.battery.reporter.core.BinaryEvent
+import com.facebook.battery.reporter.core.BinarySystemMetricsReporter
+import com.facebook.battery.reporter.core.EventSchema
 
-class CpuMetricsReporter() : SystemMetricsReporter<CpuMetrics> {
+class CpuMetricsReporter() : BinarySystemMetricsReporter<CpuMetrics>() {
 
-  override fun reportTo(metrics: CpuMetrics, event: SystemMetricsReporter.Event) {
+  override fun reportTo(metrics: CpuMetrics, event: BinaryEvent) {
     if (metrics.userTimeS != 0.0) {
-      event.add(CPU_USER_TIME_S, metrics.userTimeS)
+      event.add(CPU_USER_TIME_S_ID, metrics.userTimeS)
     }
 
     if (metrics.systemTimeS != 0.0) {
-      event.add(CPU_SYSTEM_TIME_S, metrics.systemTimeS)
+      event.add(CPU_SYSTEM_TIME_S_ID, metrics.systemTimeS)
     }
 
     if (metrics.childUserTimeS != 0.0) {
-      event.add(CHILD_CPU_USER_TIME_S, metrics.childUserTimeS)
+      event.add(CHILD_CPU_USER_TIME_S_ID, metrics.childUserTimeS)
     }
 
     if (metrics.childSystemTimeS != 0.0) {
-      event.add(CHILD_CPU_SYSTEM_TIME_S, metrics.childSystemTimeS)
+      event.add(CHILD_CPU_SYSTEM_TIME_S_ID, metrics.childSystemTimeS)
     }
   }
 
@@ -35,5 +37,10 @@ class CpuMetricsReporter() : SystemMetricsReporter<CpuMetrics> {
     const val CPU_SYSTEM_TIME_S: String = "cpu_system_time_s"
     const val CHILD_CPU_USER_TIME_S: String = "child_cpu_user_time_s"
     const val CHILD_CPU_SYSTEM_TIME_S: String = "child_cpu_system_time_s"
+
+    private val CPU_USER_TIME_S_ID = EventSchema.register(CPU_USER_TIME_S)
+    private val CPU_SYSTEM_TIME_S_ID = EventSchema.register(CPU_SYSTEM_TIME_S)
+    private val CHILD_CPU_USER_TIME_S_ID = EventSchema.register(CHILD_CPU_USER_TIME_S)
+    private val CHILD_CPU_SYSTEM_TIME_S_ID = EventSchema.register(CHILD_CPU_SYSTEM_TIME_S)
   }
 }
@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.reporter.cpu
+
+import com.facebook.battery.metrics.cpu.SystemCpuMetrics
+import com.facebook.battery.reporter.core.BinaryEvent
+import com.facebook.battery.reporter.core.BinarySystemMetricsReporter
+import com.facebook.battery.reporter.core.EventSchema
+
+/**
+ * Reports device wide cpu utilization: this is only meaningful for diffs of SystemCpuMetrics. The
+ * per core utilization is reported as a comma separated list, in core order.
+ */
+class SystemCpuMetricsReporter() : BinarySystemMetricsReporter<SystemCpuMetrics>() {
+
+  private val builder = StringBuilder()
+
+  override fun reportTo(metrics: SystemCpuMetrics, event: BinaryEvent) {
+    var busyTicks = 0L
+    var totalTicks = 0L
+    val cores = metrics.cores
+    for (core in 0 until cores) {
+      busyTicks += metrics.getBusyTicks(core)
+      totalTicks += metrics.getTotalTicks(core)
+    }
+
+    if (totalTicks == 0L) {
+      return
+    }
+
+    event.add(SYSTEM_CPU_BUSY_TICKS_ID, busyTicks)
+    event.add(SYSTEM_CPU_TOTAL_TICKS_ID, totalTicks)
+    event.add(SYSTEM_CPU_UTILIZATION_ID, metrics.utilization)
+
+    synchronized(builder) {
+      builder.setLength(0)
+      for (core in 0 until cores) {
+        if (core > 0) {
+          builder.append(',')
+        }
+        builder.append(Math.round(metrics.getUtilization(core) * 100) / 100.0)
+      }
+      event.add(SYSTEM_CPU_CORE_UTILIZATION_ID, builder.toString())
+    }
+  }
+
+  companion object {
+    const val SYSTEM_CPU_BUSY_TICKS: String = "system_cpu_busy_ticks"
+    const val SYSTEM_CPU_TOTAL_TICKS: String = "system_cpu_total_ticks"
+    const val SYSTEM_CPU_UTILIZATION: String = "system_cpu_utilization"
+    const val SYSTEM_CPU_CORE_UTILIZATION: String = "system_cpu_core_utilization"
+
+    private val SYSTEM_CPU_BUSY_TICKS_ID: Int = EventSchema.register(SYSTEM_CPU_BUSY_TICKS)
+    private val SYSTEM_CPU_TOTAL_TICKS_ID: Int = EventSchema.register(SYSTEM_CPU_TOTAL_TICKS)
+    private val SYSTEM_CPU_UTILIZATION_ID: Int = EventSchema.register(SYSTEM_CPU_UTILIZATION)
+    private val SYSTEM_CPU_CORE_UTILIZATION_ID: Int =
+        EventSchema.register(SYSTEM_CPU_CORE_UTILIZATION)
+  }
+}
@@ -8,19 +8,25 @@
 package com.facebook.battery.reporter.devicebattery
 
 import com.facebook.battery.metrics.devicebattery.DeviceBatteryMetrics
-import com.facebook.battery.reporter.core.SystemMetricsReporter
+import com.facebook.battery.reporter.core.BinaryEvent
+import com.facebook.battery.reporter.core.BinarySystemMetricsReporter
+import com.facebook.battery.reporter.core.EventSchema
 
-class DeviceBatteryMetricsReporter() : SystemMetricsReporter<DeviceBatteryMetrics> {
+class DeviceBatteryMetricsReporter() : BinarySystemMetricsReporter<DeviceBatteryMetrics>() {
 
-  override fun reportTo(metrics: DeviceBatteryMetrics, event: SystemMetricsReporter.Event) {
-    event.add(BATTERY_PCT, metrics.batteryLevelPct.toDouble())
-    event.add(BATTERY_REALTIME_MS, metrics.batteryRealtimeMs)
-    event.add(CHARGING_REALTIME_MS, metrics.chargingRealtimeMs)
+  override fun reportTo(metrics: DeviceBatteryMetrics, event: BinaryEvent) {
+    event.add(BATTERY_PCT_ID, metrics.batteryLevelPct.toDouble())
+    event.add(BATTERY_REALTIME_MS_ID, metrics.batteryRealtimeMs)
+    event.add(CHARGING_REALTIME_MS_ID, metrics.chargingRealtimeMs)
   }
 
   companion object {
     const val BATTERY_PCT: String = "battery_pct"
     const val BATTERY_REALTIME_MS: String = "battery_realtime_ms"
     const val CHARGING_REALTIME_MS: String = "charging_realtime_ms"
+
+    private val BATTERY_PCT_ID: Int = EventSchema.register(BATTERY_PCT)
+    private val BATTERY_REALTIME_MS_ID: Int = EventSchema.register(BATTERY_REALTIME_MS)
+    private val CHARGING_REALTIME_MS_ID: Int = EventSchema.register(CHARGING_REALTIME_MS)
   }
 }
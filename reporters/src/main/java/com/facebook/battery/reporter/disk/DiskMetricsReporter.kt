@@ -8,45 +8,47 @@
 package com.facebook.battery.reporter.disk
 
 import com.facebook.battery.metrics.disk.DiskMetrics
-import com.facebook.battery.reporter.core.SystemMetricsReporter
+import com.facebook.battery.reporter.core.BinaryEvent
+import com.facebook.battery.reporter.core.BinarySystemMetricsReporter
+import com.facebook.battery.reporter.core.EventSchema
 
-class DiskMetricsReporter() : SystemMetricsReporter<DiskMetrics> {
+class DiskMetricsReporter() : BinarySystemMetricsReporter<DiskMetrics>() {
 
-  override fun reportTo(metrics: DiskMetrics, event: SystemMetricsReporter.Event) {
+  override fun reportTo(metrics: DiskMetrics, event: BinaryEvent) {
     if (metrics.rcharBytes != 0L) {
-      event.add(RCHAR_BYTES, metrics.rcharBytes)
+      event.add(RCHAR_BYTES_ID, metrics.rcharBytes)
     }
 
     if (metrics.wcharBytes != 0L) {
-      event.add(WCHAR_BYTES, metrics.wcharBytes)
+      event.add(WCHAR_BYTES_ID, metrics.wcharBytes)
     }
 
     if (metrics.syscrCount != 0L) {
-      event.add(SYSCR_COUNT, metrics.syscrCount)
+      event.add(SYSCR_COUNT_ID, metrics.syscrCount)
     }
 
     if (metrics.syscwCount != 0L) {
-      event.add(SYSCW_COUNT, metrics.syscwCount)
+      event.add(SYSCW_COUNT_ID, metrics.syscwCount)
     }
 
     if (metrics.readBytes != 0L) {
-      event.add(READ_BYTES, metrics.readBytes)
+      event.add(READ_BYTES_ID, metrics.readBytes)
     }
 
     if (metrics.writeBytes != 0L) {
-      event.add(WRITE_BYTES, metrics.writeBytes)
+      event.add(WRITE_BYTES_ID, metrics.writeBytes)
     }
 
     if (metrics.cancelledWriteBytes != 0L) {
-      event.add(CANCELLED_WRITE_BYTES, metrics.cancelledWriteBytes)
+      event.add(CANCELLED_WRITE_BYTES_ID, metrics.cancelledWriteBytes)
     }
 
     if (metrics.majorFaults != 0L) {
-      event.add(MAJOR_FAULTS_COUNT, metrics.majorFaults)
+      event.add(MAJOR_FAULTS_COUNT_ID, metrics.majorFaults)
     }
 
     if (metrics.blkIoTicks != 0L) {
-      event.add(BLK_IO_TICKS, metrics.blkIoTicks)
+      event.add(BLK_IO_TICKS_ID, metrics.blkIoTicks)
     }
   }
 
@@ -60,5 +62,15 @@ class DiskMetricsReporter() : SystemMetricsReporter<DiskMetrics> {
     const val CANCELLED_WRITE_BYTES: String = "cancelled_write_bytes"
     const val MAJOR_FAULTS_COUNT: String = "major_faults_count"
     const val BLK_IO_TICKS: String = "blk_io_ticks"
+
+    private val RCHAR_BYTES_ID: Int = EventSchema.register(RCHAR_BYTES)
+    private val WCHAR_BYTES_ID: Int = EventSchema.register(WCHAR_BYTES)
+    private val SYSCR_COUNT_ID: Int = EventSchema.register(SYSCR_COUNT)
+    private val SYSCW_COUNT_ID: Int = EventSchema.register(SYSCW_COUNT)
+    private val READ_BYTES_ID: Int = EventSchema.register(READ_BYTES)
+    private val WRITE_BYTES_ID: Int = EventSchema.register(WRITE_BYTES)
+    private val CANCELLED_WRITE_BYTES_ID: Int = EventSchema.register(CANCELLED_WRITE_BYTES)
+    private val MAJOR_FAULTS_COUNT_ID: Int = EventSchema.register(MAJOR_FAULTS_COUNT)
+    private val BLK_IO_TICKS_ID: Int = EventSchema.register(BLK_IO_TICKS)
   }
 }
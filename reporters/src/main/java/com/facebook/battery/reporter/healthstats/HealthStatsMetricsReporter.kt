@@ -9,27 +9,30 @@ package com.facebook.battery.reporter.healthstats
 
 import android.os.Build
 import androidx.annotation.RequiresApi
-import com.facebook.battery.metrics.core.SystemMetricsLogger
+import com.facebook.battery.metrics.core.JsonWriter
 import com.facebook.battery.metrics.healthstats.HealthStatsMetrics
-import com.facebook.battery.reporter.core.SystemMetricsReporter
-import org.json.JSONException
+import com.facebook.battery.reporter.core.BinaryEvent
+import com.facebook.battery.reporter.core.BinarySystemMetricsReporter
+import com.facebook.battery.reporter.core.EventSchema
 
 @RequiresApi(api = Build.VERSION_CODES.N)
-class HealthStatsMetricsReporter : SystemMetricsReporter<HealthStatsMetrics> {
+class HealthStatsMetricsReporter : BinarySystemMetricsReporter<HealthStatsMetrics>() {
 
-  override fun reportTo(metrics: HealthStatsMetrics, event: SystemMetricsReporter.Event) {
-    try {
-      event.add(HEALTHSTATS, metrics.toJSONObject().toString())
-    } catch (jsone: JSONException) {
-      SystemMetricsLogger.wtf(
-          "HealthStatsMetricsReporter",
-          "Couldn't log healthstats metrics",
-          jsone,
-      )
-    }
+  private val jsonWriter = JsonWriter()
+
+  override fun reportTo(metrics: HealthStatsMetrics, event: BinaryEvent) {
+    val json =
+        synchronized(jsonWriter) {
+          jsonWriter.reset()
+          metrics.toJSON(jsonWriter)
+          jsonWriter.toString()
+        }
+    event.add(HEALTHSTATS_ID, json)
   }
 
   companion object {
     private const val HEALTHSTATS = "healthstats"
+
+    private val HEALTHSTATS_ID: Int = EventSchema.register(HEALTHSTATS)
   }
 }
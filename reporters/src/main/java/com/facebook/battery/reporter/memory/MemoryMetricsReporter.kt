@@ -8,33 +8,35 @@
 package com.facebook.battery.reporter.memory
 
 import com.facebook.battery.metrics.memory.MemoryMetrics
-import com.facebook.battery.reporter.core.SystemMetricsReporter
+import com.facebook.battery.reporter.core.BinaryEvent
+import com.facebook.battery.reporter.core.BinarySystemMetricsReporter
+import com.facebook.battery.reporter.core.EventSchema
 
-class MemoryMetricsReporter() : SystemMetricsReporter<MemoryMetrics> {
+class MemoryMetricsReporter() : BinarySystemMetricsReporter<MemoryMetrics>() {
 
-  override fun reportTo(metrics: MemoryMetrics, event: SystemMetricsReporter.Event) {
+  override fun reportTo(metrics: MemoryMetrics, event: BinaryEvent) {
     if (metrics.javaHeapMaxSizeKb != 0L) {
-      event.add(JAVA_HEAP_MAX_SIZE_KB, metrics.javaHeapMaxSizeKb)
+      event.add(JAVA_HEAP_MAX_SIZE_KB_ID, metrics.javaHeapMaxSizeKb)
     }
 
     if (metrics.javaHeapAllocatedKb != 0L) {
-      event.add(JAVA_HEAP_ALLOCATED_SIZE_KB, metrics.javaHeapAllocatedKb)
+      event.add(JAVA_HEAP_ALLOCATED_SIZE_KB_ID, metrics.javaHeapAllocatedKb)
     }
 
     if (metrics.nativeHeapSizeKb != 0L) {
-      event.add(NATIVE_HEAP_SIZE_KB, metrics.nativeHeapSizeKb)
+      event.add(NATIVE_HEAP_SIZE_KB_ID, metrics.nativeHeapSizeKb)
     }
 
     if (metrics.nativeHeapAllocatedKb != 0L) {
-      event.add(NATIVE_HEAP_ALLOCATED_SIZE_KB, metrics.nativeHeapAllocatedKb)
+      event.add(NATIVE_HEAP_ALLOCATED_SIZE_KB_ID, metrics.nativeHeapAllocatedKb)
     }
 
     if (metrics.vmSizeKb != 0L) {
-      event.add(VM_SIZE_KB, metrics.vmSizeKb)
+      event.add(VM_SIZE_KB_ID, metrics.vmSizeKb)
     }
 
     if (metrics.vmRssKb != 0L) {
-      event.add(VM_RSS_KB, metrics.vmRssKb)
+      event.add(VM_RSS_KB_ID, metrics.vmRssKb)
     }
   }
 
@@ -45,5 +47,14 @@ class MemoryMetricsReporter() : SystemMetricsReporter<MemoryMetrics> {
     const val NATIVE_HEAP_ALLOCATED_SIZE_KB: String = "native_heap_allocated_size_kb"
     const val VM_SIZE_KB: String = "vm_size_kb"
     const val VM_RSS_KB: String = "vm_rss_kb"
+
+    private val JAVA_HEAP_MAX_SIZE_KB_ID: Int = EventSchema.register(JAVA_HEAP_MAX_SIZE_KB)
+    private val JAVA_HEAP_ALLOCATED_SIZE_KB_ID: Int =
+        EventSchema.register(JAVA_HEAP_ALLOCATED_SIZE_KB)
+    private val NATIVE_HEAP_SIZE_KB_ID: Int = EventSchema.register(NATIVE_HEAP_SIZE_KB)
+    private val NATIVE_HEAP_ALLOCATED_SIZE_KB_ID: Int =
+        EventSchema.register(NATIVE_HEAP_ALLOCATED_SIZE_KB)
+    private val VM_SIZE_KB_ID: Int = EventSchema.register(VM_SIZE_KB)
+    private val VM_RSS_KB_ID: Int = EventSchema.register(VM_RSS_KB)
   }
 }
@@ -8,25 +8,27 @@
 package com.facebook.battery.reporter.network
 
 import com.facebook.battery.metrics.network.NetworkMetrics
-import com.facebook.battery.reporter.core.SystemMetricsReporter
+import com.facebook.battery.reporter.core.BinaryEvent
+import com.facebook.battery.reporter.core.BinarySystemMetricsReporter
+import com.facebook.battery.reporter.core.EventSchema
 
-class NetworkMetricsReporter() : SystemMetricsReporter<NetworkMetrics> {
+class NetworkMetricsReporter() : BinarySystemMetricsReporter<NetworkMetrics>() {
 
-  override fun reportTo(metrics: NetworkMetrics, event: SystemMetricsReporter.Event) {
+  override fun reportTo(metrics: NetworkMetrics, event: BinaryEvent) {
     if (metrics.mobileBytesTx != 0L) {
-      event.add(MOBILE_BYTES_TX, metrics.mobileBytesTx)
+      event.add(MOBILE_BYTES_TX_ID, metrics.mobileBytesTx)
     }
 
     if (metrics.mobileBytesRx != 0L) {
-      event.add(MOBILE_BYTES_RX, metrics.mobileBytesRx)
+      event.add(MOBILE_BYTES_RX_ID, metrics.mobileBytesRx)
     }
 
     if (metrics.wifiBytesTx != 0L) {
-      event.add(WIFI_BYTES_TX, metrics.wifiBytesTx)
+      event.add(WIFI_BYTES_TX_ID, metrics.wifiBytesTx)
     }
 
     if (metrics.wifiBytesRx != 0L) {
-      event.add(WIFI_BYTES_RX, metrics.wifiBytesRx)
+      event.add(WIFI_BYTES_RX_ID, metrics.wifiBytesRx)
     }
   }
 
@@ -35,5 +37,10 @@ class NetworkMetricsReporter() : SystemMetricsReporter<NetworkMetrics> {
     const val MOBILE_BYTES_RX: String = "mobile_bytes_rx"
     const val WIFI_BYTES_TX: String = "wifi_bytes_tx"
     const val WIFI_BYTES_RX: String = "wifi_bytes_rx"
+
+    private val MOBILE_BYTES_TX_ID = EventSchema.register(MOBILE_BYTES_TX)
+    private val MOBILE_BYTES_RX_ID = EventSchema.register(MOBILE_BYTES_RX)
+    private val WIFI_BYTES_TX_ID = EventSchema.register(WIFI_BYTES_TX)
+    private val WIFI_BYTES_RX_ID = EventSchema.register(WIFI_BYTES_RX)
   }
 }
@@ -8,25 +8,27 @@
 package com.facebook.battery.reporter.network
 
 import com.facebook.battery.metrics.network.RadioStateMetrics
-import com.facebook.battery.reporter.core.SystemMetricsReporter
+import com.facebook.battery.reporter.core.BinaryEvent
+import com.facebook.battery.reporter.core.BinarySystemMetricsReporter
+import com.facebook.battery.reporter.core.EventSchema
 
-class RadioStateReporter() : SystemMetricsReporter<RadioStateMetrics> {
+class RadioStateReporter() : BinarySystemMetricsReporter<RadioStateMetrics>() {
 
-  override fun reportTo(metrics: RadioStateMetrics, event: SystemMetricsReporter.Event) {
+  override fun reportTo(metrics: RadioStateMetrics, event: BinaryEvent) {
     if (metrics.mobileHighPowerActiveS != 0L) {
-      event.add(MOBILE_HIGH_POWER_ACTIVE_S, metrics.mobileHighPowerActiveS)
+      event.add(MOBILE_HIGH_POWER_ACTIVE_S_ID, metrics.mobileHighPowerActiveS)
     }
     if (metrics.mobileLowPowerActiveS != 0L) {
-      event.add(MOBILE_LOW_POWER_ACTIVE_S, metrics.mobileLowPowerActiveS)
+      event.add(MOBILE_LOW_POWER_ACTIVE_S_ID, metrics.mobileLowPowerActiveS)
     }
     if (metrics.mobileRadioWakeupCount.toLong() != 0L) {
-      event.add(MOBILE_RADIO_WAKEUP_COUNT, metrics.mobileRadioWakeupCount)
+      event.add(MOBILE_RADIO_WAKEUP_COUNT_ID, metrics.mobileRadioWakeupCount)
     }
     if (metrics.wifiActiveS != 0L) {
-      event.add(WIFI_ACTIVE_S, metrics.wifiActiveS)
+      event.add(WIFI_ACTIVE_S_ID, metrics.wifiActiveS)
     }
     if (metrics.wifiRadioWakeupCount.toLong() != 0L) {
-      event.add(WIFI_RADIO_WAKEUP_COUNT, metrics.wifiRadioWakeupCount)
+      event.add(WIFI_RADIO_WAKEUP_COUNT_ID, metrics.wifiRadioWakeupCount)
     }
   }
 
@@ -36,5 +38,12 @@ class RadioStateReporter() : SystemMetricsReporter<RadioStateMetrics> {
     const val MOBILE_RADIO_WAKEUP_COUNT: String = "mobile_radio_wakeup_count"
     const val WIFI_ACTIVE_S: String = "wifi_active_s"
     const val WIFI_RADIO_WAKEUP_COUNT: String = "wifi_radio_wakeup_count"
+
+    private val MOBILE_HIGH_POWER_ACTIVE_S_ID: Int =
+        EventSchema.register(MOBILE_HIGH_POWER_ACTIVE_S)
+    private val MOBILE_LOW_POWER_ACTIVE_S_ID: Int = EventSchema.register(MOBILE_LOW_POWER_ACTIVE_S)
+    private val MOBILE_RADIO_WAKEUP_COUNT_ID: Int = EventSchema.register(MOBILE_RADIO_WAKEUP_COUNT)
+    private val WIFI_ACTIVE_S_ID: Int = EventSchema.register(WIFI_ACTIVE_S)
+    private val WIFI_RADIO_WAKEUP_COUNT_ID: Int = EventSchema.register(WIFI_RADIO_WAKEUP_COUNT)
   }
 }
@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.reporter.overhead;
+
+import com.facebook.battery.codegen.GenerateReporter;
+import com.facebook.battery.metrics.core.JsonWriter;
+import com.facebook.battery.metrics.overhead.CollectorOverheadMetrics;
+import com.facebook.battery.reporter.core.BinaryEvent;
+import com.facebook.battery.reporter.core.EventSchema;
+import com.facebook.infer.annotation.Nullsafe;
+
+/** Reports the generated totals, and the cost of each collector as json if attributed. */
+@Nullsafe(Nullsafe.Mode.LOCAL)
+@GenerateReporter(CollectorOverheadMetrics.class)
+public class CollectorOverheadMetricsReporter extends GeneratedCollectorOverheadMetricsReporter {
+
+  public static final String COLLECTOR_ATTRIBUTION = "collector_overhead_attribution";
+
+  private static final int COLLECTOR_ATTRIBUTION_ID = EventSchema.register(COLLECTOR_ATTRIBUTION);
+
+  private final JsonWriter mJsonWriter = new JsonWriter();
+
+  @Override
+  public void reportTo(CollectorOverheadMetrics metrics, BinaryEvent event) {
+    super.reportTo(metrics, event);
+
+    String attribution = null;
+    synchronized (mJsonWriter) {
+      mJsonWriter.reset();
+      if (metrics.attributionToJSON(mJsonWriter)) {
+        attribution = mJsonWriter.toString();
+      }
+    }
+    if (attribution != null) {
+      event.add(COLLECTOR_ATTRIBUTION_ID, attribution);
+    }
+  }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.reporter.pressure
+
+import com.facebook.battery.metrics.pressure.PressureStallMetrics
+import com.facebook.battery.reporter.core.BinaryEvent
+import com.facebook.battery.reporter.core.BinarySystemMetricsReporter
+import com.facebook.battery.reporter.core.EventSchema
+
+class PressureStallMetricsReporter() : BinarySystemMetricsReporter<PressureStallMetrics>() {
+
+  override fun reportTo(metrics: PressureStallMetrics, event: BinaryEvent) {
+    if (metrics.cpuSomeTotalUs != 0L) {
+      event.add(CPU_SOME_TOTAL_US_ID, metrics.cpuSomeTotalUs)
+    }
+
+    if (metrics.cpuFullTotalUs != 0L) {
+      event.add(CPU_FULL_TOTAL_US_ID, metrics.cpuFullTotalUs)
+    }
+
+    if (metrics.memorySomeTotalUs != 0L) {
+      event.add(MEMORY_SOME_TOTAL_US_ID, metrics.memorySomeTotalUs)
+    }
+
+    if (metrics.memoryFullTotalUs != 0L) {
+      event.add(MEMORY_FULL_TOTAL_US_ID, metrics.memoryFullTotalUs)
+    }
+
+    if (metrics.ioSomeTotalUs != 0L) {
+      event.add(IO_SOME_TOTAL_US_ID, metrics.ioSomeTotalUs)
+    }
+
+    if (metrics.ioFullTotalUs != 0L) {
+      event.add(IO_FULL_TOTAL_US_ID, metrics.ioFullTotalUs)
+    }
+  }
+
+  companion object {
+    const val CPU_SOME_TOTAL_US: String = "psi_cpu_some_total_us"
+    const val CPU_FULL_TOTAL_US: String = "psi_cpu_full_total_us"
+    const val MEMORY_SOME_TOTAL_US: String = "psi_memory_some_total_us"
+    const val MEMORY_FULL_TOTAL_US: String = "psi_memory_full_total_us"
+    const val IO_SOME_TOTAL_US: String = "psi_io_some_total_us"
+    const val IO_FULL_TOTAL_US: String = "psi_io_full_total_us"
+
+    private val CPU_SOME_TOTAL_US_ID: Int = EventSchema.register(CPU_SOME_TOTAL_US)
+    private val CPU_FULL_TOTAL_US_ID: Int = EventSchema.register(CPU_FULL_TOTAL_US)
+    private val MEMORY_SOME_TOTAL_US_ID: Int = EventSchema.register(MEMORY_SOME_TOTAL_US)
+    private val MEMORY_FULL_TOTAL_US_ID: Int = EventSchema.register(MEMORY_FULL_TOTAL_US)
+    private val IO_SOME_TOTAL_US_ID: Int = EventSchema.register(IO_SOME_TOTAL_US)
+    private val IO_FULL_TOTAL_US_ID: Int = EventSchema.register(IO_FULL_TOTAL_US)
+  }
+}
@@ -8,21 +8,23 @@
 package com.facebook.battery.reporter.sensor
 
 import com.facebook.battery.metrics.sensor.SensorMetrics
-import com.facebook.battery.reporter.core.SystemMetricsReporter
+import com.facebook.battery.reporter.core.BinaryEvent
+import com.facebook.battery.reporter.core.BinarySystemMetricsReporter
+import com.facebook.battery.reporter.core.EventSchema
 
-class SensorMetricsReporter() : SystemMetricsReporter<SensorMetrics> {
+class SensorMetricsReporter() : BinarySystemMetricsReporter<SensorMetrics>() {
 
-  override fun reportTo(metrics: SensorMetrics, event: SystemMetricsReporter.Event) {
+  override fun reportTo(metrics: SensorMetrics, event: BinaryEvent) {
     if (metrics.total.powerMah != 0.0) {
-      event.add(TOTAL_POWER_MAH, metrics.total.powerMah)
+      event.add(TOTAL_POWER_MAH_ID, metrics.total.powerMah)
     }
 
     if (metrics.total.activeTimeMs != 0L) {
-      event.add(TOTAL_ACTIVE_TIME_MS, metrics.total.activeTimeMs)
+      event.add(TOTAL_ACTIVE_TIME_MS_ID, metrics.total.activeTimeMs)
     }
 
     if (metrics.total.wakeUpTimeMs != 0L) {
-      event.add(TOTAL_WAKEUP_TIME_MS, metrics.total.wakeUpTimeMs)
+      event.add(TOTAL_WAKEUP_TIME_MS_ID, metrics.total.wakeUpTimeMs)
     }
   }
 
@@ -30,5 +32,9 @@ class SensorMetricsReporter() : SystemMetricsReporter<SensorMetrics> {
     const val TOTAL_POWER_MAH: String = "sensor_power_mah"
     const val TOTAL_ACTIVE_TIME_MS: String = "sensor_active_time_ms"
     const val TOTAL_WAKEUP_TIME_MS: String = "sensor_wakeup_time_ms"
+
+    private val TOTAL_POWER_MAH_ID: Int = EventSchema.register(TOTAL_POWER_MAH)
+    private val TOTAL_ACTIVE_TIME_MS_ID: Int = EventSchema.register(TOTAL_ACTIVE_TIME_MS)
+    private val TOTAL_WAKEUP_TIME_MS_ID: Int = EventSchema.register(TOTAL_WAKEUP_TIME_MS)
   }
 }
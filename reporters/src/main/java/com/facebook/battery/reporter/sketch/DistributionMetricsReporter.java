@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.reporter.sketch;
+
+import androidx.collection.SimpleArrayMap;
+import com.facebook.battery.metrics.sketch.DistributionMetrics;
+import com.facebook.battery.metrics.sketch.QuantileSketch;
+import com.facebook.battery.reporter.core.BinaryEvent;
+import com.facebook.battery.reporter.core.BinarySystemMetricsReporter;
+import com.facebook.battery.reporter.core.EventSchema;
+import com.facebook.infer.annotation.Nullsafe;
+
+/**
+ * Reports the count and selected quantiles of each non empty sketch, as {@code <name>_count} and
+ * {@code <name>_p<percentile>}: e.g. {@code cpu_time_s_p50}, {@code cpu_time_s_p99_9}.
+ */
+@Nullsafe(Nullsafe.Mode.LOCAL)
+public class DistributionMetricsReporter extends BinarySystemMetricsReporter<DistributionMetrics> {
+
+  public static final String COUNT_SUFFIX = "_count";
+
+  private static final double[] DEFAULT_QUANTILES = {0.5, 0.95, 0.99};
+
+  private final double[] mQuantiles;
+  private final String[] mSuffixes;
+
+  /** Ids of the count and quantile keys of each sketch name */
+  private final SimpleArrayMap<String, int[]> mKeyIds = new SimpleArrayMap<>();
+
+  /** Reports the median, 95th and 99th percentiles. */
+  public DistributionMetricsReporter() {
+    this(DEFAULT_QUANTILES);
+  }
+
+  public DistributionMetricsReporter(double... quantiles) {
+    mQuantiles = quantiles.clone();
+    mSuffixes = new String[quantiles.length];
+    for (int i = 0; i < quantiles.length; i++) {
+      if (!(quantiles[i] >= 0 && quantiles[i] <= 1)) {
+        throw new IllegalArgumentException("Invalid quantile: " + quantiles[i]);
+      }
+      mSuffixes[i] = getSuffix(quantiles[i]);
+    }
+  }
+
+  @Override
+  public void reportTo(DistributionMetrics metrics, BinaryEvent event) {
+    for (int i = 0, size = metrics.sketches.size(); i < size; i++) {
+      QuantileSketch sketch = metrics.sketches.valueAt(i);
+      if (sketch.count <= 0) {
+        continue;
+      }
+
+      int[] ids = getKeyIds(metrics.sketches.keyAt(i));
+      event.add(ids[0], sketch.count);
+      for (int j = 0; j < mQuantiles.length; j++) {
+        event.add(ids[j + 1], sketch.getQuantile(mQuantiles[j]));
+      }
+    }
+  }
+
+  private int[] getKeyIds(String name) {
+    int[] ids = mKeyIds.get(name);
+    if (ids == null) {
+      ids = new int[mQuantiles.length + 1];
+      ids[0] = EventSchema.register(name + COUNT_SUFFIX);
+      for (int i = 0; i < mQuantiles.length; i++) {
+        ids[i + 1] = EventSchema.register(name + mSuffixes[i]);
+      }
+      mKeyIds.put(name, ids);
+    }
+    return ids;
+  }
+
+  /** 0.5 becomes "_p50", 0.999 becomes "_p99_9". */
+  static String getSuffix(double quantile) {
+    String percentile = Double.toString(Math.round(quantile * 100_000) / 1_000.0);
+    if (percentile.endsWith(".0")) {
+      percentile = percentile.substring(0, percentile.length() - 2);
+    }
+    return "_p" + percentile.replace('.', '_');
+  }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.reporter.thermal
+
+import com.facebook.battery.metrics.thermal.ThermalMetrics
+import com.facebook.battery.metrics.thermal.ThermalMetricsCollector
+import com.facebook.battery.reporter.core.BinaryEvent
+import com.facebook.battery.reporter.core.BinarySystemMetricsReporter
+import com.facebook.battery.reporter.core.EventSchema
+
+/**
+ * Reports thermal metrics: the time above each threshold is reported with the threshold in the key,
+ * so the reporter should be created with the same thresholds as the collector.
+ */
+class ThermalMetricsReporter
+@JvmOverloads
+constructor(thresholdsMilliC: IntArray = ThermalMetricsCollector.DEFAULT_THRESHOLDS_MILLI_C) :
+    BinarySystemMetricsReporter<ThermalMetrics>() {
+
+  private val timeAboveThresholdKeys: IntArray =
+      IntArray(thresholdsMilliC.size) { i ->
+        EventSchema.register(TIME_ABOVE_PREFIX + thresholdsMilliC[i] + MS_SUFFIX)
+      }
+
+  override fun reportTo(metrics: ThermalMetrics, event: BinaryEvent) {
+    val thresholds = minOf(timeAboveThresholdKeys.size, metrics.timeAboveThresholdMs.size)
+    for (i in 0 until thresholds) {
+      if (metrics.timeAboveThresholdMs[i] != 0L) {
+        event.add(timeAboveThresholdKeys[i], metrics.timeAboveThresholdMs[i])
+      }
+    }
+
+    if (metrics.throttledMs != 0L) {
+      event.add(THROTTLED_MS_ID, metrics.throttledMs)
+    }
+
+    if (metrics.maxTemperatureMilliC != 0L) {
+      event.add(MAX_TEMPERATURE_MILLI_C_ID, metrics.maxTemperatureMilliC)
+    }
+
+    if (metrics.maxCoolingState != 0L) {
+      event.add(MAX_COOLING_STATE_ID, metrics.maxCoolingState)
+    }
+  }
+
+  companion object {
+    const val TIME_ABOVE_PREFIX: String = "thermal_above_"
+    const val MS_SUFFIX: String = "_ms"
+    const val THROTTLED_MS: String = "thermal_throttled_ms"
+    const val MAX_TEMPERATURE_MILLI_C: String = "thermal_max_temp_milli_c"
+    const val MAX_COOLING_STATE: String = "thermal_max_cooling_state"
+
+    private val THROTTLED_MS_ID: Int = EventSchema.register(THROTTLED_MS)
+    private val MAX_TEMPERATURE_MILLI_C_ID: Int = EventSchema.register(MAX_TEMPERATURE_MILLI_C)
+    private val MAX_COOLING_STATE_ID: Int = EventSchema.register(MAX_COOLING_STATE)
+  }
+}
@@ -8,22 +8,27 @@
 package com.facebook.battery.reporter.time
 
 import com.facebook.battery.metrics.time.TimeMetrics
-import com.facebook.battery.reporter.core.SystemMetricsReporter
+import com.facebook.battery.reporter.core.BinaryEvent
+import com.facebook.battery.reporter.core.BinarySystemMetricsReporter
+import com.facebook.battery.reporter.core.EventSchema
 
-class TimeMetricsReporter() : SystemMetricsReporter<TimeMetrics> {
+class TimeMetricsReporter() : BinarySystemMetricsReporter<TimeMetrics>() {
 
-  override fun reportTo(metrics: TimeMetrics, event: SystemMetricsReporter.Event) {
+  override fun reportTo(metrics: TimeMetrics, event: BinaryEvent) {
     if (metrics.realtimeMs != 0L) {
-      event.add(REALTIME_MS, metrics.realtimeMs)
+      event.add(REALTIME_MS_ID, metrics.realtimeMs)
     }
 
     if (metrics.uptimeMs != 0L) {
-      event.add(UPTIME_MS, metrics.uptimeMs)
+      event.add(UPTIME_MS_ID, metrics.uptimeMs)
     }
   }
 
   companion object {
     const val REALTIME_MS: String = "realtime_ms"
     const val UPTIME_MS: String = "uptime_ms"
+
+    private val REALTIME_MS_ID: Int = EventSchema.register(REALTIME_MS)
+    private val UPTIME_MS_ID: Int = EventSchema.register(UPTIME_MS)
   }
 }
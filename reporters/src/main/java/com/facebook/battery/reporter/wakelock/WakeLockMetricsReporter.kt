@@ -7,32 +7,34 @@
 
 package com.facebook.battery.reporter.wakelock
 
-import com.facebook.battery.metrics.core.SystemMetricsLogger
+import com.facebook.battery.metrics.core.JsonWriter
 import com.facebook.battery.metrics.wakelock.WakeLockMetrics
-import com.facebook.battery.reporter.core.SystemMetricsReporter
-import org.json.JSONException
+import com.facebook.battery.reporter.core.BinaryEvent
+import com.facebook.battery.reporter.core.BinarySystemMetricsReporter
+import com.facebook.battery.reporter.core.EventSchema
 
-class WakeLockMetricsReporter() : SystemMetricsReporter<WakeLockMetrics> {
+class WakeLockMetricsReporter() : BinarySystemMetricsReporter<WakeLockMetrics>() {
 
   private var shouldReportAttribution = true
+  private val jsonWriter = JsonWriter()
 
-  override fun reportTo(metrics: WakeLockMetrics, event: SystemMetricsReporter.Event) {
+  override fun reportTo(metrics: WakeLockMetrics, event: BinaryEvent) {
     if (metrics.heldTimeMs != 0L) {
-      event.add(HELD_TIME_MS, metrics.heldTimeMs)
+      event.add(HELD_TIME_MS_ID, metrics.heldTimeMs)
     }
 
     if (metrics.acquiredCount != 0L) {
-      event.add(ACQUIRED_COUNT, metrics.acquiredCount)
+      event.add(ACQUIRED_COUNT_ID, metrics.acquiredCount)
     }
 
     if (shouldReportAttribution) {
-      try {
-        val tagAttribution = metrics.attributionToJSONObject()
-        if (tagAttribution != null) {
-          event.add(TAG_TIME_MS, tagAttribution.toString())
-        }
-      } catch (ex: JSONException) {
-        SystemMetricsLogger.wtf(TAG, "Failed to serialize wakelock attribution data", ex)
+      val tagAttribution =
+          synchronized(jsonWriter) {
+            jsonWriter.reset()
+            if (metrics.attributionToJSON(jsonWriter)) jsonWriter.toString() else null
+          }
+      if (tagAttribution != null) {
+        event.add(TAG_TIME_MS_ID, tagAttribution)
       }
     }
   }
@@ -49,5 +51,9 @@ class WakeLockMetricsReporter() : SystemMetricsReporter<WakeLockMetrics> {
     const val HELD_TIME_MS: String = "wakelock_held_time_ms"
     const val TAG_TIME_MS: String = "wakelock_tag_time_ms"
     const val ACQUIRED_COUNT: String = "wakelock_acquired_count"
+
+    private val HELD_TIME_MS_ID: Int = EventSchema.register(HELD_TIME_MS)
+    private val TAG_TIME_MS_ID: Int = EventSchema.register(TAG_TIME_MS)
+    private val ACQUIRED_COUNT_ID: Int = EventSchema.register(ACQUIRED_COUNT)
   }
 }
@@ -11,8 +11,14 @@ import static org.assertj.core.api.Assertions.assertThat;
 
 import com.facebook.battery.metrics.composite.CompositeMetrics;
 import com.facebook.battery.metrics.core.ReporterEvent;
+import com.facebook.battery.metrics.cpu.CpuMetrics;
 import com.facebook.battery.metrics.time.TimeMetrics;
+import com.facebook.battery.reporter.core.BinaryEventBuffer;
+import com.facebook.battery.reporter.core.EventSchema;
+import com.facebook.battery.reporter.core.SystemMetricsReporter;
 import com.facebook.battery.reporter.time.TimeMetricsReporter;
+import java.util.HashMap;
+import java.util.Map;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -54,4 +60,89 @@ public class CompositeMetricsReporterTest {
     mReporter.reportTo(metrics, mEvent);
     assertThat(mEvent.eventMap.size()).isEqualTo(2);
   }
+
+  @Test
+  public void testBinaryEvent() {
+    // A reporter that only supports string keyed events
+    mReporter.addMetricsReporter(
+        CpuMetrics.class,
+        new SystemMetricsReporter<CpuMetrics>() {
+          @Override
+          public void reportTo(CpuMetrics metrics, SystemMetricsReporter.Event event) {
+            event.add("legacy_cpu_user_time_s", metrics.userTimeS);
+          }
+        });
+
+    TimeMetrics timeMetrics = new TimeMetrics();
+    timeMetrics.realtimeMs = 100;
+    CpuMetrics cpuMetrics = new CpuMetrics();
+    cpuMetrics.userTimeS = 1.5;
+    CompositeMetrics metrics =
+        new CompositeMetrics()
+            .putValidMetric(TimeMetrics.class, timeMetrics)
+            .putValidMetric(CpuMetrics.class, cpuMetrics);
+
+    final Map<String, Object> values = new HashMap<>();
+    BinaryEventBuffer event =
+        new BinaryEventBuffer(
+            new BinaryEventBuffer.Listener() {
+              @Override
+              public void onEvent(BinaryEventBuffer event) {
+                for (int i = 0; i < event.size(); i++) {
+                  String key = EventSchema.getName(event.getKey(i));
+                  values.put(
+                      key,
+                      event.getType(i) == BinaryEventBuffer.TYPE_DOUBLE
+                          ? (Object) event.getDouble(i)
+                          : (Object) event.getLong(i));
+                }
+              }
+            });
+    event.acquireEvent(null, "test");
+    mReporter.reportTo(metrics, event);
+    event.logAndRelease();
+
+    assertThat(values.size()).isEqualTo(2);
+    assertThat(values.get(TimeMetricsReporter.REALTIME_MS)).isEqualTo(100L);
+    assertThat(values.get("legacy_cpu_user_time_s")).isEqualTo(1.5);
+  }
+
+  @Test
+  public void testBinaryEventsReuseTheAdapter() {
+    mReporter.addMetricsReporter(
+        CpuMetrics.class,
+        new SystemMetricsReporter<CpuMetrics>() {
+          @Override
+          public void reportTo(CpuMetrics metrics, SystemMetricsReporter.Event event) {
+            event.add("legacy_cpu_system_time_s", metrics.systemTimeS);
+          }
+        });
+    CpuMetrics cpuMetrics = new CpuMetrics();
+    CompositeMetrics metrics = new CompositeMetrics().putValidMetric(CpuMetrics.class, cpuMetrics);
+
+    final Map<String, Integer> events = new HashMap<>();
+    BinaryEventBuffer.Listener listener =
+        new BinaryEventBuffer.Listener() {
+          @Override
+          public void onEvent(BinaryEventBuffer event) {
+            events.put(event.getEventName() + ":" + event.getDouble(0), event.size());
+          }
+        };
+    BinaryEventBuffer first = new BinaryEventBuffer(listener);
+    BinaryEventBuffer second = new BinaryEventBuffer(listener);
+
+    // The adapter created for the first event has to forward to the second one afterwards
+    cpuMetrics.systemTimeS = 1;
+    first.acquireEvent(null, "first");
+    mReporter.reportTo(metrics, first);
+    first.logAndRelease();
+    cpuMetrics.systemTimeS = 2;
+    second.acquireEvent(null, "second");
+    mReporter.reportTo(metrics, second);
+    second.logAndRelease();
+
+    assertThat(events.size()).isEqualTo(2);
+    assertThat(events.get("first:1.0")).isEqualTo(1);
+    assertThat(events.get("second:2.0")).isEqualTo(1);
+  }
 }
@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.reporter.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.facebook.battery.metrics.core.ReporterEvent;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class)
+public class BinaryEventBufferTest {
+
+  private static final int COUNT = EventSchema.register("test_count");
+  private static final int TIME_MS = EventSchema.register("test_time_ms");
+  private static final int RATIO = EventSchema.register("test_ratio");
+  private static final int NAME = EventSchema.register("test_name");
+
+  @Test
+  public void testSchema() {
+    assertThat(EventSchema.register("test_count")).isEqualTo(COUNT);
+    assertThat(EventSchema.getId("test_time_ms")).isEqualTo(TIME_MS);
+    assertThat(EventSchema.getId("test_unregistered")).isEqualTo(-1);
+    assertThat(EventSchema.getName(RATIO)).isEqualTo("test_ratio");
+    assertThat(EventSchema.size()).isGreaterThan(NAME);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnregisteredId() {
+    EventSchema.getName(EventSchema.size());
+  }
+
+  @Test
+  public void testBuffersValues() throws Exception {
+    final List<byte[]> logged = new ArrayList<>();
+    BinaryEventBuffer buffer =
+        new BinaryEventBuffer(
+            new BinaryEventBuffer.Listener() {
+              @Override
+              public void onEvent(BinaryEventBuffer event) {
+                assertThat(event.getEventName()).isEqualTo("test_event");
+                assertThat(event.size()).isEqualTo(4);
+                assertThat(event.getKey(0)).isEqualTo(COUNT);
+                assertThat(event.getType(0)).isEqualTo(BinaryEventBuffer.TYPE_INT);
+                assertThat(event.getLong(0)).isEqualTo(3);
+                assertThat(event.getLong(1)).isEqualTo(1L << 40);
+                assertThat(event.getDouble(2)).isEqualTo(0.5);
+                assertThat(event.getString(3)).isEqualTo("abc");
+
+                ByteArrayOutputStream output = new ByteArrayOutputStream();
+                try {
+                  event.writeTo(new DataOutputStream(output));
+                } catch (Exception e) {
+                  throw new AssertionError(e);
+                }
+                logged.add(output.toByteArray());
+              }
+            });
+
+    buffer.acquireEvent(null, "test_event");
+    buffer.add(COUNT, 3);
+    buffer.add(TIME_MS, 1L << 40);
+    buffer.add(RATIO, 0.5);
+    buffer.add(NAME, "abc");
+    buffer.logAndRelease();
+    assertThat(buffer.size()).isEqualTo(0);
+
+    DataInputStream input = new DataInputStream(new ByteArrayInputStream(logged.get(0)));
+    assertThat(input.readInt()).isEqualTo(4);
+    assertThat(input.readInt()).isEqualTo(COUNT);
+    assertThat(input.readByte()).isEqualTo(BinaryEventBuffer.TYPE_INT);
+    assertThat(input.readLong()).isEqualTo(3);
+    input.skipBytes(4 + 1 + 8 + 4 + 1 + 8);
+    assertThat(input.readInt()).isEqualTo(NAME);
+    assertThat(input.readByte()).isEqualTo(BinaryEventBuffer.TYPE_STRING);
+    assertThat(input.readInt()).isEqualTo(3);
+    byte[] name = new byte[3];
+    input.readFully(name);
+    assertThat(new String(name, "UTF-8")).isEqualTo("abc");
+    assertThat(input.available()).isEqualTo(0);
+  }
+
+  @Test
+  public void testWritesLongStrings() throws Exception {
+    final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    BinaryEventBuffer buffer =
+        new BinaryEventBuffer(
+            new BinaryEventBuffer.Listener() {
+              @Override
+              public void onEvent(BinaryEventBuffer event) {
+                try {
+                  event.writeTo(new DataOutputStream(output));
+                } catch (Exception e) {
+                  throw new AssertionError(e);
+                }
+              }
+            });
+
+    char[] chars = new char[100_000];
+    Arrays.fill(chars, '\u00e9');
+    String value = new String(chars);
+    buffer.acquireEvent(null, "test_event");
+    buffer.add(NAME, value);
+    buffer.logAndRelease();
+
+    DataInputStream input = new DataInputStream(new ByteArrayInputStream(output.toByteArray()));
+    input.skipBytes(4 + 4 + 1);
+    byte[] bytes = new byte[input.readInt()];
+    input.readFully(bytes);
+    assertThat(new String(bytes, "UTF-8")).isEqualTo(value);
+    assertThat(input.available()).isEqualTo(0);
+  }
+
+  @Test
+  public void testGrows() {
+    BinaryEventBuffer buffer =
+        new BinaryEventBuffer(
+            new BinaryEventBuffer.Listener() {
+              @Override
+              public void onEvent(BinaryEventBuffer event) {}
+            });
+    buffer.acquireEvent("module", "test_event");
+    for (int i = 0; i < 100; i++) {
+      buffer.add(COUNT, (long) i);
+    }
+    assertThat(buffer.size()).isEqualTo(100);
+    assertThat(buffer.getLong(99)).isEqualTo(99);
+    assertThat(buffer.getModuleName()).isEqualTo("module");
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testWrongType() {
+    BinaryEventBuffer buffer =
+        new BinaryEventBuffer(
+            new BinaryEventBuffer.Listener() {
+              @Override
+              public void onEvent(BinaryEventBuffer event) {}
+            });
+    buffer.acquireEvent(null, "test_event");
+    buffer.add(NAME, "abc");
+    buffer.getLong(0);
+  }
+
+  @Test
+  public void testAdapters() {
+    ReporterEvent event = new ReporterEvent();
+    BinaryEvent binaryEvent = new StringEventAdapter(event);
+    binaryEvent.add(COUNT, 3);
+    binaryEvent.add(TIME_MS, 4L);
+    binaryEvent.add(RATIO, 0.5);
+    binaryEvent.add(NAME, "abc");
+    assertThat(event.eventMap.get("test_count")).isEqualTo(3);
+    assertThat(event.eventMap.get("test_time_ms")).isEqualTo(4L);
+    assertThat(event.eventMap.get("test_ratio")).isEqualTo(0.5);
+    assertThat(event.eventMap.get("test_name")).isEqualTo("abc");
+
+    ReporterEvent roundTripped = new ReporterEvent();
+    SystemMetricsReporter.Event stringEvent =
+        new BinaryEventAdapter(new StringEventAdapter(roundTripped));
+    stringEvent.add("test_adapter_key", 5L);
+    assertThat(EventSchema.getId("test_adapter_key")).isNotEqualTo(-1);
+    assertThat(roundTripped.eventMap.get("test_adapter_key")).isEqualTo(5L);
+  }
+}
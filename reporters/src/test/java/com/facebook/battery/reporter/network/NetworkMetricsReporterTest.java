@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.reporter.network;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.facebook.battery.metrics.core.ReporterEvent;
+import com.facebook.battery.metrics.network.NetworkMetrics;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class)
+public class NetworkMetricsReporterTest {
+  private final NetworkMetricsReporter mNetworkMetricsReporter = new NetworkMetricsReporter();
+
+  @Test
+  public void testZeroLogging() {
+    NetworkMetrics zeroMetrics = new NetworkMetrics();
+    ReporterEvent event = new ReporterEvent();
+    mNetworkMetricsReporter.reportTo(zeroMetrics, event);
+    assertThat(event.eventMap.isEmpty()).isTrue();
+  }
+
+  @Test
+  public void testNonZeroLogging() {
+    NetworkMetrics metrics = new NetworkMetrics();
+    metrics.mobileBytesTx = 100;
+    metrics.wifiBytesRx = 300;
+    ReporterEvent event = new ReporterEvent();
+    mNetworkMetricsReporter.reportTo(metrics, event);
+    assertThat(event.eventMap.get(NetworkMetricsReporter.MOBILE_BYTES_TX)).isEqualTo(100L);
+    assertThat(event.eventMap.get(NetworkMetricsReporter.MOBILE_BYTES_RX)).isNull();
+    assertThat(event.eventMap.get(NetworkMetricsReporter.WIFI_BYTES_TX)).isNull();
+    assertThat(event.eventMap.get(NetworkMetricsReporter.WIFI_BYTES_RX)).isEqualTo(300L);
+    assertThat(NetworkMetricsReporter.WIFI_BYTES_RX).isEqualTo("wifi_bytes_rx");
+  }
+}
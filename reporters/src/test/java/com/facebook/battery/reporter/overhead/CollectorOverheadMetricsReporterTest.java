@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.reporter.overhead;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.facebook.battery.metrics.core.ReporterEvent;
+import com.facebook.battery.metrics.overhead.CollectorOverheadMetrics;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class)
+public class CollectorOverheadMetricsReporterTest {
+  private final CollectorOverheadMetricsReporter mReporter = new CollectorOverheadMetricsReporter();
+
+  @Test
+  public void testZeroLogging() {
+    ReporterEvent event = new ReporterEvent();
+    mReporter.reportTo(new CollectorOverheadMetrics(), event);
+    assertThat(event.eventMap.isEmpty()).isTrue();
+  }
+
+  @Test
+  public void testAttributedLogging() {
+    CollectorOverheadMetrics metrics = new CollectorOverheadMetrics(true);
+    metrics.snapshotCount = 2;
+    metrics.threadCpuTimeNs = 1_000;
+    CollectorOverheadMetrics cpu = metrics.getOrCreateCollector("CpuMetrics");
+    cpu.snapshotCount = 2;
+    cpu.threadCpuTimeNs = 1_000;
+
+    ReporterEvent event = new ReporterEvent();
+    mReporter.reportTo(metrics, event);
+    assertThat(event.eventMap.get(CollectorOverheadMetricsReporter.COLLECTOR_SNAPSHOT_COUNT))
+        .isEqualTo(2L);
+    assertThat(event.eventMap.get(CollectorOverheadMetricsReporter.COLLECTOR_THREAD_CPU_TIME_NS))
+        .isEqualTo(1_000L);
+    assertThat(event.eventMap.get(CollectorOverheadMetricsReporter.COLLECTOR_FAILURE_COUNT))
+        .isNull();
+
+    assertThat(event.eventMap.get(CollectorOverheadMetricsReporter.COLLECTOR_ATTRIBUTION))
+        .isEqualTo(
+            "{\"CpuMetrics\":{\"snapshots\":2,\"failures\":0,\"invalid\":0,\"wall_time_ns\":0,"
+                + "\"thread_cpu_time_ns\":1000,\"allocated_bytes\":0}}");
+  }
+}
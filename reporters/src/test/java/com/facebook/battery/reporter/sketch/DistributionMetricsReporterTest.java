@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.reporter.sketch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.facebook.battery.metrics.core.ReporterEvent;
+import com.facebook.battery.metrics.sketch.DistributionMetrics;
+import com.facebook.battery.metrics.sketch.QuantileSketch;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class)
+public class DistributionMetricsReporterTest {
+
+  @Test
+  public void testZeroLogging() {
+    DistributionMetrics metrics = new DistributionMetrics();
+    metrics.getOrCreateSketch("cpu_time_s");
+    ReporterEvent event = new ReporterEvent();
+    new DistributionMetricsReporter().reportTo(metrics, event);
+    assertThat(event.eventMap.isEmpty()).isTrue();
+  }
+
+  @Test
+  public void testReportsQuantiles() {
+    DistributionMetrics metrics = new DistributionMetrics();
+    QuantileSketch sketch = metrics.getOrCreateSketch("cpu_time_s");
+    for (int i = 1; i <= 100; i++) {
+      sketch.add(i);
+    }
+
+    ReporterEvent event = new ReporterEvent();
+    new DistributionMetricsReporter(0.5, 0.999).reportTo(metrics, event);
+    assertThat(event.eventMap.size()).isEqualTo(3);
+    assertThat(event.eventMap.get("cpu_time_s_count")).isEqualTo(100L);
+    assertThat(event.eventMap.get("cpu_time_s_p50")).isEqualTo(sketch.getQuantile(0.5));
+    assertThat(event.eventMap.get("cpu_time_s_p99_9")).isEqualTo(sketch.getQuantile(0.999));
+  }
+
+  @Test
+  public void testSuffixes() {
+    assertThat(DistributionMetricsReporter.getSuffix(0.5)).isEqualTo("_p50");
+    assertThat(DistributionMetricsReporter.getSuffix(0.95)).isEqualTo("_p95");
+    assertThat(DistributionMetricsReporter.getSuffix(0.999)).isEqualTo("_p99_9");
+    assertThat(DistributionMetricsReporter.getSuffix(0)).isEqualTo("_p0");
+    assertThat(DistributionMetricsReporter.getSuffix(1)).isEqualTo("_p100");
+  }
+}
@@ -9,12 +9,16 @@ package com.facebook.battery.sample;
 
 import android.app.Activity;
 import android.app.Application;
+import android.content.Context;
 import android.os.Build;
 import android.os.Bundle;
 import android.util.Log;
+import androidx.annotation.Nullable;
+import com.facebook.battery.metrics.anomaly.AnomalyDetector;
 import com.facebook.battery.metrics.composite.CompositeMetrics;
 import com.facebook.battery.metrics.composite.CompositeMetricsCollector;
-import com.facebook.battery.metrics.core.StatefulSystemMetricsCollector;
+import com.facebook.battery.metrics.core.LazySystemMetricsCollector;
+import com.facebook.battery.metrics.core.SystemMetricsCollector;
 import com.facebook.battery.metrics.cpu.CpuFrequencyMetrics;
 import com.facebook.battery.metrics.cpu.CpuFrequencyMetricsCollector;
 import com.facebook.battery.metrics.cpu.CpuMetrics;
@@ -23,22 +27,32 @@ import com.facebook.battery.metrics.healthstats.HealthStatsMetrics;
 import com.facebook.battery.metrics.healthstats.HealthStatsMetricsCollector;
 import com.facebook.battery.metrics.network.NetworkMetrics;
 import com.facebook.battery.metrics.network.NetworkMetricsCollector;
+import com.facebook.battery.metrics.pipeline.MetricsPipeline;
+import com.facebook.battery.metrics.overhead.CollectorOverheadMetrics;
+import com.facebook.battery.metrics.overhead.CollectorOverheadMetricsCollector;
+import com.facebook.battery.metrics.sketch.DistributionAggregator;
 import com.facebook.battery.metrics.time.TimeMetrics;
 import com.facebook.battery.metrics.time.TimeMetricsCollector;
+import com.facebook.battery.metrics.window.WindowAggregator;
 import com.facebook.battery.reporter.composite.CompositeMetricsReporter;
 import com.facebook.battery.reporter.core.SystemMetricsReporter;
 import com.facebook.battery.reporter.cpu.CpuFrequencyMetricsReporter;
 import com.facebook.battery.reporter.cpu.CpuMetricsReporter;
 import com.facebook.battery.reporter.healthstats.HealthStatsMetricsReporter;
 import com.facebook.battery.reporter.network.NetworkMetricsReporter;
+import com.facebook.battery.reporter.overhead.CollectorOverheadMetricsReporter;
+import com.facebook.battery.reporter.sketch.DistributionMetricsReporter;
 import com.facebook.battery.reporter.time.TimeMetricsReporter;
 import com.facebook.battery.serializer.composite.CompositeMetricsSerializer;
 import com.facebook.battery.serializer.cpu.CpuFrequencyMetricsSerializer;
 import com.facebook.battery.serializer.cpu.CpuMetricsSerializer;
 import com.facebook.battery.serializer.healthstats.HealthStatsMetricsSerializer;
+import com.facebook.battery.serializer.log.MetricsLog;
 import com.facebook.battery.serializer.network.NetworkMetricsSerializer;
+import com.facebook.battery.serializer.overhead.CollectorOverheadMetricsSerializer;
 import com.facebook.battery.serializer.time.TimeMetricsSerializer;
 import java.io.*;
+import java.util.TimeZone;
 
 /**
  * An application class that maintains a singleton instance of a system wide metrics collector and
@@ -56,31 +70,68 @@ import java.io.*;
  */
 public class BatteryApplication extends Application
     implements Application.ActivityLifecycleCallbacks {
-  private static final String LAST_SNAPSHOT = "lastsnapshot";
+  private static final String METRICS_LOG = "metricslog";
 
   public static volatile BatteryApplication INSTANCE;
   private CompositeMetricsCollector mMetricsCollector;
 
-  private StatefulSystemMetricsCollector<CompositeMetrics, CompositeMetricsCollector>
-      mStatefulCollector;
+  private MetricsPipeline<CompositeMetrics> mPipeline;
   private CompositeMetricsReporter mMetricsReporter;
   private CompositeMetricsSerializer mMetricsSerializer;
+  private DistributionAggregator<CompositeMetrics> mSessionAggregator;
+  private WindowAggregator<CompositeMetrics> mWindowAggregator;
+  private AnomalyDetector<CompositeMetrics> mAnomalyDetector;
+  private WindowAggregator.Window mLastFiveMinutes;
+  private WindowAggregator.Window mLastHour;
+  private WindowAggregator.Window mToday;
+  private final DistributionMetricsReporter mDistributionReporter =
+      new DistributionMetricsReporter();
+  private volatile MetricsLog mMetricsLog;
+  private final ByteArrayOutputStream mRecord = new ByteArrayOutputStream();
   private final SystemMetricsReporter.Event mEvent = new Event();
 
   private void init() {
     // Note -- Creating a collector instance that's shared across the application can be fairly
     //         useful. You can set it up and hook up all the individual metrics collectors,
     //         tweaking them once.
+    // Note -- The network collector reads system services and registers a receiver when it's
+    //         created: deferring that until the main thread is idle keeps it off the startup path.
+    //         Network diffs are invalid until then.
+    final Context context = this;
+    LazySystemMetricsCollector<NetworkMetrics> networkCollector =
+        new LazySystemMetricsCollector<NetworkMetrics>() {
+          @Override
+          protected SystemMetricsCollector<NetworkMetrics> createCollector() {
+            return new NetworkMetricsCollector(context);
+          }
+
+          @Override
+          public NetworkMetrics createMetrics() {
+            return new NetworkMetrics();
+          }
+        }.setDeferred(true);
+    networkCollector.initializeWhenIdle();
+
     CompositeMetricsCollector.Builder collectorBuilder =
         new CompositeMetricsCollector.Builder()
             .addMetricsCollector(TimeMetrics.class, new TimeMetricsCollector())
             .addMetricsCollector(CpuFrequencyMetrics.class, new CpuFrequencyMetricsCollector())
             .addMetricsCollector(CpuMetrics.class, new CpuMetricsCollector())
-            .addMetricsCollector(NetworkMetrics.class, new NetworkMetricsCollector(this));
+            .addMetricsCollector(NetworkMetrics.class, networkCollector);
     if (Build.VERSION.SDK_INT >= 24) {
       collectorBuilder.addMetricsCollector(
           HealthStatsMetrics.class, new HealthStatsMetricsCollector(this));
     }
+    // Note -- Tracking overhead reports what each collector costs to snapshot, attributed to the
+    //         metrics it collects. Class names can be renamed by R8: stable names keep the
+    //         attribution readable across builds.
+    collectorBuilder.trackOverhead(
+        new CollectorOverheadMetricsCollector(true)
+            .setName(TimeMetrics.class, "time")
+            .setName(CpuFrequencyMetrics.class, "cpu_frequency")
+            .setName(CpuMetrics.class, "cpu")
+            .setName(NetworkMetrics.class, "network")
+            .setName(HealthStatsMetrics.class, "healthstats"));
     mMetricsCollector = collectorBuilder.build();
 
     // Note -- The Reporter and Serializer mimic the collector; they were mainly split out into
@@ -90,7 +141,9 @@ public class BatteryApplication extends Application
             .addMetricsReporter(TimeMetrics.class, new TimeMetricsReporter())
             .addMetricsReporter(CpuMetrics.class, new CpuMetricsReporter())
             .addMetricsReporter(CpuFrequencyMetrics.class, new CpuFrequencyMetricsReporter())
-            .addMetricsReporter(NetworkMetrics.class, new NetworkMetricsReporter());
+            .addMetricsReporter(NetworkMetrics.class, new NetworkMetricsReporter())
+            .addMetricsReporter(
+                CollectorOverheadMetrics.class, new CollectorOverheadMetricsReporter());
     if (Build.VERSION.SDK_INT >= 24) {
       mMetricsReporter.addMetricsReporter(
           HealthStatsMetrics.class, new HealthStatsMetricsReporter());
@@ -101,23 +154,117 @@ public class BatteryApplication extends Application
             .addMetricsSerializer(TimeMetrics.class, new TimeMetricsSerializer())
             .addMetricsSerializer(CpuMetrics.class, new CpuMetricsSerializer())
             .addMetricsSerializer(CpuFrequencyMetrics.class, new CpuFrequencyMetricsSerializer())
-            .addMetricsSerializer(NetworkMetrics.class, new NetworkMetricsSerializer());
+            .addMetricsSerializer(NetworkMetrics.class, new NetworkMetricsSerializer())
+            .addMetricsSerializer(
+                CollectorOverheadMetrics.class, new CollectorOverheadMetricsSerializer());
     if (Build.VERSION.SDK_INT >= 24) {
       mMetricsSerializer.addMetricsSerializer(
           HealthStatsMetrics.class, new HealthStatsMetricsSerializer());
     }
 
-    // Note -- The stateful collector is a useful abstraction that maintains state about when it
-    //         was last triggered, making it simple to observe changes since the last call.
-    //         It's a very simple piece of code to reduce boilerplate, you should check out the
-    //         underlying source code.
-    mStatefulCollector = new StatefulSystemMetricsCollector<>(mMetricsCollector);
+    // Note -- Totals hide how costs are distributed: this keeps a sketch of the cpu time and
+    //         mobile data used by each foreground session, to report percentiles.
+    mSessionAggregator =
+        new DistributionAggregator<CompositeMetrics>()
+            .addField(
+                "session_cpu_time_s",
+                new DistributionAggregator.Field<CompositeMetrics>() {
+                  @Override
+                  public double getValue(CompositeMetrics metrics) {
+                    if (!metrics.isValid(CpuMetrics.class)) {
+                      return Double.NaN;
+                    }
+                    CpuMetrics cpuMetrics = metrics.getMetric(CpuMetrics.class);
+                    return cpuMetrics.userTimeS + cpuMetrics.systemTimeS;
+                  }
+                })
+            .addField(
+                "session_mobile_bytes",
+                new DistributionAggregator.Field<CompositeMetrics>() {
+                  @Override
+                  public double getValue(CompositeMetrics metrics) {
+                    if (!metrics.isValid(NetworkMetrics.class)) {
+                      return Double.NaN;
+                    }
+                    NetworkMetrics networkMetrics = metrics.getMetric(NetworkMetrics.class);
+                    return networkMetrics.mobileBytesRx + networkMetrics.mobileBytesTx;
+                  }
+                });
+
+    // Note -- Windowed totals are kept up to date as diffs come in, and are cheap to read: e.g. to
+    //         defer optional work when the app has used a lot of cpu or data recently.
+    mWindowAggregator = new WindowAggregator<>(mMetricsCollector);
+    mLastFiveMinutes = mWindowAggregator.addSlidingWindow(5 * 60 * 1000, 30);
+    mLastHour = mWindowAggregator.addSlidingWindow(60 * 60 * 1000, 60);
+    mToday =
+        mWindowAggregator.addTumblingWindow(
+            24 * 60 * 60 * 1000, -TimeZone.getDefault().getRawOffset());
+
+    // Note -- Anomalies are flagged as the diffs come in, e.g. to stop background work that keeps
+    //         the cpu unusually busy in the same session.
+    mAnomalyDetector =
+        new AnomalyDetector<CompositeMetrics>(
+                new AnomalyDetector.Listener() {
+                  @Override
+                  public void onAnomaly(
+                      String signal, double value, double zScore, @Nullable String attribution) {
+                    Log.w(
+                        "BatteryApplication",
+                        "Unusual " + signal + ": " + value + " (z-score " + zScore + ")");
+                  }
+                })
+            .addSignal(
+                "cpu_utilization",
+                new AnomalyDetector.Signal<CompositeMetrics>() {
+                  @Override
+                  public double getValue(CompositeMetrics metrics) {
+                    if (!metrics.isValid(CpuMetrics.class) || !metrics.isValid(TimeMetrics.class)) {
+                      return Double.NaN;
+                    }
+                    CpuMetrics cpuMetrics = metrics.getMetric(CpuMetrics.class);
+                    long realtimeMs = metrics.getMetric(TimeMetrics.class).realtimeMs;
+                    return realtimeMs > 0
+                        ? (cpuMetrics.userTimeS + cpuMetrics.systemTimeS) * 1000 / realtimeMs
+                        : Double.NaN;
+                  }
+                },
+                AnomalyDetector.NO_THRESHOLD,
+                4);
+
+    // Note -- The pipeline only takes snapshots on the calling thread: diffs are computed, reported
+    //         and saved on its own background thread, much like the StatefulSystemMetricsCollector
+    //         keeping track of the last snapshot. Every diff is aggregated and saved, while the
+    //         event's sampling decides which ones get reported.
+    mPipeline =
+        new MetricsPipeline<>(
+            mMetricsCollector,
+            8,
+            MetricsPipeline.OverflowPolicy.MERGE,
+            new MetricsPipeline.Listener<CompositeMetrics>() {
+              @Override
+              public void onDiff(CompositeMetrics diff, @Nullable String tag) {
+                logMetrics(diff, tag);
+              }
+            });
+    mPipeline.snapshot(null);
   }
 
   public CompositeMetricsCollector getMetricsCollector() {
     return mMetricsCollector;
   }
 
+  public CompositeMetrics getLastFiveMinutesMetrics(CompositeMetrics output) {
+    return mWindowAggregator.getTotal(mLastFiveMinutes, output);
+  }
+
+  public CompositeMetrics getLastHourMetrics(CompositeMetrics output) {
+    return mWindowAggregator.getTotal(mLastHour, output);
+  }
+
+  public CompositeMetrics getTodayMetrics(CompositeMetrics output) {
+    return mWindowAggregator.getTotal(mToday, output);
+  }
+
   @Override
   public void onCreate() {
     super.onCreate();
@@ -126,15 +273,21 @@ public class BatteryApplication extends Application
 
     registerActivityLifecycleCallbacks(this);
 
-    try (DataInputStream input = new DataInputStream(new FileInputStream(openFile()))) {
-      CompositeMetrics metrics = mMetricsCollector.createMetrics();
-
-      // Note -- this reads in from the last serialized value
-      mMetricsSerializer.deserialize(metrics, input);
+    try {
+      // Note -- Snapshots are appended to a memory mapped log instead of rewriting a file: saving
+      //         is a memory copy, and a crash can at worst lose the record being written.
+      mMetricsLog = new MetricsLog(new File(getFilesDir(), METRICS_LOG));
+      byte[] record = mMetricsLog.readLast();
+      if (record != null) {
+        CompositeMetrics metrics = mMetricsCollector.createMetrics();
 
-      // Note -- We've been careful to have good, readable `toString` implementations for metrics
-      Log.i("BatteryApplication", "Last saved snapshot:\n" + metrics.toString());
+        // Note -- this reads in from the last serialized value
+        mMetricsSerializer.deserialize(
+            metrics, new DataInputStream(new ByteArrayInputStream(record)));
 
+        // Note -- We've been careful to have good, readable `toString` implementations for metrics
+        Log.i("BatteryApplication", "Last saved snapshot:\n" + metrics.toString());
+      }
     } catch (IOException ioe) {
       Log.e("BatteryApplication", "Failed to deserialize", ioe);
     }
@@ -149,13 +302,13 @@ public class BatteryApplication extends Application
   @Override
   public void onActivityResumed(Activity activity) {
     // Note: Triggering an update / difference on transition
-    logMetrics("background");
+    mPipeline.snapshot("background");
   }
 
   @Override
   public void onActivityPaused(Activity activity) {
     // Note: Triggering an update on transition
-    logMetrics("foreground");
+    mPipeline.snapshot("foreground");
   }
 
   @Override
@@ -167,9 +320,15 @@ public class BatteryApplication extends Application
   @Override
   public void onActivityDestroyed(Activity activity) {}
 
-  private void logMetrics(String tag) {
-    // Note -- this gets the difference from the last call / initialization of the StatefulCollector
-    CompositeMetrics update = mStatefulCollector.getLatestDiffAndReset();
+  private void logMetrics(CompositeMetrics update, @Nullable String tag) {
+    mWindowAggregator.add(update);
+    mAnomalyDetector.update(update);
+
+    // The diff ending on a pause covers a whole foreground session
+    boolean isForeground = "foreground".equals(tag);
+    if (isForeground) {
+      mSessionAggregator.add(update);
+    }
 
     // Check out the Event class in this folder: it should be able to wrap most analytics
     // implementations comfortably; this one simply logs everything to logcat.
@@ -178,17 +337,25 @@ public class BatteryApplication extends Application
       mEvent.add("dimension", tag);
       mMetricsReporter.reportTo(update, mEvent);
       mEvent.logAndRelease();
+
+      if (isForeground) {
+        mEvent.acquireEvent(null, "BatterySessionDistributions");
+        mDistributionReporter.reportTo(mSessionAggregator.getMetrics(), mEvent);
+        mEvent.logAndRelease();
+      }
     }
 
-    try (DataOutputStream output = new DataOutputStream(new FileOutputStream(openFile()))) {
+    if (mMetricsLog == null) {
+      return;
+    }
+
+    try {
       // Save data as required, as cheaply as possible.
-      mMetricsSerializer.serialize(update, output);
+      mRecord.reset();
+      mMetricsSerializer.serialize(update, new DataOutputStream(mRecord));
+      mMetricsLog.append(mRecord.toByteArray());
     } catch (IOException ioe) {
       Log.e("BatteryApplication", "Failed to serialize", ioe);
     }
   }
-
-  private File openFile() {
-    return new File(getFilesDir(), LAST_SNAPSHOT);
-  }
 }
@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.serializer.core;
+
+import androidx.test.platform.app.InstrumentationRegistry;
+import com.facebook.battery.metrics.composite.CompositeMetrics;
+import com.facebook.battery.metrics.cpu.CpuMetrics;
+import com.facebook.battery.metrics.time.TimeMetrics;
+import com.facebook.battery.serializer.composite.CompositeMetricsSerializer;
+import com.facebook.battery.serializer.cpu.CpuMetricsSerializer;
+import com.facebook.battery.serializer.time.TimeMetricsSerializer;
+import com.facebook.infer.annotation.Nullsafe;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A day of per minute time and cpu snapshots, loaded from the cpu_time_trace.csv asset, for
+ * benchmarks to run over the same data from one run to the next.
+ *
+ * <p>The trace is mostly idle minutes with bursts of cpu activity, and the device sleeping through
+ * parts of the day.
+ */
+@Nullsafe(Nullsafe.Mode.LOCAL)
+public class MetricsTrace {
+
+  private static final String ASSET = "cpu_time_trace.csv";
+
+  public final long[] timestampsMs;
+  public final CompositeMetrics[] snapshots;
+
+  private MetricsTrace(long[] timestampsMs, CompositeMetrics[] snapshots) {
+    this.timestampsMs = timestampsMs;
+    this.snapshots = snapshots;
+  }
+
+  public static MetricsTrace load() throws IOException {
+    List<String[]> rows = new ArrayList<>();
+    BufferedReader reader =
+        new BufferedReader(
+            new InputStreamReader(
+                InstrumentationRegistry.getInstrumentation().getContext().getAssets().open(ASSET),
+                "UTF-8"));
+    try {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (!line.isEmpty() && !line.startsWith("#")) {
+          rows.add(line.split(","));
+        }
+      }
+    } finally {
+      reader.close();
+    }
+
+    long[] timestampsMs = new long[rows.size()];
+    CompositeMetrics[] snapshots = new CompositeMetrics[rows.size()];
+    for (int i = 0; i < rows.size(); i++) {
+      String[] row = rows.get(i);
+      timestampsMs[i] = Long.parseLong(row[0]);
+      snapshots[i] = createMetrics();
+      TimeMetrics time = snapshots[i].getMetric(TimeMetrics.class);
+      time.realtimeMs = Long.parseLong(row[1]);
+      time.uptimeMs = Long.parseLong(row[2]);
+      CpuMetrics cpu = snapshots[i].getMetric(CpuMetrics.class);
+      cpu.userTimeS = Double.parseDouble(row[3]);
+      cpu.systemTimeS = Double.parseDouble(row[4]);
+    }
+    return new MetricsTrace(timestampsMs, snapshots);
+  }
+
+  public static CompositeMetrics createMetrics() {
+    return new CompositeMetrics()
+        .putValidMetric(TimeMetrics.class, new TimeMetrics())
+        .putValidMetric(CpuMetrics.class, new CpuMetrics());
+  }
+
+  public static CompositeMetricsSerializer createSerializer() {
+    return new CompositeMetricsSerializer()
+        .addMetricsSerializer(TimeMetrics.class, new TimeMetricsSerializer())
+        .addMetricsSerializer(CpuMetrics.class, new CpuMetricsSerializer());
+  }
+}
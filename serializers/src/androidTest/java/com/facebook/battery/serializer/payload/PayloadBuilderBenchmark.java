@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.serializer.payload;
+
+import static org.junit.Assert.assertTrue;
+
+import android.util.Log;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.LargeTest;
+import com.facebook.battery.metrics.composite.CompositeMetrics;
+import com.facebook.battery.serializer.composite.CompositeMetricsSerializer;
+import com.facebook.battery.serializer.core.MetricsTrace;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Locale;
+import javax.annotation.Nullable;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Packs the recorded trace into payloads of a few sizes, with and without a preset dictionary,
+ * logging the compression ratio, the number of payloads and the throughput (in MB/s of
+ * uncompressed records).
+ *
+ * <p>Run on a device with {@code ./gradlew :serializers:connectedAndroidTest}.
+ */
+@LargeTest
+@RunWith(AndroidJUnit4.class)
+public class PayloadBuilderBenchmark {
+
+  private static final String TAG = "PayloadBuilderBenchmark";
+  private static final int WARMUP_ITERATIONS = 5;
+  private static final int ITERATIONS = 50;
+
+  /** Snapshots the dictionary is built from, as an app would ship one built offline. */
+  private static final int DICTIONARY_SNAPSHOTS = 64;
+
+  private final CompositeMetricsSerializer mSerializer = MetricsTrace.createSerializer();
+  private CompositeMetrics[] mSnapshots;
+  private byte[] mDictionary;
+
+  @Before
+  public void setUp() throws Exception {
+    CompositeMetrics[] trace = MetricsTrace.load().snapshots;
+    mDictionary =
+        PayloadBuilder.createDictionary(
+            mSerializer, Arrays.asList(trace).subList(0, DICTIONARY_SNAPSHOTS));
+    mSnapshots = Arrays.copyOfRange(trace, DICTIONARY_SNAPSHOTS, trace.length);
+  }
+
+  @Test
+  public void benchmarkSmallPayloads() throws Exception {
+    run(1024, null, 2.5);
+    run(1024, mDictionary, 2.5);
+  }
+
+  @Test
+  public void benchmarkMediumPayloads() throws Exception {
+    run(4 * 1024, null, 3);
+    run(4 * 1024, mDictionary, 3);
+  }
+
+  @Test
+  public void benchmarkLargePayloads() throws Exception {
+    run(64 * 1024, null, 3.5);
+    run(64 * 1024, mDictionary, 3.5);
+  }
+
+  private void run(int budget, @Nullable byte[] dictionary, double minRatio) throws IOException {
+    PayloadBuilder<CompositeMetrics> builder =
+        new PayloadBuilder<>(mSerializer, budget, dictionary);
+    try {
+      Result result = pack(builder);
+      for (int i = 1; i < WARMUP_ITERATIONS; i++) {
+        result = pack(builder);
+      }
+
+      long start = System.nanoTime();
+      for (int i = 0; i < ITERATIONS; i++) {
+        result = pack(builder);
+      }
+      long elapsedNs = System.nanoTime() - start;
+
+      double ratio = (double) result.uncompressed / result.compressed;
+      double megabytes = (double) result.uncompressed * ITERATIONS / (1024 * 1024);
+      Log.i(
+          TAG,
+          String.format(
+              Locale.US,
+              "budget %6d, %-13s: %d bytes in %d payloads (%.1fx), %.1f MB/s",
+              budget,
+              dictionary == null ? "no dictionary" : "dictionary",
+              result.compressed,
+              result.payloads,
+              ratio,
+              megabytes / (elapsedNs / 1e9)));
+      assertTrue("Compression ratio " + ratio + " below " + minRatio, ratio >= minRatio);
+    } finally {
+      builder.release();
+    }
+  }
+
+  private Result pack(PayloadBuilder<CompositeMetrics> builder) throws IOException {
+    Result result = new Result();
+    for (CompositeMetrics snapshot : mSnapshots) {
+      if (!builder.add(snapshot)) {
+        result.seal(builder);
+        builder.add(snapshot);
+      }
+    }
+    result.seal(builder);
+    return result;
+  }
+
+  private static final class Result {
+    long uncompressed;
+    long compressed;
+    int payloads;
+
+    void seal(PayloadBuilder<CompositeMetrics> builder) {
+      uncompressed += builder.getUncompressedSize();
+      compressed += builder.seal().remaining();
+      payloads++;
+      builder.reset();
+    }
+  }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.serializer.timeseries;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.util.Log;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.LargeTest;
+import com.facebook.battery.metrics.composite.CompositeMetrics;
+import com.facebook.battery.serializer.composite.CompositeMetricsSerializer;
+import com.facebook.battery.serializer.core.MetricsTrace;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Locale;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Compares the batch encoding of the recorded trace with serializing every snapshot, logging the
+ * compression ratio and throughput (in MB/s of individually serialized snapshots).
+ *
+ * <p>Run on a device with {@code ./gradlew :serializers:connectedAndroidTest}.
+ */
+@LargeTest
+@RunWith(AndroidJUnit4.class)
+public class MetricsBatchBenchmark {
+
+  private static final String TAG = "MetricsBatchBenchmark";
+  private static final int WARMUP_ITERATIONS = 20;
+  private static final int ITERATIONS = 200;
+
+  private final CompositeMetricsSerializer mSerializer = MetricsTrace.createSerializer();
+  private MetricsTrace mTrace;
+  private int mIndividualSize;
+
+  @Before
+  public void setUp() throws Exception {
+    mTrace = MetricsTrace.load();
+
+    ByteArrayOutputStream individual = new ByteArrayOutputStream();
+    DataOutputStream output = new DataOutputStream(individual);
+    for (CompositeMetrics snapshot : mTrace.snapshots) {
+      output.writeLong(0);
+      mSerializer.serialize(snapshot, output);
+    }
+    mIndividualSize = individual.size();
+  }
+
+  @Test
+  public void benchmarkEncode() throws Exception {
+    ByteArrayOutputStream batch = new ByteArrayOutputStream();
+    for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+      encode(batch);
+    }
+
+    long start = System.nanoTime();
+    for (int i = 0; i < ITERATIONS; i++) {
+      encode(batch);
+    }
+    long elapsedNs = System.nanoTime() - start;
+
+    Log.i(
+        TAG,
+        String.format(
+            Locale.US,
+            "%d snapshots: %d bytes serialized individually, %d bytes batched (%.1fx)",
+            mTrace.snapshots.length,
+            mIndividualSize,
+            batch.size(),
+            (double) mIndividualSize / batch.size()));
+    Log.i(TAG, String.format(Locale.US, "encode: %.1f MB/s", megabytesPerSecond(elapsedNs)));
+    assertTrue(batch.size() < mIndividualSize);
+  }
+
+  @Test
+  public void benchmarkDecode() throws Exception {
+    ByteArrayOutputStream batch = new ByteArrayOutputStream();
+    encode(batch);
+    byte[] encoded = batch.toByteArray();
+    CompositeMetrics output = MetricsTrace.createMetrics();
+    MetricsBatchDecoder<CompositeMetrics> decoder = createDecoder(encoded);
+    for (CompositeMetrics snapshot : mTrace.snapshots) {
+      assertTrue(decoder.next(output));
+      assertEquals(snapshot, output);
+    }
+    for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+      decode(encoded, output);
+    }
+
+    long start = System.nanoTime();
+    for (int i = 0; i < ITERATIONS; i++) {
+      decode(encoded, output);
+    }
+    long elapsedNs = System.nanoTime() - start;
+
+    Log.i(TAG, String.format(Locale.US, "decode: %.1f MB/s", megabytesPerSecond(elapsedNs)));
+  }
+
+  private void encode(ByteArrayOutputStream batch) throws IOException {
+    batch.reset();
+    MetricsBatchEncoder<CompositeMetrics> encoder =
+        new MetricsBatchEncoder<>(mSerializer, new DataOutputStream(batch));
+    for (int i = 0; i < mTrace.snapshots.length; i++) {
+      encoder.add(mTrace.timestampsMs[i], mTrace.snapshots[i]);
+    }
+    encoder.finish();
+  }
+
+  private void decode(byte[] encoded, CompositeMetrics output) throws IOException {
+    MetricsBatchDecoder<CompositeMetrics> decoder = createDecoder(encoded);
+    while (decoder.next(output)) {
+      // Only decoding
+    }
+  }
+
+  private MetricsBatchDecoder<CompositeMetrics> createDecoder(byte[] encoded) {
+    return new MetricsBatchDecoder<>(
+        mSerializer, new DataInputStream(new ByteArrayInputStream(encoded)));
+  }
+
+  private double megabytesPerSecond(long elapsedNs) {
+    return (double) mIndividualSize * ITERATIONS / (1024 * 1024) / (elapsedNs / 1e9);
+  }
+}
@@ -10,6 +10,7 @@ package com.facebook.battery.serializer.appwakeup
 import com.facebook.battery.metrics.appwakeup.AppWakeupMetrics
 import com.facebook.battery.metrics.appwakeup.AppWakeupMetrics.WakeupDetails
 import com.facebook.battery.metrics.appwakeup.AppWakeupMetrics.WakeupReason
+import com.facebook.battery.serializer.core.StringTable
 import com.facebook.battery.serializer.core.SystemMetricsSerializer
 import java.io.DataInput
 import java.io.DataOutput
@@ -21,12 +22,17 @@ class AppWakeupMetricsSerializer : SystemMetricsSerializer<AppWakeupMetrics?>()
 
   @Throws(IOException::class)
   override fun serializeContents(metrics: AppWakeupMetrics, output: DataOutput) {
+    val stringTable = StringTable.of(output)
     output.writeInt(metrics.appWakeups.size())
     for (i in 0 until metrics.appWakeups.size()) {
       val wakeupName = metrics.appWakeups.keyAt(i)
       val details = metrics.appWakeups.valueAt(i)
-      output.writeInt(wakeupName.length)
-      output.writeChars(wakeupName)
+      if (stringTable != null) {
+        stringTable.writeString(output, wakeupName)
+      } else {
+        output.writeInt(wakeupName.length)
+        output.writeChars(wakeupName)
+      }
       output.writeInt(details.reason.ordinal)
       output.writeLong(details.count)
       output.writeLong(details.wakeupTimeMs)
@@ -36,9 +42,15 @@ class AppWakeupMetricsSerializer : SystemMetricsSerializer<AppWakeupMetrics?>()
   @Throws(IOException::class)
   override fun deserializeContents(metrics: AppWakeupMetrics, input: DataInput): Boolean {
     metrics.appWakeups.clear()
+    val stringTable = StringTable.of(input)
     val size = input.readInt()
     for (i in 0 until size) {
-      val wakeupName = readChars(input, input.readInt())
+      val wakeupName =
+          if (stringTable != null) {
+            stringTable.readString(input) ?: return false
+          } else {
+            readChars(input, input.readInt())
+          }
       val reason = WakeupReason.entries[input.readInt()]
       val count = input.readLong()
       val timeMs = input.readLong()
@@ -8,6 +8,7 @@
 package com.facebook.battery.serializer.bluetooth
 
 import com.facebook.battery.metrics.bluetooth.BluetoothMetrics
+import com.facebook.battery.serializer.core.CompactDataOutput
 import com.facebook.battery.serializer.core.SystemMetricsSerializer
 import java.io.DataInput
 import java.io.DataOutput
@@ -25,6 +26,12 @@ class BluetoothMetricsSerializer : SystemMetricsSerializer<BluetoothMetrics?>()
     output.writeLong(metrics.bleOpportunisticScanDurationMs)
   }
 
+  override fun getContentsSize(metrics: BluetoothMetrics): Int =
+      sizeOf(metrics.bleScanCount.toLong()) +
+          sizeOf(metrics.bleScanDurationMs) +
+          sizeOf(metrics.bleOpportunisticScanCount.toLong()) +
+          sizeOf(metrics.bleOpportunisticScanDurationMs)
+
   @Throws(IOException::class)
   override fun deserializeContents(metrics: BluetoothMetrics, input: DataInput): Boolean {
     metrics.bleScanCount = input.readInt()
@@ -36,5 +43,8 @@ class BluetoothMetricsSerializer : SystemMetricsSerializer<BluetoothMetrics?>()
 
   companion object {
     private const val serialVersionUID = -4_085_774_432_413_599_882L
+
+    private fun sizeOf(value: Long): Int =
+        CompactDataOutput.varLongSize(CompactDataOutput.zigzag(value))
   }
 }
@@ -8,6 +8,7 @@
 package com.facebook.battery.serializer.camera
 
 import com.facebook.battery.metrics.camera.CameraMetrics
+import com.facebook.battery.serializer.core.CompactDataOutput
 import com.facebook.battery.serializer.core.SystemMetricsSerializer
 import java.io.DataInput
 import java.io.DataOutput
@@ -23,6 +24,9 @@ class CameraMetricsSerializer : SystemMetricsSerializer<CameraMetrics?>() {
     output.writeLong(metrics.cameraPreviewTimeMs)
   }
 
+  override fun getContentsSize(metrics: CameraMetrics): Int =
+      sizeOf(metrics.cameraOpenTimeMs) + sizeOf(metrics.cameraPreviewTimeMs)
+
   @Throws(IOException::class)
   override fun deserializeContents(metrics: CameraMetrics, input: DataInput): Boolean {
     metrics.cameraOpenTimeMs = input.readLong()
@@ -32,5 +36,8 @@ class CameraMetricsSerializer : SystemMetricsSerializer<CameraMetrics?>() {
 
   companion object {
     private const val serialVersionUID = -5_544_646_103_548_483_595L
+
+    private fun sizeOf(value: Long): Int =
+        CompactDataOutput.varLongSize(CompactDataOutput.zigzag(value))
   }
 }
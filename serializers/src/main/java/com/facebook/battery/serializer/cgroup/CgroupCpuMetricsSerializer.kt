@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.serializer.cgroup
+
+import com.facebook.battery.metrics.cgroup.CgroupCpuMetrics
+import com.facebook.battery.serializer.core.CompactDataOutput
+import com.facebook.battery.serializer.core.SystemMetricsSerializer
+import com.facebook.battery.serializer.cpu.CpuMetricsSerializer
+import java.io.DataInput
+import java.io.DataOutput
+import java.io.IOException
+
+class CgroupCpuMetricsSerializer : SystemMetricsSerializer<CgroupCpuMetrics?>() {
+
+  private val cpuMetricsSerializer = CpuMetricsSerializer()
+
+  override fun getTag(): Long = serialVersionUID
+
+  @Throws(IOException::class)
+  override fun serializeContents(metrics: CgroupCpuMetrics, output: DataOutput) {
+    output.writeInt(metrics.cpuMetrics.size)
+    for (cpuMetrics in metrics.cpuMetrics) {
+      cpuMetricsSerializer.serializeContents(cpuMetrics, output)
+    }
+  }
+
+  override fun getContentsSize(metrics: CgroupCpuMetrics): Int {
+    var size = sizeOf(metrics.cpuMetrics.size.toLong())
+    for (cpuMetrics in metrics.cpuMetrics) {
+      size += cpuMetricsSerializer.getContentsSize(cpuMetrics)
+    }
+    return size
+  }
+
+  @Throws(IOException::class)
+  override fun deserializeContents(metrics: CgroupCpuMetrics, input: DataInput): Boolean {
+    val groups = input.readInt()
+    if (groups != metrics.cpuMetrics.size) {
+      return false
+    }
+    for (cpuMetrics in metrics.cpuMetrics) {
+      if (!cpuMetricsSerializer.deserializeContents(cpuMetrics, input)) {
+        return false
+      }
+    }
+    return true
+  }
+
+  companion object {
+    private const val serialVersionUID = -1_844_273_646_770_051_375L
+
+    private fun sizeOf(value: Long): Int =
+        CompactDataOutput.varLongSize(CompactDataOutput.zigzag(value))
+  }
+}
@@ -10,18 +10,49 @@ package com.facebook.battery.serializer.composite;
 import androidx.collection.SimpleArrayMap;
 import com.facebook.battery.metrics.composite.CompositeMetrics;
 import com.facebook.battery.metrics.core.SystemMetrics;
+import com.facebook.battery.serializer.core.CompactDataInput;
+import com.facebook.battery.serializer.core.CompactDataOutput;
+import com.facebook.battery.serializer.core.MetricValues;
+import com.facebook.battery.serializer.core.MetricValuesInput;
+import com.facebook.battery.serializer.core.SerializerTags;
+import com.facebook.battery.serializer.core.StringTable;
 import com.facebook.battery.serializer.core.SystemMetricsSerializer;
 import com.facebook.common.preconditions.Preconditions;
 import com.facebook.infer.annotation.Nullsafe;
+import java.io.ByteArrayOutputStream;
 import java.io.DataInput;
 import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
+import javax.annotation.Nullable;
 
+/**
+ * Serializes all the metrics in a CompositeMetrics object that have a registered serializer.
+ *
+ * <p>In the current version of the format every metric is written as a section prefixed with its
+ * length: sections without a registered serializer are skipped when reading, and {@link
+ * CompositeMetricsView} can decode a single metric without reading the others.
+ *
+ * <p>Besides the usual format, records can also be written relative to a baseline with {@link
+ * #serializeDelta}: metrics identical to the baseline take two bytes and otherwise only the values
+ * that changed are written, as the difference from the baseline. This is meant for periodically
+ * persisting cumulative snapshots that barely change between writes.
+ */
 @Nullsafe(Nullsafe.Mode.LOCAL)
 public class CompositeMetricsSerializer extends SystemMetricsSerializer<CompositeMetrics> {
 
   private static final long serialVersionUID = -3137023965338009377L;
 
+  /** The metric is identical to the baseline. */
+  private static final int DELTA_UNCHANGED = 0;
+
+  /** A bitmap of the changed values, followed by their differences from the baseline. */
+  private static final int DELTA_CHANGED_VALUES = 1;
+
+  /** Not comparable with the baseline: written with serializeContents. */
+  private static final int DELTA_FULL = 2;
+
   @SuppressWarnings("rawtypes")
   private final SimpleArrayMap<Class<? extends SystemMetrics>, SystemMetricsSerializer>
       mSerializers = new SimpleArrayMap<>();
@@ -34,6 +65,14 @@ public class CompositeMetricsSerializer extends SystemMetricsSerializer<Composit
   private final SimpleArrayMap<Long, Class<? extends SystemMetrics>> mDeserializerClasses =
       new SimpleArrayMap<>();
 
+  private final MetricValues mValues = new MetricValues();
+  private final MetricValues mBaselineValues = new MetricValues();
+  private final MetricValuesInput mValuesInput = new MetricValuesInput(mValues);
+
+  private final SectionBuffer mSection = new SectionBuffer();
+  private final DataOutputStream mSectionStream = new DataOutputStream(mSection);
+  @Nullable private CompactDataOutput mSectionOutput;
+
   @SuppressWarnings({"unchecked", "rawtypes"})
   public <T extends SystemMetrics<T>> CompositeMetricsSerializer addMetricsSerializer(
       Class<T> metricsClass, SystemMetricsSerializer<T> serializer) {
@@ -60,9 +99,15 @@ public class CompositeMetricsSerializer extends SystemMetricsSerializer<Composit
     return serialVersionUID;
   }
 
-  @SuppressWarnings({"unchecked", "rawtypes"})
   @Override
   public void serializeContents(CompositeMetrics metrics, DataOutput output) throws IOException {
+    serializeContents(metrics, output, VERSION_3);
+  }
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  @Override
+  public synchronized void serializeContents(
+      CompositeMetrics metrics, DataOutput output, int version) throws IOException {
     int size = mSerializers.size();
     int validMetrics = 0;
     for (int i = 0; i < size; i++) {
@@ -70,20 +115,255 @@ public class CompositeMetricsSerializer extends SystemMetricsSerializer<Composit
         validMetrics++;
       }
     }
-    output.writeInt(validMetrics);
+
+    // Version 2 has to stay readable by older versions, which don't know about sections; and
+    // MetricValues records values rather than bytes, so a section would be replayed byte by byte
+    boolean sections = version != VERSION_2 && !(output instanceof MetricValues);
+    output.writeInt(sections ? -validMetrics - 1 : validMetrics);
+
+    StringTable stringTable = StringTable.of(output);
     for (int i = 0; i < size; i++) {
       Class metricsClass = mSerializers.keyAt(i);
       if (metrics.isValid(metricsClass)) {
-        SystemMetricsSerializer serializer = mSerializers.valueAt(i);
-        output.writeLong(Preconditions.checkNotNull(serializer).getTag());
-        serializer.serializeContents(metrics.getMetric(metricsClass), output);
+        SystemMetricsSerializer serializer = Preconditions.checkNotNull(mSerializers.valueAt(i));
+        SystemMetrics metric = metrics.getMetric(metricsClass);
+        SerializerTags.writeTag(output, serializer.getTag(), version);
+        if (sections) {
+          // The length comes first: buffer the section, which also defines its strings in order
+          mSection.reset();
+          serializer.serializeContents(
+              metric,
+              CompactDataOutput.isCompact(output) ? getSectionOutput(stringTable) : mSectionStream,
+              version);
+          output.writeInt(mSection.size());
+          mSection.writeTo(output);
+        } else {
+          serializer.serializeContents(metric, output, version);
+        }
+      }
+    }
+  }
+
+  private CompactDataOutput getSectionOutput(@Nullable StringTable stringTable) {
+    CompactDataOutput sectionOutput = mSectionOutput;
+    if (sectionOutput == null || sectionOutput.getStringTable() != stringTable) {
+      sectionOutput = new CompactDataOutput(mSectionStream, stringTable);
+      mSectionOutput = sectionOutput;
+    }
+    return sectionOutput;
+  }
+
+  /** Adds up the sizes of the sections, as computed by the serializer of every metric. */
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  @Override
+  public int getContentsSize(CompositeMetrics metrics) throws IOException {
+    int contentsSize = 0;
+    int validMetrics = 0;
+    for (int i = 0, size = mSerializers.size(); i < size; i++) {
+      Class metricsClass = mSerializers.keyAt(i);
+      if (metrics.isValid(metricsClass)) {
+        SystemMetricsSerializer serializer = Preconditions.checkNotNull(mSerializers.valueAt(i));
+        int length = serializer.getContentsSize(metrics.getMetric(metricsClass));
+        contentsSize +=
+            SerializerTags.getTagSize(serializer.getTag(), VERSION_3)
+                + CompactDataOutput.varLongSize(CompactDataOutput.zigzag(length))
+                + length;
+        validMetrics++;
+      }
+    }
+    return CompactDataOutput.varLongSize(CompactDataOutput.zigzag(-validMetrics - 1))
+        + contentsSize;
+  }
+
+  /**
+   * Writes the valid metrics relative to the baseline; the record can only be read back with
+   * {@link #deserializeDelta} and the same baseline.
+   *
+   * <p>Values are compared with the baseline generically by recording what each metric's
+   * serializer writes: if the number or types of values differ (for example, a map gained an
+   * entry), the metric is written in full instead.
+   */
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  public synchronized void serializeDelta(
+      CompositeMetrics metrics, CompositeMetrics baseline, DataOutput output) throws IOException {
+    CompactDataOutput compactOutput =
+        output instanceof CompactDataOutput
+            ? (CompactDataOutput) output
+            : new CompactDataOutput(output);
+
+    int size = mSerializers.size();
+    int validMetrics = 0;
+    for (int i = 0; i < size; i++) {
+      if (metrics.isValid(mSerializers.keyAt(i))) {
+        validMetrics++;
+      }
+    }
+    compactOutput.writeInt(validMetrics);
+
+    for (int i = 0; i < size; i++) {
+      Class metricsClass = mSerializers.keyAt(i);
+      if (!metrics.isValid(metricsClass)) {
+        continue;
+      }
+
+      SystemMetricsSerializer serializer = Preconditions.checkNotNull(mSerializers.valueAt(i));
+      SystemMetrics metric = metrics.getMetric(metricsClass);
+      SerializerTags.writeTag(compactOutput, serializer.getTag(), VERSION_3);
+
+      if (!baseline.isValid(metricsClass)) {
+        compactOutput.writeByte(DELTA_FULL);
+        serializer.serializeContents(metric, compactOutput);
+        continue;
+      }
+
+      mValues.clear();
+      serializer.serializeContents(metric, mValues);
+      mBaselineValues.clear();
+      serializer.serializeContents(baseline.getMetric(metricsClass), mBaselineValues);
+
+      if (!mValues.hasSameShape(mBaselineValues)) {
+        compactOutput.writeByte(DELTA_FULL);
+        serializer.serializeContents(metric, compactOutput);
+      } else if (!hasChanges(mValues, mBaselineValues)) {
+        compactOutput.writeByte(DELTA_UNCHANGED);
+      } else {
+        compactOutput.writeByte(DELTA_CHANGED_VALUES);
+        writeChangedValues(mValues, mBaselineValues, compactOutput);
       }
     }
   }
 
+  /** Reads a record written by {@link #serializeDelta} with the same baseline. */
   @SuppressWarnings({"unchecked", "rawtypes"})
+  public synchronized boolean deserializeDelta(
+      CompositeMetrics metrics, CompositeMetrics baseline, DataInput input) throws IOException {
+    CompactDataInput compactInput =
+        input instanceof CompactDataInput ? (CompactDataInput) input : new CompactDataInput(input);
+
+    SimpleArrayMap<Class<? extends SystemMetrics>, SystemMetrics> all = metrics.getMetrics();
+    for (int i = 0, size = all.size(); i < size; i++) {
+      metrics.setIsValid(all.keyAt(i), false);
+    }
+
+    int size = compactInput.readInt();
+    for (int i = 0; i < size; i++) {
+      long tag = SerializerTags.readTag(compactInput, VERSION_3);
+      SystemMetricsSerializer deserializer = mDeserializers.get(tag);
+      Class<? extends SystemMetrics> metricsClass = mDeserializerClasses.get(tag);
+      if (deserializer == null || metricsClass == null) {
+        return false;
+      }
+
+      SystemMetrics metric = metrics.getMetric(metricsClass);
+      int mode = compactInput.readUnsignedByte();
+      if (mode == DELTA_FULL) {
+        if (!deserializer.deserializeContents(metric, compactInput)) {
+          return false;
+        }
+      } else if (mode == DELTA_UNCHANGED || mode == DELTA_CHANGED_VALUES) {
+        if (!baseline.isValid(metricsClass)) {
+          return false;
+        }
+
+        SystemMetrics baselineMetric = baseline.getMetric(metricsClass);
+        if (mode == DELTA_UNCHANGED) {
+          metric.set(baselineMetric);
+        } else {
+          mBaselineValues.clear();
+          deserializer.serializeContents(baselineMetric, mBaselineValues);
+          mValues.copyFrom(mBaselineValues);
+          readChangedValues(mValues, compactInput);
+
+          mValuesInput.rewind();
+          if (!deserializer.deserializeContents(metric, mValuesInput)) {
+            return false;
+          }
+        }
+      } else {
+        return false;
+      }
+
+      metrics.setIsValid(metricsClass, true);
+    }
+    return true;
+  }
+
+  private static boolean hasChanges(MetricValues values, MetricValues baseline) {
+    for (int i = 0, size = values.size(); i < size; i++) {
+      if (values.valueAt(i) != baseline.valueAt(i)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Writes the values that differ from the baseline in groups of 8: a bitmap of the changed values
+   * of the group followed by their differences. Integers are subtracted and floating point values
+   * are xor-ed, which keeps the varints short when only the low bits changed.
+   */
+  private static void writeChangedValues(
+      MetricValues values, MetricValues baseline, CompactDataOutput output) throws IOException {
+    for (int start = 0, size = values.size(); start < size; start += 8) {
+      int end = Math.min(start + 8, size);
+      int bitmap = 0;
+      for (int i = start; i < end; i++) {
+        if (values.valueAt(i) != baseline.valueAt(i)) {
+          bitmap |= 1 << (i - start);
+        }
+      }
+      output.writeByte(bitmap);
+
+      for (int i = start; i < end; i++) {
+        long value = values.valueAt(i);
+        long baselineValue = baseline.valueAt(i);
+        if (value == baselineValue) {
+          continue;
+        }
+
+        if (isFloatingPoint(values.typeAt(i))) {
+          output.writeVarLong(value ^ baselineValue);
+        } else {
+          output.writeLong(value - baselineValue);
+        }
+      }
+    }
+  }
+
+  /** Applies the output of {@link #writeChangedValues} to a copy of the baseline values. */
+  private static void readChangedValues(MetricValues values, CompactDataInput input)
+      throws IOException {
+    for (int start = 0, size = values.size(); start < size; start += 8) {
+      int end = Math.min(start + 8, size);
+      int bitmap = input.readUnsignedByte();
+      for (int i = start; i < end; i++) {
+        if ((bitmap & (1 << (i - start))) == 0) {
+          continue;
+        }
+
+        long baselineValue = values.valueAt(i);
+        if (isFloatingPoint(values.typeAt(i))) {
+          values.setValueAt(i, baselineValue ^ input.readVarLong());
+        } else {
+          values.setValueAt(i, baselineValue + input.readLong());
+        }
+      }
+    }
+  }
+
+  private static boolean isFloatingPoint(byte type) {
+    return type == MetricValues.FLOAT || type == MetricValues.DOUBLE;
+  }
+
   @Override
   public boolean deserializeContents(CompositeMetrics metrics, DataInput input) throws IOException {
+    return deserializeContents(metrics, input, VERSION_3);
+  }
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  @Override
+  public boolean deserializeContents(CompositeMetrics metrics, DataInput input, int version)
+      throws IOException {
     // First, reset the metrics object to expect all invalid metrics
     SimpleArrayMap<Class<? extends SystemMetrics>, SystemMetrics> all = metrics.getMetrics();
     for (int i = 0, size = metrics.getMetrics().size(); i < size; i++) {
@@ -91,16 +371,34 @@ public class CompositeMetricsSerializer extends SystemMetricsSerializer<Composit
     }
 
     int size = input.readInt();
+    boolean sections = size < 0;
+    if (sections) {
+      size = -size - 1;
+    }
+
     for (int i = 0; i < size; i++) {
-      long tag = input.readLong();
+      long tag = SerializerTags.readTag(input, version);
+      int length = sections ? input.readInt() : -1;
+      if (tag == SerializerTags.UNKNOWN_TAG || (sections && length < 0)) {
+        return false;
+      }
+
       SystemMetricsSerializer deserializer = mDeserializers.get(tag);
       Class<? extends SystemMetrics> metricsClass = mDeserializerClasses.get(tag);
-      if (deserializer == null || metricsClass == null) {
-        return false;
+      if (deserializer == null
+          || metricsClass == null
+          || !metrics.getMetrics().containsKey(metricsClass)) {
+        // Sections of metrics without a serializer or that weren't asked for can simply be
+        // skipped, unless they could define strings used by the following records
+        if (!sections || StringTable.of(input) != null) {
+          return false;
+        }
+        skipFully(input, length);
+        continue;
       }
 
       SystemMetrics metric = metrics.getMetric(metricsClass);
-      if (!deserializer.deserializeContents(metric, input)) {
+      if (!deserializer.deserializeContents(metric, input, version)) {
         return false;
       }
 
@@ -108,4 +406,33 @@ public class CompositeMetricsSerializer extends SystemMetricsSerializer<Composit
     }
     return true;
   }
+
+  static void skipFully(DataInput input, int length) throws IOException {
+    if (length < 0) {
+      throw new IOException("Invalid section length: " + length);
+    }
+
+    while (length > 0) {
+      int skipped = input.skipBytes(length);
+      if (skipped <= 0) {
+        throw new EOFException();
+      }
+      length -= skipped;
+    }
+  }
+
+  /** Exposes the buffer to copy it without allocating. */
+  private static final class SectionBuffer extends ByteArrayOutputStream {
+
+    void writeTo(DataOutput output) throws IOException {
+      output.write(buf, 0, count);
+    }
+  }
+
+  /** Returns the serializer registered for the metrics class, if any. */
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  @Nullable
+  <T extends SystemMetrics<T>> SystemMetricsSerializer<T> getSerializer(Class<T> metricsClass) {
+    return mSerializers.get(metricsClass);
+  }
 }
@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.serializer.composite;
+
+import com.facebook.battery.metrics.core.SystemMetrics;
+import com.facebook.battery.serializer.core.ByteBufferDataInput;
+import com.facebook.battery.serializer.core.CompactByteBufferDataInput;
+import com.facebook.battery.serializer.core.SerializerTags;
+import com.facebook.battery.serializer.core.SystemMetricsSerializer;
+import com.facebook.infer.annotation.Nullsafe;
+import java.io.DataInput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Reads individual metrics out of serialized CompositeMetrics records without deserializing the
+ * rest of them, e.g. to extract only the NetworkMetrics of a large number of persisted records.
+ *
+ * <p>{@link #next} only reads the tag and length of every section of a record and skips over the
+ * contents; {@link #getMetric} then decodes a single metric on demand. Records are read from a
+ * ByteBuffer (e.g. a record from a MetricsLog, or a memory mapped file of consecutive records) and
+ * must have been written by {@link CompositeMetricsSerializer#serialize} or {@link
+ * SystemMetricsSerializer#serializeTo} with the current version of the format, which has sections,
+ * and without a string table.
+ *
+ * <p>A view is meant to be reused across records, and isn't thread safe.
+ */
+@Nullsafe(Nullsafe.Mode.LOCAL)
+public class CompositeMetricsView {
+
+  private final CompositeMetricsSerializer mSerializer;
+
+  private ByteBuffer mRecord = ByteBuffer.allocate(0);
+  private int mSections;
+  private long[] mTags = new long[8];
+  private int[] mOffsets = new int[8];
+  private int[] mLengths = new int[8];
+
+  /** @param serializer used to decode the metrics requested from the view */
+  public CompositeMetricsView(CompositeMetricsSerializer serializer) {
+    mSerializer = serializer;
+  }
+
+  /**
+   * Reads the record at the buffer's position and moves past it.
+   *
+   * @return false if the buffer doesn't start with a valid record, or it was written with an older
+   *     version of the format; the view is empty in that case
+   */
+  public boolean next(ByteBuffer buffer) throws IOException {
+    mSections = 0;
+    mRecord = buffer.duplicate();
+    mRecord.order(ByteOrder.BIG_ENDIAN);
+
+    DataInput input = mSerializer.readHeader(new ByteBufferDataInput(mRecord), null);
+    if (input == null) {
+      return false;
+    }
+
+    // Only records of version 3 and up have sections, and their count is negative
+    int size = input.readInt();
+    if (size >= 0) {
+      return false;
+    }
+    size = -size - 1;
+    if (size > mRecord.remaining()) {
+      return false;
+    }
+
+    ensureCapacity(size);
+    for (int i = 0; i < size; i++) {
+      long tag = SerializerTags.readTag(input, SystemMetricsSerializer.VERSION_3);
+      int length = input.readInt();
+      if (length < 0 || length > mRecord.remaining()) {
+        mSections = 0;
+        return false;
+      }
+
+      mTags[i] = tag;
+      mOffsets[i] = mRecord.position();
+      mLengths[i] = length;
+      mRecord.position(mRecord.position() + length);
+    }
+
+    mSections = size;
+    buffer.position(mRecord.position());
+    return true;
+  }
+
+  /** Returns true if the current record has a section for the metrics class. */
+  @SuppressWarnings("rawtypes")
+  public boolean hasMetric(Class<? extends SystemMetrics> metricsClass) {
+    return findSection(metricsClass) >= 0;
+  }
+
+  /**
+   * Decodes the metrics class from the current record.
+   *
+   * @return false if the record doesn't have this metric (or no serializer was registered for it)
+   *     or it couldn't be decoded
+   */
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  public <T extends SystemMetrics<T>> boolean getMetric(Class<T> metricsClass, T output)
+      throws IOException {
+    SystemMetricsSerializer<T> serializer = mSerializer.getSerializer(metricsClass);
+    if (serializer == null) {
+      return false;
+    }
+
+    int section = findSection(serializer.getTag());
+    if (section < 0) {
+      return false;
+    }
+
+    ByteBuffer contents = mRecord.duplicate();
+    contents.order(ByteOrder.BIG_ENDIAN);
+    contents.limit(mOffsets[section] + mLengths[section]);
+    contents.position(mOffsets[section]);
+    return serializer.deserializeContents(output, new CompactByteBufferDataInput(contents));
+  }
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private int findSection(Class metricsClass) {
+    SystemMetricsSerializer serializer = mSerializer.getSerializer(metricsClass);
+    return serializer == null ? -1 : findSection(serializer.getTag());
+  }
+
+  private int findSection(long tag) {
+    for (int i = 0; i < mSections; i++) {
+      if (mTags[i] == tag) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private void ensureCapacity(int sections) {
+    if (mTags.length < sections) {
+      mTags = Arrays.copyOf(mTags, sections);
+      mOffsets = Arrays.copyOf(mOffsets, sections);
+      mLengths = Arrays.copyOf(mLengths, sections);
+    }
+  }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.serializer.contextswitch
+
+import com.facebook.battery.metrics.contextswitch.ContextSwitchMetrics
+import com.facebook.battery.serializer.core.CompactDataOutput
+import com.facebook.battery.serializer.core.SystemMetricsSerializer
+import java.io.DataInput
+import java.io.DataOutput
+import java.io.IOException
+
+class ContextSwitchMetricsSerializer : SystemMetricsSerializer<ContextSwitchMetrics?>() {
+
+  override fun getTag(): Long = serialVersionUID
+
+  @Throws(IOException::class)
+  override fun serializeContents(metrics: ContextSwitchMetrics, output: DataOutput) {
+    output.writeLong(metrics.voluntaryContextSwitches)
+    output.writeLong(metrics.nonvoluntaryContextSwitches)
+    output.writeLong(metrics.threadsCount)
+    output.writeLong(metrics.vmHwmKb)
+  }
+
+  override fun getContentsSize(metrics: ContextSwitchMetrics): Int =
+      sizeOf(metrics.voluntaryContextSwitches) +
+          sizeOf(metrics.nonvoluntaryContextSwitches) +
+          sizeOf(metrics.threadsCount) +
+          sizeOf(metrics.vmHwmKb)
+
+  @Throws(IOException::class)
+  override fun deserializeContents(metrics: ContextSwitchMetrics, input: DataInput): Boolean {
+    metrics.voluntaryContextSwitches = input.readLong()
+    metrics.nonvoluntaryContextSwitches = input.readLong()
+    metrics.threadsCount = input.readLong()
+    metrics.vmHwmKb = input.readLong()
+    return true
+  }
+
+  companion object {
+    private const val serialVersionUID = -589_176_158_956_207_582L
+
+    private fun sizeOf(value: Long): Int =
+        CompactDataOutput.varLongSize(CompactDataOutput.zigzag(value))
+  }
+}
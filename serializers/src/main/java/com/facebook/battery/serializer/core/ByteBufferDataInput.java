@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.serializer.core;
+
+import com.facebook.infer.annotation.Nullsafe;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import javax.annotation.Nullable;
+
+/**
+ * Reads values written by DataOutputStream (or {@link ByteBufferDataOutput}) straight from a
+ * ByteBuffer. Like DataInputStream, reading past the end of the buffer throws an EOFException.
+ */
+@Nullsafe(Nullsafe.Mode.LOCAL)
+public class ByteBufferDataInput implements DataInput {
+
+  private final ByteBuffer mBuffer;
+
+  public ByteBufferDataInput(ByteBuffer buffer) {
+    mBuffer = buffer;
+  }
+
+  private ByteBuffer require(int bytes) throws EOFException {
+    if (mBuffer.remaining() < bytes) {
+      throw new EOFException();
+    }
+    return mBuffer;
+  }
+
+  @Override
+  public void readFully(byte[] b) throws IOException {
+    readFully(b, 0, b.length);
+  }
+
+  @Override
+  public void readFully(byte[] b, int off, int len) throws IOException {
+    require(len).get(b, off, len);
+  }
+
+  @Override
+  public int skipBytes(int n) {
+    int skipped = Math.max(0, Math.min(n, mBuffer.remaining()));
+    mBuffer.position(mBuffer.position() + skipped);
+    return skipped;
+  }
+
+  @Override
+  public boolean readBoolean() throws IOException {
+    return require(1).get() != 0;
+  }
+
+  @Override
+  public byte readByte() throws IOException {
+    return require(1).get();
+  }
+
+  @Override
+  public int readUnsignedByte() throws IOException {
+    return readByte() & 0xFF;
+  }
+
+  @Override
+  public short readShort() throws IOException {
+    return require(2).getShort();
+  }
+
+  @Override
+  public int readUnsignedShort() throws IOException {
+    return readShort() & 0xFFFF;
+  }
+
+  @Override
+  public char readChar() throws IOException {
+    return require(2).getChar();
+  }
+
+  @Override
+  public int readInt() throws IOException {
+    return require(4).getInt();
+  }
+
+  @Override
+  public long readLong() throws IOException {
+    return require(8).getLong();
+  }
+
+  @Override
+  public float readFloat() throws IOException {
+    return require(4).getFloat();
+  }
+
+  @Override
+  public double readDouble() throws IOException {
+    return require(8).getDouble();
+  }
+
+  @Override
+  public @Nullable String readLine() throws IOException {
+    throw new IOException("readLine isn't supported");
+  }
+
+  @Override
+  public String readUTF() throws IOException {
+    return DataInputStream.readUTF(this);
+  }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.serializer.core;
+
+import com.facebook.infer.annotation.Nullsafe;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.UTFDataFormatException;
+import java.nio.ByteBuffer;
+
+/**
+ * A DataOutput that writes straight into a ByteBuffer, with the same (big endian) encoding as
+ * DataOutputStream but without going through an OutputStream for every primitive.
+ *
+ * <p>Running out of space in the buffer throws a BufferOverflowException: use {@link
+ * SystemMetricsSerializer#serializedSize} to size it.
+ */
+@Nullsafe(Nullsafe.Mode.LOCAL)
+public class ByteBufferDataOutput implements DataOutput {
+
+  private final ByteBuffer mBuffer;
+
+  public ByteBufferDataOutput(ByteBuffer buffer) {
+    mBuffer = buffer;
+  }
+
+  protected ByteBuffer getBuffer() {
+    return mBuffer;
+  }
+
+  @Override
+  public void write(int b) {
+    mBuffer.put((byte) b);
+  }
+
+  @Override
+  public void write(byte[] b) {
+    mBuffer.put(b);
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) {
+    mBuffer.put(b, off, len);
+  }
+
+  @Override
+  public void writeBoolean(boolean v) {
+    mBuffer.put((byte) (v ? 1 : 0));
+  }
+
+  @Override
+  public void writeByte(int v) {
+    mBuffer.put((byte) v);
+  }
+
+  @Override
+  public void writeShort(int v) {
+    mBuffer.putShort((short) v);
+  }
+
+  @Override
+  public void writeChar(int v) {
+    mBuffer.putChar((char) v);
+  }
+
+  @Override
+  public void writeInt(int v) {
+    mBuffer.putInt(v);
+  }
+
+  @Override
+  public void writeLong(long v) {
+    mBuffer.putLong(v);
+  }
+
+  @Override
+  public void writeFloat(float v) {
+    mBuffer.putFloat(v);
+  }
+
+  @Override
+  public void writeDouble(double v) {
+    mBuffer.putDouble(v);
+  }
+
+  @Override
+  public void writeBytes(String s) {
+    for (int i = 0, length = s.length(); i < length; i++) {
+      mBuffer.put((byte) s.charAt(i));
+    }
+  }
+
+  @Override
+  public void writeChars(String s) {
+    for (int i = 0, length = s.length(); i < length; i++) {
+      mBuffer.putChar(s.charAt(i));
+    }
+  }
+
+  /** Writes the string in modified UTF-8, exactly like DataOutputStream does. */
+  @Override
+  public void writeUTF(String s) throws IOException {
+    int utfLength = getUTFLength(s);
+    if (utfLength > 0xFFFF) {
+      throw new UTFDataFormatException("String is too long: " + utfLength + " bytes");
+    }
+
+    mBuffer.putShort((short) utfLength);
+    for (int i = 0, length = s.length(); i < length; i++) {
+      char c = s.charAt(i);
+      if (c >= 0x0001 && c <= 0x007F) {
+        mBuffer.put((byte) c);
+      } else if (c > 0x07FF) {
+        mBuffer.put((byte) (0xE0 | ((c >> 12) & 0x0F)));
+        mBuffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+        mBuffer.put((byte) (0x80 | (c & 0x3F)));
+      } else {
+        mBuffer.put((byte) (0xC0 | ((c >> 6) & 0x1F)));
+        mBuffer.put((byte) (0x80 | (c & 0x3F)));
+      }
+    }
+  }
+
+  /** Returns the length of the modified UTF-8 that {@link #writeUTF} writes after the prefix. */
+  public static int getUTFLength(String s) {
+    int utfLength = 0;
+    for (int i = 0, length = s.length(); i < length; i++) {
+      char c = s.charAt(i);
+      if (c >= 0x0001 && c <= 0x007F) {
+        utfLength++;
+      } else if (c > 0x07FF) {
+        utfLength += 3;
+      } else {
+        utfLength += 2;
+      }
+    }
+    return utfLength;
+  }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.serializer.core;
+
+import com.facebook.infer.annotation.Nullsafe;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Reads the encoding of {@link CompactDataOutput} straight from a ByteBuffer, decoding varints
+ * from the buffer instead of byte by byte through a {@link ByteBufferDataInput}: used by {@link
+ * SystemMetricsSerializer#deserializeFrom}.
+ */
+@Nullsafe(Nullsafe.Mode.LOCAL)
+public class CompactByteBufferDataInput extends CompactDataInput {
+
+  /** A long never needs more than 10 bytes: anything longer is corrupt. */
+  private static final int MAX_VARINT_BYTES = 10;
+
+  private final ByteBuffer mBuffer;
+
+  public CompactByteBufferDataInput(ByteBuffer buffer) {
+    super(new ByteBufferDataInput(buffer));
+    mBuffer = buffer;
+  }
+
+  @Override
+  public long readVarLong() throws IOException {
+    ByteBuffer buffer = mBuffer;
+    long result = 0;
+    for (int i = 0; i < MAX_VARINT_BYTES; i++) {
+      if (!buffer.hasRemaining()) {
+        throw new EOFException();
+      }
+      int b = buffer.get();
+      result |= (long) (b & 0x7F) << (7 * i);
+      if ((b & 0x80) == 0) {
+        return result;
+      }
+    }
+    throw new IOException("Malformed varint");
+  }
+}
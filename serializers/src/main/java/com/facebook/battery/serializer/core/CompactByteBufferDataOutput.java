@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.serializer.core;
+
+import com.facebook.infer.annotation.Nullsafe;
+import java.nio.ByteBuffer;
+
+/**
+ * Writes the encoding of {@link CompactDataOutput} straight into a ByteBuffer, without stacking a
+ * CompactDataOutput on top of a {@link ByteBufferDataOutput}: used by {@link
+ * SystemMetricsSerializer#serializeTo}.
+ */
+@Nullsafe(Nullsafe.Mode.LOCAL)
+public class CompactByteBufferDataOutput extends ByteBufferDataOutput {
+
+  public CompactByteBufferDataOutput(ByteBuffer buffer) {
+    super(buffer);
+  }
+
+  /** See {@link CompactDataOutput#writeVarLong}. */
+  public void writeVarLong(long value) {
+    ByteBuffer buffer = getBuffer();
+    while ((value & ~0x7FL) != 0) {
+      buffer.put((byte) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+    buffer.put((byte) value);
+  }
+
+  @Override
+  public void writeShort(int v) {
+    writeVarLong(CompactDataOutput.zigzag((short) v));
+  }
+
+  @Override
+  public void writeChar(int v) {
+    writeVarLong(v & 0xFFFF);
+  }
+
+  @Override
+  public void writeInt(int v) {
+    writeVarLong(CompactDataOutput.zigzag(v));
+  }
+
+  @Override
+  public void writeLong(long v) {
+    writeVarLong(CompactDataOutput.zigzag(v));
+  }
+
+  @Override
+  public void writeChars(String s) {
+    for (int i = 0, length = s.length(); i < length; i++) {
+      writeChar(s.charAt(i));
+    }
+  }
+}
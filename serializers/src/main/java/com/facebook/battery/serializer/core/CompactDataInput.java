@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.serializer.core;
+
+import com.facebook.infer.annotation.Nullsafe;
+import java.io.DataInput;
+import java.io.IOException;
+import javax.annotation.Nullable;
+
+/** Reads values written by {@link CompactDataOutput}. */
+@Nullsafe(Nullsafe.Mode.LOCAL)
+public class CompactDataInput implements DataInput {
+
+  /** A long never needs more than 10 bytes: anything longer is corrupt. */
+  private static final int MAX_VARINT_BYTES = 10;
+
+  private final DataInput mInput;
+  @Nullable private final StringTable mStringTable;
+
+  public CompactDataInput(DataInput input) {
+    this(input, null);
+  }
+
+  public CompactDataInput(DataInput input, @Nullable StringTable stringTable) {
+    mInput = input;
+    mStringTable = stringTable;
+  }
+
+  public @Nullable StringTable getStringTable() {
+    return mStringTable;
+  }
+
+  public long readVarLong() throws IOException {
+    long result = 0;
+    for (int i = 0; i < MAX_VARINT_BYTES; i++) {
+      int b = mInput.readUnsignedByte();
+      result |= (long) (b & 0x7F) << (7 * i);
+      if ((b & 0x80) == 0) {
+        return result;
+      }
+    }
+    throw new IOException("Malformed varint");
+  }
+
+  public static long unzigzag(long value) {
+    return (value >>> 1) ^ -(value & 1);
+  }
+
+  @Override
+  public void readFully(byte[] b) throws IOException {
+    mInput.readFully(b);
+  }
+
+  @Override
+  public void readFully(byte[] b, int off, int len) throws IOException {
+    mInput.readFully(b, off, len);
+  }
+
+  @Override
+  public int skipBytes(int n) throws IOException {
+    return mInput.skipBytes(n);
+  }
+
+  @Override
+  public boolean readBoolean() throws IOException {
+    return mInput.readBoolean();
+  }
+
+  @Override
+  public byte readByte() throws IOException {
+    return mInput.readByte();
+  }
+
+  @Override
+  public int readUnsignedByte() throws IOException {
+    return mInput.readUnsignedByte();
+  }
+
+  @Override
+  public short readShort() throws IOException {
+    return (short) unzigzag(readVarLong());
+  }
+
+  @Override
+  public int readUnsignedShort() throws IOException {
+    return readShort() & 0xFFFF;
+  }
+
+  @Override
+  public char readChar() throws IOException {
+    return (char) readVarLong();
+  }
+
+  @Override
+  public int readInt() throws IOException {
+    return (int) unzigzag(readVarLong());
+  }
+
+  @Override
+  public long readLong() throws IOException {
+    return unzigzag(readVarLong());
+  }
+
+  @Override
+  public float readFloat() throws IOException {
+    return mInput.readFloat();
+  }
+
+  @Override
+  public double readDouble() throws IOException {
+    return mInput.readDouble();
+  }
+
+  @Override
+  public @Nullable String readLine() throws IOException {
+    return mInput.readLine();
+  }
+
+  @Override
+  public String readUTF() throws IOException {
+    return mInput.readUTF();
+  }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.serializer.core;
+
+import com.facebook.infer.annotation.Nullsafe;
+import java.io.DataOutput;
+import java.io.IOException;
+import javax.annotation.Nullable;
+
+/**
+ * A DataOutput that writes shorts, chars, ints and longs as LEB128 varints, used by version 3 of
+ * the serialization format: most metrics are small counters or deltas and fit in a byte or two
+ * instead of 4 or 8.
+ *
+ * <p>Signed values are zigzag encoded first so that small negative values (including -1 sentinels)
+ * stay small. Bytes, booleans, floats, doubles and UTF strings are written as is.
+ *
+ * <p>Must be read back with {@link CompactDataInput}.
+ */
+@Nullsafe(Nullsafe.Mode.LOCAL)
+public class CompactDataOutput implements DataOutput {
+
+  private final DataOutput mOutput;
+  @Nullable private final StringTable mStringTable;
+
+  public CompactDataOutput(DataOutput output) {
+    this(output, null);
+  }
+
+  public CompactDataOutput(DataOutput output, @Nullable StringTable stringTable) {
+    mOutput = output;
+    mStringTable = stringTable;
+  }
+
+  public @Nullable StringTable getStringTable() {
+    return mStringTable;
+  }
+
+  /** Writes an unsigned LEB128 varint: 7 bits per byte, with the high bit set on all but the last. */
+  public void writeVarLong(long value) throws IOException {
+    while ((value & ~0x7FL) != 0) {
+      mOutput.writeByte((int) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+    mOutput.writeByte((int) value);
+  }
+
+  /** Returns true if the output writes integers as varints, like this class. */
+  public static boolean isCompact(DataOutput output) {
+    return output instanceof CompactDataOutput || output instanceof CompactByteBufferDataOutput;
+  }
+
+  public static long zigzag(long value) {
+    return (value << 1) ^ (value >> 63);
+  }
+
+  /** Returns the number of bytes {@link #writeVarLong} writes for the value. */
+  public static int varLongSize(long value) {
+    int size = 1;
+    while ((value & ~0x7FL) != 0) {
+      size++;
+      value >>>= 7;
+    }
+    return size;
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    mOutput.write(b);
+  }
+
+  @Override
+  public void write(byte[] b) throws IOException {
+    mOutput.write(b);
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException {
+    mOutput.write(b, off, len);
+  }
+
+  @Override
+  public void writeBoolean(boolean v) throws IOException {
+    mOutput.writeBoolean(v);
+  }
+
+  @Override
+  public void writeByte(int v) throws IOException {
+    mOutput.writeByte(v);
+  }
+
+  @Override
+  public void writeShort(int v) throws IOException {
+    writeVarLong(zigzag((short) v));
+  }
+
+  @Override
+  public void writeChar(int v) throws IOException {
+    writeVarLong(v & 0xFFFF);
+  }
+
+  @Override
+  public void writeInt(int v) throws IOException {
+    writeVarLong(zigzag(v));
+  }
+
+  @Override
+  public void writeLong(long v) throws IOException {
+    writeVarLong(zigzag(v));
+  }
+
+  @Override
+  public void writeFloat(float v) throws IOException {
+    mOutput.writeFloat(v);
+  }
+
+  @Override
+  public void writeDouble(double v) throws IOException {
+    mOutput.writeDouble(v);
+  }
+
+  @Override
+  public void writeBytes(String s) throws IOException {
+    mOutput.writeBytes(s);
+  }
+
+  /** Written char by char so that it can be read back with {@link CompactDataInput#readChar()}. */
+  @Override
+  public void writeChars(String s) throws IOException {
+    for (int i = 0, length = s.length(); i < length; i++) {
+      writeChar(s.charAt(i));
+    }
+  }
+
+  @Override
+  public void writeUTF(String s) throws IOException {
+    mOutput.writeUTF(s);
+  }
+}
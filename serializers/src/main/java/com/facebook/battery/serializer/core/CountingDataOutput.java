@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.serializer.core;
+
+import com.facebook.infer.annotation.Nullsafe;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.UTFDataFormatException;
+
+/**
+ * A DataOutput that only counts the bytes that would be written with DataOutputStream's encoding,
+ * or with {@link CompactDataOutput}'s, to size buffers exactly before serializing into them.
+ */
+@Nullsafe(Nullsafe.Mode.LOCAL)
+public class CountingDataOutput implements DataOutput {
+
+  private final boolean mIsCompact;
+  private int mSize;
+
+  public CountingDataOutput() {
+    this(false);
+  }
+
+  /** @param isCompact whether to count the varints of {@link CompactDataOutput} */
+  public CountingDataOutput(boolean isCompact) {
+    mIsCompact = isCompact;
+  }
+
+  public int getSize() {
+    return mSize;
+  }
+
+  public void reset() {
+    mSize = 0;
+  }
+
+  @Override
+  public void write(int b) {
+    mSize++;
+  }
+
+  @Override
+  public void write(byte[] b) {
+    mSize += b.length;
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) {
+    mSize += len;
+  }
+
+  @Override
+  public void writeBoolean(boolean v) {
+    mSize++;
+  }
+
+  @Override
+  public void writeByte(int v) {
+    mSize++;
+  }
+
+  @Override
+  public void writeShort(int v) {
+    mSize += mIsCompact ? CompactDataOutput.varLongSize(CompactDataOutput.zigzag((short) v)) : 2;
+  }
+
+  @Override
+  public void writeChar(int v) {
+    mSize += mIsCompact ? CompactDataOutput.varLongSize(v & 0xFFFF) : 2;
+  }
+
+  @Override
+  public void writeInt(int v) {
+    mSize += mIsCompact ? CompactDataOutput.varLongSize(CompactDataOutput.zigzag(v)) : 4;
+  }
+
+  @Override
+  public void writeLong(long v) {
+    mSize += mIsCompact ? CompactDataOutput.varLongSize(CompactDataOutput.zigzag(v)) : 8;
+  }
+
+  @Override
+  public void writeFloat(float v) {
+    mSize += 4;
+  }
+
+  @Override
+  public void writeDouble(double v) {
+    mSize += 8;
+  }
+
+  @Override
+  public void writeBytes(String s) {
+    mSize += s.length();
+  }
+
+  @Override
+  public void writeChars(String s) {
+    if (!mIsCompact) {
+      mSize += 2 * s.length();
+      return;
+    }
+    for (int i = 0, length = s.length(); i < length; i++) {
+      writeChar(s.charAt(i));
+    }
+  }
+
+  @Override
+  public void writeUTF(String s) throws IOException {
+    int utfLength = ByteBufferDataOutput.getUTFLength(s);
+    if (utfLength > 0xFFFF) {
+      throw new UTFDataFormatException("String is too long: " + utfLength + " bytes");
+    }
+    mSize += 2 + utfLength;
+  }
+}
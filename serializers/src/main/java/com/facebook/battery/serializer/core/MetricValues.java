@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.serializer.core;
+
+import com.facebook.infer.annotation.Nullsafe;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Records the sequence of primitive values a serializer writes, instead of their encoded bytes:
+ * this makes it possible to compare two metrics objects value by value without knowing anything
+ * about their fields. Values are replayed into a serializer with {@link MetricValuesInput}.
+ *
+ * <p>Floats and doubles are stored as their raw bits. Not threadsafe, and meant to be reused.
+ */
+@Nullsafe(Nullsafe.Mode.LOCAL)
+public final class MetricValues implements DataOutput {
+
+  public static final byte BYTE = 0;
+  public static final byte SHORT = 1;
+  public static final byte CHAR = 2;
+  public static final byte INT = 3;
+  public static final byte LONG = 4;
+  public static final byte FLOAT = 5;
+  public static final byte DOUBLE = 6;
+
+  private static final int INITIAL_CAPACITY = 32;
+
+  private byte[] mTypes = new byte[INITIAL_CAPACITY];
+  private long[] mValues = new long[INITIAL_CAPACITY];
+  private int mSize;
+
+  public void clear() {
+    mSize = 0;
+  }
+
+  public int size() {
+    return mSize;
+  }
+
+  public byte typeAt(int index) {
+    return mTypes[index];
+  }
+
+  public long valueAt(int index) {
+    return mValues[index];
+  }
+
+  public void setValueAt(int index, long value) {
+    mValues[index] = value;
+  }
+
+  /** Whether both objects wrote the same number and types of values. */
+  public boolean hasSameShape(MetricValues other) {
+    if (mSize != other.mSize) {
+      return false;
+    }
+
+    for (int i = 0; i < mSize; i++) {
+      if (mTypes[i] != other.mTypes[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Makes this a copy of other, to be modified with {@link #setValueAt}. */
+  public void copyFrom(MetricValues other) {
+    mSize = 0;
+    ensureCapacity(other.mSize);
+    System.arraycopy(other.mTypes, 0, mTypes, 0, other.mSize);
+    System.arraycopy(other.mValues, 0, mValues, 0, other.mSize);
+    mSize = other.mSize;
+  }
+
+  /** Appends a value, e.g. to rebuild values that were decoded separately. */
+  public void add(byte type, long value) {
+    ensureCapacity(mSize + 1);
+    mTypes[mSize] = type;
+    mValues[mSize] = value;
+    mSize++;
+  }
+
+  private void ensureCapacity(int capacity) {
+    if (capacity > mValues.length) {
+      int newCapacity = Math.max(capacity, mValues.length * 2);
+      mTypes = Arrays.copyOf(mTypes, newCapacity);
+      mValues = Arrays.copyOf(mValues, newCapacity);
+    }
+  }
+
+  @Override
+  public void write(int b) {
+    add(BYTE, (byte) b);
+  }
+
+  @Override
+  public void write(byte[] b) {
+    write(b, 0, b.length);
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) {
+    for (int i = off; i < off + len; i++) {
+      add(BYTE, b[i]);
+    }
+  }
+
+  @Override
+  public void writeBoolean(boolean v) {
+    add(BYTE, v ? 1 : 0);
+  }
+
+  @Override
+  public void writeByte(int v) {
+    add(BYTE, (byte) v);
+  }
+
+  @Override
+  public void writeShort(int v) {
+    add(SHORT, (short) v);
+  }
+
+  @Override
+  public void writeChar(int v) {
+    add(CHAR, (char) v);
+  }
+
+  @Override
+  public void writeInt(int v) {
+    add(INT, v);
+  }
+
+  @Override
+  public void writeLong(long v) {
+    add(LONG, v);
+  }
+
+  @Override
+  public void writeFloat(float v) {
+    add(FLOAT, Float.floatToRawIntBits(v));
+  }
+
+  @Override
+  public void writeDouble(double v) {
+    add(DOUBLE, Double.doubleToRawLongBits(v));
+  }
+
+  @Override
+  public void writeBytes(String s) {
+    for (int i = 0, length = s.length(); i < length; i++) {
+      add(BYTE, (byte) s.charAt(i));
+    }
+  }
+
+  @Override
+  public void writeChars(String s) {
+    for (int i = 0, length = s.length(); i < length; i++) {
+      add(CHAR, s.charAt(i));
+    }
+  }
+
+  /** Recorded as an unsigned short length followed by the modified UTF-8 bytes. */
+  @Override
+  public void writeUTF(String s) throws IOException {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream(s.length() + 2);
+    new DataOutputStream(baos).writeUTF(s);
+    byte[] bytes = baos.toByteArray();
+    add(SHORT, (short) (bytes.length - 2));
+    write(bytes, 2, bytes.length - 2);
+  }
+}
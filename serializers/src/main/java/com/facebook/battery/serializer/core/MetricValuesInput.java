@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.serializer.core;
+
+import com.facebook.infer.annotation.Nullsafe;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import javax.annotation.Nullable;
+
+/** Replays values recorded by {@link MetricValues} into a serializer's deserializeContents. */
+@Nullsafe(Nullsafe.Mode.LOCAL)
+public final class MetricValuesInput implements DataInput {
+
+  private final MetricValues mValues;
+  private int mPosition;
+
+  public MetricValuesInput(MetricValues values) {
+    mValues = values;
+  }
+
+  public void rewind() {
+    mPosition = 0;
+  }
+
+  private long next() throws IOException {
+    if (mPosition >= mValues.size()) {
+      throw new EOFException();
+    }
+    return mValues.valueAt(mPosition++);
+  }
+
+  @Override
+  public void readFully(byte[] b) throws IOException {
+    readFully(b, 0, b.length);
+  }
+
+  @Override
+  public void readFully(byte[] b, int off, int len) throws IOException {
+    for (int i = off; i < off + len; i++) {
+      b[i] = (byte) next();
+    }
+  }
+
+  @Override
+  public int skipBytes(int n) throws IOException {
+    int skipped = Math.min(n, mValues.size() - mPosition);
+    mPosition += skipped;
+    return skipped;
+  }
+
+  @Override
+  public boolean readBoolean() throws IOException {
+    return next() != 0;
+  }
+
+  @Override
+  public byte readByte() throws IOException {
+    return (byte) next();
+  }
+
+  @Override
+  public int readUnsignedByte() throws IOException {
+    return readByte() & 0xFF;
+  }
+
+  @Override
+  public short readShort() throws IOException {
+    return (short) next();
+  }
+
+  @Override
+  public int readUnsignedShort() throws IOException {
+    return readShort() & 0xFFFF;
+  }
+
+  @Override
+  public char readChar() throws IOException {
+    return (char) next();
+  }
+
+  @Override
+  public int readInt() throws IOException {
+    return (int) next();
+  }
+
+  @Override
+  public long readLong() throws IOException {
+    return next();
+  }
+
+  @Override
+  public float readFloat() throws IOException {
+    return Float.intBitsToFloat((int) next());
+  }
+
+  @Override
+  public double readDouble() throws IOException {
+    return Double.longBitsToDouble(next());
+  }
+
+  @Override
+  public @Nullable String readLine() throws IOException {
+    throw new IOException("readLine isn't supported");
+  }
+
+  @Override
+  public String readUTF() throws IOException {
+    return DataInputStream.readUTF(this);
+  }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.serializer.core;
+
+import com.facebook.infer.annotation.Nullsafe;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Writes serializer tags: as the full 8 byte tag for version 2 of the format, or as a single byte
+ * index into the table of bundled serializers from version 3 on.
+ *
+ * <p>Tags that aren't in the table (custom serializers) are written as an escape byte followed by
+ * the full tag, so they keep working without any registration.
+ */
+@Nullsafe(Nullsafe.Mode.LOCAL)
+public final class SerializerTags {
+
+  /** Returned when reading an index that doesn't exist in this version of the table. */
+  public static final long UNKNOWN_TAG = 0;
+
+  private static final int ESCAPE = 0xFF;
+
+  /**
+   * Tags of the bundled serializers: the position in this array is what gets written, so entries
+   * must only ever be appended.
+   */
+  private static final long[] TAGS = {
+    -3_421_285_698_064_072_703L, // AppWakeupMetricsSerializer
+    -4_085_774_432_413_599_882L, // BluetoothMetricsSerializer
+    -5_544_646_103_548_483_595L, // CameraMetricsSerializer
+    -3_137_023_965_338_009_377L, // CompositeMetricsSerializer
+    -1_864_103_899_603_750_951L, // CpuFrequencyMetricsSerializer
+    2_353_414_016_265_691_865L, // CpuMetricsSerializer
+    -2_269_842_438_411_178_483L, // DeviceBatteryMetricsSerializer
+    -3_940_877_017_738_808_059L, // DiskMetricsSerializer
+    -874_523_681_867_511_420L, // HealthStatsMetricsSerializer
+    -4_040_221_479_651_313_008L, // MemoryMetricsSerializer
+    -2_479_634_339_626_480_691L, // NetworkMetricsSerializer
+    1_224L, // SensorMetricsSerializer
+    4_345_974_300_167_284_411L, // TimeMetricsSerializer
+    -153_197_510_099_727_452L, // WakeLockMetricsSerializer
+    -589_176_158_956_207_582L, // ContextSwitchMetricsSerializer
+    2_990_938_492_617_131_532L, // PressureStallMetricsSerializer
+    3_622_751_018_863_502_343L, // ThermalMetricsSerializer
+    -2_760_113_514_044_945_417L, // SystemCpuMetricsSerializer
+    -1_844_273_646_770_051_375L, // CgroupCpuMetricsSerializer
+    3_925_869_333_422_220_688L, // QuantileSketchSerializer
+    -1_203_965_151_934_961_181L, // DistributionMetricsSerializer
+    6_118_072_964_381_502_207L, // CollectorOverheadMetricsSerializer
+  };
+
+  private SerializerTags() {}
+
+  public static void writeTag(DataOutput output, long tag, int version) throws IOException {
+    if (version == SystemMetricsSerializer.VERSION_2) {
+      output.writeLong(tag);
+      return;
+    }
+
+    int index = indexOf(tag);
+    if (index >= 0) {
+      output.writeByte(index);
+    } else {
+      output.writeByte(ESCAPE);
+      output.writeLong(tag);
+    }
+  }
+
+  /** Returns the number of bytes {@link #writeTag} writes. */
+  public static int getTagSize(long tag, int version) {
+    if (version == SystemMetricsSerializer.VERSION_2) {
+      return 8;
+    }
+    return indexOf(tag) >= 0
+        ? 1
+        : 1 + CompactDataOutput.varLongSize(CompactDataOutput.zigzag(tag));
+  }
+
+  public static long readTag(DataInput input, int version) throws IOException {
+    if (version == SystemMetricsSerializer.VERSION_2) {
+      return input.readLong();
+    }
+
+    int index = input.readUnsignedByte();
+    if (index == ESCAPE) {
+      return input.readLong();
+    }
+    return index < TAGS.length ? TAGS[index] : UNKNOWN_TAG;
+  }
+
+  private static int indexOf(long tag) {
+    for (int i = 0; i < TAGS.length; i++) {
+      if (TAGS[i] == tag) {
+        return i;
+      }
+    }
+    return -1;
+  }
+}
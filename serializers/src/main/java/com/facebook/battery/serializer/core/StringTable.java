@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.serializer.core;
+
+import com.facebook.infer.annotation.Nullsafe;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import javax.annotation.Nullable;
+
+/**
+ * Dictionary encoding for strings that repeat across records, such as wakelock tags, package and
+ * process names: a string is written in full the first time it's seen and as a small integer id
+ * after that.
+ *
+ * <p>A table is attached to a stream with {@link SystemMetricsSerializer#serialize(SystemMetrics,
+ * DataOutput, StringTable)} and can be shared by all the records of a batch (e.g. a MetricsLog
+ * segment): they must then be read back in the same order, with a fresh table that's shared the
+ * same way. Decoded strings are interned, so repeated keys don't take up memory for every record.
+ *
+ * <p>Serializers opt in by checking for a table with {@link #of(DataOutput)} and {@link
+ * #of(DataInput)}, falling back to their usual encoding otherwise.
+ *
+ * <p>Not thread safe: a table must only be used by one stream at a time.
+ */
+@Nullsafe(Nullsafe.Mode.LOCAL)
+public class StringTable {
+
+  private static final int NULL = 0;
+  private static final int NEW = 1;
+  private static final int FIRST_ID = 2;
+
+  private final HashMap<String, Integer> mIds = new HashMap<>();
+  private final ArrayList<String> mStrings = new ArrayList<>();
+
+  /** Returns the table attached to the output, or null if strings should be written in full. */
+  public static @Nullable StringTable of(DataOutput output) {
+    return output instanceof CompactDataOutput
+        ? ((CompactDataOutput) output).getStringTable()
+        : null;
+  }
+
+  /** Returns the table attached to the input, or null if strings were written in full. */
+  public static @Nullable StringTable of(DataInput input) {
+    return input instanceof CompactDataInput ? ((CompactDataInput) input).getStringTable() : null;
+  }
+
+  public void writeString(DataOutput output, @Nullable String value) throws IOException {
+    if (value == null) {
+      output.writeInt(NULL);
+      return;
+    }
+
+    Integer id = mIds.get(value);
+    if (id != null) {
+      output.writeInt(id);
+    } else {
+      output.writeInt(NEW);
+      output.writeUTF(value);
+      add(value);
+    }
+  }
+
+  public @Nullable String readString(DataInput input) throws IOException {
+    int id = input.readInt();
+    if (id == NULL) {
+      return null;
+    } else if (id == NEW) {
+      String value = input.readUTF().intern();
+      add(value);
+      return value;
+    } else if (id >= FIRST_ID && id - FIRST_ID < mStrings.size()) {
+      return mStrings.get(id - FIRST_ID);
+    }
+    throw new IOException("Unknown string id: " + id);
+  }
+
+  /** Number of strings in the table. */
+  public int size() {
+    return mStrings.size();
+  }
+
+  /** Forgets the strings added after the table had {@code size} entries. */
+  public void truncate(int size) {
+    for (int i = mStrings.size() - 1; i >= size; i--) {
+      mIds.remove(mStrings.remove(i));
+    }
+  }
+
+  /** Empties the table when starting a new batch: readers must clear theirs at the same point. */
+  public void clear() {
+    truncate(0);
+  }
+
+  private void add(String value) {
+    mIds.put(value, FIRST_ID + mStrings.size());
+    mStrings.add(value);
+  }
+}
@@ -11,37 +11,193 @@ import com.facebook.battery.metrics.core.SystemMetrics;
 import com.facebook.infer.annotation.Nullsafe;
 import java.io.DataInput;
 import java.io.DataOutput;
+import java.io.EOFException;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import javax.annotation.Nullable;
 
 /**
  * These help serialize SystemMetrics objects to disk cheaply as binary; using these helps avoid
  * reflection and unnecessary writes (as opposed to using Serializable).
+ *
+ * <p>Version 3 of the format writes the tag as a single byte where possible and encodes the
+ * contents through a {@link CompactDataOutput}, using varints for all integer values. Version 2,
+ * which wrote the full tag and fixed size values, can still be read and written.
+ *
+ * <p>Version 4 is version 3 with a {@link StringTable} shared across records, for serializers
+ * that write the same keys over and over.
+ *
+ * <p>Serializers can also write to and read from ByteBuffers directly with {@link #serializeTo}
+ * and {@link #deserializeFrom}, which skip the stream plumbing, and compute the exact size of the
+ * output with {@link #serializedSize} to pool buffers or gather several of them in one write.
+ * Computing the size only serializes the contents of serializers that don't override {@link
+ * #getContentsSize}.
  */
 @Nullsafe(Nullsafe.Mode.LOCAL)
 public abstract class SystemMetricsSerializer<T extends SystemMetrics<T>> {
 
   private static final short MAGIC = 0xFB;
-  private static final short VERSION = 2;
+
+  /** Magic and version */
+  private static final int HEADER_SIZE = 4;
+
+  /** Fixed size values and full tags: the format written by older versions of this library. */
+  public static final int VERSION_2 = 2;
+
+  /** Varints and single byte tags, see {@link CompactDataOutput}. */
+  public static final int VERSION_3 = 3;
+
+  /** Version 3 with a string table: only written and read with one. */
+  public static final int VERSION_STRING_TABLE = 4;
 
   /**
    * Serialize the complete metrics object with a tag that indicates the type of object serialized.
    */
   public final void serialize(T metrics, DataOutput output) throws IOException {
+    serialize(metrics, output, VERSION_3);
+  }
+
+  /**
+   * Serialize with a specific version of the format, e.g. {@link #VERSION_2} for consumers that
+   * can't read version 3 yet.
+   */
+  public final void serialize(T metrics, DataOutput output, int version) throws IOException {
+    if (version == VERSION_2) {
+      output.writeShort(MAGIC);
+      output.writeShort(VERSION_2);
+      SerializerTags.writeTag(output, getTag(), VERSION_2);
+      serializeContents(metrics, output, VERSION_2);
+    } else if (version == VERSION_3) {
+      output.writeShort(MAGIC);
+      output.writeShort(VERSION_3);
+      CompactDataOutput compactOutput = new CompactDataOutput(output);
+      SerializerTags.writeTag(compactOutput, getTag(), VERSION_3);
+      serializeContents(metrics, compactOutput, VERSION_3);
+    } else {
+      throw new IllegalArgumentException("Unsupported version: " + version);
+    }
+  }
+
+  /**
+   * Serialize like {@link #serialize(SystemMetrics, DataOutput)}, writing repeated strings as
+   * references into the string table: the output can only be read back with {@link
+   * #deserialize(SystemMetrics, DataInput, StringTable)} and a table in the same state.
+   */
+  public final void serialize(T metrics, DataOutput output, StringTable stringTable)
+      throws IOException {
     output.writeShort(MAGIC);
-    output.writeShort(VERSION);
-    output.writeLong(getTag());
-    serializeContents(metrics, output);
+    output.writeShort(VERSION_STRING_TABLE);
+    CompactDataOutput compactOutput = new CompactDataOutput(output, stringTable);
+    SerializerTags.writeTag(compactOutput, getTag(), VERSION_STRING_TABLE);
+    serializeContents(metrics, compactOutput, VERSION_STRING_TABLE);
   }
 
-  /** Deserialize the given object from the input stream. */
+  /** Deserialize the given object from the input stream, in any version of the format. */
   public final boolean deserialize(T metrics, DataInput input) throws IOException {
-    if (input.readShort() != MAGIC
-        || input.readShort() != VERSION
-        || input.readLong() != getTag()) {
-      return false;
+    return deserialize(metrics, input, null);
+  }
+
+  /** Deserialize a record written with or without a string table. */
+  public final boolean deserialize(T metrics, DataInput input, @Nullable StringTable stringTable)
+      throws IOException {
+    int version = readVersion(input);
+    DataInput contentsInput = readTag(input, version, stringTable);
+    return contentsInput != null && deserializeContents(metrics, contentsInput, version);
+  }
+
+  /**
+   * Reads the header written by {@link #serialize}, leaving the input at the contents.
+   *
+   * @param stringTable required to read records written with a string table
+   * @return the input to read the contents with, or null if the header isn't valid for this
+   *     serializer
+   */
+  public final @Nullable DataInput readHeader(DataInput input, @Nullable StringTable stringTable)
+      throws IOException {
+    return readTag(input, readVersion(input), stringTable);
+  }
+
+  /** @return the version of the record, or -1 if it isn't a record */
+  private static int readVersion(DataInput input) throws IOException {
+    return input.readShort() == MAGIC ? input.readShort() : -1;
+  }
+
+  private @Nullable DataInput readTag(
+      DataInput input, int version, @Nullable StringTable stringTable) throws IOException {
+    if (version == VERSION_3) {
+      input = new CompactDataInput(input);
+    } else if (version == VERSION_STRING_TABLE && stringTable != null) {
+      input = new CompactDataInput(input, stringTable);
+    } else if (version != VERSION_2) {
+      return null;
     }
 
-    return deserializeContents(metrics, input);
+    if (SerializerTags.readTag(input, version) != getTag()) {
+      return null;
+    }
+
+    return input;
+  }
+
+  /**
+   * Returns the exact number of bytes {@link #serializeTo} (or {@link #serialize}) writes for the
+   * given metrics, computed with {@link #getContentsSize}.
+   */
+  public final int serializedSize(T metrics) throws IOException {
+    return HEADER_SIZE + SerializerTags.getTagSize(getTag(), VERSION_3) + getContentsSize(metrics);
+  }
+
+  /**
+   * Serializes the metrics at the buffer's position, in the same format as {@link #serialize};
+   * the buffer is advanced past the written bytes.
+   *
+   * @throws java.nio.BufferOverflowException if the buffer has less than {@link
+   *     #serializedSize} bytes remaining
+   */
+  public final void serializeTo(T metrics, ByteBuffer buffer) throws IOException {
+    ByteOrder order = buffer.order();
+    buffer.order(ByteOrder.BIG_ENDIAN);
+    try {
+      buffer.putShort(MAGIC);
+      buffer.putShort((short) VERSION_3);
+      CompactByteBufferDataOutput output = new CompactByteBufferDataOutput(buffer);
+      SerializerTags.writeTag(output, getTag(), VERSION_3);
+      serializeContents(metrics, output, VERSION_3);
+    } finally {
+      buffer.order(order);
+    }
+  }
+
+  /**
+   * Deserializes metrics written by {@link #serializeTo} or {@link #serialize} from the buffer's
+   * position, advancing it past the read bytes. Records written with a string table can't be read
+   * this way: use {@link #deserialize(SystemMetrics, DataInput, StringTable)}.
+   */
+  public final boolean deserializeFrom(T metrics, ByteBuffer buffer) throws IOException {
+    ByteOrder order = buffer.order();
+    buffer.order(ByteOrder.BIG_ENDIAN);
+    try {
+      if (buffer.remaining() < HEADER_SIZE) {
+        throw new EOFException();
+      }
+      if (buffer.getShort() != MAGIC) {
+        return false;
+      }
+      int version = buffer.getShort();
+      DataInput input;
+      if (version == VERSION_3) {
+        input = new CompactByteBufferDataInput(buffer);
+      } else if (version == VERSION_2) {
+        input = new ByteBufferDataInput(buffer);
+      } else {
+        return false;
+      }
+      return SerializerTags.readTag(input, version) == getTag()
+          && deserializeContents(metrics, input, version);
+    } finally {
+      buffer.order(order);
+    }
   }
 
   /**
@@ -56,4 +212,32 @@ public abstract class SystemMetricsSerializer<T extends SystemMetrics<T>> {
 
   /** Must be implemented by every SystemMetricsSerializer to read data from input. */
   public abstract boolean deserializeContents(T metrics, DataInput input) throws IOException;
+
+  /**
+   * Saves data to output for a specific version of the format: only serializers whose contents
+   * differ between versions (beyond the encoding of the values, which the output takes care of)
+   * need to override this.
+   */
+  public void serializeContents(T metrics, DataOutput output, int version) throws IOException {
+    serializeContents(metrics, output);
+  }
+
+  /**
+   * Returns the number of bytes {@link #serializeContents} writes in version 3 of the format,
+   * without a string table.
+   *
+   * <p>By default this is measured by counting what serializeContents writes: serializers that
+   * can compute it from the metrics directly should override this to make {@link
+   * #serializedSize} cheap, and keep it in sync with serializeContents.
+   */
+  public int getContentsSize(T metrics) throws IOException {
+    CountingDataOutput output = new CountingDataOutput(true);
+    serializeContents(metrics, output, VERSION_3);
+    return output.getSize();
+  }
+
+  /** Reads data written by {@link #serializeContents(SystemMetrics, DataOutput, int)}. */
+  public boolean deserializeContents(T metrics, DataInput input, int version) throws IOException {
+    return deserializeContents(metrics, input);
+  }
 }
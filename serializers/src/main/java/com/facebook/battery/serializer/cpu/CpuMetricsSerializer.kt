@@ -25,6 +25,8 @@ class CpuMetricsSerializer constructor() : SystemMetricsSerializer<CpuMetrics?>(
     output.writeDouble(metrics.childSystemTimeS)
   }
 
+  override fun getContentsSize(metrics: CpuMetrics): Int = 4 * 8
+
   @Throws(IOException::class)
   override fun deserializeContents(metrics: CpuMetrics, input: DataInput): Boolean {
     metrics.userTimeS = input.readDouble()
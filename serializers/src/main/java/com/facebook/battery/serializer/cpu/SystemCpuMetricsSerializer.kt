@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.serializer.cpu
+
+import com.facebook.battery.metrics.cpu.SystemCpuMetrics
+import com.facebook.battery.serializer.core.CompactDataOutput
+import com.facebook.battery.serializer.core.SystemMetricsSerializer
+import java.io.DataInput
+import java.io.DataOutput
+import java.io.IOException
+
+/**
+ * Writes each core prefixed with a single byte: offline cores (all zeros) take no further space,
+ * and cores whose tick counts fit in an int -- which is always the case for diffs -- are written as
+ * ints instead of longs.
+ */
+class SystemCpuMetricsSerializer : SystemMetricsSerializer<SystemCpuMetrics?>() {
+
+  override fun getTag(): Long = serialVersionUID
+
+  @Throws(IOException::class)
+  override fun serializeContents(metrics: SystemCpuMetrics, output: DataOutput) {
+    val cores = metrics.cores
+    output.writeInt(cores)
+    for (core in 0 until cores) {
+      val start = core * SystemCpuMetrics.FIELDS
+      val end = start + SystemCpuMetrics.FIELDS
+
+      var isEmpty = true
+      var fitsInInt = true
+      for (i in start until end) {
+        val value = metrics.ticks[i]
+        isEmpty = isEmpty && value == 0L
+        fitsInInt = fitsInInt && value >= Int.MIN_VALUE && value <= Int.MAX_VALUE
+      }
+
+      when {
+        isEmpty -> output.writeByte(EMPTY_CORE)
+        fitsInInt -> {
+          output.writeByte(INT_CORE)
+          for (i in start until end) {
+            output.writeInt(metrics.ticks[i].toInt())
+          }
+        }
+        else -> {
+          output.writeByte(LONG_CORE)
+          for (i in start until end) {
+            output.writeLong(metrics.ticks[i])
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Ints and longs take the same number of bytes once varint-encoded, so only empty cores need to
+   * be told apart here.
+   */
+  override fun getContentsSize(metrics: SystemCpuMetrics): Int {
+    val cores = metrics.cores
+    var size = sizeOf(cores.toLong())
+    for (core in 0 until cores) {
+      val start = core * SystemCpuMetrics.FIELDS
+      var coreSize = 0
+      var isEmpty = true
+      for (i in start until start + SystemCpuMetrics.FIELDS) {
+        val value = metrics.ticks[i]
+        isEmpty = isEmpty && value == 0L
+        coreSize += sizeOf(value)
+      }
+      size += if (isEmpty) 1 else 1 + coreSize
+    }
+    return size
+  }
+
+  @Throws(IOException::class)
+  override fun deserializeContents(metrics: SystemCpuMetrics, input: DataInput): Boolean {
+    val cores = input.readInt()
+    if (metrics.cores != cores) {
+      return false
+    }
+    for (core in 0 until cores) {
+      val start = core * SystemCpuMetrics.FIELDS
+      val end = start + SystemCpuMetrics.FIELDS
+      when (input.readByte().toInt()) {
+        EMPTY_CORE -> metrics.ticks.fill(0L, start, end)
+        INT_CORE ->
+            for (i in start until end) {
+              metrics.ticks[i] = input.readInt().toLong()
+            }
+        LONG_CORE ->
+            for (i in start until end) {
+              metrics.ticks[i] = input.readLong()
+            }
+        else -> return false
+      }
+    }
+    return true
+  }
+
+  companion object {
+    private const val serialVersionUID = -2_760_113_514_044_945_417L
+
+    private const val EMPTY_CORE = 0
+    private const val INT_CORE = 1
+    private const val LONG_CORE = 2
+
+    private fun sizeOf(value: Long): Int =
+        CompactDataOutput.varLongSize(CompactDataOutput.zigzag(value))
+  }
+}
@@ -8,6 +8,7 @@
 package com.facebook.battery.serializer.devicebattery
 
 import com.facebook.battery.metrics.devicebattery.DeviceBatteryMetrics
+import com.facebook.battery.serializer.core.CompactDataOutput
 import com.facebook.battery.serializer.core.SystemMetricsSerializer
 import java.io.DataInput
 import java.io.DataOutput
@@ -24,6 +25,9 @@ class DeviceBatteryMetricsSerializer : SystemMetricsSerializer<DeviceBatteryMetr
     output.writeLong(metrics.chargingRealtimeMs)
   }
 
+  override fun getContentsSize(metrics: DeviceBatteryMetrics): Int =
+      Float.SIZE_BYTES + sizeOf(metrics.batteryRealtimeMs) + sizeOf(metrics.chargingRealtimeMs)
+
   @Throws(IOException::class)
   override fun deserializeContents(metrics: DeviceBatteryMetrics, input: DataInput): Boolean {
     metrics.batteryLevelPct = input.readFloat()
@@ -34,5 +38,8 @@ class DeviceBatteryMetricsSerializer : SystemMetricsSerializer<DeviceBatteryMetr
 
   companion object {
     private const val serialVersionUID = -2_269_842_438_411_178_483L
+
+    private fun sizeOf(value: Long): Int =
+        CompactDataOutput.varLongSize(CompactDataOutput.zigzag(value))
   }
 }
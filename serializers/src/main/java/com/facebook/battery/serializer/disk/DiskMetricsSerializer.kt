@@ -8,6 +8,7 @@
 package com.facebook.battery.serializer.disk
 
 import com.facebook.battery.metrics.disk.DiskMetrics
+import com.facebook.battery.serializer.core.CompactDataOutput
 import com.facebook.battery.serializer.core.SystemMetricsSerializer
 import java.io.DataInput
 import java.io.DataOutput
@@ -30,6 +31,17 @@ class DiskMetricsSerializer : SystemMetricsSerializer<DiskMetrics?>() {
     output.writeLong(metrics.blkIoTicks)
   }
 
+  override fun getContentsSize(metrics: DiskMetrics): Int =
+      sizeOf(metrics.rcharBytes) +
+          sizeOf(metrics.wcharBytes) +
+          sizeOf(metrics.syscrCount) +
+          sizeOf(metrics.syscwCount) +
+          sizeOf(metrics.readBytes) +
+          sizeOf(metrics.writeBytes) +
+          sizeOf(metrics.cancelledWriteBytes) +
+          sizeOf(metrics.majorFaults) +
+          sizeOf(metrics.blkIoTicks)
+
   @Throws(IOException::class)
   override fun deserializeContents(metrics: DiskMetrics, input: DataInput): Boolean {
     metrics.rcharBytes = input.readLong()
@@ -46,5 +58,8 @@ class DiskMetricsSerializer : SystemMetricsSerializer<DiskMetrics?>() {
 
   companion object {
     private const val serialVersionUID = -3_940_877_017_738_808_059L
+
+    private fun sizeOf(value: Long): Int =
+        CompactDataOutput.varLongSize(CompactDataOutput.zigzag(value))
   }
 }
@@ -13,12 +13,14 @@ import androidx.annotation.RequiresApi;
 import androidx.collection.ArrayMap;
 import com.facebook.battery.metrics.healthstats.HealthStatsMetrics;
 import com.facebook.battery.metrics.healthstats.HealthStatsMetrics.TimerMetrics;
+import com.facebook.battery.serializer.core.StringTable;
 import com.facebook.battery.serializer.core.SystemMetricsSerializer;
 import com.facebook.common.preconditions.Preconditions;
 import com.facebook.infer.annotation.Nullsafe;
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
+import java.nio.charset.Charset;
 
 @Nullsafe(Nullsafe.Mode.LOCAL)
 @RequiresApi(api = Build.VERSION_CODES.N)
@@ -26,6 +28,8 @@ public class HealthStatsMetricsSerializer extends SystemMetricsSerializer<Health
 
   private static final long serialVersionUID = -874523681867511420L;
 
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
   @Override
   public long getTag() {
     return serialVersionUID;
@@ -97,11 +101,17 @@ public class HealthStatsMetricsSerializer extends SystemMetricsSerializer<Health
   }
 
   private static void writeString(@Nullable String str, DataOutput output) throws IOException {
-    if (str == null) {
+    StringTable stringTable = StringTable.of(output);
+    if (stringTable != null) {
+      stringTable.writeString(output, str);
+    } else if (str == null) {
       output.writeInt(0);
     } else {
-      output.writeInt(str.length());
-      output.writeBytes(str);
+      // Strings used to be written with writeBytes, which drops the high byte of every char: ascii
+      // strings are encoded identically in UTF-8, so older data can still be read.
+      byte[] bytes = str.getBytes(UTF_8);
+      output.writeInt(bytes.length);
+      output.write(bytes);
     }
   }
 
@@ -138,11 +148,7 @@ public class HealthStatsMetricsSerializer extends SystemMetricsSerializer<Health
       int currentTimerLength = input.readInt();
       ArrayMap<String, TimerMetrics> currentTimer = new ArrayMap<>(currentTimerLength);
       for (int j = 0; j < currentTimerLength; j++) {
-        int length = input.readInt();
-        byte[] bytes = new byte[length];
-        input.readFully(bytes, 0, length);
-        String key = new String(bytes);
-        currentTimer.put(key, readTimer(input));
+        currentTimer.put(readTimerKey(input), readTimer(input));
       }
 
       metrics.timers.put(currentTimerKey, currentTimer);
@@ -166,18 +172,36 @@ public class HealthStatsMetricsSerializer extends SystemMetricsSerializer<Health
     return true;
   }
 
+  /** Unlike other strings, empty timer keys have always been read as empty strings. */
+  private static @Nullable String readTimerKey(DataInput input) throws IOException {
+    StringTable stringTable = StringTable.of(input);
+    if (stringTable != null) {
+      return stringTable.readString(input);
+    }
+
+    int length = input.readInt();
+    byte[] bytes = new byte[length];
+    input.readFully(bytes, 0, length);
+    return new String(bytes, UTF_8);
+  }
+
   private static TimerMetrics readTimer(DataInput input) throws IOException {
     return new TimerMetrics(input.readInt(), input.readLong());
   }
 
   private static @Nullable String readString(DataInput input) throws IOException {
+    StringTable stringTable = StringTable.of(input);
+    if (stringTable != null) {
+      return stringTable.readString(input);
+    }
+
     int length = input.readInt();
     if (length == 0) {
       return null;
     } else {
       byte[] bytes = new byte[length];
       input.readFully(bytes, 0, length);
-      return new String(bytes);
+      return new String(bytes, UTF_8);
     }
   }
 }
@@ -0,0 +1,422 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.serializer.log;
+
+import androidx.annotation.VisibleForTesting;
+import com.facebook.battery.metrics.core.SystemMetrics;
+import com.facebook.battery.serializer.core.ByteBufferDataInput;
+import com.facebook.battery.serializer.core.StringTable;
+import com.facebook.battery.serializer.core.SystemMetricsSerializer;
+import com.facebook.infer.annotation.Nullsafe;
+import com.facebook.infer.annotation.ThreadSafe;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+
+/**
+ * An append-only log of serialized snapshots, meant to replace rewriting a single file every time
+ * metrics are saved.
+ *
+ * <p>The log is a directory of fixed size segments that are memory mapped when opened: appending a
+ * record is a copy into the mapping, and the kernel writes it back to disk in the background (also
+ * if the process crashes). Call {@link #flush()} to force it to disk, e.g. before the device could
+ * shut down.
+ *
+ * <p>Segments start with a magic number and a version, followed by frames of {@code [int length,
+ * int crc32, payload]}; the rest of the segment is zero filled. The length is written last, so a
+ * frame only becomes visible once it has been completely written. When opened, the last segment is
+ * scanned up to the first incomplete or corrupt frame, and anything after it is discarded.
+ *
+ * <p>Once a record doesn't fit in the current segment a new one is started, and the oldest
+ * segments are deleted to keep at most {@code maxSegments} of them.
+ *
+ * <p>Metrics appended with {@link #append(SystemMetricsSerializer, SystemMetrics)} share a {@link
+ * StringTable} that starts empty with every segment, so that each segment can be read on its own
+ * with {@link #forEach(SystemMetricsSerializer, SystemMetrics, MetricsVisitor)}. The table isn't
+ * persisted: after reopening the log, the first such record starts a new segment.
+ */
+@Nullsafe(Nullsafe.Mode.LOCAL)
+@ThreadSafe
+public class MetricsLog implements Closeable {
+
+  public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024;
+  public static final int DEFAULT_MAX_SEGMENTS = 4;
+
+  private static final int MAGIC = 0x4D4C4F47; // "MLOG"
+  private static final int VERSION = 1;
+
+  @VisibleForTesting static final int SEGMENT_HEADER_SIZE = 8;
+  @VisibleForTesting static final int FRAME_HEADER_SIZE = 8;
+
+  private static final String SEGMENT_PREFIX = "segment-";
+  private static final String SEGMENT_SUFFIX = ".log";
+
+  /** Receives the records of the log, oldest first. */
+  public interface Visitor {
+    /**
+     * @param record a read only view of the record, only valid for the duration of the call
+     */
+    void onRecord(ByteBuffer record);
+  }
+
+  /** Receives the metrics of the log, oldest first. */
+  public interface MetricsVisitor<T> {
+    /** @param metrics reused for every record, only valid for the duration of the call */
+    void onMetrics(T metrics);
+  }
+
+  private final File mDirectory;
+  private final int mSegmentSize;
+  private final int mMaxSegments;
+  private final CRC32 mCrc = new CRC32();
+
+  /** Sequence numbers of the segments on disk, oldest first; the last one is being written. */
+  @GuardedBy("this")
+  private long[] mSegments;
+
+  @GuardedBy("this")
+  @Nullable
+  private MappedByteBuffer mBuffer;
+
+  /** Strings defined by the records of the current segment. */
+  @GuardedBy("this")
+  private final StringTable mStringTable = new StringTable();
+
+  /** The current segment has records written with a table that was lost when reopening the log. */
+  @GuardedBy("this")
+  private boolean mIsStringTableStale;
+
+  @GuardedBy("this")
+  private final RecordBuffer mRecord = new RecordBuffer();
+
+  @GuardedBy("this")
+  private final DataOutputStream mRecordOutput = new DataOutputStream(mRecord);
+
+  public MetricsLog(File directory) throws IOException {
+    this(directory, DEFAULT_SEGMENT_SIZE, DEFAULT_MAX_SEGMENTS);
+  }
+
+  /**
+   * @param directory directory holding the segments; it shouldn't be used for anything else
+   * @param segmentSize size of a segment in bytes, also limiting the size of a single record
+   * @param maxSegments number of segments to retain, including the one being written
+   */
+  public MetricsLog(File directory, int segmentSize, int maxSegments) throws IOException {
+    if (segmentSize <= SEGMENT_HEADER_SIZE + FRAME_HEADER_SIZE) {
+      throw new IllegalArgumentException("Segment size is too small: " + segmentSize);
+    }
+    if (maxSegments < 1) {
+      throw new IllegalArgumentException("At least one segment must be retained");
+    }
+
+    mDirectory = directory;
+    mSegmentSize = segmentSize;
+    mMaxSegments = maxSegments;
+
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new IOException("Unable to create " + directory);
+    }
+
+    mSegments = listSegments(directory);
+    if (mSegments.length == 0) {
+      startSegment(0);
+    } else {
+      MappedByteBuffer buffer = recover(mSegments[mSegments.length - 1]);
+      mBuffer = buffer;
+      mIsStringTableStale = buffer.position() > SEGMENT_HEADER_SIZE;
+    }
+  }
+
+  /** Appends a record: it must be non-empty and fit in a segment, together with its header. */
+  public void append(byte[] record) throws IOException {
+    append(record, 0, record.length);
+  }
+
+  public synchronized void append(byte[] record, int offset, int length) throws IOException {
+    if (length <= 0 || length > mSegmentSize - SEGMENT_HEADER_SIZE - FRAME_HEADER_SIZE) {
+      throw new IllegalArgumentException("Unable to append a record of " + length + " bytes");
+    }
+
+    MappedByteBuffer buffer = getBuffer();
+    if (buffer.remaining() < FRAME_HEADER_SIZE + length) {
+      startSegment(mSegments[mSegments.length - 1] + 1);
+      buffer = getBuffer();
+    }
+
+    mCrc.reset();
+    mCrc.update(record, offset, length);
+
+    int frame = buffer.position();
+    buffer.position(frame + 4);
+    buffer.putInt((int) mCrc.getValue());
+    buffer.put(record, offset, length);
+    // Publish the frame only once it's complete
+    buffer.putInt(frame, length);
+  }
+
+  /**
+   * Serializes the metrics and appends them, writing repeated strings as references into the
+   * string table of the current segment.
+   */
+  public synchronized <T extends SystemMetrics<T>> void append(
+      SystemMetricsSerializer<T> serializer, T metrics) throws IOException {
+    if (mIsStringTableStale) {
+      startSegment(mSegments[mSegments.length - 1] + 1);
+    }
+
+    int stringTableSize = mStringTable.size();
+    serializeRecord(serializer, metrics);
+    MappedByteBuffer buffer = getBuffer();
+    if (buffer.remaining() < FRAME_HEADER_SIZE + mRecord.size()
+        && buffer.position() > SEGMENT_HEADER_SIZE) {
+      // The record must define its strings again in the new segment
+      startSegment(mSegments[mSegments.length - 1] + 1);
+      stringTableSize = 0;
+      serializeRecord(serializer, metrics);
+    }
+
+    if (mRecord.size() > mSegmentSize - SEGMENT_HEADER_SIZE - FRAME_HEADER_SIZE) {
+      // Forget the strings of a record that won't be written
+      mStringTable.truncate(stringTableSize);
+    }
+    append(mRecord.getBuffer(), 0, mRecord.size());
+  }
+
+  private <T extends SystemMetrics<T>> void serializeRecord(
+      SystemMetricsSerializer<T> serializer, T metrics) throws IOException {
+    mRecord.reset();
+    serializer.serialize(metrics, mRecordOutput, mStringTable);
+  }
+
+  /** Forces all appended records to disk. */
+  public synchronized void flush() {
+    getBuffer().force();
+  }
+
+  /** Visits all the valid records in the log, oldest first. */
+  public synchronized void forEach(Visitor visitor) throws IOException {
+    for (int i = 0; i < mSegments.length; i++) {
+      ByteBuffer segment = getSegment(i);
+      ByteBuffer record;
+      while (segment != null && (record = nextRecord(segment)) != null) {
+        visitor.onRecord(record);
+      }
+    }
+  }
+
+  /**
+   * Decodes the records appended with {@link #append(SystemMetricsSerializer, SystemMetrics)},
+   * oldest first: the rest of a segment is skipped once a record can't be decoded, as the
+   * following ones may depend on the strings it defined.
+   */
+  public synchronized <T extends SystemMetrics<T>> void forEach(
+      SystemMetricsSerializer<T> serializer, T metrics, MetricsVisitor<T> visitor)
+      throws IOException {
+    for (int i = 0; i < mSegments.length; i++) {
+      StringTable stringTable = new StringTable();
+      ByteBuffer segment = getSegment(i);
+      ByteBuffer record;
+      while (segment != null && (record = nextRecord(segment)) != null) {
+        if (!serializer.deserialize(metrics, new ByteBufferDataInput(record), stringTable)) {
+          break;
+        }
+        visitor.onMetrics(metrics);
+      }
+    }
+  }
+
+  /** Returns the valid frames of the segment, or null if it isn't a segment. */
+  private @Nullable ByteBuffer getSegment(int index) throws IOException {
+    ByteBuffer segment;
+    if (index == mSegments.length - 1) {
+      segment = getBuffer().duplicate();
+      segment.limit(segment.position());
+    } else {
+      segment = map(mSegments[index], FileChannel.MapMode.READ_ONLY);
+      if (!hasValidHeader(segment)) {
+        return null;
+      }
+      segment.limit(scan(segment));
+    }
+    segment.position(SEGMENT_HEADER_SIZE);
+    return segment;
+  }
+
+  /** Returns a read only view of the next record, or null at the end of the segment. */
+  private static @Nullable ByteBuffer nextRecord(ByteBuffer segment) {
+    if (!segment.hasRemaining()) {
+      return null;
+    }
+    int length = segment.getInt();
+    int end = segment.position() + 4 + length;
+    ByteBuffer record = segment.duplicate();
+    record.position(segment.position() + 4);
+    record.limit(end);
+    segment.position(end);
+    return record.slice().asReadOnlyBuffer();
+  }
+
+  /** Returns the most recently appended record, or null if the log is empty. */
+  public synchronized @Nullable byte[] readLast() throws IOException {
+    final byte[][] last = new byte[1][];
+    forEach(
+        new Visitor() {
+          @Override
+          public void onRecord(ByteBuffer record) {
+            if (last[0] == null || last[0].length != record.remaining()) {
+              last[0] = new byte[record.remaining()];
+            }
+            record.get(last[0]);
+          }
+        });
+    return last[0];
+  }
+
+  @Override
+  public synchronized void close() {
+    if (mBuffer != null) {
+      mBuffer.force();
+      mBuffer = null;
+    }
+  }
+
+  private MappedByteBuffer getBuffer() {
+    if (mBuffer == null) {
+      throw new IllegalStateException("The log has been closed");
+    }
+    return mBuffer;
+  }
+
+  /** Maps the segment and positions the buffer after the last valid frame. */
+  private MappedByteBuffer recover(long sequence) throws IOException {
+    MappedByteBuffer buffer = map(sequence, FileChannel.MapMode.READ_WRITE);
+    if (!hasValidHeader(buffer)) {
+      buffer.putInt(0, MAGIC);
+      buffer.putInt(4, VERSION);
+      buffer.position(SEGMENT_HEADER_SIZE);
+    } else {
+      buffer.position(scan(buffer));
+    }
+
+    // Clear whatever comes after, so a frame left behind by a crash can't reappear later
+    int position = buffer.position();
+    while (buffer.hasRemaining()) {
+      buffer.put((byte) 0);
+    }
+    buffer.position(position);
+    return buffer;
+  }
+
+  /** Returns the offset after the last valid frame in the segment. */
+  private int scan(ByteBuffer segment) {
+    int position = SEGMENT_HEADER_SIZE;
+    while (position + FRAME_HEADER_SIZE <= segment.capacity()) {
+      int length = segment.getInt(position);
+      if (length <= 0 || length > segment.capacity() - position - FRAME_HEADER_SIZE) {
+        break;
+      }
+
+      mCrc.reset();
+      for (int i = position + FRAME_HEADER_SIZE; i < position + FRAME_HEADER_SIZE + length; i++) {
+        mCrc.update(segment.get(i));
+      }
+      if ((int) mCrc.getValue() != segment.getInt(position + 4)) {
+        break;
+      }
+
+      position += FRAME_HEADER_SIZE + length;
+    }
+    return position;
+  }
+
+  private static boolean hasValidHeader(ByteBuffer segment) {
+    return segment.getInt(0) == MAGIC && segment.getInt(4) == VERSION;
+  }
+
+  private void startSegment(long sequence) throws IOException {
+    if (mBuffer != null) {
+      mBuffer.force();
+    }
+
+    MappedByteBuffer buffer = map(sequence, FileChannel.MapMode.READ_WRITE);
+    buffer.putInt(MAGIC);
+    buffer.putInt(VERSION);
+    mBuffer = buffer;
+    mStringTable.clear();
+    mIsStringTableStale = false;
+
+    int retained = Math.min(mSegments.length, mMaxSegments - 1);
+    long[] segments = new long[retained + 1];
+    for (int i = 0; i < mSegments.length - retained; i++) {
+      File file = getSegmentFile(mSegments[i]);
+      if (!file.delete()) {
+        throw new IOException("Unable to delete " + file);
+      }
+    }
+    System.arraycopy(mSegments, mSegments.length - retained, segments, 0, retained);
+    segments[retained] = sequence;
+    mSegments = segments;
+  }
+
+  private MappedByteBuffer map(long sequence, FileChannel.MapMode mode) throws IOException {
+    File file = getSegmentFile(sequence);
+    String access = mode == FileChannel.MapMode.READ_ONLY ? "r" : "rw";
+    try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, access)) {
+      long size = mode == FileChannel.MapMode.READ_ONLY ? randomAccessFile.length() : mSegmentSize;
+      // The mapping stays valid after the file is closed
+      return randomAccessFile.getChannel().map(mode, 0, size);
+    }
+  }
+
+  private File getSegmentFile(long sequence) {
+    return new File(mDirectory, SEGMENT_PREFIX + sequence + SEGMENT_SUFFIX);
+  }
+
+  /** Exposes the buffer to append it without copying. */
+  private static final class RecordBuffer extends ByteArrayOutputStream {
+
+    byte[] getBuffer() {
+      return buf;
+    }
+  }
+
+  private static long[] listSegments(File directory) {
+    String[] names = directory.list();
+    if (names == null) {
+      return new long[0];
+    }
+
+    long[] segments = new long[names.length];
+    int count = 0;
+    for (String name : names) {
+      if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+        try {
+          segments[count++] =
+              Long.parseLong(
+                  name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException nfe) {
+          count--;
+        }
+      }
+    }
+
+    segments = Arrays.copyOf(segments, count);
+    Arrays.sort(segments);
+    return segments;
+  }
+}
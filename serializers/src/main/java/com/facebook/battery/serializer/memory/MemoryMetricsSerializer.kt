@@ -8,6 +8,7 @@
 package com.facebook.battery.serializer.memory
 
 import com.facebook.battery.metrics.memory.MemoryMetrics
+import com.facebook.battery.serializer.core.CompactDataOutput
 import com.facebook.battery.serializer.core.SystemMetricsSerializer
 import java.io.DataInput
 import java.io.DataOutput
@@ -27,6 +28,14 @@ class MemoryMetricsSerializer : SystemMetricsSerializer<MemoryMetrics?>() {
     output.writeLong(metrics.vmRssKb)
   }
 
+  override fun getContentsSize(metrics: MemoryMetrics): Int =
+      sizeOf(metrics.javaHeapMaxSizeKb) +
+          sizeOf(metrics.javaHeapAllocatedKb) +
+          sizeOf(metrics.nativeHeapSizeKb) +
+          sizeOf(metrics.nativeHeapAllocatedKb) +
+          sizeOf(metrics.vmSizeKb) +
+          sizeOf(metrics.vmRssKb)
+
   @Throws(IOException::class)
   override fun deserializeContents(metrics: MemoryMetrics, input: DataInput): Boolean {
     metrics.javaHeapMaxSizeKb = input.readLong()
@@ -40,5 +49,8 @@ class MemoryMetricsSerializer : SystemMetricsSerializer<MemoryMetrics?>() {
 
   companion object {
     private const val serialVersionUID = -4_040_221_479_651_313_008L
+
+    private fun sizeOf(value: Long): Int =
+        CompactDataOutput.varLongSize(CompactDataOutput.zigzag(value))
   }
 }
@@ -8,6 +8,7 @@
 package com.facebook.battery.serializer.network
 
 import com.facebook.battery.metrics.network.NetworkMetrics
+import com.facebook.battery.serializer.core.CompactDataOutput
 import com.facebook.battery.serializer.core.SystemMetricsSerializer
 import java.io.DataInput
 import java.io.DataOutput
@@ -25,6 +26,12 @@ class NetworkMetricsSerializer : SystemMetricsSerializer<NetworkMetrics?>() {
     output.writeLong(metrics.wifiBytesTx)
   }
 
+  override fun getContentsSize(metrics: NetworkMetrics): Int =
+      sizeOf(metrics.mobileBytesRx) +
+          sizeOf(metrics.mobileBytesTx) +
+          sizeOf(metrics.wifiBytesRx) +
+          sizeOf(metrics.wifiBytesTx)
+
   @Throws(IOException::class)
   override fun deserializeContents(metrics: NetworkMetrics, input: DataInput): Boolean {
     metrics.mobileBytesRx = input.readLong()
@@ -36,5 +43,8 @@ class NetworkMetricsSerializer : SystemMetricsSerializer<NetworkMetrics?>() {
 
   companion object {
     private const val serialVersionUID = -2_479_634_339_626_480_691L
+
+    private fun sizeOf(value: Long): Int =
+        CompactDataOutput.varLongSize(CompactDataOutput.zigzag(value))
   }
 }
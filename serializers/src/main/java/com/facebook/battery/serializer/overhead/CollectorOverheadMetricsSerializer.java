@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.serializer.overhead;
+
+import androidx.annotation.Nullable;
+import com.facebook.battery.codegen.GenerateSerializer;
+import com.facebook.battery.metrics.overhead.CollectorOverheadMetrics;
+import com.facebook.battery.serializer.core.ByteBufferDataOutput;
+import com.facebook.battery.serializer.core.CompactDataOutput;
+import com.facebook.battery.serializer.core.StringTable;
+import com.facebook.infer.annotation.Nullsafe;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/** Writes the generated totals, followed by the cost of each collector if attribution is enabled. */
+@Nullsafe(Nullsafe.Mode.LOCAL)
+@GenerateSerializer(value = CollectorOverheadMetrics.class, tag = 6_118_072_964_381_502_207L)
+public class CollectorOverheadMetricsSerializer extends GeneratedCollectorOverheadMetricsSerializer {
+
+  @Override
+  public void serializeContents(CollectorOverheadMetrics metrics, DataOutput output)
+      throws IOException {
+    super.serializeContents(metrics, output);
+    output.writeBoolean(metrics.isAttributionEnabled);
+    if (metrics.isAttributionEnabled) {
+      int size = metrics.collectors.size();
+      output.writeInt(size);
+      for (int i = 0; i < size; i++) {
+        writeString(metrics.collectors.keyAt(i), output);
+        super.serializeContents(metrics.collectors.valueAt(i), output);
+      }
+    }
+  }
+
+  @Override
+  public int getContentsSize(CollectorOverheadMetrics metrics) {
+    int size = super.getContentsSize(metrics) + 1;
+    if (metrics.isAttributionEnabled) {
+      int count = metrics.collectors.size();
+      size += CompactDataOutput.varLongSize(CompactDataOutput.zigzag(count));
+      for (int i = 0; i < count; i++) {
+        size += 2 + ByteBufferDataOutput.getUTFLength(metrics.collectors.keyAt(i));
+        size += super.getContentsSize(metrics.collectors.valueAt(i));
+      }
+    }
+    return size;
+  }
+
+  @Override
+  public boolean deserializeContents(CollectorOverheadMetrics metrics, DataInput input)
+      throws IOException {
+    metrics.collectors.clear();
+    if (!super.deserializeContents(metrics, input)) {
+      return false;
+    }
+    metrics.isAttributionEnabled = input.readBoolean();
+    if (metrics.isAttributionEnabled) {
+      int size = input.readInt();
+      if (size < 0) {
+        return false;
+      }
+      for (int i = 0; i < size; i++) {
+        String name = readString(input);
+        if (name == null
+            || !super.deserializeContents(metrics.getOrCreateCollector(name), input)) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  private static void writeString(String str, DataOutput output) throws IOException {
+    StringTable stringTable = StringTable.of(output);
+    if (stringTable != null) {
+      stringTable.writeString(output, str);
+    } else {
+      output.writeUTF(str);
+    }
+  }
+
+  private static @Nullable String readString(DataInput input) throws IOException {
+    StringTable stringTable = StringTable.of(input);
+    if (stringTable != null) {
+      return stringTable.readString(input);
+    }
+    return input.readUTF();
+  }
+}
@@ -0,0 +1,249 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.serializer.payload;
+
+import com.facebook.battery.metrics.core.SystemMetrics;
+import com.facebook.battery.serializer.core.SystemMetricsSerializer;
+import com.facebook.infer.annotation.Nullsafe;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.Deflater;
+import javax.annotation.Nullable;
+
+/**
+ * Builds compressed upload payloads of serialized snapshots (typically CompositeMetrics) that stay
+ * within a size budget, e.g. the maximum request size accepted by a backend.
+ *
+ * <p>Records are compressed as they are added, and {@link #add} returns false instead of adding a
+ * record that could take the payload over the budget: {@link #seal()} it, upload it, {@link
+ * #reset()} the builder and add the record again. Sealing only finishes the stream, so nothing is
+ * ever recompressed. Buffers and the Deflater are reused across payloads; call {@link #release()}
+ * once done with the builder.
+ *
+ * <p>A payload is a zlib stream of {@code [int length, serialized record]} frames. Snapshots are
+ * small and repetitive across payloads rather than within one, so a preset dictionary built from
+ * typical records (see {@link #createDictionary}) improves compression noticeably: the reader
+ * identifies it from the dictionary id in the zlib header, and must use the same bytes with {@link
+ * java.util.zip.Inflater#setDictionary}.
+ *
+ * <p>Not thread safe.
+ */
+@Nullsafe(Nullsafe.Mode.LOCAL)
+public class PayloadBuilder<T extends SystemMetrics<T>> {
+
+  /** Deflate only looks back 32KB, so larger dictionaries would be wasted. */
+  public static final int MAX_DICTIONARY_SIZE = 32 * 1024;
+
+  static final int FRAME_HEADER_SIZE = 4;
+
+  /** zlib header, dictionary id and a final sync flush, empty block and adler32. */
+  private static final int STREAM_OVERHEAD = 2 + 4 + 5 + 5 + 4;
+
+  private final SystemMetricsSerializer<T> mSerializer;
+  private final int mMaxPayloadSize;
+  private final @Nullable byte[] mDictionary;
+  private final Deflater mDeflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+
+  private final RecordBuffer mRecord = new RecordBuffer();
+  private final DataOutputStream mRecordOutput = new DataOutputStream(mRecord);
+
+  private byte[] mBuffer;
+  private int mSize;
+
+  /** Bytes deflated since the compressed size was last known exactly. */
+  private long mPendingSize;
+
+  private int mRecordCount;
+  private long mUncompressedSize;
+  private boolean mStarted;
+  private boolean mSealed;
+
+  public PayloadBuilder(
+      SystemMetricsSerializer<T> serializer, int maxPayloadSize, @Nullable byte[] dictionary) {
+    if (maxPayloadSize <= STREAM_OVERHEAD) {
+      throw new IllegalArgumentException("Payload size too small: " + maxPayloadSize);
+    }
+    if (dictionary != null && dictionary.length > MAX_DICTIONARY_SIZE) {
+      throw new IllegalArgumentException("Dictionary too large: " + dictionary.length);
+    }
+    mSerializer = serializer;
+    mMaxPayloadSize = maxPayloadSize;
+    mDictionary = dictionary;
+    mBuffer = new byte[Math.min(maxPayloadSize, 16 * 1024)];
+  }
+
+  /**
+   * Serializes and compresses metrics into the payload.
+   *
+   * @return false if the record could take the payload over its budget, in which case it hasn't
+   *     been added and the payload should be sealed.
+   * @throws IllegalArgumentException if the record can never fit in a payload
+   */
+  public boolean add(T metrics) throws IOException {
+    mRecord.reset();
+    mRecordOutput.writeInt(0);
+    mSerializer.serialize(metrics, mRecordOutput);
+    return addFrame();
+  }
+
+  /** Adds an already serialized record, see {@link #add(SystemMetrics)}. */
+  public boolean add(byte[] record, int offset, int length) throws IOException {
+    mRecord.reset();
+    mRecordOutput.writeInt(0);
+    mRecordOutput.write(record, offset, length);
+    return addFrame();
+  }
+
+  private boolean addFrame() {
+    if (mSealed) {
+      throw new IllegalStateException("Payload already sealed");
+    }
+
+    int frameSize = mRecord.size();
+    mRecord.setLength(frameSize - FRAME_HEADER_SIZE);
+
+    if (!fits(mPendingSize + frameSize)) {
+      if (mPendingSize > 0) {
+        // Only the bound of the pending bytes is known: flush them out to know the actual size
+        deflate(Deflater.SYNC_FLUSH);
+        mPendingSize = 0;
+      }
+      if (!fits(frameSize)) {
+        if (mRecordCount == 0) {
+          throw new IllegalArgumentException("Record too large for a payload: " + frameSize);
+        }
+        return false;
+      }
+    }
+
+    if (!mStarted) {
+      if (mDictionary != null) {
+        mDeflater.setDictionary(mDictionary);
+      }
+      mStarted = true;
+    }
+    mDeflater.setInput(mRecord.getBuffer(), 0, frameSize);
+    deflate(Deflater.NO_FLUSH);
+    mPendingSize += frameSize;
+    mRecordCount++;
+    mUncompressedSize += frameSize;
+    return true;
+  }
+
+  /**
+   * Finishes the payload.
+   *
+   * @return a read only view of the payload, valid until the builder is reset
+   */
+  public ByteBuffer seal() {
+    if (!mSealed) {
+      mDeflater.finish();
+      while (!mDeflater.finished()) {
+        deflate(Deflater.NO_FLUSH);
+      }
+      mSealed = true;
+    }
+    return ByteBuffer.wrap(mBuffer, 0, mSize).asReadOnlyBuffer();
+  }
+
+  /** Starts a new, empty payload. */
+  public void reset() {
+    mDeflater.reset();
+    mSize = 0;
+    mPendingSize = 0;
+    mRecordCount = 0;
+    mUncompressedSize = 0;
+    mStarted = false;
+    mSealed = false;
+  }
+
+  /** Frees the native resources of the compressor: the builder can't be used afterwards. */
+  public void release() {
+    mDeflater.end();
+  }
+
+  public boolean isEmpty() {
+    return mRecordCount == 0;
+  }
+
+  public int getRecordCount() {
+    return mRecordCount;
+  }
+
+  /** Size of the frames added so far, before compression. */
+  public long getUncompressedSize() {
+    return mUncompressedSize;
+  }
+
+  /** Compressed bytes so far: the payload grows when sealed, but never over its budget. */
+  public int getCompressedSize() {
+    return mSize;
+  }
+
+  private boolean fits(long pendingSize) {
+    return mSize + deflateBound(pendingSize) + STREAM_OVERHEAD <= mMaxPayloadSize;
+  }
+
+  /** Deflates the input, until there's space left in the output. */
+  private void deflate(int flush) {
+    do {
+      if (mSize == mBuffer.length) {
+        mBuffer = Arrays.copyOf(mBuffer, mBuffer.length * 2);
+      }
+      mSize += mDeflater.deflate(mBuffer, mSize, mBuffer.length - mSize, flush);
+    } while (mSize == mBuffer.length);
+  }
+
+  /** zlib's upper bound on the size of deflating length bytes, excluding the stream wrapper. */
+  static long deflateBound(long length) {
+    return length + (length >> 12) + (length >> 14) + (length >> 25) + 7;
+  }
+
+  /**
+   * Concatenates serialized samples into a dictionary, the most representative records last (they
+   * are the cheapest to refer to), keeping the last {@link #MAX_DICTIONARY_SIZE} bytes.
+   */
+  public static <T extends SystemMetrics<T>> byte[] createDictionary(
+      SystemMetricsSerializer<T> serializer, List<T> samples) throws IOException {
+    ByteArrayOutputStream dictionary = new ByteArrayOutputStream();
+    DataOutputStream output = new DataOutputStream(dictionary);
+    ByteArrayOutputStream record = new ByteArrayOutputStream();
+    DataOutputStream recordOutput = new DataOutputStream(record);
+    for (T sample : samples) {
+      record.reset();
+      serializer.serialize(sample, recordOutput);
+      output.writeInt(record.size());
+      record.writeTo(output);
+    }
+
+    byte[] bytes = dictionary.toByteArray();
+    return bytes.length <= MAX_DICTIONARY_SIZE
+        ? bytes
+        : Arrays.copyOfRange(bytes, bytes.length - MAX_DICTIONARY_SIZE, bytes.length);
+  }
+
+  /** Exposes its buffer, to be handed to the Deflater without copying. */
+  private static final class RecordBuffer extends ByteArrayOutputStream {
+
+    byte[] getBuffer() {
+      return buf;
+    }
+
+    /** Patches the frame header with the record's length. */
+    void setLength(int length) {
+      buf[0] = (byte) (length >>> 24);
+      buf[1] = (byte) (length >>> 16);
+      buf[2] = (byte) (length >>> 8);
+      buf[3] = (byte) length;
+    }
+  }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.serializer.pressure
+
+import com.facebook.battery.metrics.pressure.PressureStallMetrics
+import com.facebook.battery.serializer.core.CompactDataOutput
+import com.facebook.battery.serializer.core.SystemMetricsSerializer
+import java.io.DataInput
+import java.io.DataOutput
+import java.io.IOException
+
+class PressureStallMetricsSerializer : SystemMetricsSerializer<PressureStallMetrics?>() {
+
+  override fun getTag(): Long = serialVersionUID
+
+  @Throws(IOException::class)
+  override fun serializeContents(metrics: PressureStallMetrics, output: DataOutput) {
+    output.writeLong(metrics.cpuSomeTotalUs)
+    output.writeLong(metrics.cpuFullTotalUs)
+    output.writeLong(metrics.memorySomeTotalUs)
+    output.writeLong(metrics.memoryFullTotalUs)
+    output.writeLong(metrics.ioSomeTotalUs)
+    output.writeLong(metrics.ioFullTotalUs)
+  }
+
+  override fun getContentsSize(metrics: PressureStallMetrics): Int =
+      sizeOf(metrics.cpuSomeTotalUs) +
+          sizeOf(metrics.cpuFullTotalUs) +
+          sizeOf(metrics.memorySomeTotalUs) +
+          sizeOf(metrics.memoryFullTotalUs) +
+          sizeOf(metrics.ioSomeTotalUs) +
+          sizeOf(metrics.ioFullTotalUs)
+
+  @Throws(IOException::class)
+  override fun deserializeContents(metrics: PressureStallMetrics, input: DataInput): Boolean {
+    metrics.cpuSomeTotalUs = input.readLong()
+    metrics.cpuFullTotalUs = input.readLong()
+    metrics.memorySomeTotalUs = input.readLong()
+    metrics.memoryFullTotalUs = input.readLong()
+    metrics.ioSomeTotalUs = input.readLong()
+    metrics.ioFullTotalUs = input.readLong()
+    return true
+  }
+
+  companion object {
+    private const val serialVersionUID = 2_990_938_492_617_131_532L
+
+    private fun sizeOf(value: Long): Int =
+        CompactDataOutput.varLongSize(CompactDataOutput.zigzag(value))
+  }
+}
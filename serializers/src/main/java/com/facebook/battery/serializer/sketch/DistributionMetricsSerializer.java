@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.serializer.sketch;
+
+import androidx.annotation.Nullable;
+import com.facebook.battery.metrics.sketch.DistributionMetrics;
+import com.facebook.battery.metrics.sketch.QuantileSketch;
+import com.facebook.battery.serializer.core.StringTable;
+import com.facebook.battery.serializer.core.SystemMetricsSerializer;
+import com.facebook.infer.annotation.Nullsafe;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Writes each named sketch in the format of the {@link QuantileSketchSerializer}: reading reuses
+ * the existing sketches with the same names and parameters.
+ */
+@Nullsafe(Nullsafe.Mode.LOCAL)
+public class DistributionMetricsSerializer extends SystemMetricsSerializer<DistributionMetrics> {
+
+  private static final long serialVersionUID = -1_203_965_151_934_961_181L;
+
+  @Override
+  public long getTag() {
+    return serialVersionUID;
+  }
+
+  @Override
+  public void serializeContents(DistributionMetrics metrics, DataOutput output)
+      throws IOException {
+    int size = metrics.sketches.size();
+    output.writeInt(size);
+    for (int i = 0; i < size; i++) {
+      writeString(metrics.sketches.keyAt(i), output);
+      QuantileSketch sketch = metrics.sketches.valueAt(i);
+      QuantileSketchSerializer.writeParameters(sketch, output);
+      QuantileSketchSerializer.writeCounts(sketch, output);
+    }
+  }
+
+  @Override
+  public boolean deserializeContents(DistributionMetrics metrics, DataInput input)
+      throws IOException {
+    int size = input.readInt();
+    if (size < 0) {
+      return false;
+    }
+    String[] names = new String[size];
+    for (int i = 0; i < size; i++) {
+      String name = readString(input);
+      if (name == null) {
+        return false;
+      }
+      QuantileSketch sketch =
+          QuantileSketchSerializer.readParameters(input, metrics.sketches.get(name));
+      if (sketch == null || !QuantileSketchSerializer.readCounts(sketch, input)) {
+        return false;
+      }
+      metrics.sketches.put(name, sketch);
+      names[i] = name;
+    }
+
+    // Drops the sketches that weren't serialized
+    for (int i = metrics.sketches.size() - 1; i >= 0; i--) {
+      if (!contains(names, metrics.sketches.keyAt(i))) {
+        metrics.sketches.removeAt(i);
+      }
+    }
+    return true;
+  }
+
+  private static boolean contains(String[] names, String name) {
+    for (String current : names) {
+      if (name.equals(current)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static void writeString(String str, DataOutput output) throws IOException {
+    StringTable stringTable = StringTable.of(output);
+    if (stringTable != null) {
+      stringTable.writeString(output, str);
+    } else {
+      output.writeUTF(str);
+    }
+  }
+
+  private static @Nullable String readString(DataInput input) throws IOException {
+    StringTable stringTable = StringTable.of(input);
+    if (stringTable != null) {
+      return stringTable.readString(input);
+    }
+    return input.readUTF();
+  }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.serializer.sketch;
+
+import androidx.annotation.Nullable;
+import com.facebook.battery.metrics.sketch.QuantileSketch;
+import com.facebook.battery.serializer.core.SystemMetricsSerializer;
+import com.facebook.infer.annotation.Nullsafe;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Writes the parameters of the sketch along with its non empty buckets, so that sketches from
+ * different devices can be merged after reading them back.
+ */
+@Nullsafe(Nullsafe.Mode.LOCAL)
+public class QuantileSketchSerializer extends SystemMetricsSerializer<QuantileSketch> {
+
+  private static final long serialVersionUID = 3_925_869_333_422_220_688L;
+
+  /** Guards against allocating huge sketches when reading corrupted data */
+  private static final int MAX_BUCKET_COUNT = 1 << 16;
+
+  @Override
+  public long getTag() {
+    return serialVersionUID;
+  }
+
+  @Override
+  public void serializeContents(QuantileSketch metrics, DataOutput output) throws IOException {
+    writeParameters(metrics, output);
+    writeCounts(metrics, output);
+  }
+
+  /** Fails if the parameters of the serialized sketch don't match the ones of the metrics. */
+  @Override
+  public boolean deserializeContents(QuantileSketch metrics, DataInput input) throws IOException {
+    return readParameters(input, metrics) == metrics && readCounts(metrics, input);
+  }
+
+  static void writeParameters(QuantileSketch metrics, DataOutput output) throws IOException {
+    output.writeDouble(metrics.relativeAccuracy);
+    output.writeDouble(metrics.minValue);
+    output.writeInt(metrics.counts.length);
+  }
+
+  /**
+   * Returns the given sketch if it has the serialized parameters, or else a new sketch with them:
+   * null if they're invalid.
+   */
+  static @Nullable QuantileSketch readParameters(DataInput input, @Nullable QuantileSketch reuse)
+      throws IOException {
+    double relativeAccuracy = input.readDouble();
+    double minValue = input.readDouble();
+    int bucketCount = input.readInt();
+    if (reuse != null
+        && reuse.relativeAccuracy == relativeAccuracy
+        && reuse.minValue == minValue
+        && reuse.counts.length == bucketCount) {
+      return reuse;
+    }
+    if (bucketCount > MAX_BUCKET_COUNT) {
+      return null;
+    }
+    try {
+      return new QuantileSketch(relativeAccuracy, minValue, bucketCount);
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+
+  static void writeCounts(QuantileSketch metrics, DataOutput output) throws IOException {
+    output.writeLong(metrics.count);
+    output.writeDouble(metrics.sum);
+    output.writeLong(metrics.zeroCount);
+
+    long[] counts = metrics.counts;
+    int buckets = 0;
+    for (int i = 0; i < counts.length; i++) {
+      if (counts[i] != 0) {
+        buckets++;
+      }
+    }
+
+    // Bucket indices are written as deltas, which stay small when written as varints
+    output.writeInt(buckets);
+    int previous = 0;
+    for (int i = 0; i < counts.length; i++) {
+      if (counts[i] != 0) {
+        output.writeInt(i - previous);
+        output.writeLong(counts[i]);
+        previous = i;
+      }
+    }
+  }
+
+  static boolean readCounts(QuantileSketch metrics, DataInput input) throws IOException {
+    metrics.clear();
+    metrics.count = input.readLong();
+    metrics.sum = input.readDouble();
+    metrics.zeroCount = input.readLong();
+
+    long[] counts = metrics.counts;
+    int buckets = input.readInt();
+    int index = 0;
+    for (int i = 0; i < buckets; i++) {
+      index += input.readInt();
+      if (index < 0 || index >= counts.length) {
+        return false;
+      }
+      counts[index] = input.readLong();
+    }
+    return true;
+  }
+}
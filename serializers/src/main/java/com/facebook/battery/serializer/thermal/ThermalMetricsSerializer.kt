@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.serializer.thermal
+
+import com.facebook.battery.metrics.thermal.ThermalMetrics
+import com.facebook.battery.serializer.core.CompactDataOutput
+import com.facebook.battery.serializer.core.SystemMetricsSerializer
+import java.io.DataInput
+import java.io.DataOutput
+import java.io.IOException
+
+class ThermalMetricsSerializer : SystemMetricsSerializer<ThermalMetrics?>() {
+
+  override fun getTag(): Long = serialVersionUID
+
+  @Throws(IOException::class)
+  override fun serializeContents(metrics: ThermalMetrics, output: DataOutput) {
+    output.writeInt(metrics.timeAboveThresholdMs.size)
+    for (timeAboveThresholdMs in metrics.timeAboveThresholdMs) {
+      output.writeLong(timeAboveThresholdMs)
+    }
+    output.writeLong(metrics.throttledMs)
+    output.writeLong(metrics.maxTemperatureMilliC)
+    output.writeLong(metrics.maxCoolingState)
+  }
+
+  override fun getContentsSize(metrics: ThermalMetrics): Int {
+    var size = sizeOf(metrics.timeAboveThresholdMs.size.toLong())
+    for (timeAboveThresholdMs in metrics.timeAboveThresholdMs) {
+      size += sizeOf(timeAboveThresholdMs)
+    }
+    return size +
+        sizeOf(metrics.throttledMs) +
+        sizeOf(metrics.maxTemperatureMilliC) +
+        sizeOf(metrics.maxCoolingState)
+  }
+
+  @Throws(IOException::class)
+  override fun deserializeContents(metrics: ThermalMetrics, input: DataInput): Boolean {
+    val thresholds = input.readInt()
+    if (metrics.timeAboveThresholdMs.size != thresholds) {
+      return false
+    }
+    for (i in 0 until thresholds) {
+      metrics.timeAboveThresholdMs[i] = input.readLong()
+    }
+    metrics.throttledMs = input.readLong()
+    metrics.maxTemperatureMilliC = input.readLong()
+    metrics.maxCoolingState = input.readLong()
+    return true
+  }
+
+  companion object {
+    private const val serialVersionUID = 3_622_751_018_863_502_343L
+
+    private fun sizeOf(value: Long): Int =
+        CompactDataOutput.varLongSize(CompactDataOutput.zigzag(value))
+  }
+}
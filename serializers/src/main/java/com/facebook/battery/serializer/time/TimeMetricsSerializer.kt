@@ -8,6 +8,7 @@
 package com.facebook.battery.serializer.time
 
 import com.facebook.battery.metrics.time.TimeMetrics
+import com.facebook.battery.serializer.core.CompactDataOutput
 import com.facebook.battery.serializer.core.SystemMetricsSerializer
 import java.io.DataInput
 import java.io.DataOutput
@@ -23,6 +24,9 @@ class TimeMetricsSerializer : SystemMetricsSerializer<TimeMetrics>() {
     output.writeLong(metrics.uptimeMs)
   }
 
+  override fun getContentsSize(metrics: TimeMetrics): Int =
+      sizeOf(metrics.realtimeMs) + sizeOf(metrics.uptimeMs)
+
   @Throws(IOException::class)
   override fun deserializeContents(metrics: TimeMetrics, input: DataInput): Boolean {
     metrics.realtimeMs = input.readLong()
@@ -32,5 +36,8 @@ class TimeMetricsSerializer : SystemMetricsSerializer<TimeMetrics>() {
 
   companion object {
     private const val serialVersionUID = 4_345_974_300_167_284_411L
+
+    private fun sizeOf(value: Long): Int =
+        CompactDataOutput.varLongSize(CompactDataOutput.zigzag(value))
   }
 }
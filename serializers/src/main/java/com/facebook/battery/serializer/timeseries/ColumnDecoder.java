@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.serializer.timeseries;
+
+import com.facebook.battery.serializer.core.CompactDataInput;
+import com.facebook.infer.annotation.Nullsafe;
+import java.io.EOFException;
+import java.io.IOException;
+
+/**
+ * Decodes a column written by {@link ColumnEncoder} one value at a time, straight from the block's
+ * bytes.
+ */
+@Nullsafe(Nullsafe.Mode.LOCAL)
+final class ColumnDecoder {
+
+  private static final int MAX_VARINT_BYTES = 10;
+
+  private boolean mFloatingPoint;
+  private byte[] mBytes = new byte[0];
+  private int mPosition;
+  private int mEnd;
+
+  private int mCount;
+  private long mPrevious;
+  private long mPreviousDelta;
+  private long mZeros;
+
+  void reset(boolean floatingPoint, byte[] bytes, int offset, int length) {
+    mFloatingPoint = floatingPoint;
+    mBytes = bytes;
+    mPosition = offset;
+    mEnd = offset + length;
+    mCount = 0;
+    mPrevious = 0;
+    mPreviousDelta = 0;
+    mZeros = 0;
+  }
+
+  long next() throws IOException {
+    long value = mFloatingPoint ? nextFloatingPoint() : nextInteger();
+    mPrevious = value;
+    mCount++;
+    return value;
+  }
+
+  private long nextInteger() throws IOException {
+    if (mCount == 0) {
+      return CompactDataInput.unzigzag(readVarLong());
+    }
+
+    long delta;
+    if (mCount == 1) {
+      delta = CompactDataInput.unzigzag(readVarLong());
+    } else if (mZeros > 0) {
+      mZeros--;
+      delta = mPreviousDelta;
+    } else {
+      long deltaOfDelta = readVarLong();
+      if (deltaOfDelta == 0) {
+        mZeros = readVarLong();
+      }
+      delta = mPreviousDelta + CompactDataInput.unzigzag(deltaOfDelta);
+    }
+    mPreviousDelta = delta;
+    return mPrevious + delta;
+  }
+
+  private long nextFloatingPoint() throws IOException {
+    if (mCount == 0) {
+      long bits = 0;
+      for (int i = 0; i < 8; i++) {
+        bits = (bits << 8) | readByte();
+      }
+      return bits;
+    }
+
+    if (mZeros > 0) {
+      mZeros--;
+      return mPrevious;
+    }
+
+    int token = readByte();
+    if (token == 0) {
+      mZeros = readVarLong();
+      return mPrevious;
+    }
+
+    int leadingBytes = token >>> 4;
+    int meaningfulBytes = token & 0xF;
+    int trailingBytes = 8 - leadingBytes - meaningfulBytes;
+    if (meaningfulBytes > 8 || trailingBytes < 0) {
+      throw new IOException("Invalid token: " + token);
+    }
+
+    long xor = 0;
+    for (int i = 0; i < meaningfulBytes; i++) {
+      xor = (xor << 8) | readByte();
+    }
+    return mPrevious ^ (xor << (8 * trailingBytes));
+  }
+
+  private long readVarLong() throws IOException {
+    long result = 0;
+    for (int i = 0; i < MAX_VARINT_BYTES; i++) {
+      int b = readByte();
+      result |= (long) (b & 0x7F) << (7 * i);
+      if ((b & 0x80) == 0) {
+        return result;
+      }
+    }
+    throw new IOException("Malformed varint");
+  }
+
+  private int readByte() throws IOException {
+    if (mPosition >= mEnd) {
+      throw new EOFException();
+    }
+    return mBytes[mPosition++] & 0xFF;
+  }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.serializer.timeseries;
+
+import com.facebook.battery.serializer.core.CompactDataOutput;
+import com.facebook.infer.annotation.Nullsafe;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Encodes a single column of values into an in-memory buffer, Gorilla style.
+ *
+ * <p>Integer columns write the first value, then the first delta and then the delta of deltas as
+ * zigzag varints: smooth counters and regular timestamps have a delta of delta of 0. Floating
+ * point columns write the first value's bits and then the xor with the previous value's bits as a
+ * token byte ({@code leading zero bytes << 4 | meaningful bytes}) followed by the meaningful bytes.
+ *
+ * <p>In both cases a zero (an unchanged delta, or an unchanged value) is followed by a varint with
+ * the number of additional zeros, so long runs take two bytes.
+ */
+@Nullsafe(Nullsafe.Mode.LOCAL)
+final class ColumnEncoder {
+
+  private final boolean mFloatingPoint;
+
+  private byte[] mBytes = new byte[64];
+  private int mSize;
+
+  private int mCount;
+  private long mPrevious;
+  private long mPreviousDelta;
+  private long mZeros;
+
+  ColumnEncoder(boolean floatingPoint) {
+    mFloatingPoint = floatingPoint;
+  }
+
+  boolean isFloatingPoint() {
+    return mFloatingPoint;
+  }
+
+  void add(long value) {
+    if (mFloatingPoint) {
+      addFloatingPoint(value);
+    } else {
+      addInteger(value);
+    }
+    mPrevious = value;
+    mCount++;
+  }
+
+  private void addInteger(long value) {
+    if (mCount == 0) {
+      writeVarLong(CompactDataOutput.zigzag(value));
+      return;
+    }
+
+    long delta = value - mPrevious;
+    if (mCount == 1) {
+      writeVarLong(CompactDataOutput.zigzag(delta));
+    } else {
+      long deltaOfDelta = delta - mPreviousDelta;
+      if (deltaOfDelta == 0) {
+        mZeros++;
+      } else {
+        flushZeros();
+        writeVarLong(CompactDataOutput.zigzag(deltaOfDelta));
+      }
+    }
+    mPreviousDelta = delta;
+  }
+
+  private void addFloatingPoint(long bits) {
+    if (mCount == 0) {
+      for (int shift = 56; shift >= 0; shift -= 8) {
+        writeByte((int) (bits >>> shift));
+      }
+      return;
+    }
+
+    long xor = bits ^ mPrevious;
+    if (xor == 0) {
+      mZeros++;
+      return;
+    }
+
+    flushZeros();
+    int leadingBytes = Long.numberOfLeadingZeros(xor) / 8;
+    int trailingBytes = Long.numberOfTrailingZeros(xor) / 8;
+    int meaningfulBytes = 8 - leadingBytes - trailingBytes;
+    writeByte((leadingBytes << 4) | meaningfulBytes);
+    for (int i = meaningfulBytes - 1; i >= 0; i--) {
+      writeByte((int) (xor >>> (8 * (trailingBytes + i))));
+    }
+  }
+
+  private void flushZeros() {
+    if (mZeros > 0) {
+      // A zero varint (or token) starts the run
+      writeByte(0);
+      writeVarLong(mZeros - 1);
+      mZeros = 0;
+    }
+  }
+
+  /** Number of bytes of the encoded column, once the block is complete. */
+  int finish() {
+    flushZeros();
+    return mSize;
+  }
+
+  void writeTo(DataOutput output) throws IOException {
+    output.write(mBytes, 0, mSize);
+  }
+
+  void reset() {
+    mSize = 0;
+    mCount = 0;
+    mPrevious = 0;
+    mPreviousDelta = 0;
+    mZeros = 0;
+  }
+
+  private void writeVarLong(long value) {
+    while ((value & ~0x7FL) != 0) {
+      writeByte((int) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+    writeByte((int) value);
+  }
+
+  private void writeByte(int value) {
+    if (mSize == mBytes.length) {
+      mBytes = Arrays.copyOf(mBytes, mSize * 2);
+    }
+    mBytes[mSize++] = (byte) value;
+  }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.serializer.timeseries;
+
+import com.facebook.battery.metrics.core.SystemMetrics;
+import com.facebook.battery.serializer.core.CompactDataInput;
+import com.facebook.battery.serializer.core.MetricValues;
+import com.facebook.battery.serializer.core.MetricValuesInput;
+import com.facebook.battery.serializer.core.SystemMetricsSerializer;
+import com.facebook.infer.annotation.Nullsafe;
+import java.io.DataInput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Reads back the snapshots written by {@link MetricsBatchEncoder}, one at a time: only the current
+ * block is held in memory, and values are decoded from it as snapshots are requested.
+ *
+ * <pre>{@code
+ * MetricsBatchDecoder<CpuMetrics> decoder = new MetricsBatchDecoder<>(serializer, input);
+ * CpuMetrics metrics = new CpuMetrics();
+ * while (decoder.next(metrics)) {
+ *   process(decoder.getTimestampMs(), metrics);
+ * }
+ * }</pre>
+ *
+ * <p>Not thread safe.
+ */
+@Nullsafe(Nullsafe.Mode.LOCAL)
+public class MetricsBatchDecoder<T extends SystemMetrics<T>> {
+
+  private final SystemMetricsSerializer<T> mSerializer;
+  private final CompactDataInput mInput;
+
+  private final MetricValues mValues = new MetricValues();
+  private final MetricValuesInput mValuesInput = new MetricValuesInput(mValues);
+  private final ColumnDecoder mTimestamps = new ColumnDecoder();
+  private ColumnDecoder[] mColumns = new ColumnDecoder[0];
+  private byte[] mTypes = new byte[0];
+  private int mColumnCount;
+  private byte[] mBlock = new byte[0];
+
+  private int mRemainingRows;
+  private boolean mFinished;
+  private long mTimestampMs;
+
+  public MetricsBatchDecoder(SystemMetricsSerializer<T> serializer, DataInput input) {
+    mSerializer = serializer;
+    mInput = new CompactDataInput(input);
+  }
+
+  /**
+   * Decodes the next snapshot into metrics.
+   *
+   * @return false once the end of the batch has been reached
+   */
+  public boolean next(T metrics) throws IOException {
+    if (mRemainingRows == 0 && !readBlock()) {
+      return false;
+    }
+
+    mTimestampMs = mTimestamps.next();
+    mValues.clear();
+    for (int i = 0; i < mColumnCount; i++) {
+      mValues.add(mTypes[i], mColumns[i].next());
+    }
+    mRemainingRows--;
+
+    mValuesInput.rewind();
+    if (!mSerializer.deserializeContents(metrics, mValuesInput)) {
+      throw new IOException("Unable to deserialize snapshot");
+    }
+    return true;
+  }
+
+  /** Timestamp of the snapshot returned by the last call to {@link #next}. */
+  public long getTimestampMs() {
+    return mTimestampMs;
+  }
+
+  private boolean readBlock() throws IOException {
+    if (mFinished) {
+      return false;
+    }
+
+    int rows = readLength();
+    if (rows == 0) {
+      mFinished = true;
+      return false;
+    }
+
+    int columns = readLength();
+    ensureCapacity(columns);
+    for (int i = 0; i < columns; i++) {
+      mTypes[i] = mInput.readByte();
+      if (mTypes[i] < MetricValues.BYTE || mTypes[i] > MetricValues.DOUBLE) {
+        throw new IOException("Unknown column type: " + mTypes[i]);
+      }
+    }
+
+    int timestampsLength = readLength();
+    int[] lengths = new int[columns];
+    long total = timestampsLength;
+    for (int i = 0; i < columns; i++) {
+      lengths[i] = readLength();
+      total += lengths[i];
+    }
+    if (total > Integer.MAX_VALUE) {
+      throw new IOException("Invalid block length: " + total);
+    }
+
+    if (mBlock.length < total) {
+      mBlock = new byte[(int) total];
+    }
+    mInput.readFully(mBlock, 0, (int) total);
+
+    mTimestamps.reset(false, mBlock, 0, timestampsLength);
+    int offset = timestampsLength;
+    for (int i = 0; i < columns; i++) {
+      mColumns[i].reset(
+          MetricsBatchEncoder.isFloatingPoint(mTypes[i]), mBlock, offset, lengths[i]);
+      offset += lengths[i];
+    }
+
+    mColumnCount = columns;
+    mRemainingRows = rows;
+    return true;
+  }
+
+  private int readLength() throws IOException {
+    long length = mInput.readVarLong();
+    if (length < 0 || length > Integer.MAX_VALUE) {
+      throw new IOException("Invalid length: " + length);
+    }
+    return (int) length;
+  }
+
+  private void ensureCapacity(int columns) {
+    if (mColumns.length < columns) {
+      int previous = mColumns.length;
+      mColumns = Arrays.copyOf(mColumns, columns);
+      for (int i = previous; i < columns; i++) {
+        mColumns[i] = new ColumnDecoder();
+      }
+      mTypes = Arrays.copyOf(mTypes, columns);
+    }
+  }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.serializer.timeseries;
+
+import com.facebook.battery.metrics.core.SystemMetrics;
+import com.facebook.battery.serializer.core.CompactDataOutput;
+import com.facebook.battery.serializer.core.MetricValues;
+import com.facebook.battery.serializer.core.SystemMetricsSerializer;
+import com.facebook.infer.annotation.Nullsafe;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Compresses a series of timestamped snapshots of one metrics type, e.g. a day of per minute
+ * snapshots, by encoding them column by column: cumulative counters and timestamps grow smoothly
+ * and compress to about a byte per value, often less.
+ *
+ * <p>Every primitive value written by the metrics' serializer becomes a column (see {@link
+ * ColumnEncoder} for the encoding), so this works with any serializer. Snapshots are grouped into
+ * blocks of rows that write the same number and types of values; a new block starts whenever that
+ * changes (for example, a map gained an entry) or the block is full.
+ *
+ * <p>A block is written as {@code [rows, columns, column types, column lengths, timestamps,
+ * columns]} and the batch ends with a block of 0 rows. Read it back with {@link
+ * MetricsBatchDecoder}. Not thread safe.
+ */
+@Nullsafe(Nullsafe.Mode.LOCAL)
+public class MetricsBatchEncoder<T extends SystemMetrics<T>> {
+
+  static final int MAX_BLOCK_ROWS = 1024;
+
+  private final SystemMetricsSerializer<T> mSerializer;
+  private final CompactDataOutput mOutput;
+
+  private final MetricValues mValues = new MetricValues();
+  private final MetricValues mShape = new MetricValues();
+  private final ColumnEncoder mTimestamps = new ColumnEncoder(false);
+  private ColumnEncoder[] mColumns = new ColumnEncoder[0];
+  private int mRows;
+
+  public MetricsBatchEncoder(SystemMetricsSerializer<T> serializer, DataOutput output) {
+    mSerializer = serializer;
+    mOutput = new CompactDataOutput(output);
+  }
+
+  public void add(long timestampMs, T metrics) throws IOException {
+    mValues.clear();
+    mSerializer.serializeContents(metrics, mValues);
+
+    if (mRows > 0 && (mRows == MAX_BLOCK_ROWS || !mValues.hasSameShape(mShape))) {
+      flush();
+    }
+
+    if (mRows == 0) {
+      startBlock();
+    }
+
+    mTimestamps.add(timestampMs);
+    for (int i = 0, size = mValues.size(); i < size; i++) {
+      mColumns[i].add(mValues.valueAt(i));
+    }
+    mRows++;
+  }
+
+  /** Writes out the snapshots added so far as a block. */
+  public void flush() throws IOException {
+    if (mRows == 0) {
+      return;
+    }
+
+    int columns = mShape.size();
+    mOutput.writeVarLong(mRows);
+    mOutput.writeVarLong(columns);
+    for (int i = 0; i < columns; i++) {
+      mOutput.writeByte(mShape.typeAt(i));
+    }
+
+    mOutput.writeVarLong(mTimestamps.finish());
+    for (int i = 0; i < columns; i++) {
+      mOutput.writeVarLong(mColumns[i].finish());
+    }
+
+    mTimestamps.writeTo(mOutput);
+    for (int i = 0; i < columns; i++) {
+      mColumns[i].writeTo(mOutput);
+    }
+
+    mRows = 0;
+  }
+
+  /** Writes out any remaining snapshots and ends the batch. */
+  public void finish() throws IOException {
+    flush();
+    mOutput.writeVarLong(0);
+  }
+
+  private void startBlock() {
+    mShape.copyFrom(mValues);
+    int columns = mShape.size();
+    if (mColumns.length < columns) {
+      int previous = mColumns.length;
+      mColumns = Arrays.copyOf(mColumns, columns);
+      for (int i = previous; i < columns; i++) {
+        mColumns[i] = new ColumnEncoder(isFloatingPoint(mShape.typeAt(i)));
+      }
+    }
+
+    mTimestamps.reset();
+    for (int i = 0; i < columns; i++) {
+      if (mColumns[i].isFloatingPoint() != isFloatingPoint(mShape.typeAt(i))) {
+        mColumns[i] = new ColumnEncoder(isFloatingPoint(mShape.typeAt(i)));
+      } else {
+        mColumns[i].reset();
+      }
+    }
+  }
+
+  static boolean isFloatingPoint(byte type) {
+    return type == MetricValues.FLOAT || type == MetricValues.DOUBLE;
+  }
+}
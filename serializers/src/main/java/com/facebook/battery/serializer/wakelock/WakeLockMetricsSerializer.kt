@@ -8,6 +8,7 @@
 package com.facebook.battery.serializer.wakelock
 
 import com.facebook.battery.metrics.wakelock.WakeLockMetrics
+import com.facebook.battery.serializer.core.StringTable
 import com.facebook.battery.serializer.core.SystemMetricsSerializer
 import java.io.DataInput
 import java.io.DataOutput
@@ -23,13 +24,18 @@ class WakeLockMetricsSerializer : SystemMetricsSerializer<WakeLockMetrics?>() {
     output.writeLong(metrics.acquiredCount)
     output.writeBoolean(metrics.isAttributionEnabled)
     if (metrics.isAttributionEnabled) {
+      val stringTable = StringTable.of(output)
       val size = metrics.tagTimeMs.size()
       output.writeInt(size)
       for (i in 0 until size) {
         val key = metrics.tagTimeMs.keyAt(i)
         val value = metrics.tagTimeMs.valueAt(i)
-        output.writeInt(key.length)
-        output.writeChars(key)
+        if (stringTable != null) {
+          stringTable.writeString(output, key)
+        } else {
+          output.writeInt(key.length)
+          output.writeChars(key)
+        }
         output.writeLong(value)
       }
     }
@@ -43,14 +49,21 @@ class WakeLockMetricsSerializer : SystemMetricsSerializer<WakeLockMetrics?>() {
     metrics.acquiredCount = input.readLong()
     metrics.isAttributionEnabled = input.readBoolean()
     if (metrics.isAttributionEnabled) {
+      val stringTable = StringTable.of(input)
       val size = input.readInt()
       for (i in 0 until size) {
-        val keySize = input.readInt()
-        val keyBuilder = StringBuilder()
-        for (j in 0 until keySize) {
-          keyBuilder.append(input.readChar())
-        }
-        metrics.tagTimeMs.put(keyBuilder.toString(), input.readLong())
+        val key =
+            if (stringTable != null) {
+              stringTable.readString(input) ?: return false
+            } else {
+              val keySize = input.readInt()
+              val keyBuilder = StringBuilder()
+              for (j in 0 until keySize) {
+                keyBuilder.append(input.readChar())
+              }
+              keyBuilder.toString()
+            }
+        metrics.tagTimeMs.put(key, input.readLong())
       }
     }
 
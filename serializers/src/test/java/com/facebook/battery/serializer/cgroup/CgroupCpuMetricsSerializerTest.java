@@ -0,0 +1,38 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.serializer.cgroup;
+
+import com.facebook.battery.metrics.cgroup.CgroupCpuMetrics;
+import com.facebook.battery.serializer.core.SystemMetricsSerializer;
+import com.facebook.battery.serializer.core.SystemMetricsSerializerTest;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class)
+public class CgroupCpuMetricsSerializerTest extends SystemMetricsSerializerTest<CgroupCpuMetrics> {
+
+  @Override
+  protected Class<CgroupCpuMetrics> getClazz() {
+    return CgroupCpuMetrics.class;
+  }
+
+  @Override
+  protected SystemMetricsSerializer<CgroupCpuMetrics> getSerializer() {
+    return new CgroupCpuMetricsSerializer();
+  }
+
+  @Override
+  protected CgroupCpuMetrics createInitializedInstance() throws Exception {
+    CgroupCpuMetrics metrics = new CgroupCpuMetrics();
+    metrics.cpuMetrics[CgroupCpuMetrics.TOP_APP].userTimeS = 1.5;
+    metrics.cpuMetrics[CgroupCpuMetrics.TOP_APP].systemTimeS = 0.5;
+    metrics.cpuMetrics[CgroupCpuMetrics.BACKGROUND].userTimeS = 2;
+    metrics.cpuMetrics[CgroupCpuMetrics.OTHER].childSystemTimeS = 3;
+    return metrics;
+  }
+}
@@ -10,11 +10,17 @@ package com.facebook.battery.serializer.composite;
 import static org.assertj.core.api.Assertions.assertThat;
 
 import androidx.annotation.Nullable;
+import androidx.collection.ArrayMap;
 import com.facebook.battery.metrics.composite.CompositeMetrics;
 import com.facebook.battery.metrics.core.SystemMetrics;
+import com.facebook.battery.metrics.cpu.CpuMetrics;
+import com.facebook.battery.metrics.healthstats.HealthStatsMetrics;
 import com.facebook.battery.metrics.time.TimeMetrics;
+import com.facebook.battery.serializer.core.StringTable;
 import com.facebook.battery.serializer.core.SystemMetricsSerializer;
 import com.facebook.battery.serializer.core.SystemMetricsSerializerTest;
+import com.facebook.battery.serializer.cpu.CpuMetricsSerializer;
+import com.facebook.battery.serializer.healthstats.HealthStatsMetricsSerializer;
 import com.facebook.battery.serializer.time.TimeMetricsSerializer;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
@@ -36,6 +42,75 @@ public class CompositeMetricsSerializerTest extends SystemMetricsSerializerTest<
     ByteArrayOutputStream baos = new ByteArrayOutputStream();
     getSerializer().serialize(instance, new DataOutputStream(baos));
 
+    byte[] byteArray = baos.toByteArray();
+    byteArray[6] = (byte) 0xFE; // break the tag index for TimeMetrics
+
+    CompositeMetrics metrics = createInstance();
+    assertThat(
+            getSerializer()
+                .deserialize(metrics, new DataInputStream(new ByteArrayInputStream(byteArray))))
+        .isFalse();
+  }
+
+  @Test
+  public void testUnknownSectionsSkipped() throws Exception {
+    CompositeMetrics instance = createInitializedInstance();
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    new CompositeMetricsSerializer()
+        .addMetricsSerializer(
+            TimeMetrics.class,
+            new SystemMetricsSerializer<TimeMetrics>() {
+              @Override
+              public long getTag() {
+                return 42;
+              }
+
+              @Override
+              public void serializeContents(TimeMetrics metrics, DataOutput output)
+                  throws IOException {
+                output.writeLong(metrics.uptimeMs);
+              }
+
+              @Override
+              public boolean deserializeContents(TimeMetrics metrics, DataInput input) {
+                throw new UnsupportedOperationException();
+              }
+            })
+        .serialize(instance, new DataOutputStream(baos));
+
+    CompositeMetrics metrics = createInstance();
+    assertThat(
+            getSerializer()
+                .deserialize(
+                    metrics, new DataInputStream(new ByteArrayInputStream(baos.toByteArray()))))
+        .isTrue();
+    assertThat(metrics.isValid(TimeMetrics.class)).isFalse();
+  }
+
+  @Test
+  public void testUnwantedSectionsSkipped() throws Exception {
+    CompositeMetrics instance = createDeltaInstance(1, 2, 3);
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    createDeltaSerializer().serialize(instance, new DataOutputStream(baos));
+
+    CompositeMetrics metrics = new CompositeMetrics().putMetric(CpuMetrics.class, new CpuMetrics());
+    assertThat(
+            createDeltaSerializer()
+                .deserialize(
+                    metrics, new DataInputStream(new ByteArrayInputStream(baos.toByteArray()))))
+        .isTrue();
+    assertThat(metrics.isValid(CpuMetrics.class)).isTrue();
+    assertThat(metrics.getMetric(CpuMetrics.class))
+        .isEqualTo(instance.getMetric(CpuMetrics.class));
+  }
+
+  @Test
+  public void testInvalidInnerMetricsVersion2() throws Exception {
+    CompositeMetrics instance = createInitializedInstance();
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    getSerializer()
+        .serialize(instance, new DataOutputStream(baos), SystemMetricsSerializer.VERSION_2);
+
     byte[] byteArray = baos.toByteArray();
     byteArray[21] = (byte) (byteArray[13] + 1); // break the tag for TimeMetrics
 
@@ -64,6 +139,122 @@ public class CompositeMetricsSerializerTest extends SystemMetricsSerializerTest<
     assertThat(metrics.isValid(TimeMetrics.class)).isFalse();
   }
 
+  @Test
+  public void testStringTableSections() throws Exception {
+    CompositeMetricsSerializer serializer =
+        new CompositeMetricsSerializer()
+            .addMetricsSerializer(HealthStatsMetrics.class, new HealthStatsMetricsSerializer())
+            .addMetricsSerializer(TimeMetrics.class, new TimeMetricsSerializer());
+    CompositeMetrics instance =
+        new CompositeMetrics()
+            .putValidMetric(HealthStatsMetrics.class, new HealthStatsMetrics())
+            .putValidMetric(TimeMetrics.class, new TimeMetrics());
+    HealthStatsMetrics healthStats = instance.getMetric(HealthStatsMetrics.class);
+    healthStats.dataType = "uid";
+    healthStats.measurements.put(1, new ArrayMap<String, Long>());
+    healthStats.measurements.get(1).put("com.example.app", 10L);
+    instance.getMetric(TimeMetrics.class).uptimeMs = 5;
+
+    StringTable writeTable = new StringTable();
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    serializer.serialize(instance, new DataOutputStream(baos), writeTable);
+    int firstSize = baos.size();
+    serializer.serialize(instance, new DataOutputStream(baos), writeTable);
+    assertThat(baos.size() - firstSize).isLessThan(firstSize - "com.example.app".length());
+
+    StringTable readTable = new StringTable();
+    DataInputStream input = new DataInputStream(new ByteArrayInputStream(baos.toByteArray()));
+    for (int i = 0; i < 2; i++) {
+      CompositeMetrics output =
+          new CompositeMetrics()
+              .putMetric(HealthStatsMetrics.class, new HealthStatsMetrics())
+              .putMetric(TimeMetrics.class, new TimeMetrics());
+      assertThat(serializer.deserialize(output, input, readTable)).isTrue();
+      assertThat(output).isEqualTo(instance);
+    }
+  }
+
+  @Test
+  public void testDeltaUnchanged() throws Exception {
+    CompositeMetrics baseline = createDeltaInstance(10, 20, 1.5);
+    CompositeMetrics metrics = createDeltaInstance(10, 20, 1.5);
+
+    byte[] bytes = serializeDelta(metrics, baseline);
+    // Count, and a tag index and mode for each metric
+    assertThat(bytes.length).isEqualTo(5);
+    assertThat(deserializeDelta(bytes, baseline)).isEqualTo(metrics);
+  }
+
+  @Test
+  public void testDeltaChangedValues() throws Exception {
+    CompositeMetrics baseline = createDeltaInstance(100_000_000, 200_000_000, 123.25);
+    CompositeMetrics metrics = createDeltaInstance(100_000_010, 200_000_000, 123.5);
+
+    byte[] bytes = serializeDelta(metrics, baseline);
+    ByteArrayOutputStream full = new ByteArrayOutputStream();
+    createDeltaSerializer().serializeContents(metrics, new DataOutputStream(full));
+
+    assertThat(bytes.length).isLessThan(full.size() / 2);
+    assertThat(deserializeDelta(bytes, baseline)).isEqualTo(metrics);
+  }
+
+  @Test
+  public void testDeltaInvalidBaseline() throws Exception {
+    CompositeMetrics baseline = createDeltaInstance(1, 2, 3);
+    baseline.setIsValid(TimeMetrics.class, false);
+    CompositeMetrics metrics = createDeltaInstance(4, 5, 3);
+
+    assertThat(deserializeDelta(serializeDelta(metrics, baseline), baseline)).isEqualTo(metrics);
+  }
+
+  @Test
+  public void testDeltaInvalidMetrics() throws Exception {
+    CompositeMetrics baseline = createDeltaInstance(1, 2, 3);
+    CompositeMetrics metrics = createDeltaInstance(4, 5, 6);
+    metrics.setIsValid(CpuMetrics.class, false);
+
+    CompositeMetrics output = deserializeDelta(serializeDelta(metrics, baseline), baseline);
+    assertThat(output.isValid(CpuMetrics.class)).isFalse();
+    assertThat(output.getMetric(TimeMetrics.class)).isEqualTo(metrics.getMetric(TimeMetrics.class));
+  }
+
+  static CompositeMetricsSerializer createDeltaSerializer() {
+    return new CompositeMetricsSerializer()
+        .addMetricsSerializer(TimeMetrics.class, new TimeMetricsSerializer())
+        .addMetricsSerializer(CpuMetrics.class, new CpuMetricsSerializer());
+  }
+
+  static CompositeMetrics createDeltaInstance(
+      long uptimeMs, long realtimeMs, double userTimeS) {
+    CompositeMetrics metrics =
+        new CompositeMetrics()
+            .putValidMetric(TimeMetrics.class, new TimeMetrics())
+            .putValidMetric(CpuMetrics.class, new CpuMetrics());
+    metrics.getMetric(TimeMetrics.class).uptimeMs = uptimeMs;
+    metrics.getMetric(TimeMetrics.class).realtimeMs = realtimeMs;
+    metrics.getMetric(CpuMetrics.class).userTimeS = userTimeS;
+    metrics.getMetric(CpuMetrics.class).systemTimeS = 1;
+    return metrics;
+  }
+
+  private static byte[] serializeDelta(CompositeMetrics metrics, CompositeMetrics baseline)
+      throws IOException {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    createDeltaSerializer().serializeDelta(metrics, baseline, new DataOutputStream(baos));
+    return baos.toByteArray();
+  }
+
+  private static CompositeMetrics deserializeDelta(byte[] bytes, CompositeMetrics baseline)
+      throws IOException {
+    CompositeMetrics output = createDeltaInstance(0, 0, 0);
+    assertThat(
+            createDeltaSerializer()
+                .deserializeDelta(
+                    output, baseline, new DataInputStream(new ByteArrayInputStream(bytes))))
+        .isTrue();
+    return output;
+  }
+
   @Test(expected = RuntimeException.class)
   public void testMetricsWithTheSameTag() {
     CompositeMetricsSerializer serializer = new CompositeMetricsSerializer();
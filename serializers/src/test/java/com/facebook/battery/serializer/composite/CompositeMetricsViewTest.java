@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.serializer.composite;
+
+import static com.facebook.battery.serializer.composite.CompositeMetricsSerializerTest.createDeltaInstance;
+import static com.facebook.battery.serializer.composite.CompositeMetricsSerializerTest.createDeltaSerializer;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.facebook.battery.metrics.composite.CompositeMetrics;
+import com.facebook.battery.metrics.cpu.CpuMetrics;
+import com.facebook.battery.metrics.network.NetworkMetrics;
+import com.facebook.battery.metrics.time.TimeMetrics;
+import com.facebook.battery.serializer.core.SystemMetricsSerializer;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.nio.ByteBuffer;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class)
+public class CompositeMetricsViewTest {
+
+  @Test
+  public void testConsecutiveRecords() throws Exception {
+    CompositeMetricsSerializer serializer = createDeltaSerializer();
+    CompositeMetrics first = createDeltaInstance(1, 2, 3);
+    CompositeMetrics second = createDeltaInstance(4, 5, 6);
+    second.setIsValid(TimeMetrics.class, false);
+
+    ByteBuffer buffer =
+        ByteBuffer.allocate(serializer.serializedSize(first) + serializer.serializedSize(second));
+    serializer.serializeTo(first, buffer);
+    serializer.serializeTo(second, buffer);
+    buffer.flip();
+
+    CompositeMetricsView view = new CompositeMetricsView(serializer);
+    TimeMetrics timeMetrics = new TimeMetrics();
+    CpuMetrics cpuMetrics = new CpuMetrics();
+
+    assertThat(view.next(buffer)).isTrue();
+    assertThat(view.getMetric(TimeMetrics.class, timeMetrics)).isTrue();
+    assertThat(timeMetrics).isEqualTo(first.getMetric(TimeMetrics.class));
+
+    assertThat(view.next(buffer)).isTrue();
+    assertThat(view.hasMetric(TimeMetrics.class)).isFalse();
+    assertThat(view.getMetric(TimeMetrics.class, timeMetrics)).isFalse();
+    assertThat(view.getMetric(CpuMetrics.class, cpuMetrics)).isTrue();
+    assertThat(cpuMetrics).isEqualTo(second.getMetric(CpuMetrics.class));
+
+    assertThat(buffer.hasRemaining()).isFalse();
+  }
+
+  @Test
+  public void testUnregisteredMetrics() throws Exception {
+    CompositeMetricsSerializer serializer = createDeltaSerializer();
+    ByteBuffer buffer = serialize(serializer, createDeltaInstance(1, 2, 3));
+
+    CompositeMetricsView view = new CompositeMetricsView(serializer);
+    assertThat(view.next(buffer)).isTrue();
+    assertThat(view.hasMetric(NetworkMetrics.class)).isFalse();
+    assertThat(view.getMetric(NetworkMetrics.class, new NetworkMetrics())).isFalse();
+  }
+
+  @Test
+  public void testVersion2IsNotSupported() throws Exception {
+    CompositeMetricsSerializer serializer = createDeltaSerializer();
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    serializer.serialize(
+        createDeltaInstance(1, 2, 3),
+        new DataOutputStream(baos),
+        SystemMetricsSerializer.VERSION_2);
+
+    CompositeMetricsView view = new CompositeMetricsView(serializer);
+    assertThat(view.next(ByteBuffer.wrap(baos.toByteArray()))).isFalse();
+    assertThat(view.hasMetric(TimeMetrics.class)).isFalse();
+  }
+
+  private static ByteBuffer serialize(
+      CompositeMetricsSerializer serializer, CompositeMetrics metrics) throws Exception {
+    ByteBuffer buffer = ByteBuffer.allocate(serializer.serializedSize(metrics));
+    serializer.serializeTo(metrics, buffer);
+    buffer.flip();
+    return buffer;
+  }
+}
@@ -0,0 +1,29 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.serializer.contextswitch;
+
+import com.facebook.battery.metrics.contextswitch.ContextSwitchMetrics;
+import com.facebook.battery.serializer.core.SystemMetricsSerializer;
+import com.facebook.battery.serializer.core.SystemMetricsSerializerTest;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class)
+public class ContextSwitchMetricsSerializerTest
+    extends SystemMetricsSerializerTest<ContextSwitchMetrics> {
+
+  @Override
+  protected Class<ContextSwitchMetrics> getClazz() {
+    return ContextSwitchMetrics.class;
+  }
+
+  @Override
+  protected SystemMetricsSerializer<ContextSwitchMetrics> getSerializer() {
+    return new ContextSwitchMetricsSerializer();
+  }
+}
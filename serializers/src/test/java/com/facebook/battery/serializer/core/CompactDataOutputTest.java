@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.serializer.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class)
+public class CompactDataOutputTest {
+
+  private static final long[] LONGS = {
+    0, 1, -1, 63, -64, 64, 127, 128, 300, -300, Integer.MAX_VALUE, Integer.MIN_VALUE,
+    Long.MAX_VALUE, Long.MIN_VALUE
+  };
+
+  @Test
+  public void testLongs() throws Exception {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    CompactDataOutput output = new CompactDataOutput(new DataOutputStream(baos));
+    for (long value : LONGS) {
+      output.writeLong(value);
+    }
+
+    CompactDataInput input = createInput(baos);
+    for (long value : LONGS) {
+      assertThat(input.readLong()).isEqualTo(value);
+    }
+  }
+
+  @Test
+  public void testMixedValues() throws Exception {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    CompactDataOutput output = new CompactDataOutput(new DataOutputStream(baos));
+    output.writeInt(Integer.MIN_VALUE);
+    output.writeInt(42);
+    output.writeShort(0xFB);
+    output.writeShort(-2);
+    output.writeChars("wake\u00e9\u4e2d");
+    output.writeBoolean(true);
+    output.writeDouble(1.5);
+    output.writeByte(7);
+
+    CompactDataInput input = createInput(baos);
+    assertThat(input.readInt()).isEqualTo(Integer.MIN_VALUE);
+    assertThat(input.readInt()).isEqualTo(42);
+    assertThat(input.readShort()).isEqualTo((short) 0xFB);
+    assertThat(input.readShort()).isEqualTo((short) -2);
+    StringBuilder chars = new StringBuilder();
+    for (int i = 0; i < "wake\u00e9\u4e2d".length(); i++) {
+      chars.append(input.readChar());
+    }
+    assertThat(chars.toString()).isEqualTo("wake\u00e9\u4e2d");
+    assertThat(input.readBoolean()).isTrue();
+    assertThat(input.readDouble()).isEqualTo(1.5);
+    assertThat(input.readByte()).isEqualTo((byte) 7);
+  }
+
+  @Test
+  public void testByteBufferInput() throws Exception {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    CompactDataOutput output = new CompactDataOutput(new DataOutputStream(baos));
+    for (long value : LONGS) {
+      output.writeLong(value);
+    }
+    output.writeInt(-42);
+    output.writeDouble(1.5);
+
+    CompactDataInput input = new CompactByteBufferDataInput(ByteBuffer.wrap(baos.toByteArray()));
+    for (long value : LONGS) {
+      assertThat(input.readLong()).isEqualTo(value);
+    }
+    assertThat(input.readInt()).isEqualTo(-42);
+    assertThat(input.readDouble()).isEqualTo(1.5);
+  }
+
+  @Test(expected = EOFException.class)
+  public void testTruncatedByteBufferInput() throws Exception {
+    new CompactByteBufferDataInput(ByteBuffer.wrap(new byte[] {(byte) 0x80})).readLong();
+  }
+
+  @Test
+  public void testSmallValuesAreCompact() throws Exception {
+    assertThat(sizeOf(0)).isEqualTo(1);
+    assertThat(sizeOf(-1)).isEqualTo(1);
+    assertThat(sizeOf(63)).isEqualTo(1);
+    assertThat(sizeOf(64)).isEqualTo(2);
+    assertThat(sizeOf(100_000)).isEqualTo(3);
+    assertThat(sizeOf(Long.MIN_VALUE)).isEqualTo(10);
+  }
+
+  @Test(expected = IOException.class)
+  public void testMalformedVarint() throws Exception {
+    byte[] bytes = new byte[11];
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = (byte) 0x80;
+    }
+    new CompactDataInput(new DataInputStream(new ByteArrayInputStream(bytes))).readLong();
+  }
+
+  @Test
+  public void testTags() throws Exception {
+    long bundledTag = 2_353_414_016_265_691_865L; // CpuMetricsSerializer
+    long customTag = 123_456_789L;
+
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    CompactDataOutput output = new CompactDataOutput(new DataOutputStream(baos));
+    SerializerTags.writeTag(output, bundledTag, SystemMetricsSerializer.VERSION_3);
+    assertThat(baos.size()).isEqualTo(1);
+    SerializerTags.writeTag(output, customTag, SystemMetricsSerializer.VERSION_3);
+
+    CompactDataInput input = createInput(baos);
+    assertThat(SerializerTags.readTag(input, SystemMetricsSerializer.VERSION_3))
+        .isEqualTo(bundledTag);
+    assertThat(SerializerTags.readTag(input, SystemMetricsSerializer.VERSION_3))
+        .isEqualTo(customTag);
+  }
+
+  private static int sizeOf(long value) throws IOException {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    new CompactDataOutput(new DataOutputStream(baos)).writeLong(value);
+    return baos.size();
+  }
+
+  private static CompactDataInput createInput(ByteArrayOutputStream baos) {
+    return new CompactDataInput(
+        new DataInputStream(new ByteArrayInputStream(baos.toByteArray())));
+  }
+}
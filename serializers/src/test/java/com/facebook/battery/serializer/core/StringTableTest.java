@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.serializer.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import org.junit.Test;
+
+public class StringTableTest {
+
+  @Test
+  public void testRepeatedStrings() throws Exception {
+    StringTable writeTable = new StringTable();
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    CompactDataOutput output = new CompactDataOutput(new DataOutputStream(baos), writeTable);
+
+    writeTable.writeString(output, "com.example.app:sync");
+    int first = baos.size();
+    writeTable.writeString(output, "com.example.app:sync");
+    writeTable.writeString(output, null);
+    writeTable.writeString(output, "other");
+    writeTable.writeString(output, "other");
+
+    assertThat(baos.size() - first).isEqualTo(1 + 1 + (1 + 2 + "other".length()) + 1);
+
+    StringTable readTable = new StringTable();
+    CompactDataInput input =
+        new CompactDataInput(
+            new DataInputStream(new ByteArrayInputStream(baos.toByteArray())), readTable);
+
+    String sync = readTable.readString(input);
+    assertThat(sync).isEqualTo("com.example.app:sync");
+    assertThat(readTable.readString(input)).isSameAs(sync);
+    assertThat(readTable.readString(input)).isNull();
+    assertThat(readTable.readString(input)).isSameAs("other");
+    assertThat(readTable.readString(input)).isSameAs("other");
+  }
+
+  @Test
+  public void testTruncate() throws Exception {
+    StringTable table = new StringTable();
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    CompactDataOutput output = new CompactDataOutput(new DataOutputStream(baos), table);
+
+    table.writeString(output, "first");
+    table.writeString(output, "second");
+    table.truncate(1);
+    assertThat(table.size()).isEqualTo(1);
+
+    int size = baos.size();
+    table.writeString(output, "second");
+    assertThat(baos.size() - size).isEqualTo(1 + 2 + "second".length());
+  }
+
+  @Test
+  public void testOutOfRangeReference() throws Exception {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    CompactDataOutput output = new CompactDataOutput(new DataOutputStream(baos));
+    output.writeInt(2);
+    output.writeInt(-1);
+
+    StringTable table = new StringTable();
+    CompactDataInput input =
+        new CompactDataInput(
+            new DataInputStream(new ByteArrayInputStream(baos.toByteArray())), table);
+    for (int i = 0; i < 2; i++) {
+      try {
+        table.readString(input);
+        fail("Expected an IOException");
+      } catch (IOException expected) {
+      }
+    }
+  }
+
+  @Test
+  public void testAttachedTable() {
+    StringTable table = new StringTable();
+    DataOutputStream output = new DataOutputStream(new ByteArrayOutputStream());
+
+    assertThat(StringTable.of(output)).isNull();
+    assertThat(StringTable.of(new CompactDataOutput(output))).isNull();
+    assertThat(StringTable.of(new CompactDataOutput(output, table))).isSameAs(table);
+  }
+}
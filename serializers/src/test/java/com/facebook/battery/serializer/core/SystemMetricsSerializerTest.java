@@ -16,6 +16,8 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import org.junit.Test;
 
 @Nullsafe(Nullsafe.Mode.LOCAL)
@@ -34,6 +36,82 @@ public abstract class SystemMetricsSerializerTest<T extends SystemMetrics<T>> {
     assertThat(output).isEqualTo(instance);
   }
 
+  @Test
+  public void testVersion2Serialization() throws Exception {
+    T instance = createInitializedInstance();
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    getSerializer()
+        .serialize(instance, new DataOutputStream(baos), SystemMetricsSerializer.VERSION_2);
+
+    ByteArrayInputStream bais = new ByteArrayInputStream(baos.toByteArray());
+    T output = createInstance();
+
+    assertThat(getSerializer().deserialize(output, new DataInputStream(bais))).isTrue();
+    assertThat(output).isEqualTo(instance);
+  }
+
+  @Test
+  public void testByteBufferSerialization() throws Exception {
+    T instance = createInitializedInstance();
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    getSerializer().serialize(instance, new DataOutputStream(baos));
+
+    int size = getSerializer().serializedSize(instance);
+    assertThat(size).isEqualTo(baos.size());
+
+    ByteBuffer buffer = ByteBuffer.allocate(size + 2).order(ByteOrder.LITTLE_ENDIAN);
+    buffer.put((byte) 1);
+    getSerializer().serializeTo(instance, buffer);
+    assertThat(buffer.position()).isEqualTo(size + 1);
+    assertThat(buffer.order()).isEqualTo(ByteOrder.LITTLE_ENDIAN);
+
+    byte[] bytes = new byte[size];
+    buffer.position(1);
+    buffer.get(bytes);
+    assertThat(bytes).isEqualTo(baos.toByteArray());
+
+    buffer.position(1);
+    T output = createInstance();
+    assertThat(getSerializer().deserializeFrom(output, buffer)).isTrue();
+    assertThat(output).isEqualTo(instance);
+    assertThat(buffer.position()).isEqualTo(size + 1);
+  }
+
+  @Test
+  public void testByteBufferVersion2Deserialization() throws Exception {
+    T instance = createInitializedInstance();
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    getSerializer()
+        .serialize(instance, new DataOutputStream(baos), SystemMetricsSerializer.VERSION_2);
+
+    ByteBuffer buffer = ByteBuffer.wrap(baos.toByteArray());
+    T output = createInstance();
+    assertThat(getSerializer().deserializeFrom(output, buffer)).isTrue();
+    assertThat(output).isEqualTo(instance);
+    assertThat(buffer.remaining()).isEqualTo(0);
+  }
+
+  @Test
+  public void testStringTableSerialization() throws Exception {
+    T instance = createInitializedInstance();
+    StringTable writeTable = new StringTable();
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    DataOutputStream output = new DataOutputStream(baos);
+    getSerializer().serialize(instance, output, writeTable);
+    getSerializer().serialize(instance, output, writeTable);
+
+    StringTable readTable = new StringTable();
+    DataInputStream input = new DataInputStream(new ByteArrayInputStream(baos.toByteArray()));
+    T first = createInstance();
+    T second = createInstance();
+
+    assertThat(getSerializer().deserialize(first, input, readTable)).isTrue();
+    assertThat(getSerializer().deserialize(second, input, readTable)).isTrue();
+    assertThat(first).isEqualTo(instance);
+    assertThat(second).isEqualTo(instance);
+    assertThat(readTable.size()).isEqualTo(writeTable.size());
+  }
+
   @Test
   public void testSerializeContents() throws Exception {
     T instance = createInitializedInstance();
@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.serializer.cpu;
+
+import com.facebook.battery.metrics.cpu.CpuFrequencyMetricsCollector;
+import com.facebook.battery.metrics.cpu.SystemCpuMetrics;
+import com.facebook.battery.serializer.core.SystemMetricsSerializer;
+import com.facebook.battery.serializer.core.SystemMetricsSerializerTest;
+import org.junit.BeforeClass;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class)
+public class SystemCpuMetricsSerializerTest extends SystemMetricsSerializerTest<SystemCpuMetrics> {
+
+  @BeforeClass
+  public static void overrideCpuCores() {
+    CpuFrequencyMetricsCollector.overrideCores();
+  }
+
+  @Override
+  protected Class<SystemCpuMetrics> getClazz() {
+    return SystemCpuMetrics.class;
+  }
+
+  @Override
+  protected SystemMetricsSerializer<SystemCpuMetrics> getSerializer() {
+    return new SystemCpuMetricsSerializer();
+  }
+
+  @Override
+  protected SystemCpuMetrics createInitializedInstance() throws Exception {
+    SystemCpuMetrics metrics = new SystemCpuMetrics();
+    // Core 0 fits in ints, core 1 is offline and core 2 needs longs.
+    for (int i = 0; i < SystemCpuMetrics.FIELDS; i++) {
+      metrics.ticks[i] = i + 1;
+      metrics.ticks[2 * SystemCpuMetrics.FIELDS + i] = Integer.MAX_VALUE + (long) i;
+    }
+    return metrics;
+  }
+}
@@ -7,10 +7,17 @@
 
 package com.facebook.battery.serializer.healthstats;
 
+import static org.assertj.core.api.Assertions.assertThat;
+
 import androidx.collection.ArrayMap;
 import com.facebook.battery.metrics.healthstats.HealthStatsMetrics;
 import com.facebook.battery.serializer.core.SystemMetricsSerializer;
 import com.facebook.battery.serializer.core.SystemMetricsSerializerTest;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.robolectric.RobolectricTestRunner;
 
@@ -28,6 +35,25 @@ public class HealthStatsMetricsSerializerTest
     return new HealthStatsMetricsSerializer();
   }
 
+  @Test
+  public void testNonLatin1Strings() throws Exception {
+    HealthStatsMetrics instance = createTestMetricsWithoutStats();
+    instance.dataType = "\u0442\u0435\u0441\u0442";
+    instance.measurements.get(234).put("\u6e2c\u5b9a", 4000L);
+    instance.timers.get(456).put("\u23f1", new HealthStatsMetrics.TimerMetrics(1, 10));
+
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    getSerializer().serialize(instance, new DataOutputStream(baos));
+
+    HealthStatsMetrics output = new HealthStatsMetrics();
+    assertThat(
+            getSerializer()
+                .deserialize(
+                    output, new DataInputStream(new ByteArrayInputStream(baos.toByteArray()))))
+        .isTrue();
+    assertThat(output).isEqualTo(instance);
+  }
+
   @Override
   protected HealthStatsMetrics createInitializedInstance() {
     HealthStatsMetrics metrics = createTestMetricsWithoutStats();
@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.serializer.log;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.facebook.battery.metrics.overhead.CollectorOverheadMetrics;
+import com.facebook.battery.serializer.overhead.CollectorOverheadMetricsSerializer;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class)
+public class MetricsLogTest {
+
+  private static final int SEGMENT_SIZE = 64;
+
+  TemporaryFolder mFolder = new TemporaryFolder();
+
+  @Before
+  public void setUp() throws Exception {
+    mFolder.create();
+  }
+
+  @Test
+  public void testEmptyLog() throws Exception {
+    MetricsLog log = new MetricsLog(mFolder.getRoot(), SEGMENT_SIZE, 2);
+    assertThat(log.readLast()).isNull();
+    assertThat(readAll(log)).isEmpty();
+  }
+
+  @Test
+  public void testAppend() throws Exception {
+    MetricsLog log = new MetricsLog(mFolder.getRoot(), SEGMENT_SIZE, 2);
+    log.append("first".getBytes());
+    log.append("second".getBytes());
+
+    assertThat(readAll(log)).containsExactly("first", "second");
+    assertThat(new String(log.readLast())).isEqualTo("second");
+  }
+
+  @Test
+  public void testReopen() throws Exception {
+    MetricsLog log = new MetricsLog(mFolder.getRoot(), SEGMENT_SIZE, 2);
+    log.append("first".getBytes());
+    log.close();
+
+    log = new MetricsLog(mFolder.getRoot(), SEGMENT_SIZE, 2);
+    log.append("second".getBytes());
+
+    assertThat(readAll(log)).containsExactly("first", "second");
+  }
+
+  @Test
+  public void testRecoversFromCorruptFrame() throws Exception {
+    MetricsLog log = new MetricsLog(mFolder.getRoot(), SEGMENT_SIZE, 2);
+    log.append("first".getBytes());
+    log.append("second".getBytes());
+    log.close();
+
+    // Corrupt the payload of the second frame
+    int offset =
+        MetricsLog.SEGMENT_HEADER_SIZE + 2 * MetricsLog.FRAME_HEADER_SIZE + "first".length();
+    try (RandomAccessFile file = new RandomAccessFile(getSegments()[0], "rw")) {
+      file.seek(offset);
+      file.write('S');
+    }
+
+    log = new MetricsLog(mFolder.getRoot(), SEGMENT_SIZE, 2);
+    assertThat(readAll(log)).containsExactly("first");
+
+    log.append("third".getBytes());
+    log.close();
+
+    log = new MetricsLog(mFolder.getRoot(), SEGMENT_SIZE, 2);
+    assertThat(readAll(log)).containsExactly("first", "third");
+  }
+
+  @Test
+  public void testRolloverAndRetention() throws Exception {
+    MetricsLog log = new MetricsLog(mFolder.getRoot(), SEGMENT_SIZE, 2);
+    // Each record takes 28 bytes: two of them fit in a segment
+    for (int i = 0; i < 7; i++) {
+      log.append(("record-" + i + "-abcdefghijk").getBytes());
+    }
+
+    assertThat(getSegments()).hasSize(2);
+    assertThat(readAll(log))
+        .containsExactly(
+            "record-4-abcdefghijk", "record-5-abcdefghijk", "record-6-abcdefghijk");
+
+    log.close();
+    log = new MetricsLog(mFolder.getRoot(), SEGMENT_SIZE, 2);
+    assertThat(new String(log.readLast())).isEqualTo("record-6-abcdefghijk");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRecordTooLarge() throws Exception {
+    MetricsLog log = new MetricsLog(mFolder.getRoot(), SEGMENT_SIZE, 2);
+    log.append(new byte[SEGMENT_SIZE]);
+  }
+
+  @Test
+  public void testStringTableStartsWithEverySegment() throws Exception {
+    CollectorOverheadMetricsSerializer serializer = new CollectorOverheadMetricsSerializer();
+    MetricsLog log = new MetricsLog(mFolder.getRoot(), 128, 8);
+    for (int i = 0; i < 5; i++) {
+      log.append(serializer, createOverheadMetrics("cpu", i));
+    }
+    assertThat(getSegments().length).isGreaterThan(1);
+    assertThat(readAllMetrics(log, serializer))
+        .containsExactly("cpu=0", "cpu=1", "cpu=2", "cpu=3", "cpu=4");
+
+    // The table is gone after reopening: new records can't refer to it
+    log.close();
+    log = new MetricsLog(mFolder.getRoot(), 128, 8);
+    log.append(serializer, createOverheadMetrics("network", 5));
+    log.append(serializer, createOverheadMetrics("network", 6));
+    assertThat(readAllMetrics(log, serializer))
+        .containsExactly("cpu=0", "cpu=1", "cpu=2", "cpu=3", "cpu=4", "network=5", "network=6");
+  }
+
+  private File[] getSegments() {
+    return mFolder.getRoot().listFiles();
+  }
+
+  private static CollectorOverheadMetrics createOverheadMetrics(String name, long count) {
+    CollectorOverheadMetrics metrics = new CollectorOverheadMetrics(true);
+    metrics.getOrCreateCollector(name).snapshotCount = count;
+    return metrics;
+  }
+
+  private static List<String> readAllMetrics(
+      MetricsLog log, CollectorOverheadMetricsSerializer serializer) throws IOException {
+    final List<String> records = new ArrayList<>();
+    log.forEach(
+        serializer,
+        new CollectorOverheadMetrics(),
+        new MetricsLog.MetricsVisitor<CollectorOverheadMetrics>() {
+          @Override
+          public void onMetrics(CollectorOverheadMetrics metrics) {
+            records.add(
+                metrics.collectors.keyAt(0) + "=" + metrics.collectors.valueAt(0).snapshotCount);
+          }
+        });
+    return records;
+  }
+
+  private static List<String> readAll(MetricsLog log) throws IOException {
+    final List<String> records = new ArrayList<>();
+    log.forEach(
+        new MetricsLog.Visitor() {
+          @Override
+          public void onRecord(ByteBuffer record) {
+            byte[] bytes = new byte[record.remaining()];
+            record.get(bytes);
+            records.add(new String(bytes));
+          }
+        });
+    return records;
+  }
+}
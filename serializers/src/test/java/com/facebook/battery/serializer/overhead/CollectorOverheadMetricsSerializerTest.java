@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.serializer.overhead;
+
+import com.facebook.battery.metrics.overhead.CollectorOverheadMetrics;
+import com.facebook.battery.serializer.core.SystemMetricsSerializer;
+import com.facebook.battery.serializer.core.SystemMetricsSerializerTest;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class)
+public class CollectorOverheadMetricsSerializerTest
+    extends SystemMetricsSerializerTest<CollectorOverheadMetrics> {
+
+  @Override
+  protected Class<CollectorOverheadMetrics> getClazz() {
+    return CollectorOverheadMetrics.class;
+  }
+
+  @Override
+  protected SystemMetricsSerializer<CollectorOverheadMetrics> getSerializer() {
+    return new CollectorOverheadMetricsSerializer();
+  }
+
+  @Override
+  protected CollectorOverheadMetrics createInitializedInstance() throws Exception {
+    CollectorOverheadMetrics metrics = super.createInitializedInstance();
+    metrics.isAttributionEnabled = true;
+    CollectorOverheadMetrics cpu = metrics.getOrCreateCollector("CpuMetrics");
+    cpu.snapshotCount = 3;
+    cpu.wallTimeNs = 12_345;
+    cpu.failureCount = 1;
+    metrics.getOrCreateCollector("DiskMetrics").allocatedBytes = 512;
+    return metrics;
+  }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.serializer.payload;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.facebook.battery.metrics.composite.CompositeMetrics;
+import com.facebook.battery.metrics.cpu.CpuMetrics;
+import com.facebook.battery.metrics.time.TimeMetrics;
+import com.facebook.battery.serializer.composite.CompositeMetricsSerializer;
+import com.facebook.battery.serializer.cpu.CpuMetricsSerializer;
+import com.facebook.battery.serializer.time.TimeMetricsSerializer;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.Inflater;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class)
+public class PayloadBuilderTest {
+
+  private final CompositeMetricsSerializer mSerializer =
+      new CompositeMetricsSerializer()
+          .addMetricsSerializer(TimeMetrics.class, new TimeMetricsSerializer())
+          .addMetricsSerializer(CpuMetrics.class, new CpuMetricsSerializer());
+
+  @Test
+  public void testRoundTrip() throws Exception {
+    List<CompositeMetrics> snapshots = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      snapshots.add(createMetrics(i));
+    }
+    byte[] dictionary =
+        PayloadBuilder.createDictionary(mSerializer, Arrays.asList(createMetrics(1000)));
+
+    PayloadBuilder<CompositeMetrics> builder =
+        new PayloadBuilder<>(mSerializer, 64 * 1024, dictionary);
+    for (CompositeMetrics snapshot : snapshots) {
+      assertThat(builder.add(snapshot)).isTrue();
+    }
+    assertThat(builder.getRecordCount()).isEqualTo(100);
+
+    DataInputStream input = inflate(builder.seal(), dictionary);
+    for (CompositeMetrics snapshot : snapshots) {
+      byte[] record = new byte[input.readInt()];
+      input.readFully(record);
+      CompositeMetrics metrics = createMetrics(0);
+      assertThat(
+              mSerializer.deserialize(
+                  metrics, new DataInputStream(new ByteArrayInputStream(record))))
+          .isTrue();
+      assertThat(metrics).isEqualTo(snapshot);
+    }
+    assertThat(input.read()).isEqualTo(-1);
+    builder.release();
+  }
+
+  @Test
+  public void testStaysWithinBudget() throws Exception {
+    PayloadBuilder<CompositeMetrics> builder = new PayloadBuilder<>(mSerializer, 512, null);
+    int added = 0;
+    while (builder.add(createMetrics(added))) {
+      added++;
+    }
+    assertThat(added).isGreaterThan(5);
+    assertThat(builder.seal().remaining()).isLessThanOrEqualTo(512);
+
+    builder.reset();
+    assertThat(builder.isEmpty()).isTrue();
+    assertThat(builder.add(createMetrics(added))).isTrue();
+    assertThat(countRecords(inflate(builder.seal(), null))).isEqualTo(1);
+  }
+
+  @Test
+  public void testIncompressibleRecords() throws Exception {
+    Random random = new Random(7);
+    for (int budget : new int[] {100, 1000, 4096, 70_000}) {
+      PayloadBuilder<CompositeMetrics> builder = new PayloadBuilder<>(mSerializer, budget, null);
+      int added = 0;
+      byte[] record = new byte[1 + random.nextInt(40)];
+      random.nextBytes(record);
+      while (builder.add(record, 0, record.length)) {
+        added++;
+        record = new byte[1 + random.nextInt(40)];
+        random.nextBytes(record);
+      }
+      ByteBuffer payload = builder.seal();
+      assertThat(payload.remaining()).isLessThanOrEqualTo(budget);
+      assertThat(countRecords(inflate(payload, null))).isEqualTo(added);
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRecordTooLarge() throws Exception {
+    new PayloadBuilder<>(mSerializer, 64, null).add(new byte[100], 0, 100);
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testAddAfterSeal() throws Exception {
+    PayloadBuilder<CompositeMetrics> builder = new PayloadBuilder<>(mSerializer, 1024, null);
+    builder.seal();
+    builder.add(createMetrics(0));
+  }
+
+  private static DataInputStream inflate(ByteBuffer payload, byte[] dictionary)
+      throws Exception {
+    byte[] compressed = new byte[payload.remaining()];
+    payload.get(compressed);
+
+    Inflater inflater = new Inflater();
+    inflater.setInput(compressed);
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    byte[] buffer = new byte[1024];
+    while (!inflater.finished()) {
+      int inflated = inflater.inflate(buffer);
+      if (inflated == 0 && inflater.needsDictionary()) {
+        inflater.setDictionary(dictionary);
+      }
+      output.write(buffer, 0, inflated);
+    }
+    inflater.end();
+    return new DataInputStream(new ByteArrayInputStream(output.toByteArray()));
+  }
+
+  private static int countRecords(DataInputStream input) throws Exception {
+    int count = 0;
+    while (input.available() > 0) {
+      input.skipBytes(input.readInt());
+      count++;
+    }
+    return count;
+  }
+
+  private static CompositeMetrics createMetrics(int i) {
+    TimeMetrics time = new TimeMetrics();
+    time.realtimeMs = 60_000L * i;
+    time.uptimeMs = 50_000L * i;
+    CpuMetrics cpu = new CpuMetrics();
+    cpu.userTimeS = i * 1.5;
+    cpu.systemTimeS = i * 0.25;
+    return new CompositeMetrics()
+        .putValidMetric(TimeMetrics.class, time)
+        .putValidMetric(CpuMetrics.class, cpu);
+  }
+}
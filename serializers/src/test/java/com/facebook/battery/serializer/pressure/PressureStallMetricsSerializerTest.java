@@ -0,0 +1,29 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.serializer.pressure;
+
+import com.facebook.battery.metrics.pressure.PressureStallMetrics;
+import com.facebook.battery.serializer.core.SystemMetricsSerializer;
+import com.facebook.battery.serializer.core.SystemMetricsSerializerTest;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class)
+public class PressureStallMetricsSerializerTest
+    extends SystemMetricsSerializerTest<PressureStallMetrics> {
+
+  @Override
+  protected Class<PressureStallMetrics> getClazz() {
+    return PressureStallMetrics.class;
+  }
+
+  @Override
+  protected SystemMetricsSerializer<PressureStallMetrics> getSerializer() {
+    return new PressureStallMetricsSerializer();
+  }
+}
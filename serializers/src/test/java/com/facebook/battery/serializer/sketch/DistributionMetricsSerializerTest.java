@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.serializer.sketch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.facebook.battery.metrics.sketch.DistributionMetrics;
+import com.facebook.battery.metrics.sketch.QuantileSketch;
+import com.facebook.battery.serializer.core.SystemMetricsSerializer;
+import com.facebook.battery.serializer.core.SystemMetricsSerializerTest;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class)
+public class DistributionMetricsSerializerTest
+    extends SystemMetricsSerializerTest<DistributionMetrics> {
+
+  @Override
+  protected Class<DistributionMetrics> getClazz() {
+    return DistributionMetrics.class;
+  }
+
+  @Override
+  protected SystemMetricsSerializer<DistributionMetrics> getSerializer() {
+    return new DistributionMetricsSerializer();
+  }
+
+  @Override
+  protected DistributionMetrics createInitializedInstance() {
+    DistributionMetrics metrics = new DistributionMetrics();
+    metrics.getOrCreateSketch("cpu_time_s").add(1.5);
+    metrics.getOrCreateSketch("cpu_time_s").add(20);
+    QuantileSketch bytes = new QuantileSketch(0.01, 1, 2048);
+    bytes.add(4096, 2);
+    metrics.sketches.put("mobile_bytes", bytes);
+    return metrics;
+  }
+
+  @Test
+  public void testReusesSketches() throws Exception {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    getSerializer().serialize(createInitializedInstance(), new DataOutputStream(output));
+
+    DistributionMetrics metrics = new DistributionMetrics();
+    QuantileSketch cpuTime = metrics.getOrCreateSketch("cpu_time_s");
+    metrics.getOrCreateSketch("stale").add(1);
+    DataInputStream input = new DataInputStream(new ByteArrayInputStream(output.toByteArray()));
+    assertThat(getSerializer().deserialize(metrics, input)).isTrue();
+
+    assertThat(metrics).isEqualTo(createInitializedInstance());
+    assertThat(metrics.sketches.get("cpu_time_s")).isSameAs(cpuTime);
+  }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.serializer.sketch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.facebook.battery.metrics.sketch.QuantileSketch;
+import com.facebook.battery.serializer.core.SystemMetricsSerializer;
+import com.facebook.battery.serializer.core.SystemMetricsSerializerTest;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class)
+public class QuantileSketchSerializerTest extends SystemMetricsSerializerTest<QuantileSketch> {
+
+  @Override
+  protected Class<QuantileSketch> getClazz() {
+    return QuantileSketch.class;
+  }
+
+  @Override
+  protected SystemMetricsSerializer<QuantileSketch> getSerializer() {
+    return new QuantileSketchSerializer();
+  }
+
+  @Override
+  protected QuantileSketch createInitializedInstance() {
+    QuantileSketch sketch = new QuantileSketch();
+    sketch.add(0);
+    sketch.add(0.5);
+    sketch.add(12.25, 3);
+    sketch.add(1e6);
+    return sketch;
+  }
+
+  @Test
+  public void testMismatchedParameters() throws Exception {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    getSerializer().serialize(createInitializedInstance(), new DataOutputStream(output));
+
+    QuantileSketch sketch = new QuantileSketch(0.01, 1, 10);
+    DataInputStream input = new DataInputStream(new ByteArrayInputStream(output.toByteArray()));
+    assertThat(getSerializer().deserialize(sketch, input)).isFalse();
+  }
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.serializer.thermal;
+
+import com.facebook.battery.metrics.thermal.ThermalMetrics;
+import com.facebook.battery.serializer.core.SystemMetricsSerializer;
+import com.facebook.battery.serializer.core.SystemMetricsSerializerTest;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class)
+public class ThermalMetricsSerializerTest extends SystemMetricsSerializerTest<ThermalMetrics> {
+
+  @Override
+  protected Class<ThermalMetrics> getClazz() {
+    return ThermalMetrics.class;
+  }
+
+  @Override
+  protected SystemMetricsSerializer<ThermalMetrics> getSerializer() {
+    return new ThermalMetricsSerializer();
+  }
+
+  @Override
+  protected ThermalMetrics createInitializedInstance() throws Exception {
+    ThermalMetrics metrics = super.createInitializedInstance();
+    metrics.timeAboveThresholdMs[0] = 300;
+    metrics.timeAboveThresholdMs[1] = 200;
+    metrics.timeAboveThresholdMs[2] = 100;
+    return metrics;
+  }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.battery.serializer.timeseries;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import androidx.collection.ArrayMap;
+import com.facebook.battery.metrics.composite.CompositeMetrics;
+import com.facebook.battery.metrics.core.SystemMetrics;
+import com.facebook.battery.metrics.cpu.CpuMetrics;
+import com.facebook.battery.metrics.healthstats.HealthStatsMetrics;
+import com.facebook.battery.metrics.time.TimeMetrics;
+import com.facebook.battery.serializer.composite.CompositeMetricsSerializer;
+import com.facebook.battery.serializer.core.SystemMetricsSerializer;
+import com.facebook.battery.serializer.cpu.CpuMetricsSerializer;
+import com.facebook.battery.serializer.healthstats.HealthStatsMetricsSerializer;
+import com.facebook.battery.serializer.time.TimeMetricsSerializer;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class)
+public class MetricsBatchEncoderTest {
+
+  @Test
+  public void testEmptyBatch() throws Exception {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    new MetricsBatchEncoder<>(new TimeMetricsSerializer(), new DataOutputStream(baos)).finish();
+
+    MetricsBatchDecoder<TimeMetrics> decoder =
+        new MetricsBatchDecoder<>(
+            new TimeMetricsSerializer(),
+            new DataInputStream(new ByteArrayInputStream(baos.toByteArray())));
+    assertThat(decoder.next(new TimeMetrics())).isFalse();
+  }
+
+  @Test
+  public void testSmoothCounters() throws Exception {
+    List<TimeMetrics> snapshots = new ArrayList<>();
+    for (int i = 0; i < 1440; i++) {
+      TimeMetrics metrics = new TimeMetrics();
+      metrics.realtimeMs = 60_000L * i;
+      metrics.uptimeMs = 60_000L * i - (i / 100) * 1000;
+      snapshots.add(metrics);
+    }
+
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    MetricsBatchEncoder<TimeMetrics> encoder =
+        new MetricsBatchEncoder<>(new TimeMetricsSerializer(), new DataOutputStream(baos));
+    for (int i = 0; i < snapshots.size(); i++) {
+      encoder.add(1_500_000_000_000L + 60_000L * i, snapshots.get(i));
+    }
+    encoder.finish();
+
+    // 1440 timestamps and 2 * 1440 longs uncompressed
+    assertThat(baos.size()).isLessThan(1440 * 3 * 8 / 50);
+
+    MetricsBatchDecoder<TimeMetrics> decoder =
+        new MetricsBatchDecoder<>(
+            new TimeMetricsSerializer(),
+            new DataInputStream(new ByteArrayInputStream(baos.toByteArray())));
+    TimeMetrics metrics = new TimeMetrics();
+    for (int i = 0; i < snapshots.size(); i++) {
+      assertThat(decoder.next(metrics)).isTrue();
+      assertThat(decoder.getTimestampMs()).isEqualTo(1_500_000_000_000L + 60_000L * i);
+      assertThat(metrics).isEqualTo(snapshots.get(i));
+    }
+    assertThat(decoder.next(metrics)).isFalse();
+  }
+
+  @Test
+  public void testDoubles() throws Exception {
+    List<CpuMetrics> snapshots = new ArrayList<>();
+    double userTimeS = 0;
+    for (int i = 0; i < 100; i++) {
+      CpuMetrics metrics = new CpuMetrics();
+      userTimeS += (i % 7) * 0.01;
+      metrics.userTimeS = userTimeS;
+      metrics.systemTimeS = i % 3 == 0 ? -1 : i * 0.25;
+      metrics.childUserTimeS = Double.NaN;
+      snapshots.add(metrics);
+    }
+
+    assertThat(roundTrip(new CpuMetricsSerializer(), snapshots, CpuMetrics.class))
+        .isEqualTo(snapshots);
+  }
+
+  @Test
+  public void testChangingShape() throws Exception {
+    List<HealthStatsMetrics> snapshots = new ArrayList<>();
+    for (int i = 0; i < 2 * MetricsBatchEncoder.MAX_BLOCK_ROWS + 10; i++) {
+      HealthStatsMetrics metrics = new HealthStatsMetrics();
+      metrics.dataType = "uid";
+      metrics.measurement.put(1, (long) i);
+      metrics.measurements.put(2, new ArrayMap<String, Long>());
+      for (int j = 0; j < i / 500; j++) {
+        metrics.measurements.get(2).put("key" + j, (long) i * j);
+      }
+      snapshots.add(metrics);
+    }
+
+    assertThat(roundTrip(new HealthStatsMetricsSerializer(), snapshots, HealthStatsMetrics.class))
+        .isEqualTo(snapshots);
+  }
+
+  @Test
+  public void testCompositeMetrics() throws Exception {
+    CompositeMetricsSerializer serializer =
+        new CompositeMetricsSerializer()
+            .addMetricsSerializer(TimeMetrics.class, new TimeMetricsSerializer())
+            .addMetricsSerializer(CpuMetrics.class, new CpuMetricsSerializer());
+    List<CompositeMetrics> snapshots = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      CompositeMetrics metrics = createCompositeMetrics();
+      metrics.getMetric(TimeMetrics.class).realtimeMs = 60_000L * i;
+      if (i % 10 == 0) {
+        metrics.setIsValid(CpuMetrics.class, false);
+      } else {
+        metrics.getMetric(CpuMetrics.class).userTimeS = i * 0.25;
+      }
+      snapshots.add(metrics);
+    }
+
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    MetricsBatchEncoder<CompositeMetrics> encoder =
+        new MetricsBatchEncoder<>(serializer, new DataOutputStream(baos));
+    for (int i = 0; i < snapshots.size(); i++) {
+      encoder.add(i, snapshots.get(i));
+    }
+    encoder.finish();
+
+    MetricsBatchDecoder<CompositeMetrics> decoder =
+        new MetricsBatchDecoder<>(
+            serializer, new DataInputStream(new ByteArrayInputStream(baos.toByteArray())));
+    for (CompositeMetrics snapshot : snapshots) {
+      CompositeMetrics metrics = createCompositeMetrics();
+      assertThat(decoder.next(metrics)).isTrue();
+      assertThat(metrics).isEqualTo(snapshot);
+    }
+    assertThat(decoder.next(createCompositeMetrics())).isFalse();
+  }
+
+  private static CompositeMetrics createCompositeMetrics() {
+    return new CompositeMetrics()
+        .putValidMetric(TimeMetrics.class, new TimeMetrics())
+        .putValidMetric(CpuMetrics.class, new CpuMetrics());
+  }
+
+  private static <T extends SystemMetrics<T>> List<T> roundTrip(
+      SystemMetricsSerializer<T> serializer, List<T> snapshots, Class<T> metricsClass)
+      throws Exception {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    MetricsBatchEncoder<T> encoder =
+        new MetricsBatchEncoder<>(serializer, new DataOutputStream(baos));
+    for (int i = 0; i < snapshots.size(); i++) {
+      encoder.add(i, snapshots.get(i));
+    }
+    encoder.finish();
+
+    MetricsBatchDecoder<T> decoder =
+        new MetricsBatchDecoder<>(
+            serializer, new DataInputStream(new ByteArrayInputStream(baos.toByteArray())));
+    List<T> output = new ArrayList<>();
+    T metrics = metricsClass.newInstance();
+    while (decoder.next(metrics)) {
+      output.add(metrics);
+      metrics = metricsClass.newInstance();
+    }
+    return output;
+  }
+}